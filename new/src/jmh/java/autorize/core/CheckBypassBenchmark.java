@@ -0,0 +1,122 @@
+package autorize.core;
+
+import autorize.model.AndOr;
+import autorize.model.EnforcementRule;
+import autorize.model.EnforcementRuleType;
+import autorize.model.ResponseSignature;
+import autorize.model.Verdict;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Judging one replay through the shared ResponseView, against the per-consumer copies it replaced: a
+ * body copy per replay that nobody read, a decoded body for the built-in regex, and a second full-message
+ * copy for the literal rules. Run with {@code -prof gc} for bytes allocated per replay.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CheckBypassBenchmark {
+  private static final Pattern DEFAULT_ENFORCED_BODY_REGEX =
+      Pattern.compile("(?i)(forbidden|unauthorized|access denied)");
+
+  /** "literal": literal, status and length rules only; "regex": the same plus one BODY_REGEX rule. */
+  @Param({"literal", "regex"})
+  public String rules;
+
+  @Param({"51200"})
+  public int bodyBytes;
+
+  private HttpResponse replay;
+  private ResponseSignature original;
+  private EnforcementRuleSet ruleSet;
+  private List<EnforcementRule> ruleList;
+  private AhoCorasick legacyLiterals;
+  private RegexGuard guard;
+
+  @Setup
+  public void setUp() {
+    StringBuilder sb = new StringBuilder(bodyBytes);
+    for (int i = 0; sb.length() < bodyBytes; i++) sb.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+    sb.setLength(bodyBytes);
+    byte[] body = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    replay = MontoyaFakes.response(200, MontoyaFakes.headers("Content-Type", "application/json"), body);
+    byte[] raw = replay.toByteArray().getBytes();
+    original = ResponseSignature.of((short) 200, "application/json", raw, replay.bodyOffset());
+
+    ruleList = new ArrayList<>(List.of(
+        new EnforcementRule(EnforcementRuleType.BODY_CONTAINS, false, "\"login_required\""),
+        new EnforcementRule(EnforcementRuleType.HEADERS_CONTAINS, false, "WWW-Authenticate"),
+        new EnforcementRule(EnforcementRuleType.STATUS_EQUALS, false, "302"),
+        new EnforcementRule(EnforcementRuleType.FULL_LENGTH_EQUALS, false, "1234")));
+    if (rules.equals("regex")) {
+      ruleList.add(new EnforcementRule(EnforcementRuleType.BODY_REGEX, false, "\"error\"\\s*:\\s*\"denied\""));
+    }
+    guard = new RegexGuard();
+    ruleSet = EnforcementRuleSet.compile(ruleList, null, guard);
+    AhoCorasick.Builder b = new AhoCorasick.Builder();
+    for (EnforcementRule r : ruleList) {
+      if (r.type() == EnforcementRuleType.BODY_CONTAINS || r.type() == EnforcementRuleType.HEADERS_CONTAINS) b.add(r.content());
+    }
+    legacyLiterals = b.build();
+  }
+
+  @Benchmark
+  public Verdict view() {
+    return AutorizeController.checkBypass(original, new ResponseView(replay), ruleSet, AndOr.OR, null, null, null);
+  }
+
+  /** The replay path before ResponseView: each consumer took its own copy of the response. */
+  @Benchmark
+  public Verdict perCopy() {
+    byte[] unread = replay.body().getBytes();
+    String newStatus = String.valueOf(replay.statusCode());
+    if (unread == null || "401".equals(newStatus) || "403".equals(newStatus)) return Verdict.ENFORCED;
+
+    String replayBody = replay.bodyToString();
+    if (DEFAULT_ENFORCED_BODY_REGEX.matcher(replayBody).find()) return Verdict.ENFORCED;
+
+    byte[] raw = null;
+    String body = null;
+    for (EnforcementRule r : ruleList) {
+      boolean matched;
+      switch (r.type()) {
+        case BODY_CONTAINS, HEADERS_CONTAINS -> {
+          if (raw == null) raw = replay.toByteArray().getBytes();
+          matched = legacyLiterals.containsAny(raw, 0, raw.length);
+        }
+        case STATUS_EQUALS -> matched = String.valueOf(replay.statusCode()).trim().equals(r.content().trim());
+        case FULL_LENGTH_EQUALS -> {
+          if (raw == null) raw = replay.toByteArray().getBytes();
+          matched = String.valueOf(raw.length).trim().equals(r.content().trim());
+        }
+        case BODY_REGEX -> {
+          if (body == null) body = replay.bodyToString();
+          matched = guard.find(r.regex(), body);
+        }
+        default -> matched = false;
+      }
+      if (matched) return Verdict.ENFORCED;
+    }
+    return String.valueOf(original.status()).equals(newStatus) ? Verdict.BYPASSED : Verdict.UNKNOWN;
+  }
+}
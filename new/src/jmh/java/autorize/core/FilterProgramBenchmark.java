@@ -0,0 +1,111 @@
+package autorize.core;
+
+import autorize.model.InterceptionFilter;
+import autorize.model.InterceptionFilterType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Compiled filter program against the interpreted loop it replaced, on a 20-filter list: method and
+ * URL exclusions, scope, header markers, and body markers and patterns on both sides. One exchange in
+ * four is an OPTIONS preflight and one in sixteen carries a response marker near its end.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterProgramBenchmark {
+  private static final Predicate<HttpRequest> IN_SCOPE = r -> r.url().startsWith("https://app.example/");
+
+  @Param({"1024", "65536"})
+  public int bodyBytes;
+
+  private List<InterceptionFilter> filters;
+  private FilterProgram program;
+  private HttpRequest[] requests;
+  private HttpResponse[] responses;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    filters = List.of(
+        new InterceptionFilter(InterceptionFilterType.IGNORE_OPTIONS, ""),
+        new InterceptionFilter(InterceptionFilterType.IGNORE_METHODS, "TRACE, CONNECT"),
+        new InterceptionFilter(InterceptionFilterType.URL_NOT_REGEX, "\\.(js|css|png|svg|woff2?)(\\?|$)"),
+        new InterceptionFilter(InterceptionFilterType.URL_NOT_REGEX, "/(health|metrics)$"),
+        new InterceptionFilter(InterceptionFilterType.URL_NOT_CONTAINS, "/logout"),
+        new InterceptionFilter(InterceptionFilterType.URL_NOT_CONTAINS, "/telemetry/"),
+        new InterceptionFilter(InterceptionFilterType.URL_NOT_CONTAINS, "/socket.io/"),
+        new InterceptionFilter(InterceptionFilterType.URL_CONTAINS, "app.example"),
+        new InterceptionFilter(InterceptionFilterType.SCOPE_ONLY, ""),
+        new InterceptionFilter(InterceptionFilterType.REQ_HEADER_NOT_CONTAINS, "X-Skip-Autorize"),
+        new InterceptionFilter(InterceptionFilterType.REQ_HEADER_NOT_CONTAINS, "Upgrade: websocket"),
+        new InterceptionFilter(InterceptionFilterType.RES_HEADER_NOT_CONTAINS, "Content-Type: image/"),
+        new InterceptionFilter(InterceptionFilterType.REQ_BODY_NOT_CONTAINS, "logout=1"),
+        new InterceptionFilter(InterceptionFilterType.REQ_BODY_NOT_CONTAINS, "\"operationName\":\"Heartbeat\""),
+        new InterceptionFilter(InterceptionFilterType.REQ_BODY_NOT_REGEX, "password=[^&]{64,}"),
+        new InterceptionFilter(InterceptionFilterType.RES_BODY_NOT_CONTAINS, "<!-- maintenance -->"),
+        new InterceptionFilter(InterceptionFilterType.RES_BODY_NOT_CONTAINS, "\"error\":\"rate_limited\""),
+        new InterceptionFilter(InterceptionFilterType.RES_BODY_NOT_CONTAINS, "Please enable JavaScript"),
+        new InterceptionFilter(InterceptionFilterType.RES_BODY_NOT_CONTAINS, "cf-browser-verification"),
+        new InterceptionFilter(InterceptionFilterType.RES_BODY_NOT_REGEX, "^\\s*<\\?xml"));
+    program = FilterProgram.compile(filters, null, null, new RegexGuard(), Integer.MAX_VALUE);
+
+    String[] urls = {
+        "https://app.example/api/users/17", "https://app.example/static/app.js?v=3",
+        "https://cdn.example/api/x", "https://app.example/api/orders?page=2"
+    };
+    String[] methods = {"GET", "POST", "OPTIONS", "GET"};
+    requests = new HttpRequest[64];
+    responses = new HttpResponse[64];
+    for (int i = 0; i < requests.length; i++) {
+      requests[i] = MontoyaFakes.request(methods[i % methods.length], urls[(i / 4) % urls.length],
+          MontoyaFakes.headers("Host", "app.example", "Cookie", "sid=" + i), body(i, bodyBytes / 4, "q=1"));
+      responses[i] = MontoyaFakes.response(200, MontoyaFakes.headers("Content-Type", "application/json"),
+          body(i, bodyBytes, i % 16 == 0 ? "<!-- maintenance -->" : "}"));
+    }
+  }
+
+  private static byte[] body(int seed, int size, String tail) {
+    StringBuilder sb = new StringBuilder(size + tail.length());
+    while (sb.length() < size) sb.append("{\"id\":").append(seed++).append(",\"name\":\"item\"},");
+    sb.setLength(size);
+    return sb.append(tail).toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private int index() {
+    int i = next;
+    next = (i + 1) & (requests.length - 1);
+    return i;
+  }
+
+  @Benchmark
+  public int compiled() {
+    int i = index();
+    return program.firstRejecting(requests[i], responses[i], IN_SCOPE);
+  }
+
+  @Benchmark
+  public boolean interpreted() {
+    int i = index();
+    return FilterProgramTest.LegacyFilters.shouldProcess(filters, requests[i], responses[i], IN_SCOPE);
+  }
+}
@@ -0,0 +1,77 @@
+package autorize.core;
+
+import autorize.model.MatchReplaceRule;
+import autorize.model.MatchReplaceType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Match/replace, extra headers and stepper header of one replay for a typical profile (a session header,
+ * a cookie, a path and a body rule, two header lines): through the compiled ReplayPlan against walking
+ * the rule list stage by stage as before. Both edit the same RequestRewriter, so the difference is the
+ * per-replay rule dispatch, literal conversion and headers-text parsing. Run with {@code -prof gc} for
+ * bytes allocated per replay.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReplayPlanBenchmark {
+  private static final UnaryOperator<String> VALUES = v -> v.replace("{{token}}", "eyJhbGciOi.x.y");
+  private static final String HEADERS_TEXT = "Authorization: Bearer {{token}}\nX-Tenant: 42\nAccept: */*";
+  private static final List<MatchReplaceRule> RULES = List.of(
+      new MatchReplaceRule(MatchReplaceType.PATH_REGEX, "/users/\\d+", "/users/2"),
+      new MatchReplaceRule(MatchReplaceType.HEADER_REPLACE, "X-Csrf-Token", "{{token}}"),
+      new MatchReplaceRule(MatchReplaceType.HEADERS_SIMPLE, "X-Role: user", "X-Role: admin"),
+      new MatchReplaceRule(MatchReplaceType.BODY_SIMPLE, "\"role\":\"user\"", "\"role\":\"admin\""),
+      new MatchReplaceRule(MatchReplaceType.COOKIE_REPLACE, "sid", "{{token}}"),
+      new MatchReplaceRule(MatchReplaceType.STEPPER_HEADER, "", "blue"));
+
+  private final RegexGuard regex = new RegexGuard();
+  private byte[] request;
+  private ReplayPlan plan;
+
+  @Setup
+  public void setUp() {
+    String body = "{\"id\":1,\"role\":\"user\",\"name\":\"" + "x".repeat(400) + "\"}";
+    request = ("POST /api/users/1/profile HTTP/1.1\r\nHost: app.example\r\nUser-Agent: Mozilla/5.0\r\n"
+        + "Accept: application/json\r\nX-Role: user\r\nX-Csrf-Token: abc\r\nCookie: sid=1; theme=dark\r\n"
+        + "Content-Type: application/json\r\nContent-Length: " + body.length() + "\r\n\r\n" + body)
+        .getBytes(StandardCharsets.ISO_8859_1);
+    plan = ReplayPlan.compile(RULES, HEADERS_TEXT, null);
+  }
+
+  @Benchmark
+  public byte[] plan() {
+    RequestRewriter r = RequestRewriter.parse(request);
+    ReplayPlan p = ReplayPlan.compile(RULES, HEADERS_TEXT, plan);
+    p.applyMatchReplace(r, VALUES, regex);
+    p.applyHeaders(r, VALUES);
+    p.applyStepperHeader(r, "X-PwnFox-Color", VALUES);
+    return r.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] stageByStage() {
+    RequestRewriter r = RequestRewriter.parse(request);
+    ReplayPlanTest.LegacyReplay.applyMatchReplace(r, RULES, VALUES, regex);
+    ReplayPlanTest.LegacyReplay.applyHeaders(r, HEADERS_TEXT, VALUES);
+    ReplayPlanTest.LegacyReplay.applyStepperHeader(r, RULES, "X-PwnFox-Color", VALUES);
+    return r.toByteArray();
+  }
+}
@@ -0,0 +1,82 @@
+package autorize.core;
+
+import autorize.model.NoiseMask;
+import autorize.model.ResponseSignature;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Length, raw bytes and signature of one response under a 1 MB window: through ResponseView (body offset
+ * plus body length, windows and chunks cut from the body) against cutting them from the whole message
+ * as it did before. The fake response copies on toByteArray() and getBytes(), like Burp. Run with
+ * {@code -prof gc} for bytes allocated per response.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+@State(Scope.Thread)
+public class ResponseViewBenchmark {
+  private static final int WINDOW = 1 << 20;
+  private static final int CHUNK = 1 << 20;
+
+  @Param({"65536", "8388608"})
+  public int bodyBytes;
+
+  private HttpResponse response;
+
+  @Setup
+  public void setUp() {
+    StringBuilder sb = new StringBuilder(bodyBytes);
+    for (int i = 0; sb.length() < bodyBytes; i++) sb.append("{\"id\":").append(i).append(",\"name\":\"item\"},");
+    sb.setLength(bodyBytes);
+    response = MontoyaFakes.response(200, MontoyaFakes.headers("Content-Type", "application/json"),
+        sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  @Benchmark
+  public void view(Blackhole bh) {
+    ResponseView v = new ResponseView(response, null, WINDOW);
+    bh.consume(v.length());
+    bh.consume(v.raw());
+    bh.consume(v.signature());
+  }
+
+  /** The same three views cut from response.toByteArray(), as ResponseView did before. */
+  @Benchmark
+  public void message(Blackhole bh) {
+    ByteArray all = response.toByteArray();
+    int from = response.bodyOffset();
+    int length = all.length();
+    bh.consume(length);
+    if (length - from <= WINDOW) {
+      byte[] raw = all.getBytes();
+      bh.consume(raw);
+      bh.consume(ResponseSignature.of(response.statusCode(), response.headerValue("Content-Type"), raw, from));
+      return;
+    }
+    bh.consume(all.subArray(0, from + WINDOW).getBytes());
+    ResponseSignature.Builder b = new ResponseSignature.Builder(NoiseMask.NONE);
+    for (int i = from; i < length; i += CHUNK) {
+      byte[] chunk = all.subArray(i, Math.min(length, i + CHUNK)).getBytes();
+      b.update(chunk, 0, chunk.length);
+    }
+    bh.consume(b.build(response.statusCode(), response.headerValue("Content-Type"), from));
+  }
+}
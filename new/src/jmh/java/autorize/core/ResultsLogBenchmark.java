@@ -0,0 +1,131 @@
+package autorize.core;
+
+import autorize.model.LogEntry;
+import autorize.model.ResponseSignature;
+import autorize.model.Verdict;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending to and reading back a results log that already holds 1M rows: ResultsLog against the
+ * CopyOnWriteArrayList it replaced, which copied the whole list on every append and again for every
+ * snapshot. A read is one snapshot plus a pass over every row's original status and the verdict of one
+ * profile, as the table's filter does. Entries are drawn from a pool of 1024, so the heap holds the
+ * log's own structures rather than 1M messages. Run with {@code -prof gc} for bytes allocated per
+ * operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class ResultsLogBenchmark {
+  private static final int ROWS = 1_000_000;
+  private static final int POOL = 1024;
+  private static final UUID PROFILE = UUID.randomUUID();
+  private static final LogEntry[] ENTRIES = new LogEntry[POOL];
+  private static final List<Map<UUID, Verdict>> VERDICTS = new ArrayList<>();
+
+  static {
+    Verdict[] values = {Verdict.ENFORCED, Verdict.BYPASSED, Verdict.UNKNOWN};
+    for (int i = 0; i < POOL; i++) {
+      String body = "x".repeat(i % 200);
+      byte[] raw = ("HTTP/1.1 200 OK\r\n\r\n" + body).getBytes(StandardCharsets.ISO_8859_1);
+      ResponseSignature sig = ResponseSignature.of((short) (200 + i % 3), "text/html", raw, raw.length - body.length());
+      ENTRIES[i] = new LogEntry(i, i % 2 == 0 ? "GET" : "POST", "https://app.example/api/" + i, null, sig, null, null);
+      ENTRIES[i].putProfileResult(PROFILE, null, sig);
+      VERDICTS.add(Map.of(PROFILE, values[i % values.length]));
+    }
+  }
+
+  /** Both logs filled with ROWS entries. */
+  public static class Filled {
+    ResultsLog log;
+    List<LogEntry> copyOnWrite;
+    int next;
+
+    void fill() {
+      log = new ResultsLog();
+      List<LogEntry> all = new ArrayList<>(ROWS);
+      for (int i = 0; i < ROWS; i++) {
+        log.add(ENTRIES[i % POOL], Verdict.ENFORCED, VERDICTS.get(i % POOL));
+        all.add(ENTRIES[i % POOL]);
+      }
+      copyOnWrite = new CopyOnWriteArrayList<>(all);
+      next = 0;
+    }
+  }
+
+  /** Refilled per iteration, so one iteration's appends do not grow the next one's starting size. */
+  @State(Scope.Thread)
+  public static class Appending extends Filled {
+    @Setup(Level.Iteration)
+    public void setUp() {
+      fill();
+    }
+  }
+
+  /** Filled once: a per-iteration refill would count its allocation against the few reads that follow. */
+  @State(Scope.Thread)
+  public static class Reading extends Filled {
+    @Setup(Level.Trial)
+    public void setUp() {
+      fill();
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void append(Appending s) {
+    int i = s.next++ & (POOL - 1);
+    s.log.add(ENTRIES[i], Verdict.ENFORCED, VERDICTS.get(i));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void appendCopyOnWrite(Appending s) {
+    s.copyOnWrite.add(ENTRIES[s.next++ & (POOL - 1)]);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public long read(Reading s) {
+    ResultsLog.View v = s.log.snapshot();
+    int ordinal = v.ordinal(PROFILE);
+    long sum = 0;
+    for (int row = 0; row < v.size(); row++) {
+      sum += v.status(row);
+      if (v.verdict(row, ordinal) == Verdict.BYPASSED) sum++;
+    }
+    return sum;
+  }
+
+  /** The old snapshot copied the list; verdicts were fields of the entry, read here from its signatures. */
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public long readCopyOnWrite(Reading s) {
+    List<LogEntry> v = new ArrayList<>(s.copyOnWrite);
+    long sum = 0;
+    for (LogEntry e : v) {
+      sum += e.originalSignature().status();
+      if (e.perProfileSignature().get(PROFILE).status() == 202) sum++;
+    }
+    return sum;
+  }
+}
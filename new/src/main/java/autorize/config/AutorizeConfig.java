@@ -15,14 +15,25 @@ public final class AutorizeConfig {
   public boolean checkUnauthenticated = true;
   public boolean ignore304 = true;
   public boolean prevent304 = false;
+  public boolean compareBodies = false;
+  public int bypassedAtPercent = 90;
+  public int enforcedBelowPercent = 0;
+  public boolean compareJson = false;
+  public boolean jsonHashValues = false;
+  public String jsonIgnorePaths = "";
+  public boolean learnNoise = false;
+  public int largeBodyKb = 8192;
   public boolean autoScroll = false;
   public boolean replaceQueryParam = false;
   public String replaceQueryParamText = "paramName=paramValue";
   public boolean showBypassed = true;
   public boolean showEnforced = true;
   public boolean showUnknown = true;
+  public boolean linearRegex = false;
+  public int regexBudgetMillis = 1000;
 
   public List<InterceptionFilterConfig> interceptionFilters = new ArrayList<>();
+  public String interceptionExpression = "";
 
   public UnauthDetectorConfig unauthDetector = new UnauthDetectorConfig();
 
@@ -56,5 +67,19 @@ public final class AutorizeConfig {
     public String enforcementMode = "OR";
     public List<MatchReplaceConfig> matchReplace = new ArrayList<>();
     public List<RuleConfig> enforcementRules = new ArrayList<>();
+    public SessionRefreshConfig sessionRefresh = new SessionRefreshConfig();
+  }
+
+  public static final class TokenExtractorConfig {
+    public String type;
+    public String name;
+    public String expression;
+  }
+
+  public static final class SessionRefreshConfig {
+    public String serviceUrl = "";
+    public String request = "";
+    public int ttlSeconds = 300;
+    public List<TokenExtractorConfig> extractors = new ArrayList<>();
   }
 }
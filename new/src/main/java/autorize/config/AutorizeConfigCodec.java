@@ -8,6 +8,8 @@ import autorize.model.InterceptionFilter;
 import autorize.model.InterceptionFilterType;
 import autorize.model.MatchReplaceRule;
 import autorize.model.MatchReplaceType;
+import autorize.model.TokenExtractor;
+import autorize.model.TokenExtractorType;
 import autorize.model.UserProfile;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -38,12 +40,22 @@ public final class AutorizeConfigCodec {
     cfg.checkUnauthenticated = state.checkUnauthenticated();
     cfg.ignore304 = state.ignore304();
     cfg.prevent304 = state.prevent304();
+    cfg.compareBodies = state.compareBodies();
+    cfg.bypassedAtPercent = state.bypassedAtPercent();
+    cfg.enforcedBelowPercent = state.enforcedBelowPercent();
+    cfg.compareJson = state.compareJson();
+    cfg.jsonHashValues = state.jsonHashValues();
+    cfg.jsonIgnorePaths = state.jsonIgnorePaths();
+    cfg.learnNoise = state.learnNoise();
+    cfg.largeBodyKb = state.largeBodyKb();
     cfg.autoScroll = state.autoScroll();
     cfg.replaceQueryParam = state.replaceQueryParam();
     cfg.replaceQueryParamText = state.replaceQueryParamText();
     cfg.showBypassed = state.showBypassed();
     cfg.showEnforced = state.showEnforced();
     cfg.showUnknown = state.showUnknown();
+    cfg.linearRegex = state.linearRegex();
+    cfg.regexBudgetMillis = state.regexBudgetMillis();
 
     for (InterceptionFilter f : state.interceptionFilters()) {
       AutorizeConfig.InterceptionFilterConfig fc = new AutorizeConfig.InterceptionFilterConfig();
@@ -51,6 +63,7 @@ public final class AutorizeConfigCodec {
       fc.content = f.content();
       cfg.interceptionFilters.add(fc);
     }
+    cfg.interceptionExpression = state.interceptionExpression();
 
     cfg.unauthDetector.mode = state.unauthEnforcementAndOr().name();
     for (var r : state.unauthEnforcementRules()) {
@@ -72,6 +85,16 @@ public final class AutorizeConfigCodec {
       for (EnforcementRule er : p.enforcementRules()) {
         pc.enforcementRules.add(ruleCfg(er));
       }
+      pc.sessionRefresh.serviceUrl = p.refreshServiceUrl();
+      pc.sessionRefresh.request = p.refreshRequestText();
+      pc.sessionRefresh.ttlSeconds = p.refreshTtlSeconds();
+      for (TokenExtractor x : p.tokenExtractors()) {
+        AutorizeConfig.TokenExtractorConfig xc = new AutorizeConfig.TokenExtractorConfig();
+        xc.type = x.type().name();
+        xc.name = x.name();
+        xc.expression = x.expression();
+        pc.sessionRefresh.extractors.add(xc);
+      }
       cfg.profiles.add(pc);
     }
 
@@ -99,6 +122,14 @@ public final class AutorizeConfigCodec {
     state.setCheckUnauthenticated(cfg.checkUnauthenticated);
     state.setIgnore304(cfg.ignore304);
     state.setPrevent304(cfg.prevent304);
+    state.setCompareBodies(cfg.compareBodies);
+    state.setBypassedAtPercent(cfg.bypassedAtPercent);
+    state.setEnforcedBelowPercent(cfg.enforcedBelowPercent);
+    state.setCompareJson(cfg.compareJson);
+    state.setJsonHashValues(cfg.jsonHashValues);
+    state.setJsonIgnorePaths(cfg.jsonIgnorePaths);
+    state.setLearnNoise(cfg.learnNoise);
+    state.setLargeBodyKb(cfg.largeBodyKb);
     state.setAutoScroll(cfg.autoScroll);
     state.setReplaceQueryParam(cfg.replaceQueryParam);
     if (cfg.replaceQueryParamText != null) {
@@ -107,6 +138,8 @@ public final class AutorizeConfigCodec {
     state.setShowBypassed(cfg.showBypassed);
     state.setShowEnforced(cfg.showEnforced);
     state.setShowUnknown(cfg.showUnknown);
+    state.setLinearRegex(cfg.linearRegex);
+    state.setRegexBudgetMillis(cfg.regexBudgetMillis);
 
     // Interception filters
     List<InterceptionFilter> filters = new ArrayList<>();
@@ -118,6 +151,7 @@ public final class AutorizeConfigCodec {
       }
     }
     state.replaceInterceptionFilters(filters);
+    state.setInterceptionExpression(cfg.interceptionExpression);
 
     // Unauth detector
     AndOr unauthMode = safeEnum(AndOr.class, cfg.unauthDetector == null ? null : cfg.unauthDetector.mode, AndOr.OR);
@@ -155,6 +189,19 @@ public final class AutorizeConfigCodec {
           }
         }
 
+        if (pc.sessionRefresh != null) {
+          p.setRefreshServiceUrl(pc.sessionRefresh.serviceUrl);
+          p.setRefreshRequestText(pc.sessionRefresh.request);
+          p.setRefreshTtlSeconds(pc.sessionRefresh.ttlSeconds);
+          if (pc.sessionRefresh.extractors != null) {
+            for (var xc : pc.sessionRefresh.extractors) {
+              TokenExtractorType t = safeEnum(TokenExtractorType.class, xc.type, null);
+              if (t == null) continue;
+              p.tokenExtractors().add(new TokenExtractor(t, xc.name, xc.expression));
+            }
+          }
+        }
+
         profiles.add(p);
       }
     }
@@ -0,0 +1,255 @@
+package autorize.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Multi-pattern literal matcher over raw message bytes (Aho-Corasick compiled to a DFA).
+ *
+ * Each pattern is matched as its UTF-8 bytes and, when different and representable, as its ISO-8859-1
+ * bytes (Burp's one-byte-per-char text view), so results agree with String.contains on the decoded body.
+ * The DFA runs over byte classes (bytes that occur in no pattern share one class), which keeps the table
+ * small for typical ASCII rule sets. Empty patterns are never reported; callers treat them as present.
+ * With {@link Builder#ignoreAsciiCase()} upper- and lower-case ASCII letters share a class, which matches
+ * a (?i) regex without UNICODE_CASE.
+ *
+ * Small case-sensitive sets are also kept as Latin-1 strings: for a handful of literals, one
+ * String.indexOf per literal (vectorised by the JIT) beats a byte-at-a-time DFA walk, so
+ * {@link #findAll(String)} uses them up to {@link #INDEX_OF_MAX} sequences.
+ */
+public final class AhoCorasick {
+  /** Receives (pattern id, start, end) for each occurrence; return true to stop scanning. */
+  public interface Sink {
+    boolean match(int id, int start, int end);
+  }
+
+  static final int INDEX_OF_MAX = 8;
+
+  private final int patternCount;
+  private final int classes;
+  private final int[] classOf;
+  private final int[] delta;
+  private final int[][] outIds;
+  private final int[][] outLens;
+  // Latin-1 view of each byte sequence and its pattern id, or null when the DFA is always used.
+  private final String[] needles;
+  private final int[] needleIds;
+
+  private AhoCorasick(int patternCount, int classes, int[] classOf, int[] delta, int[][] outIds, int[][] outLens,
+                      String[] needles, int[] needleIds) {
+    this.patternCount = patternCount;
+    this.classes = classes;
+    this.classOf = classOf;
+    this.delta = delta;
+    this.outIds = outIds;
+    this.outLens = outLens;
+    this.needles = needles;
+    this.needleIds = needleIds;
+  }
+
+  public int patternCount() {
+    return patternCount;
+  }
+
+  /** Single pass over data[from, to); stops early when the sink asks to. */
+  public void scan(byte[] data, int from, int to, Sink sink) {
+    if (data == null) return;
+    int end = Math.min(to, data.length);
+    int k = classes;
+    int s = 0;
+    for (int i = Math.max(0, from); i < end; i++) {
+      s = delta[s * k + classOf[data[i] & 0xFF]];
+      int[] ids = outIds[s];
+      if (ids == null) continue;
+      int[] lens = outLens[s];
+      for (int j = 0; j < ids.length; j++) {
+        if (sink.match(ids[j], i + 1 - lens[j], i + 1)) return;
+      }
+    }
+  }
+
+  /** True when any pattern occurs in data[from, to). */
+  public boolean containsAny(byte[] data, int from, int to) {
+    boolean[] hit = {false};
+    scan(data, from, to, (id, start, end) -> hit[0] = true);
+    return hit[0];
+  }
+
+  /** Ids of all patterns occurring anywhere in data[from, to). */
+  public BitSet findAll(byte[] data, int from, int to) {
+    BitSet found = new BitSet(patternCount);
+    if (patternCount == 0) return found;
+    scan(data, from, to, (id, start, end) -> {
+      found.set(id);
+      return found.cardinality() == patternCount;
+    });
+    return found;
+  }
+
+  /**
+   * Ids of all patterns occurring in {@code text}, a one-char-per-byte (Latin-1) view of the data such as
+   * Burp's bodyToString. Gives the same result as {@link #findAll(byte[], int, int)} on the raw bytes.
+   */
+  public BitSet findAll(String text) {
+    BitSet found = new BitSet(patternCount);
+    if (patternCount == 0 || text == null) return found;
+    if (needles != null) {
+      for (int j = 0; j < needles.length; j++) {
+        if (!found.get(needleIds[j]) && text.contains(needles[j])) found.set(needleIds[j]);
+      }
+      return found;
+    }
+    int k = classes;
+    int s = 0;
+    for (int i = 0, n = text.length(); i < n; i++) {
+      char ch = text.charAt(i);
+      s = delta[s * k + (ch < 256 ? classOf[ch] : 0)];
+      int[] ids = outIds[s];
+      if (ids == null) continue;
+      for (int id : ids) found.set(id);
+      if (found.cardinality() == patternCount) break;
+    }
+    return found;
+  }
+
+  public static final class Builder {
+    private final List<byte[]> seqs = new ArrayList<>();
+    private final List<Integer> seqIds = new ArrayList<>();
+    private int count;
+    private boolean ignoreAsciiCase;
+
+    /** Matches ASCII letters case-insensitively; applies to every pattern in the automaton. */
+    public Builder ignoreAsciiCase() {
+      ignoreAsciiCase = true;
+      return this;
+    }
+
+    /** Registers a literal and returns its id. */
+    public int add(String pattern) {
+      int id = count++;
+      if (pattern == null || pattern.isEmpty()) return id;
+      byte[] utf8 = pattern.getBytes(StandardCharsets.UTF_8);
+      seqs.add(utf8);
+      seqIds.add(id);
+      if (StandardCharsets.ISO_8859_1.newEncoder().canEncode(pattern)) {
+        byte[] latin1 = pattern.getBytes(StandardCharsets.ISO_8859_1);
+        if (!Arrays.equals(utf8, latin1)) {
+          seqs.add(latin1);
+          seqIds.add(id);
+        }
+      }
+      return id;
+    }
+
+    public boolean isEmpty() {
+      return count == 0;
+    }
+
+    public AhoCorasick build() {
+      // Byte classes: 0 for bytes that appear in no pattern, 1..n for the rest.
+      int[] classOf = new int[256];
+      int k = 1;
+      if (ignoreAsciiCase) {
+        for (byte[] seq : seqs) {
+          for (int i = 0; i < seq.length; i++) {
+            if (seq[i] >= 'A' && seq[i] <= 'Z') seq[i] += 'a' - 'A';
+          }
+        }
+      }
+      for (byte[] seq : seqs) {
+        for (byte b : seq) {
+          if (classOf[b & 0xFF] == 0) classOf[b & 0xFF] = k++;
+        }
+      }
+      if (ignoreAsciiCase) {
+        for (int c = 'A'; c <= 'Z'; c++) {
+          classOf[c] = classOf[c + ('a' - 'A')];
+        }
+      }
+
+      // Trie.
+      List<int[]> next = new ArrayList<>();
+      List<List<int[]>> out = new ArrayList<>();
+      next.add(filled(k));
+      out.add(new ArrayList<>());
+      for (int p = 0; p < seqs.size(); p++) {
+        byte[] seq = seqs.get(p);
+        int s = 0;
+        for (byte b : seq) {
+          int c = classOf[b & 0xFF];
+          if (next.get(s)[c] < 0) {
+            next.get(s)[c] = next.size();
+            next.add(filled(k));
+            out.add(new ArrayList<>());
+          }
+          s = next.get(s)[c];
+        }
+        out.get(s).add(new int[]{seqIds.get(p), seq.length});
+      }
+
+      // Failure links in BFS order, folding them into a full transition table.
+      int n = next.size();
+      int[] delta = new int[n * k];
+      int[] fail = new int[n];
+      ArrayDeque<Integer> queue = new ArrayDeque<>();
+      for (int c = 0; c < k; c++) {
+        int t = next.get(0)[c];
+        if (t < 0) {
+          delta[c] = 0;
+        } else {
+          delta[c] = t;
+          fail[t] = 0;
+          queue.add(t);
+        }
+      }
+      while (!queue.isEmpty()) {
+        int s = queue.poll();
+        out.get(s).addAll(out.get(fail[s]));
+        for (int c = 0; c < k; c++) {
+          int t = next.get(s)[c];
+          if (t < 0) {
+            delta[s * k + c] = delta[fail[s] * k + c];
+          } else {
+            delta[s * k + c] = t;
+            fail[t] = delta[fail[s] * k + c];
+            queue.add(t);
+          }
+        }
+      }
+
+      int[][] outIds = new int[n][];
+      int[][] outLens = new int[n][];
+      for (int s = 0; s < n; s++) {
+        List<int[]> o = out.get(s);
+        if (o.isEmpty()) continue;
+        outIds[s] = new int[o.size()];
+        outLens[s] = new int[o.size()];
+        for (int j = 0; j < o.size(); j++) {
+          outIds[s][j] = o.get(j)[0];
+          outLens[s][j] = o.get(j)[1];
+        }
+      }
+      String[] needles = null;
+      int[] needleIds = null;
+      if (!ignoreAsciiCase && seqs.size() <= INDEX_OF_MAX) {
+        needles = new String[seqs.size()];
+        needleIds = new int[seqs.size()];
+        for (int p = 0; p < needles.length; p++) {
+          needles[p] = new String(seqs.get(p), StandardCharsets.ISO_8859_1);
+          needleIds[p] = seqIds.get(p);
+        }
+      }
+      return new AhoCorasick(count, k, classOf, delta, outIds, outLens, needles, needleIds);
+    }
+
+    private static int[] filled(int k) {
+      int[] a = new int[k];
+      Arrays.fill(a, -1);
+      return a;
+    }
+  }
+}
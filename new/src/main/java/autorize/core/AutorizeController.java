@@ -1,8 +1,10 @@
 package autorize.core;
 
 import burp.api.montoya.MontoyaApi;
+import burp.api.montoya.core.ByteArray;
 import burp.api.montoya.core.ToolType;
 import burp.api.montoya.extension.ExtensionUnloadingHandler;
+import burp.api.montoya.http.HttpService;
 import burp.api.montoya.http.handler.HttpHandler;
 import burp.api.montoya.http.handler.HttpRequestToBeSent;
 import burp.api.montoya.http.handler.HttpResponseReceived;
@@ -11,31 +13,34 @@ import burp.api.montoya.http.handler.ResponseReceivedAction;
 import burp.api.montoya.http.message.HttpHeader;
 import burp.api.montoya.http.message.HttpRequestResponse;
 import burp.api.montoya.http.message.requests.HttpRequest;
-import burp.api.montoya.http.message.params.HttpParameter;
-import burp.api.montoya.http.message.params.HttpParameterType;
 import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
 import burp.api.montoya.proxy.http.ProxyRequestHandler;
 import burp.api.montoya.proxy.http.InterceptedRequest;
 import burp.api.montoya.proxy.http.ProxyRequestReceivedAction;
 import burp.api.montoya.proxy.http.ProxyRequestToBeSentAction;
+import autorize.config.AutorizeConfigCodec;
 import autorize.model.LogEntry;
 import autorize.model.AndOr;
 import autorize.model.EnforcementRule;
-import autorize.model.EnforcementRuleType;
-import autorize.model.InterceptionFilter;
-import autorize.model.InterceptionFilterType;
-import autorize.model.MatchReplaceRule;
-import autorize.model.MatchReplaceType;
+import autorize.model.ResponseSignature;
 import autorize.model.UserProfile;
+import autorize.model.Verdict;
 import autorize.ui.AutorizeTab;
 
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
 /**
  * Minimal scaffold that will become the Java port of legacy/Autorize.py + legacy/authorization/authorization.py.
@@ -45,8 +50,8 @@ import java.util.regex.Pattern;
  * - Do replays asynchronously after responses are observed.
  */
 public final class AutorizeController implements HttpHandler {
-  private static final Pattern DEFAULT_ENFORCED_BODY_REGEX =
-      Pattern.compile("(?i)(forbidden|unauthorized|access denied)");
+  // Equivalent to (?i)(forbidden|unauthorized|access denied) on the decoded body, scanned on raw bytes.
+  private static final AhoCorasick DEFAULT_ENFORCED_BODY_WORDS = defaultEnforcedBodyWords();
   private static final String DEFAULT_STEPPER_HEADER = "X-Stepper-Execute-Login";
 
   private MontoyaApi api;
@@ -55,6 +60,13 @@ public final class AutorizeController implements HttpHandler {
   private final AutorizeState state = new AutorizeState();
   private volatile AutorizeTab tab;
   private final AutorizePersistence persistence = new AutorizePersistence();
+  private final SessionRefresher sessions = new SessionRefresher(this::sendLoginRequest);
+  private final Map<UUID, CookieJar> cookieJars = new ConcurrentHashMap<>();
+  // Compiled enforcement rules per profile id (and UNAUTH_RULES), recompiled only when the list changes.
+  private final Map<Object, EnforcementRuleSet> ruleSets = new ConcurrentHashMap<>();
+  // Compiled match/replace rules and extra headers per profile id, recompiled when either changes.
+  private final Map<UUID, ReplayPlan> replayPlans = new ConcurrentHashMap<>();
+  private static final Object UNAUTH_RULES = new Object();
 
   public void init(MontoyaApi api) {
     this.api = api;
@@ -67,7 +79,15 @@ public final class AutorizeController implements HttpHandler {
       api.logging().logToError("Autorize: failed to load settings: " + t);
     }
 
+    for (String error : state.detectors().loadErrors()) {
+      api.logging().logToError("Autorize: failed to load enforcement detector: " + error);
+    }
+    for (Detectors.Stat d : state.detectors().stats()) {
+      api.logging().logToOutput("Autorize: enforcement detector " + d.name() + " installed");
+    }
+
     api.http().registerHttpHandler(this);
+    api.scope().registerScopeChangeHandler(scopeChange -> state.scopeCache().clear());
     api.proxy().registerRequestHandler(new ProxyRequestHandler() {
       @Override
       public ProxyRequestReceivedAction handleRequestReceived(InterceptedRequest interceptedRequest) {
@@ -89,6 +109,7 @@ public final class AutorizeController implements HttpHandler {
     state.addListener(new AutorizeState.Listener() {
       @Override
       public void onProfilesChanged() {
+        dropRemovedProfiles();
         saveSettings();
       }
 
@@ -124,6 +145,24 @@ public final class AutorizeController implements HttpHandler {
     api.userInterface().registerSuiteTab("Autorize", panel);
 
     tab.resultsPanel().setRetestHandlers(this::retestRows, this::retestAll);
+    tab.resultsPanel().setReevaluateHandler(this::reevaluate);
+    tab.whatIfPanel().setSimulator(this::simulate);
+  }
+
+  /**
+   * Evaluates a candidate config (Autorize JSON) against the log and, optionally, Burp's proxy history.
+   * Blocks for the duration of the run; call it off the EDT.
+   */
+  public WhatIfSimulator.Report simulate(String candidateJson, boolean includeProxyHistory) throws IOException {
+    // Fresh copies on both sides keep the live filter counters out of the comparison.
+    AutorizeState now = new AutorizeState();
+    AutorizeConfigCodec.applyToState(AutorizeConfigCodec.fromState(state), now);
+    AutorizeState candidate = new AutorizeState();
+    AutorizeConfigCodec.applyJsonToState(candidateJson, candidate);
+
+    List<ProxyHttpRequestResponse> history = includeProxyHistory ? api.proxy().history() : List.of();
+    return new WhatIfSimulator(now, candidate, this::isInProjectScope, state.profilesSnapshot())
+        .run(state.logSnapshot(), history);
   }
 
   public void retestRows(List<Integer> modelRows) {
@@ -136,9 +175,10 @@ public final class AutorizeController implements HttpHandler {
       LogEntry e = snap.get(i);
       if (e == null || e.original() == null) continue;
       HttpRequestResponse original = e.original().copyToTempFile();
+      ResponseSignature originalSig = e.originalSignature();
       executor.submit(() -> {
         try {
-          processOriginalAsync(original);
+          processOriginalAsync(original, originalSig);
         } catch (Throwable t) {
           api.logging().logToError("Autorize retest error: " + t);
         }
@@ -151,9 +191,10 @@ public final class AutorizeController implements HttpHandler {
     for (LogEntry e : snap) {
       if (e == null || e.original() == null) continue;
       HttpRequestResponse original = e.original().copyToTempFile();
+      ResponseSignature originalSig = e.originalSignature();
       executor.submit(() -> {
         try {
-          processOriginalAsync(original);
+          processOriginalAsync(original, originalSig);
         } catch (Throwable t) {
           api.logging().logToError("Autorize retest error: " + t);
         }
@@ -161,6 +202,22 @@ public final class AutorizeController implements HttpHandler {
     }
   }
 
+  /**
+   * Recomputes every logged verdict from the stored responses under the current rules, in place and
+   * without sending anything. Blocks for the duration of the run; call it off the EDT.
+   */
+  public VerdictReevaluator.Result reevaluate(IntConsumer progress) {
+    Map<UUID, EnforcementRuleSet> profileRules = new HashMap<>();
+    for (UserProfile p : state.profilesSnapshot()) {
+      profileRules.put(p.id(), ruleSet(p.id(), p.enforcementRules()));
+    }
+    VerdictReevaluator reevaluator = new VerdictReevaluator(
+        state, profileRules, ruleSet(UNAUTH_RULES, state.unauthEnforcementRules()));
+    VerdictReevaluator.Result r = reevaluator.run(state.logSnapshot(), progress);
+    state.notifyLogChanged();
+    return r;
+  }
+
   private void saveSettings() {
     try {
       persistence.save(api.persistence().extensionData(), state);
@@ -204,42 +261,51 @@ public final class AutorizeController implements HttpHandler {
 
   @Override
   public ResponseReceivedAction handleHttpResponseReceived(HttpResponseReceived responseReceived) {
+    long t0 = System.nanoTime();
     if (!state.enabled()) {
-      return ResponseReceivedAction.continueWith(responseReceived);
+      return traced(responseReceived, DecisionTrace.Stage.DISABLED, -1, t0, 0);
     }
 
     // Ignore our own replays.
     HttpRequest initiating = responseReceived.initiatingRequest();
     if (initiating != null && initiating.hasHeader("X-Autorize-Replay")) {
-      return ResponseReceivedAction.continueWith(responseReceived);
+      return traced(responseReceived, DecisionTrace.Stage.OWN_REPLAY, -1, t0, 0);
     }
 
     // Always respect Burp project scope.
     if (!isInProjectScope(initiating)) {
-      return ResponseReceivedAction.continueWith(responseReceived);
+      return traced(responseReceived, DecisionTrace.Stage.OUT_OF_SCOPE, -1, t0, 0);
     }
 
       // Tool filtering: Proxy always; Repeater only if enabled.
       ToolType toolType = responseReceived.toolSource().toolType();
       if (toolType != ToolType.PROXY) {
         if (!(toolType == ToolType.REPEATER && state.interceptRepeater())) {
-          return ResponseReceivedAction.continueWith(responseReceived);
+          return traced(responseReceived, DecisionTrace.Stage.TOOL, -1, t0, 0);
         }
       }
       if (toolNeedsToBeIgnored(toolType)) {
-        return ResponseReceivedAction.continueWith(responseReceived);
+        return traced(responseReceived, DecisionTrace.Stage.TOOL, -1, t0, 0);
       }
 
     if (state.ignore304()) {
       short sc = responseReceived.statusCode();
       if (sc == 304 || sc == 204) {
-        return ResponseReceivedAction.continueWith(responseReceived);
+        return traced(responseReceived, DecisionTrace.Stage.IGNORED_304, -1, t0, 0);
       }
     }
 
     // Interception filters.
-    if (!passedInterceptionFilters(responseReceived.initiatingRequest(), responseReceived)) {
-      return ResponseReceivedAction.continueWith(responseReceived);
+    long f0 = System.nanoTime();
+    int rejectedBy = state.filterProgram().firstRejecting(initiating, responseReceived, this::isInProjectScope);
+    long filterNanos = System.nanoTime() - f0;
+    if (rejectedBy == FilterProgram.EXPRESSION) {
+      return traced(responseReceived, DecisionTrace.Stage.EXPRESSION, -1, t0, filterNanos);
+    }
+    if (rejectedBy != FilterProgram.PASS) {
+      // NO_MESSAGE is not a filter of the user's list, so no filter is blamed for it.
+      int filter = rejectedBy == FilterProgram.NO_MESSAGE ? -1 : rejectedBy;
+      return traced(responseReceived, DecisionTrace.Stage.FILTER, filter, t0, filterNanos);
     }
 
     executor.submit(() -> {
@@ -250,17 +316,31 @@ public final class AutorizeController implements HttpHandler {
       }
     });
 
-    return ResponseReceivedAction.continueWith(responseReceived);
+    return traced(responseReceived, DecisionTrace.Stage.QUEUED, -1, t0, filterNanos);
+  }
+
+  /** Records where the message left the pipeline and lets it through unchanged. */
+  private ResponseReceivedAction traced(HttpResponseReceived res, DecisionTrace.Stage stage, int filterIndex,
+                                        long startNanos, long filterNanos) {
+    DecisionTrace trace = state.decisionTrace();
+    HttpRequest req = res.initiatingRequest();
+    trace.record(stage, filterIndex, res.toolSource().toolType(), res.statusCode(),
+        System.nanoTime() - startNanos, filterNanos, trace.captureUrls() && req != null ? req.url() : null);
+    return ResponseReceivedAction.continueWith(res);
   }
 
   private void processResponseAsync(HttpResponseReceived responseReceived) {
     HttpRequest originalReq = responseReceived.initiatingRequest().copyToTempFile();
     HttpResponse originalRes = responseReceived.copyToTempFile();
     HttpRequestResponse original = HttpRequestResponse.httpRequestResponse(originalReq, originalRes).copyToTempFile();
-    processOriginalAsync(original);
+    processOriginalAsync(original, null);
   }
 
-  private void processOriginalAsync(HttpRequestResponse original) {
+  /**
+   * @param knownSignature the logged signature when retesting; used only if the logged response was cut
+   *                       to the large-body window, since the full body is gone
+   */
+  private void processOriginalAsync(HttpRequestResponse original, ResponseSignature knownSignature) {
     if (original == null) return;
     HttpRequest originalReq = original.request().copyToTempFile();
     HttpResponse originalRes = original.response() == null ? null : original.response().copyToTempFile();
@@ -269,60 +349,167 @@ public final class AutorizeController implements HttpHandler {
     int n = state.nextRequestNumber();
     String method = originalReq.method();
     String url = originalReq.url();
-    String oldStatus = String.valueOf(originalRes.statusCode());
-    byte[] oldBody = safeBodyBytes(originalRes);
+    BodyComparison bodies = state.bodyComparison();
+    int window = state.largeBodyBytes();
+    ResponseView originalView = new ResponseView(originalRes,
+        ResponseView.isTruncated(originalRes) ? knownSignature : null, window);
+    if (bodies != null && state.learnNoise()) {
+      bodies = bodies.withNoise(state.noiseBaselines().maskFor(originalReq, originalView, bodies.json(), this::sendBaseline));
+    }
+    ResponseSignature originalSig = originalView.signature(bodies);
 
     HttpRequestResponse unauth = null;
-    String unauthVerdict = "Disabled";
-    String unauthStatus = null;
-    byte[] unauthBody = null;
+    ResponseSignature unauthSig = null;
+    Verdict unauthVerdict = Verdict.DISABLED;
     if (state.checkUnauthenticated()) {
       HttpRequest unauthReq = stripAuthHeaders(originalReq)
           .withAddedHeader("X-Autorize-Replay", "1")
           .copyToTempFile();
       unauth = api.http().sendRequest(unauthReq).copyToTempFile();
-      unauthStatus = String.valueOf(unauth.response().statusCode());
-      unauthBody = safeBodyBytes(unauth.response());
+      ResponseView unauthView = new ResponseView(unauth.response(), null, window);
       unauthVerdict = checkBypass(
-          oldStatus,
-          unauthStatus,
-          oldBody,
-          unauthBody,
-          state.unauthEnforcementRules(),
+          originalSig,
+          unauthView,
+          ruleSet(UNAUTH_RULES, state.unauthEnforcementRules()),
           state.unauthEnforcementAndOr(),
-          unauth.response(),
-          null,
-          null
+          bodies,
+          state.verdictCache(),
+          state.detectors()
       );
+      unauthSig = unauthView.signature();
+      unauth = forLog(unauth, unauthView);
     }
 
-    LogEntry entry = new LogEntry(n, method, url, original, unauth, unauthVerdict);
+    LogEntry entry = new LogEntry(n, method, url, forLog(original, originalView), originalSig, unauth, unauthSig);
+    Map<UUID, Verdict> verdicts = new LinkedHashMap<>();
 
     List<UserProfile> profiles = state.profilesSnapshot();
     for (UserProfile profile : profiles) {
-      HttpRequest replayReq = buildReplayRequest(originalReq, profile)
-          .withAddedHeader("X-Autorize-Replay", "1")
-          .withAddedHeader("X-Autorize-User", profile.name())
-          .copyToTempFile();
+      SessionRefresher.Session session = sessions.current(profile);
+      HttpRequestResponse rr = replayAs(originalReq, profile, session);
+      ResponseView view = new ResponseView(rr.response(), null, window);
+      Verdict verdict = verdictFor(originalSig, profile, view, bodies);
+
+      // A 401 on a refreshed profile means the cached tokens went stale: refresh once and replay again.
+      if (isSessionFailure(verdict, rr) && sessions.onAuthFailure(profile, session)) {
+        session = sessions.current(profile);
+        rr = replayAs(originalReq, profile, session);
+        view = new ResponseView(rr.response(), null, window);
+        verdict = verdictFor(originalSig, profile, view, bodies);
+      }
+      entry.putProfileResult(profile.id(), forLog(rr, view), view.signature());
+      verdicts.put(profile.id(), verdict);
+    }
 
-      HttpRequestResponse rr = api.http().sendRequest(replayReq).copyToTempFile();
-      String replayStatus = String.valueOf(rr.response().statusCode());
-      byte[] replayBody = safeBodyBytes(rr.response());
-      String verdict = checkBypass(
-          oldStatus,
-          replayStatus,
-          oldBody,
-          replayBody,
-          profile.enforcementRules(),
-          profile.enforcementAndOr(),
-          rr.response(),
-          unauthStatus,
-          unauthBody
-      );
-      entry.putProfileResult(profile.id(), rr, verdict);
+    state.addLogEntry(entry, unauthVerdict, verdicts);
+  }
+
+  /** The exchange as the log keeps it: a large body is cut to the window (see ResponseView#forLog). */
+  private static HttpRequestResponse forLog(HttpRequestResponse rr, ResponseView view) {
+    HttpResponse kept = view.forLog();
+    return kept == view.response() ? rr : HttpRequestResponse.httpRequestResponse(rr.request(), kept).copyToTempFile();
+  }
+
+  /** The original request once more, unchanged apart from the replay marker; null on failure. */
+  private HttpResponse sendBaseline(HttpRequest originalReq) {
+    HttpRequest req = originalReq;
+    if (req.hasHeader("If-None-Match")) req = req.withRemovedHeader("If-None-Match");
+    if (req.hasHeader("If-Modified-Since")) req = req.withRemovedHeader("If-Modified-Since");
+    return api.http().sendRequest(req.withAddedHeader("X-Autorize-Replay", "1")).response();
+  }
+
+  private HttpRequestResponse replayAs(HttpRequest originalReq, UserProfile profile, SessionRefresher.Session session) {
+    HttpRequest replayReq = buildReplayRequest(originalReq, profile, session).copyToTempFile();
+    HttpRequestResponse rr = api.http().sendRequest(replayReq).copyToTempFile();
+    learnCookies(profile, replayReq, rr.response());
+    return rr;
+  }
+
+  private EnforcementRuleSet ruleSet(Object key, List<EnforcementRule> rules) {
+    return ruleSets.compute(key, (k, prev) -> EnforcementRuleSet.compile(rules, prev, state.regexGuard()));
+  }
+
+  private ReplayPlan replayPlan(UserProfile profile) {
+    return replayPlans.compute(profile.id(), (k, prev) ->
+        ReplayPlan.compile(profile.matchReplaceRules(), profile.headersText(), prev));
+  }
+
+  // Per-profile caches of deleted profiles would otherwise live as long as the extension.
+  private void dropRemovedProfiles() {
+    Set<UUID> live = state.profileNamesSnapshot().keySet();
+    cookieJars.keySet().retainAll(live);
+    replayPlans.keySet().retainAll(live);
+  }
+
+  private CookieJar cookieJar(UserProfile profile) {
+    return cookieJars.computeIfAbsent(profile.id(), id -> new CookieJar());
+  }
+
+  private void learnCookies(UserProfile profile, HttpRequest sent, HttpResponse res) {
+    if (res == null || !res.hasHeader("Set-Cookie")) return;
+    List<String> values = new ArrayList<>();
+    for (HttpHeader h : res.headers()) {
+      if ("set-cookie".equalsIgnoreCase(h.name())) values.add(h.value());
     }
+    var svc = sent.httpService();
+    cookieJar(profile).learn(svc == null ? null : svc.host(), sent.path(), values);
+  }
+
+  /**
+   * Seeds the profile's jar with its configured cookies (headers text and COOKIE_REPLACE rules) and
+   * writes the merged Cookie header once.
+   */
+  private void applyCookieJar(RequestRewriter request, HttpService svc, UserProfile profile,
+                              Map<String, String> seeds) {
+    CookieJar jar = cookieJar(profile);
+    jar.seed(seeds);
+    String merged = jar.apply(
+        svc == null ? null : svc.host(),
+        request.path(),
+        svc != null && svc.secure(),
+        request.header("Cookie")
+    );
+    // Header values, seeds and learned cookies are all byte strings already.
+    if (merged != null) request.setHeader("Cookie", merged);
+  }
+
+  private Verdict verdictFor(ResponseSignature original, UserProfile profile, ResponseView replay,
+                            BodyComparison bodies) {
+    return checkBypass(
+        original,
+        replay,
+        ruleSet(profile.id(), profile.enforcementRules()),
+        profile.enforcementAndOr(),
+        bodies,
+        state.verdictCache(),
+        state.detectors()
+    );
+  }
+
+  private static boolean isSessionFailure(Verdict verdict, HttpRequestResponse rr) {
+    return verdict == Verdict.ENFORCED && rr.response() != null && rr.response().statusCode() == 401;
+  }
+
+  private SessionRefresher.LoginResponse sendLoginRequest(String serviceUrl, String rawRequest) {
+    // Accept hand-typed requests with bare \n line endings; let Burp compute Content-Length for the body.
+    String raw = rawRequest.replace("\r\n", "\n").replace("\n", "\r\n");
+    int split = raw.indexOf("\r\n\r\n");
+    String head = split >= 0 ? raw.substring(0, split) : raw.strip();
+    String body = split >= 0 ? raw.substring(split + 4) : "";
+
+    HttpRequest req = HttpRequest.httpRequest(HttpService.httpService(serviceUrl), head + "\r\n\r\n");
+    if (!body.isEmpty()) {
+      req = req.withBody(body);
+    }
+    req = req.withAddedHeader("X-Autorize-Replay", "1");
 
-    state.addLogEntry(entry);
+    HttpResponse res = api.http().sendRequest(req).response();
+    if (res == null) return null;
+    List<Map.Entry<String, String>> headers = new ArrayList<>();
+    for (HttpHeader h : res.headers()) {
+      headers.add(Map.entry(h.name(), h.value() == null ? "" : h.value()));
+    }
+    return new SessionRefresher.LoginResponse(res.statusCode(), headers, res.bodyToString());
   }
 
   private static HttpRequest stripAuthHeaders(HttpRequest req) {
@@ -369,7 +556,7 @@ public final class AutorizeController implements HttpHandler {
         }
         if (!passedInterceptionFilters(fetched.request(), fetched.response())) return;
       }
-      processOriginalAsync(fetched);
+      processOriginalAsync(fetched, null);
       return;
     }
     // Respect the same interception filters as the live pipeline (including scope-only).
@@ -378,348 +565,63 @@ public final class AutorizeController implements HttpHandler {
       if (sc == 304 || sc == 204) return;
     }
     if (!passedInterceptionFilters(req, res)) return;
-    processOriginalAsync(rr.copyToTempFile());
+    processOriginalAsync(rr.copyToTempFile(), null);
   }
 
-  private HttpRequest buildReplayRequest(HttpRequest original, UserProfile profile) {
-    HttpRequest r = original;
+  /**
+   * The replay of {@code original} as {@code profile}, marked with X-Autorize-Replay and X-Autorize-User.
+   * All edits are made on the raw bytes (see RequestRewriter), so binary bodies pass through unchanged.
+   */
+  private HttpRequest buildReplayRequest(HttpRequest original, UserProfile profile, SessionRefresher.Session session) {
+    ReplayPlan plan = replayPlan(profile);
+    UnaryOperator<String> values = session::resolve;
+    RequestRewriter r = RequestRewriter.parse(original.toByteArray().getBytes());
 
     // Apply match/replace rules first.
-    r = applyMatchReplace(r, profile.matchReplaceRules());
+    plan.applyMatchReplace(r, values, state.regexGuard());
 
     // Optional legacy "replace query param" (applies to replays).
-    r = applyQueryParamReplace(r);
+    applyQueryParamReplace(r);
 
     // Then apply explicit headers, with replace semantics.
-    List<HttpHeader> headers = parseHeaders(profile.headersText());
-    for (HttpHeader h : headers) {
-      if (r.hasHeader(h.name())) {
-        r = r.withRemovedHeader(h.name());
-      }
-      r = r.withAddedHeader(h);
-    }
+    plan.applyHeaders(r, values);
+    // Cookies: configured values plus whatever the target set on this profile's earlier replays.
+    applyCookieJar(r, original.httpService(), profile, plan.cookieSeeds(values));
     // Ensure stepper header overrides are applied last.
-    r = applyStepperHeaderRules(r, profile.matchReplaceRules());
-    return r;
+    plan.applyStepperHeader(r, DEFAULT_STEPPER_HEADER, values);
+
+    r.addHeader("X-Autorize-Replay", "1");
+    r.addHeader("X-Autorize-User", RequestRewriter.bytes(profile.name()));
+    return HttpRequest.httpRequest(original.httpService(), ByteArray.byteArray(r.toByteArray()));
   }
 
-  private HttpRequest applyQueryParamReplace(HttpRequest req) {
+  private void applyQueryParamReplace(RequestRewriter req) {
     if (!state.replaceQueryParam()) {
-      return req;
+      return;
     }
     String t = state.replaceQueryParamText();
     int idx = t.indexOf('=');
-    if (idx <= 0) return req;
+    if (idx <= 0) return;
     String key = t.substring(0, idx).trim();
     String val = t.substring(idx + 1).trim();
-    if (key.isEmpty()) return req;
-
-    HttpParameter p = HttpParameter.urlParameter(key, val);
-    if (req.hasParameter(key, HttpParameterType.URL)) {
-      return req.withUpdatedParameters(p);
-    }
-    return req.withAddedParameters(p);
-  }
-
-  private static HttpRequest applyMatchReplace(HttpRequest req, List<MatchReplaceRule> rules) {
-    if (rules == null || rules.isEmpty()) return req;
-
-    HttpRequest r = req;
-
-    // Path modifications.
-    String path = r.path();
-    for (MatchReplaceRule rule : rules) {
-      if (rule.type() == MatchReplaceType.PATH_SIMPLE) {
-        path = path.replace(rule.match(), rule.replace());
-      } else if (rule.type() == MatchReplaceType.PATH_REGEX && rule.regex() != null) {
-        path = rule.regex().matcher(path).replaceAll(rule.replace());
-      }
-    }
-    r = r.withPath(path);
-
-    // Header replace by header name/value (legacy-compatible explicit mode).
-    for (MatchReplaceRule rule : rules) {
-      if (rule.type() != MatchReplaceType.HEADER_REPLACE) continue;
-      String headerName = rule.match() == null ? "" : rule.match().trim();
-      if (headerName.isEmpty()) continue;
-      if (r.hasHeader(headerName)) {
-        r = r.withRemovedHeader(headerName);
-      }
-      r = r.withAddedHeader(HttpHeader.httpHeader(headerName, rule.replace()));
-    }
-
-    // Cookie replace by cookie name/value inside Cookie header(s).
-    for (MatchReplaceRule rule : rules) {
-      if (rule.type() != MatchReplaceType.COOKIE_REPLACE) continue;
-      String cookieName = rule.match() == null ? "" : rule.match().trim();
-      if (cookieName.isEmpty()) continue;
-      r = replaceCookieValue(r, cookieName, rule.replace());
-    }
-
-    // Header regex/simple transformations (kept for backward compatibility).
-    List<HttpHeader> hdrs = new ArrayList<>(r.headers());
-    for (int i = 0; i < hdrs.size(); i++) {
-      HttpHeader h = hdrs.get(i);
-      String s = h.toString();
-      for (MatchReplaceRule rule : rules) {
-        if (rule.type() == MatchReplaceType.HEADERS_SIMPLE) {
-          s = s.replace(rule.match(), rule.replace());
-        } else if (rule.type() == MatchReplaceType.HEADERS_REGEX && rule.regex() != null) {
-          s = rule.regex().matcher(s).replaceAll(rule.replace());
-        }
-      }
-      HttpHeader parsed = parseHeaderLine(s);
-      if (parsed != null) {
-        hdrs.set(i, parsed);
-      }
-    }
-    r = r.withUpdatedHeaders(hdrs);
-
-    // Body modifications.
-    String body = r.bodyToString();
-    if (body != null) {
-      for (MatchReplaceRule rule : rules) {
-        if (rule.type() == MatchReplaceType.BODY_SIMPLE) {
-          body = body.replace(rule.match(), rule.replace());
-        } else if (rule.type() == MatchReplaceType.BODY_REGEX && rule.regex() != null) {
-          body = rule.regex().matcher(body).replaceAll(rule.replace());
-        }
-      }
-      r = r.withBody(body);
-    }
+    if (key.isEmpty()) return;
 
-    return r;
-  }
-
-  private static HttpRequest applyStepperHeaderRules(HttpRequest request, List<MatchReplaceRule> rules) {
-    if (request == null || rules == null || rules.isEmpty()) return request;
-    HttpRequest r = request;
-    for (MatchReplaceRule rule : rules) {
-      if (rule.type() != MatchReplaceType.STEPPER_HEADER) continue;
-      if (r.hasHeader(DEFAULT_STEPPER_HEADER)) {
-        r = r.withRemovedHeader(DEFAULT_STEPPER_HEADER);
-      }
-      r = r.withAddedHeader(HttpHeader.httpHeader(DEFAULT_STEPPER_HEADER, rule.replace()));
-    }
-    return r;
-  }
-
-  private static HttpRequest replaceCookieValue(HttpRequest request, String cookieName, String newValue) {
-    if (request == null || cookieName == null || cookieName.isEmpty()) {
-      return request;
-    }
-
-    List<HttpHeader> headers = new ArrayList<>(request.headers());
-    boolean touchedAnyCookieHeader = false;
-    boolean replaced = false;
-
-    for (int i = 0; i < headers.size(); i++) {
-      HttpHeader h = headers.get(i);
-      if (h == null) continue;
-      String name = h.name();
-      if (name == null || !"cookie".equalsIgnoreCase(name.trim())) continue;
-
-      touchedAnyCookieHeader = true;
-      String value = h.value() == null ? "" : h.value();
-      String updated = replaceCookieInHeaderValue(value, cookieName, newValue);
-      if (!value.equals(updated)) {
-        replaced = true;
-        headers.set(i, HttpHeader.httpHeader(h.name(), updated));
-      }
-    }
-
-    if (!touchedAnyCookieHeader) {
-      headers.add(HttpHeader.httpHeader("Cookie", cookieName + "=" + (newValue == null ? "" : newValue)));
-      return request.withUpdatedHeaders(headers);
-    }
-
-    if (!replaced) {
-      for (int i = 0; i < headers.size(); i++) {
-        HttpHeader h = headers.get(i);
-        if (h == null || h.name() == null) continue;
-        if (!"cookie".equalsIgnoreCase(h.name().trim())) continue;
-        String value = h.value() == null ? "" : h.value().trim();
-        String append = cookieName + "=" + (newValue == null ? "" : newValue);
-        String merged = value.isEmpty() ? append : value + "; " + append;
-        headers.set(i, HttpHeader.httpHeader(h.name(), merged));
-        break;
-      }
-    }
-
-    return request.withUpdatedHeaders(headers);
-  }
-
-  private static String replaceCookieInHeaderValue(String cookieHeaderValue, String cookieName, String newValue) {
-    if (cookieHeaderValue == null || cookieHeaderValue.isEmpty()) {
-      return cookieName + "=" + (newValue == null ? "" : newValue);
-    }
-
-    String[] parts = cookieHeaderValue.split(";");
-    boolean replaced = false;
-    for (int i = 0; i < parts.length; i++) {
-      String part = parts[i].trim();
-      if (part.isEmpty()) continue;
-      int eq = part.indexOf('=');
-      if (eq <= 0) continue;
-      String name = part.substring(0, eq).trim();
-      if (!name.equals(cookieName)) continue;
-      parts[i] = cookieName + "=" + (newValue == null ? "" : newValue);
-      replaced = true;
-      break;
-    }
-
-    if (!replaced) {
-      return cookieHeaderValue.trim() + "; " + cookieName + "=" + (newValue == null ? "" : newValue);
-    }
-
-    StringBuilder out = new StringBuilder();
-    for (String raw : parts) {
-      String t = raw.trim();
-      if (t.isEmpty()) continue;
-      if (out.length() > 0) out.append("; ");
-      out.append(t);
-    }
-    return out.toString();
-  }
-
-  private static List<HttpHeader> parseHeaders(String headersText) {
-    List<HttpHeader> out = new ArrayList<>();
-    if (headersText == null) return out;
-    String[] lines = headersText.split("\\r?\\n");
-    for (String raw : lines) {
-      String line = raw.trim();
-      if (line.isEmpty()) continue;
-      int idx = line.indexOf(':');
-      if (idx <= 0) continue;
-      String name = line.substring(0, idx).trim();
-      String value = line.substring(idx + 1).trim();
-      if (name.isEmpty()) continue;
-      out.add(HttpHeader.httpHeader(name, value));
-    }
-    return out;
-  }
-
-  private static HttpHeader parseHeaderLine(String line) {
-    if (line == null) return null;
-    int idx = line.indexOf(':');
-    if (idx <= 0) return null;
-    String name = line.substring(0, idx).trim();
-    String value = line.substring(idx + 1).trim();
-    if (name.isEmpty()) return null;
-    return HttpHeader.httpHeader(name, value);
+    req.setUrlParameter(RequestRewriter.bytes(key), RequestRewriter.bytes(val));
   }
 
   private boolean passedInterceptionFilters(HttpRequest req, HttpResponse res) {
-    if (req == null || res == null) return false;
-    String url = req.url();
-    String method = req.method();
-    String reqBody = req.bodyToString();
-    String resBody = res == null ? "" : safeBody(res);
-
-    for (InterceptionFilter f : state.interceptionFilters()) {
-      InterceptionFilterType t = f.type();
-      String c = f.content();
-
-      if (t == InterceptionFilterType.SCOPE_ONLY) {
-        if (!isInProjectScope(req)) return false;
-      } else if (t == InterceptionFilterType.URL_CONTAINS) {
-        if (url == null || !url.contains(c)) return false;
-      } else if (t == InterceptionFilterType.URL_REGEX) {
-        Pattern p = f.regex();
-        if (p == null || url == null || !p.matcher(url).find()) return false;
-      } else if (t == InterceptionFilterType.URL_NOT_CONTAINS) {
-        if (url != null && url.contains(c)) return false;
-      } else if (t == InterceptionFilterType.URL_NOT_REGEX) {
-        Pattern p = f.regex();
-        if (p != null && url != null && p.matcher(url).find()) return false;
-      } else if (t == InterceptionFilterType.REQ_BODY_CONTAINS) {
-        if (reqBody == null || !reqBody.contains(c)) return false;
-      } else if (t == InterceptionFilterType.REQ_BODY_REGEX) {
-        Pattern p = f.regex();
-        if (p == null || reqBody == null || !p.matcher(reqBody).find()) return false;
-      } else if (t == InterceptionFilterType.REQ_BODY_NOT_CONTAINS) {
-        if (reqBody != null && reqBody.contains(c)) return false;
-      } else if (t == InterceptionFilterType.REQ_BODY_NOT_REGEX) {
-        Pattern p = f.regex();
-        if (p != null && reqBody != null && p.matcher(reqBody).find()) return false;
-      } else if (t == InterceptionFilterType.RES_BODY_CONTAINS) {
-        if (resBody == null || !resBody.contains(c)) return false;
-      } else if (t == InterceptionFilterType.RES_BODY_REGEX) {
-        Pattern p = f.regex();
-        if (p == null || resBody == null || !p.matcher(resBody).find()) return false;
-      } else if (t == InterceptionFilterType.RES_BODY_NOT_CONTAINS) {
-        if (resBody != null && resBody.contains(c)) return false;
-      } else if (t == InterceptionFilterType.RES_BODY_NOT_REGEX) {
-        Pattern p = f.regex();
-        if (p != null && resBody != null && p.matcher(resBody).find()) return false;
-      } else if (t == InterceptionFilterType.REQ_HEADER_CONTAINS) {
-        boolean any = false;
-        for (HttpHeader h : req.headers()) {
-          if (h.toString().contains(c)) {
-            any = true;
-            break;
-          }
-        }
-        if (!any) return false;
-      } else if (t == InterceptionFilterType.REQ_HEADER_NOT_CONTAINS) {
-        for (HttpHeader h : req.headers()) {
-          if (h.toString().contains(c)) return false;
-        }
-      } else if (t == InterceptionFilterType.RES_HEADER_CONTAINS) {
-        boolean any = false;
-        if (res != null) {
-          for (HttpHeader h : res.headers()) {
-            if (h.toString().contains(c)) {
-              any = true;
-              break;
-            }
-          }
-        }
-        if (!any) return false;
-      } else if (t == InterceptionFilterType.RES_HEADER_NOT_CONTAINS) {
-        if (res != null) {
-          for (HttpHeader h : res.headers()) {
-            if (h.toString().contains(c)) return false;
-          }
-        }
-      } else if (t == InterceptionFilterType.ONLY_METHODS) {
-        String[] ms = c.split("[\\r\\n,]+");
-        boolean ok = false;
-        for (String m : ms) {
-          if (method.equalsIgnoreCase(m.trim())) {
-            ok = true;
-            break;
-          }
-        }
-        if (!ok) return false;
-      } else if (t == InterceptionFilterType.IGNORE_METHODS) {
-        String[] ms = c.split("[\\r\\n,]+");
-        for (String m : ms) {
-          if (method.equalsIgnoreCase(m.trim())) return false;
-        }
-      } else if (t == InterceptionFilterType.IGNORE_OPTIONS) {
-        if ("OPTIONS".equalsIgnoreCase(method)) return false;
-      } else if (t == InterceptionFilterType.DROP_PROXY_PORTS) {
-        // Handled by proxy handler.
-      } else if (t == InterceptionFilterType.IGNORE_PROXY
-          || t == InterceptionFilterType.IGNORE_TARGET) {
-        // Tool filters are handled earlier in the pipeline.
-      }
-    }
-
-    return true;
+    return state.filterProgram().firstRejecting(req, res, this::isInProjectScope) == FilterProgram.PASS;
   }
 
   private boolean toolNeedsToBeIgnored(ToolType toolType) {
-    if (toolType == null) return false;
-    for (InterceptionFilter f : state.interceptionFilters()) {
-      if (f.type() == InterceptionFilterType.IGNORE_PROXY && toolType == ToolType.PROXY) return true;
-      if (f.type() == InterceptionFilterType.IGNORE_TARGET && toolType == ToolType.TARGET) return true;
-    }
-    return false;
+    return state.filterProgram().ignoresTool(toolType);
   }
 
   private boolean isInProjectScope(HttpRequest req) {
+    return state.scopeCache().isInScope(req, this::askScopeEngine);
+  }
+
+  private boolean askScopeEngine(HttpRequest req) {
     if (req == null) return false;
 
     // Prefer Burp's scope engine, using the URL Burp attaches to the message.
@@ -758,138 +660,67 @@ public final class AutorizeController implements HttpHandler {
     }
   }
 
-  private static String safeBody(HttpResponse res) {
-    try {
-      return res == null ? "" : res.bodyToString();
-    } catch (Throwable t) {
-      return "";
-    }
-  }
+  /**
+   * Judges one replay. The built-in body words and literal rules scan the same raw bytes; the body is
+   * decoded only if a regex rule needs it, and status and length checks read metadata only.
+   *
+   * With a body comparison, a same-status replay is judged by how similar its body is to the original's
+   * (legacy Autorize compared bodies for equality); without one, same status means BYPASSED.
+   */
+  static Verdict checkBypass(ResponseSignature original, ResponseView replay, EnforcementRuleSet rules, AndOr mode,
+                             BodyComparison bodies, VerdictCache cache, Detectors detectors) {
+    int newStatus = replay.status();
 
-  private static byte[] safeBodyBytes(HttpResponse res) {
-    try {
-      if (res == null) return new byte[0];
-      return res.body().getBytes();
-    } catch (Throwable t) {
-      return new byte[0];
-    }
-  }
-
-  private static String checkBypass(
-      String oldStatus,
-      String newStatus,
-      byte[] oldBody,
-      byte[] newBody,
-      List<EnforcementRule> rules,
-      AndOr mode,
-      HttpResponse replayResponse,
-      String unauthStatus,
-      byte[] unauthBody
-  ) {
     // Strong enforced defaults first.
     if (isDefaultAuthEnforcedStatus(newStatus)) {
-      return "Enforced!";
+      return Verdict.ENFORCED;
     }
 
-    String replayBody = safeBody(replayResponse);
-    if (replayBody != null && DEFAULT_ENFORCED_BODY_REGEX.matcher(replayBody).find()) {
-      return "Enforced!";
+    // Built-in body words, then optional custom enforcement rules; memoized per rule set and body digest.
+    boolean enforced = cache == null || rules == null
+        ? enforcedByContent(replay, rules, mode)
+        : cache.enforced(rules, mode, replay.signature(bodies), () -> enforcedByContent(replay, rules, mode));
+    if (enforced) {
+      return Verdict.ENFORCED;
     }
 
-    // Optional custom enforcement rules.
-    if (rules != null && !rules.isEmpty() && authEnforcedViaRules(rules, replayResponse, mode)) {
-      return "Enforced!";
+    // Installed detectors are opaque to the cache, so they run on every replay that gets this far.
+    if (detectors != null && detectors.enforced(replay)) {
+      return Verdict.ENFORCED;
     }
 
-    // Simplified bypass signal: same status as original.
-    if (oldStatus != null && oldStatus.equals(newStatus)) {
-      return "Bypassed!";
+    // Simplified bypass signal: same status as original (and, if asked, a similar enough body).
+    if (original.status() == newStatus) {
+      return bodies == null ? Verdict.BYPASSED : bodies.verdict(original, replay.signature(bodies));
     }
 
     // Otherwise unknown/inconclusive.
-    return "Is enforced???";
-  }
-
-  private static boolean isDefaultAuthEnforcedStatus(String status) {
-    if (status == null) return false;
-    String s = status.trim();
-    return "401".equals(s) || "403".equals(s);
-  }
-
-  private static boolean authEnforcedViaRules(List<EnforcementRule> rules, HttpResponse response, AndOr mode) {
-    if (rules == null || rules.isEmpty() || response == null) return false;
-
-    boolean andMode = mode == AndOr.AND;
-    boolean authEnforced = andMode;
-
-    String headersStr = null;
-    String bodyStr = null;
-    String fullStr = null;
-
-    for (EnforcementRule r : rules) {
-      boolean matched = false;
-      EnforcementRuleType t = r.type();
-      String c = r.content();
-
-      if (t == EnforcementRuleType.STATUS_EQUALS) {
-        matched = String.valueOf(response.statusCode()).trim().equals(c.trim());
-      } else if (t == EnforcementRuleType.HEADERS_CONTAINS) {
-        if (headersStr == null) headersStr = joinHeaders(response.headers());
-        matched = headersStr.contains(c);
-      } else if (t == EnforcementRuleType.HEADERS_REGEX) {
-        if (headersStr == null) headersStr = joinHeaders(response.headers());
-        matched = r.regex() != null && r.regex().matcher(headersStr).find();
-      } else if (t == EnforcementRuleType.BODY_CONTAINS) {
-        if (bodyStr == null) bodyStr = safeBody(response);
-        matched = bodyStr.contains(c);
-      } else if (t == EnforcementRuleType.BODY_REGEX) {
-        if (bodyStr == null) bodyStr = safeBody(response);
-        matched = r.regex() != null && r.regex().matcher(bodyStr).find();
-      } else if (t == EnforcementRuleType.FULL_CONTAINS) {
-        if (fullStr == null) fullStr = response.toString();
-        matched = fullStr.contains(c);
-      } else if (t == EnforcementRuleType.FULL_REGEX) {
-        if (fullStr == null) fullStr = response.toString();
-        matched = r.regex() != null && r.regex().matcher(fullStr).find();
-      } else if (t == EnforcementRuleType.FULL_LENGTH_EQUALS) {
-        int len = response.toByteArray().length();
-        matched = String.valueOf(len).trim().equals(c.trim());
-      }
-
-      if (r.inverse()) {
-        matched = !matched;
-      }
+    return Verdict.UNKNOWN;
+  }
 
-      if (andMode) {
-        if (!matched) return false;
-      } else {
-        if (matched) return true;
-      }
+  private static boolean enforcedByContent(ResponseView replay, EnforcementRuleSet rules, AndOr mode) {
+    byte[] raw = replay.raw();
+    if (DEFAULT_ENFORCED_BODY_WORDS.containsAny(raw, replay.bodyOffset(), raw.length)) {
+      return true;
     }
+    return rules != null && rules.enforced(replay, mode);
+  }
 
-    return authEnforced;
+  private static AhoCorasick defaultEnforcedBodyWords() {
+    AhoCorasick.Builder b = new AhoCorasick.Builder().ignoreAsciiCase();
+    b.add("forbidden");
+    b.add("unauthorized");
+    b.add("access denied");
+    return b.build();
   }
 
-  private static String joinHeaders(List<HttpHeader> headers) {
-    StringBuilder sb = new StringBuilder();
-    for (HttpHeader h : headers) {
-      sb.append(h.toString()).append("\r\n");
-    }
-    return sb.toString();
+  private static boolean isDefaultAuthEnforcedStatus(int status) {
+    return status == 401 || status == 403;
   }
 
   private boolean shouldDropProxyRequest(InterceptedRequest req) {
     if (req == null) return false;
-    int port = parseListenerPort(req.listenerInterface());
-    if (port <= 0) return false;
-
-    for (InterceptionFilter f : state.interceptionFilters()) {
-      if (f.type() != InterceptionFilterType.DROP_PROXY_PORTS) continue;
-      for (int p : parsePorts(f.content())) {
-        if (p == port) return true;
-      }
-    }
-    return false;
+    return state.filterProgram().dropsPort(parseListenerPort(req.listenerInterface()));
   }
 
   private static int parseListenerPort(String listenerInterface) {
@@ -902,22 +733,4 @@ public final class AutorizeController implements HttpHandler {
       return -1;
     }
   }
-
-  private static int[] parsePorts(String s) {
-    if (s == null) return new int[0];
-    String[] parts = s.split(",");
-    int[] out = new int[parts.length];
-    int n = 0;
-    for (String p : parts) {
-      try {
-        String t = p.trim();
-        if (t.isEmpty()) continue;
-        out[n++] = Integer.parseInt(t);
-      } catch (Exception ignored) {
-      }
-    }
-    int[] trimmed = new int[n];
-    System.arraycopy(out, 0, trimmed, 0, n);
-    return trimmed;
-  }
 }
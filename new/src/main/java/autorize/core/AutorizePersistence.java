@@ -7,6 +7,8 @@ import autorize.model.InterceptionFilter;
 import autorize.model.InterceptionFilterType;
 import autorize.model.MatchReplaceRule;
 import autorize.model.MatchReplaceType;
+import autorize.model.TokenExtractor;
+import autorize.model.TokenExtractorType;
 import autorize.model.UserProfile;
 import burp.api.montoya.persistence.PersistedObject;
 import burp.api.montoya.persistence.PersistedList;
@@ -29,14 +31,25 @@ public final class AutorizePersistence {
   private static final String KEY_CHECK_UNAUTH = "autorize.checkUnauth";
   private static final String KEY_IGNORE_304 = "autorize.ignore304";
   private static final String KEY_PREVENT_304 = "autorize.prevent304";
+  private static final String KEY_COMPARE_BODIES = "autorize.compareBodies";
+  private static final String KEY_BYPASSED_AT = "autorize.bypassedAtPercent";
+  private static final String KEY_ENFORCED_BELOW = "autorize.enforcedBelowPercent";
+  private static final String KEY_COMPARE_JSON = "autorize.compareJson";
+  private static final String KEY_JSON_HASH_VALUES = "autorize.jsonHashValues";
+  private static final String KEY_JSON_IGNORE_PATHS = "autorize.jsonIgnorePaths";
+  private static final String KEY_LEARN_NOISE = "autorize.learnNoise";
+  private static final String KEY_LARGE_BODY_KB = "autorize.largeBodyKb";
   private static final String KEY_AUTOSCROLL = "autorize.autoScroll";
   private static final String KEY_REPLACE_QUERY = "autorize.replaceQuery";
   private static final String KEY_REPLACE_QUERY_TEXT = "autorize.replaceQueryText";
   private static final String KEY_SHOW_BYPASSED = "autorize.showBypassed";
   private static final String KEY_SHOW_ENFORCED = "autorize.showEnforced";
   private static final String KEY_SHOW_UNKNOWN = "autorize.showUnknown";
+  private static final String KEY_LINEAR_REGEX = "autorize.linearRegex";
+  private static final String KEY_REGEX_BUDGET_MS = "autorize.regexBudgetMs";
 
   private static final String KEY_INTERCEPTION_FILTERS = "autorize.interceptionFilters";
+  private static final String KEY_INTERCEPTION_EXPRESSION = "autorize.interceptionExpression";
   private static final String KEY_UNAUTH_MODE = "autorize.unauth.mode";
   private static final String KEY_UNAUTH_RULES = "autorize.unauth.rules";
 
@@ -51,12 +64,22 @@ public final class AutorizePersistence {
     root.setBoolean(KEY_CHECK_UNAUTH, state.checkUnauthenticated());
     root.setBoolean(KEY_IGNORE_304, state.ignore304());
     root.setBoolean(KEY_PREVENT_304, state.prevent304());
+    root.setBoolean(KEY_COMPARE_BODIES, state.compareBodies());
+    root.setInteger(KEY_BYPASSED_AT, state.bypassedAtPercent());
+    root.setInteger(KEY_ENFORCED_BELOW, state.enforcedBelowPercent());
+    root.setBoolean(KEY_COMPARE_JSON, state.compareJson());
+    root.setBoolean(KEY_JSON_HASH_VALUES, state.jsonHashValues());
+    root.setString(KEY_JSON_IGNORE_PATHS, state.jsonIgnorePaths());
+    root.setBoolean(KEY_LEARN_NOISE, state.learnNoise());
+    root.setInteger(KEY_LARGE_BODY_KB, state.largeBodyKb());
     root.setBoolean(KEY_AUTOSCROLL, state.autoScroll());
     root.setBoolean(KEY_REPLACE_QUERY, state.replaceQueryParam());
     root.setString(KEY_REPLACE_QUERY_TEXT, state.replaceQueryParamText());
     root.setBoolean(KEY_SHOW_BYPASSED, state.showBypassed());
     root.setBoolean(KEY_SHOW_ENFORCED, state.showEnforced());
     root.setBoolean(KEY_SHOW_UNKNOWN, state.showUnknown());
+    root.setBoolean(KEY_LINEAR_REGEX, state.linearRegex());
+    root.setInteger(KEY_REGEX_BUDGET_MS, state.regexBudgetMillis());
 
     // Interception filters
     var filterStrings = new ArrayList<String>();
@@ -64,6 +87,7 @@ public final class AutorizePersistence {
       filterStrings.add(encodeInterceptionFilter(f));
     }
     root.setStringList(KEY_INTERCEPTION_FILTERS, persistedStringList(filterStrings));
+    root.setString(KEY_INTERCEPTION_EXPRESSION, state.interceptionExpression());
 
     // Unauth enforcement
     root.setString(KEY_UNAUTH_MODE, state.unauthEnforcementAndOr().name());
@@ -100,6 +124,15 @@ public final class AutorizePersistence {
         edStrings.add(encodeEnforcementRule(ed));
       }
       po.setStringList("ed", persistedStringList(edStrings));
+
+      po.setString("refreshUrl", p.refreshServiceUrl());
+      po.setString("refreshReq", p.refreshRequestText());
+      po.setInteger("refreshTtl", p.refreshTtlSeconds());
+      var txStrings = new ArrayList<String>();
+      for (TokenExtractor tx : p.tokenExtractors()) {
+        txStrings.add(encodeTokenExtractor(tx));
+      }
+      po.setStringList("tx", persistedStringList(txStrings));
     }
 
     root.setStringList(KEY_PROFILE_IDS, persistedStringList(ids));
@@ -121,6 +154,30 @@ public final class AutorizePersistence {
     Boolean prevent304 = root.getBoolean(KEY_PREVENT_304);
     if (prevent304 != null) state.setPrevent304(prevent304);
 
+    Boolean compareBodies = root.getBoolean(KEY_COMPARE_BODIES);
+    if (compareBodies != null) state.setCompareBodies(compareBodies);
+
+    Integer bypassedAt = root.getInteger(KEY_BYPASSED_AT);
+    if (bypassedAt != null) state.setBypassedAtPercent(bypassedAt);
+
+    Integer enforcedBelow = root.getInteger(KEY_ENFORCED_BELOW);
+    if (enforcedBelow != null) state.setEnforcedBelowPercent(enforcedBelow);
+
+    Boolean compareJson = root.getBoolean(KEY_COMPARE_JSON);
+    if (compareJson != null) state.setCompareJson(compareJson);
+
+    Boolean jsonHashValues = root.getBoolean(KEY_JSON_HASH_VALUES);
+    if (jsonHashValues != null) state.setJsonHashValues(jsonHashValues);
+
+    String jsonIgnorePaths = root.getString(KEY_JSON_IGNORE_PATHS);
+    if (jsonIgnorePaths != null) state.setJsonIgnorePaths(jsonIgnorePaths);
+
+    Boolean learnNoise = root.getBoolean(KEY_LEARN_NOISE);
+    if (learnNoise != null) state.setLearnNoise(learnNoise);
+
+    Integer largeBodyKb = root.getInteger(KEY_LARGE_BODY_KB);
+    if (largeBodyKb != null) state.setLargeBodyKb(largeBodyKb);
+
     Boolean autoScroll = root.getBoolean(KEY_AUTOSCROLL);
     if (autoScroll != null) state.setAutoScroll(autoScroll);
 
@@ -137,6 +194,11 @@ public final class AutorizePersistence {
     Boolean showUnknown = root.getBoolean(KEY_SHOW_UNKNOWN);
     if (showUnknown != null) state.setShowUnknown(showUnknown);
 
+    Boolean linearRegex = root.getBoolean(KEY_LINEAR_REGEX);
+    if (linearRegex != null) state.setLinearRegex(linearRegex);
+    Integer regexBudget = root.getInteger(KEY_REGEX_BUDGET_MS);
+    if (regexBudget != null) state.setRegexBudgetMillis(regexBudget);
+
     // Extension always starts disabled for safety.
     state.setEnabled(false);
 
@@ -152,6 +214,8 @@ public final class AutorizePersistence {
     if (!filters.isEmpty()) {
       state.replaceInterceptionFilters(filters);
     }
+    String expression = root.getString(KEY_INTERCEPTION_EXPRESSION);
+    if (expression != null) state.setInterceptionExpression(expression);
 
     // Unauth rules
     AndOr unauthMode = safeAndOr(root.getString(KEY_UNAUTH_MODE), state.unauthEnforcementAndOr());
@@ -197,6 +261,18 @@ public final class AutorizePersistence {
           }
         }
 
+        p.setRefreshServiceUrl(safeString(po.getString("refreshUrl")));
+        p.setRefreshRequestText(safeString(po.getString("refreshReq")));
+        Integer refreshTtl = po.getInteger("refreshTtl");
+        if (refreshTtl != null) p.setRefreshTtlSeconds(refreshTtl);
+        var txList = po.getStringList("tx");
+        if (txList != null) {
+          for (String s : txList) {
+            TokenExtractor tx = decodeTokenExtractor(s);
+            if (tx != null) p.tokenExtractors().add(tx);
+          }
+        }
+
         profiles.add(p);
       }
       if (!profiles.isEmpty()) {
@@ -269,6 +345,23 @@ public final class AutorizePersistence {
     }
   }
 
+  private static String encodeTokenExtractor(TokenExtractor x) {
+    return "t=" + x.type().name() + ";n=" + b64(x.name()) + ";e=" + b64(x.expression());
+  }
+
+  private static TokenExtractor decodeTokenExtractor(String s) {
+    if (s == null) return null;
+    try {
+      String t = getKv(s, "t");
+      String n = getKv(s, "n");
+      String e = getKv(s, "e");
+      TokenExtractorType type = TokenExtractorType.valueOf(t);
+      return new TokenExtractor(type, unb64(n), unb64(e));
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
   private static String encodeInterceptionFilter(InterceptionFilter f) {
     return "t=" + f.type().name() + ";c=" + b64(f.content());
   }
@@ -6,6 +6,7 @@ import autorize.model.EnforcementRule;
 import autorize.model.InterceptionFilter;
 import autorize.model.InterceptionFilterType;
 import autorize.model.UserProfile;
+import autorize.model.Verdict;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -30,6 +31,20 @@ public final class AutorizeState {
 
   private final AtomicBoolean ignore304 = new AtomicBoolean(true);
   private final AtomicBoolean prevent304 = new AtomicBoolean(false);
+  // Legacy body comparison: same status alone is not enough for "Bypassed!"; similarity bands decide.
+  private final AtomicBoolean compareBodies = new AtomicBoolean(false);
+  private volatile int bypassedAtPercent = 90;
+  private volatile int enforcedBelowPercent = 0;
+  // JSON bodies compared by structure rather than text.
+  private final AtomicBoolean compareJson = new AtomicBoolean(false);
+  private final AtomicBoolean jsonHashValues = new AtomicBoolean(false);
+  private volatile String jsonIgnorePaths = "";
+  // Replay each endpoint once as the original user to learn which parts of its responses are noise.
+  private final AtomicBoolean learnNoise = new AtomicBoolean(false);
+  private final NoiseBaselines noiseBaselines = new NoiseBaselines();
+  private volatile BodyComparison bodyComparison = new BodyComparison(90, 0, null);
+  // Bodies above this size are judged by status, length and a streamed digest; rules see the leading KB.
+  private volatile int largeBodyKb = 8192;
   private final AtomicBoolean autoScroll = new AtomicBoolean(false);
 
   private final AtomicBoolean replaceQueryParam = new AtomicBoolean(false);
@@ -40,15 +55,31 @@ public final class AutorizeState {
   private final AtomicBoolean showEnforced = new AtomicBoolean(true);
   private final AtomicBoolean showUnknown = new AtomicBoolean(true);
 
+  // Engine and time budget for user-supplied regexes.
+  private final RegexGuard regexGuard = new RegexGuard();
+  // Burp scope decisions per endpoint; cleared on scope changes.
+  private final ScopeCache scopeCache = new ScopeCache();
+  // Why recent messages were kept or dropped by the HTTP handler.
+  private final DecisionTrace decisionTrace = new DecisionTrace();
+  // Enforcement rule outcomes per rule-set version and response body.
+  private final VerdictCache verdictCache = new VerdictCache();
+  // EnforcementDetectors found on the class path; the same for every state instance.
+  private final Detectors detectors = Detectors.installed();
+
 
   private final List<InterceptionFilter> interceptionFilters = new CopyOnWriteArrayList<>();
+  // Optional boolean expression ANDed with the list; empty means none.
+  private volatile String interceptionExpression = "";
+  // Compiled form of interceptionFilters and the expression, rebuilt on every mutation.
+  private volatile FilterProgram filterProgram = FilterProgram.compile(List.of(), null, null, regexGuard,
+      Integer.MAX_VALUE);
   private final List<EnforcementRule> unauthEnforcementRules = new CopyOnWriteArrayList<>();
   private volatile AndOr unauthEnforcementAndOr = AndOr.OR;
 
   private final AtomicInteger requestCounter = new AtomicInteger(1);
 
   private final List<UserProfile> profiles = new CopyOnWriteArrayList<>();
-  private final List<LogEntry> log = new CopyOnWriteArrayList<>();
+  private final ResultsLog log = new ResultsLog();
   private final List<Listener> listeners = new CopyOnWriteArrayList<>();
 
   public AutorizeState() {
@@ -63,6 +94,7 @@ public final class AutorizeState {
         "(\\.js|\\.css|\\.png|\\.jpg|\\.svg|\\.jpeg|\\.gif|\\.woff|\\.map|\\.bmp|\\.ico)(?![a-z]+)[?]*[\\S]*$"
     ));
     interceptionFilters.add(new InterceptionFilter(InterceptionFilterType.IGNORE_OPTIONS, ""));
+    recompileFilters();
   }
 
   public void addListener(Listener l) {
@@ -120,6 +152,107 @@ public final class AutorizeState {
     notifyConfigChanged();
   }
 
+  public boolean compareBodies() {
+    return compareBodies.get();
+  }
+
+  public void setCompareBodies(boolean value) {
+    compareBodies.set(value);
+    notifyConfigChanged();
+  }
+
+  public int bypassedAtPercent() {
+    return bypassedAtPercent;
+  }
+
+  public void setBypassedAtPercent(int value) {
+    bypassedAtPercent = Math.max(0, Math.min(100, value));
+    rebuildBodyComparison();
+    notifyConfigChanged();
+  }
+
+  public int enforcedBelowPercent() {
+    return enforcedBelowPercent;
+  }
+
+  public void setEnforcedBelowPercent(int value) {
+    enforcedBelowPercent = Math.max(0, Math.min(100, value));
+    rebuildBodyComparison();
+    notifyConfigChanged();
+  }
+
+  public boolean compareJson() {
+    return compareJson.get();
+  }
+
+  public void setCompareJson(boolean value) {
+    compareJson.set(value);
+    rebuildBodyComparison();
+    notifyConfigChanged();
+  }
+
+  public boolean jsonHashValues() {
+    return jsonHashValues.get();
+  }
+
+  public void setJsonHashValues(boolean value) {
+    jsonHashValues.set(value);
+    rebuildBodyComparison();
+    notifyConfigChanged();
+  }
+
+  public String jsonIgnorePaths() {
+    return jsonIgnorePaths;
+  }
+
+  public void setJsonIgnorePaths(String text) {
+    String value = text == null ? "" : text;
+    if (value.equals(jsonIgnorePaths)) return;
+    jsonIgnorePaths = value;
+    rebuildBodyComparison();
+    notifyConfigChanged();
+  }
+
+  public boolean learnNoise() {
+    return learnNoise.get();
+  }
+
+  public void setLearnNoise(boolean value) {
+    learnNoise.set(value);
+    noiseBaselines.clear();
+    notifyConfigChanged();
+  }
+
+  public NoiseBaselines noiseBaselines() {
+    return noiseBaselines;
+  }
+
+  public int largeBodyKb() {
+    return largeBodyKb;
+  }
+
+  public void setLargeBodyKb(int value) {
+    largeBodyKb = Math.max(0, value);
+    recompileFilters();
+    notifyConfigChanged();
+  }
+
+  /** The body window in bytes: the threshold, or Integer.MAX_VALUE when large-body mode is off (0). */
+  public int largeBodyBytes() {
+    int kb = largeBodyKb;
+    return kb <= 0 ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, kb * 1024L);
+  }
+
+  private void rebuildBodyComparison() {
+    JsonStructure json = compareJson.get() ? JsonStructure.compile(jsonIgnorePaths, jsonHashValues.get()) : null;
+    bodyComparison = new BodyComparison(bypassedAtPercent, enforcedBelowPercent, json);
+  }
+
+  /** Null while bodies are not compared (same status is enough for "Bypassed!"). */
+  public BodyComparison bodyComparison() {
+    return compareBodies.get() ? bodyComparison : null;
+  }
+
   public boolean autoScroll() {
     return autoScroll.get();
   }
@@ -174,6 +307,47 @@ public final class AutorizeState {
     notifyConfigChanged();
   }
 
+  public RegexGuard regexGuard() {
+    return regexGuard;
+  }
+
+  public ScopeCache scopeCache() {
+    return scopeCache;
+  }
+
+  public DecisionTrace decisionTrace() {
+    return decisionTrace;
+  }
+
+  public VerdictCache verdictCache() {
+    return verdictCache;
+  }
+
+  public Detectors detectors() {
+    return detectors;
+  }
+
+  public boolean linearRegex() {
+    return regexGuard.linear();
+  }
+
+  public void setLinearRegex(boolean value) {
+    regexGuard.setLinear(value);
+    regexGuard.resetFlags();
+    notifyConfigChanged();
+  }
+
+  public int regexBudgetMillis() {
+    return regexGuard.budgetMillis();
+  }
+
+  public void setRegexBudgetMillis(int value) {
+    if (value == regexGuard.budgetMillis()) return;
+    regexGuard.setBudgetMillis(value);
+    regexGuard.resetFlags();
+    notifyConfigChanged();
+  }
+
 
   public int nextRequestNumber() {
     return requestCounter.getAndIncrement();
@@ -245,20 +419,55 @@ public final class AutorizeState {
     return interceptionFilters;
   }
 
+  public FilterProgram filterProgram() {
+    return filterProgram;
+  }
+
+  private void recompileFilters() {
+    filterProgram = FilterProgram.compile(new ArrayList<>(interceptionFilters), parsedExpression(),
+        filterProgram, regexGuard, largeBodyBytes());
+  }
+
+  // An expression that does not parse is ignored (the UI flags it) rather than blocking all traffic.
+  private FilterExpression parsedExpression() {
+    String text = interceptionExpression;
+    if (text.isBlank()) return null;
+    try {
+      return FilterExpression.parse(text);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public String interceptionExpression() {
+    return interceptionExpression;
+  }
+
+  public void setInterceptionExpression(String text) {
+    String value = text == null ? "" : text;
+    if (value.equals(interceptionExpression)) return;
+    interceptionExpression = value;
+    recompileFilters();
+    notifyConfigChanged();
+  }
+
   public void addInterceptionFilter(InterceptionFilter filter) {
     interceptionFilters.add(filter);
+    recompileFilters();
     notifyConfigChanged();
   }
 
   public void removeInterceptionFilter(int index) {
     if (index < 0 || index >= interceptionFilters.size()) return;
     interceptionFilters.remove(index);
+    recompileFilters();
     notifyConfigChanged();
   }
 
   public void updateInterceptionFilter(int index, InterceptionFilter filter) {
     if (index < 0 || index >= interceptionFilters.size()) return;
     interceptionFilters.set(index, filter);
+    recompileFilters();
     notifyConfigChanged();
   }
 
@@ -268,6 +477,7 @@ public final class AutorizeState {
     if (fromIndex == toIndex) return;
     InterceptionFilter f = interceptionFilters.remove(fromIndex);
     interceptionFilters.add(toIndex, f);
+    recompileFilters();
     notifyConfigChanged();
   }
 
@@ -319,6 +529,7 @@ public final class AutorizeState {
     if (filters != null) {
       interceptionFilters.addAll(filters);
     }
+    recompileFilters();
     notifyConfigChanged();
   }
 
@@ -331,8 +542,9 @@ public final class AutorizeState {
     notifyConfigChanged();
   }
 
-  public List<LogEntry> logSnapshot() {
-    return new ArrayList<>(log);
+  /** The log as it is now; a view, not a copy, so taking one per table repaint is cheap. */
+  public ResultsLog.View logSnapshot() {
+    return log.snapshot();
   }
 
   public void clearLog() {
@@ -342,25 +554,25 @@ public final class AutorizeState {
     }
   }
 
-  public void addLogEntry(LogEntry entry) {
-    log.add(entry);
+  /** Appends a row; {@code verdicts} holds the verdict of each profile that was replayed. */
+  public void addLogEntry(LogEntry entry, Verdict unauthVerdict, Map<UUID, Verdict> verdicts) {
+    log.add(entry, unauthVerdict, verdicts);
     for (Listener l : listeners) {
       l.onLogChanged();
     }
   }
 
+  /** For entries changed in place, e.g. verdicts recomputed after a rule edit. */
+  public void notifyLogChanged() {
+    for (Listener l : listeners) {
+      l.onLogChanged();
+    }
+  }
+
+  /** Removes rows by their index in {@link #logSnapshot()}. */
   public void removeLogRows(List<Integer> modelRows) {
     if (modelRows == null || modelRows.isEmpty()) return;
-    // Remove in descending order so indexes remain valid.
-    var rows = new ArrayList<>(modelRows);
-    rows.sort((a, b) -> Integer.compare(b, a));
-    for (Integer idx : rows) {
-      if (idx == null) continue;
-      int i = idx;
-      if (i >= 0 && i < log.size()) {
-        log.remove(i);
-      }
-    }
+    log.remove(modelRows);
     for (Listener l : listeners) {
       l.onLogChanged();
     }
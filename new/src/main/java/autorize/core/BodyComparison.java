@@ -0,0 +1,60 @@
+package autorize.core;
+
+import autorize.model.NoiseMask;
+import autorize.model.ResponseSignature;
+import autorize.model.Verdict;
+
+/**
+ * Maps the similarity of an original and a same-status replay body to a verdict.
+ *
+ * Works on stored signatures only: the score is a constant-time MinHash comparison, so nothing is diffed
+ * and no body is kept around for it. With a JsonStructure, two JSON bodies are scored by structural
+ * overlap instead of by text. A NoiseMask, learned per endpoint, keeps volatile words and JSON paths
+ * out of both fingerprints.
+ */
+public final class BodyComparison {
+  private final int bypassedAtPercent;
+  private final int enforcedBelowPercent;
+  private final JsonStructure json;
+  private final NoiseMask noise;
+
+  /**
+   * @param bypassedAtPercent    replays at least this similar are "Bypassed!"
+   * @param enforcedBelowPercent replays less similar than this are "Enforced!"; the band in between is
+   *                             "Is enforced???"
+   * @param json                 how to fingerprint JSON bodies, or null to compare them as text
+   */
+  public BodyComparison(int bypassedAtPercent, int enforcedBelowPercent, JsonStructure json) {
+    this(bypassedAtPercent, enforcedBelowPercent, json, NoiseMask.NONE);
+  }
+
+  private BodyComparison(int bypassedAtPercent, int enforcedBelowPercent, JsonStructure json, NoiseMask noise) {
+    this.bypassedAtPercent = bypassedAtPercent;
+    this.enforcedBelowPercent = enforcedBelowPercent;
+    this.json = json;
+    this.noise = noise;
+  }
+
+  /** The same bands, for one endpoint whose volatile parts are known. */
+  public BodyComparison withNoise(NoiseMask noise) {
+    return new BodyComparison(bypassedAtPercent, enforcedBelowPercent, json, noise);
+  }
+
+  public NoiseMask noise() {
+    return noise;
+  }
+
+  /** Null when JSON bodies are compared as text. */
+  public JsonStructure json() {
+    return json;
+  }
+
+  /** Signatures should come from {@link ResponseView#signature(BodyComparison)} with this comparison. */
+  public Verdict verdict(ResponseSignature original, ResponseSignature replay) {
+    int similarity = original.jsonSimilarityPercent(replay);
+    if (similarity < 0) similarity = original.similarityPercent(replay);
+    if (similarity >= bypassedAtPercent) return Verdict.BYPASSED;
+    if (similarity < enforcedBelowPercent) return Verdict.ENFORCED;
+    return Verdict.UNKNOWN;
+  }
+}
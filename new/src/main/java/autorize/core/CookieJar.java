@@ -0,0 +1,285 @@
+package autorize.core;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Live cookie jar for one profile.
+ *
+ * Seeds are the cookies the profile configures itself (the Cookie line of its headers text and its
+ * COOKIE_REPLACE rules). Cookies the target sets on that profile's replays are learned with their domain,
+ * path and expiry (RFC 6265 matching) and added for other names; a seeded name always keeps its configured
+ * value, so a logout or expired-session page cannot switch the identity later replays are sent as.
+ * {@link #apply} merges everything into a single Cookie header value, so request building does one header
+ * write per replay.
+ */
+public final class CookieJar {
+  private static final int MAX_COOKIES = 256;
+  static final long NOT_A_DATE = Long.MIN_VALUE;
+
+  // RFC 6265 5.1.1 cookie-date grammar.
+  private static final Pattern DATE_DELIMITERS = Pattern.compile("[\\x09\\x20-\\x2F\\x3B-\\x40\\x5B-\\x60\\x7B-\\x7E]+");
+  private static final Pattern DATE_TIME = Pattern.compile("(\\d{1,2}):(\\d{1,2}):(\\d{1,2})(?:\\D|$)");
+  private static final Pattern DATE_DAY = Pattern.compile("(\\d{1,2})(?:\\D|$)");
+  private static final Pattern DATE_YEAR = Pattern.compile("(\\d{2,4})(?:\\D|$)");
+  private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+  private static final class Cookie {
+    final String name;
+    final String value;
+    final String domain;
+    final boolean hostOnly;
+    final String path;
+    final boolean secure;
+    final long expiresAtMillis;
+
+    Cookie(String name, String value, String domain, boolean hostOnly, String path, boolean secure, long expiresAtMillis) {
+      this.name = name;
+      this.value = value;
+      this.domain = domain;
+      this.hostOnly = hostOnly;
+      this.path = path;
+      this.secure = secure;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    boolean sameSlot(Cookie o) {
+      return name.equals(o.name) && domain.equals(o.domain) && path.equals(o.path);
+    }
+
+    boolean matches(String host, String requestPath, boolean https, long now) {
+      if (now >= expiresAtMillis) return false;
+      if (secure && !https) return false;
+      if (hostOnly ? !host.equals(domain) : !domainMatches(host, domain)) return false;
+      return pathMatches(requestPath, path);
+    }
+  }
+
+  private final LongSupplier clock;
+  private final List<Cookie> learned = new ArrayList<>();
+  private Map<String, String> seeds = Map.of();
+
+  public CookieJar() {
+    this(System::currentTimeMillis);
+  }
+
+  public CookieJar(LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Sets the configured cookie values. When they differ from the current seeds, learned cookies are
+   * dropped as well: a changed rule (or a refreshed session) must not be shadowed by stale server state.
+   */
+  public synchronized void seed(Map<String, String> newSeeds) {
+    Map<String, String> s = newSeeds == null ? Map.of() : newSeeds;
+    if (s.equals(seeds)) return;
+    seeds = new LinkedHashMap<>(s);
+    learned.clear();
+  }
+
+  /** Records the Set-Cookie header values of a replay response sent to host/requestPath. */
+  public synchronized void learn(String host, String requestPath, List<String> setCookieValues) {
+    if (setCookieValues == null || setCookieValues.isEmpty() || host == null) return;
+    long now = clock.getAsLong();
+    String h = host.toLowerCase(Locale.ROOT);
+    for (String sc : setCookieValues) {
+      Cookie c = parseSetCookie(sc, h, defaultPath(requestPath), now);
+      if (c == null) continue;
+      learned.removeIf(o -> o.sameSlot(c));
+      if (c.expiresAtMillis > now) {
+        learned.add(c);
+      }
+    }
+    learned.removeIf(o -> o.expiresAtMillis <= now);
+    while (learned.size() > MAX_COOKIES) {
+      learned.remove(0);
+    }
+  }
+
+  /**
+   * Merges seeds and matching learned cookies into the request's Cookie header value.
+   *
+   * @return the new header value, or null when the jar has nothing to contribute
+   */
+  public synchronized String apply(String host, String requestPath, boolean https, String currentCookieHeader) {
+    if (seeds.isEmpty() && learned.isEmpty()) return null;
+
+    Map<String, String> overrides = new LinkedHashMap<>(seeds);
+    if (!learned.isEmpty() && host != null) {
+      long now = clock.getAsLong();
+      String h = host.toLowerCase(Locale.ROOT);
+      String p = pathOnly(requestPath);
+      List<Cookie> hits = new ArrayList<>();
+      for (Cookie c : learned) {
+        if (c.matches(h, p, https, now)) hits.add(c);
+      }
+      // Longer paths first, so the most specific cookie wins for a given name.
+      hits.sort(Comparator.comparingInt((Cookie c) -> c.path.length()).reversed());
+      Map<String, String> fromServer = new LinkedHashMap<>();
+      for (Cookie c : hits) {
+        if (!seeds.containsKey(c.name)) fromServer.putIfAbsent(c.name, c.value);
+      }
+      overrides.putAll(fromServer);
+    }
+    if (overrides.isEmpty()) return null;
+
+    StringBuilder out = new StringBuilder();
+    if (currentCookieHeader != null) {
+      for (String raw : currentCookieHeader.split(";")) {
+        String part = raw.trim();
+        if (part.isEmpty()) continue;
+        int eq = part.indexOf('=');
+        String name = eq > 0 ? part.substring(0, eq).trim() : part;
+        String v = overrides.remove(name);
+        if (out.length() > 0) out.append("; ");
+        out.append(v == null ? part : name + "=" + v);
+      }
+    }
+    for (Map.Entry<String, String> e : overrides.entrySet()) {
+      if (out.length() > 0) out.append("; ");
+      out.append(e.getKey()).append('=').append(e.getValue());
+    }
+    return out.toString();
+  }
+
+  public synchronized int learnedCount() {
+    return learned.size();
+  }
+
+  private static Cookie parseSetCookie(String header, String host, String defaultPath, long now) {
+    if (header == null) return null;
+    String[] parts = header.split(";");
+    String pair = parts[0].trim();
+    int eq = pair.indexOf('=');
+    if (eq <= 0) return null;
+    String name = pair.substring(0, eq).trim();
+    String value = pair.substring(eq + 1).trim();
+
+    String domain = null;
+    String path = null;
+    boolean secure = false;
+    long expires = Long.MAX_VALUE;
+    boolean sawMaxAge = false;
+
+    for (int i = 1; i < parts.length; i++) {
+      String a = parts[i].trim();
+      int aeq = a.indexOf('=');
+      String k = (aeq < 0 ? a : a.substring(0, aeq)).trim().toLowerCase(Locale.ROOT);
+      String v = aeq < 0 ? "" : a.substring(aeq + 1).trim();
+      switch (k) {
+        case "domain" -> {
+          String d = v.startsWith(".") ? v.substring(1) : v;
+          if (!d.isEmpty()) domain = d.toLowerCase(Locale.ROOT);
+        }
+        case "path" -> {
+          if (v.startsWith("/")) path = v;
+        }
+        case "secure" -> secure = true;
+        case "max-age" -> {
+          try {
+            long secs = Long.parseLong(v);
+            // Far-future values are clamped rather than overflowing into the past.
+            expires = secs <= 0 ? now : secs > (Long.MAX_VALUE - now) / 1000L ? Long.MAX_VALUE : now + secs * 1000L;
+            sawMaxAge = true;
+          } catch (NumberFormatException ignored) {
+          }
+        }
+        case "expires" -> {
+          if (!sawMaxAge) {
+            long at = parseCookieDate(v);
+            if (at != NOT_A_DATE) expires = at;
+          }
+        }
+        default -> {
+        }
+      }
+    }
+
+    // A Domain attribute that does not cover the responding host is rejected (RFC 6265 5.3 step 6).
+    if (domain != null && !domainMatches(host, domain)) return null;
+    boolean hostOnly = domain == null;
+    return new Cookie(name, value, hostOnly ? host : domain, hostOnly, path == null ? defaultPath : path, secure, expires);
+  }
+
+  /**
+   * Parses an Expires value the way RFC 6265 (5.1.1) does, so RFC 1123, RFC 850
+   * ("Sunday, 06-Nov-94 08:49:37 GMT") and asctime ("Sun Nov  6 08:49:37 1994") dates are all read.
+   *
+   * @return epoch milliseconds, or {@link #NOT_A_DATE}
+   */
+  static long parseCookieDate(String text) {
+    if (text == null) return NOT_A_DATE;
+    int hour = -1;
+    int minute = -1;
+    int second = -1;
+    int day = -1;
+    int month = -1;
+    int year = -1;
+    for (String token : DATE_DELIMITERS.split(text)) {
+      if (token.isEmpty()) continue;
+      Matcher m;
+      if (hour < 0 && (m = DATE_TIME.matcher(token)).lookingAt()) {
+        hour = Integer.parseInt(m.group(1));
+        minute = Integer.parseInt(m.group(2));
+        second = Integer.parseInt(m.group(3));
+      } else if (day < 0 && (m = DATE_DAY.matcher(token)).lookingAt()) {
+        day = Integer.parseInt(m.group(1));
+      } else if (month < 0 && month(token) > 0) {
+        month = month(token);
+      } else if (year < 0 && (m = DATE_YEAR.matcher(token)).lookingAt()) {
+        year = Integer.parseInt(m.group(1));
+      }
+    }
+    if (year >= 70 && year <= 99) year += 1900;
+    if (year >= 0 && year <= 69) year += 2000;
+    if (hour < 0 || day < 1 || day > 31 || month < 1 || year < 1601 || hour > 23 || minute > 59 || second > 59) {
+      return NOT_A_DATE;
+    }
+    try {
+      return LocalDateTime.of(year, month, day, hour, minute, second).toInstant(ZoneOffset.UTC).toEpochMilli();
+    } catch (DateTimeException e) {
+      return NOT_A_DATE;
+    }
+  }
+
+  // 1-12 for a token starting with a month abbreviation, otherwise 0.
+  private static int month(String token) {
+    if (token.length() < 3) return 0;
+    int i = MONTHS.indexOf(token.substring(0, 3).toLowerCase(Locale.ROOT));
+    return i >= 0 && i % 3 == 0 ? i / 3 + 1 : 0;
+  }
+
+  private static boolean domainMatches(String host, String domain) {
+    return host.equals(domain) || (host.endsWith(domain) && host.charAt(host.length() - domain.length() - 1) == '.');
+  }
+
+  private static boolean pathMatches(String requestPath, String cookiePath) {
+    if (requestPath.equals(cookiePath)) return true;
+    if (!requestPath.startsWith(cookiePath)) return false;
+    return cookiePath.endsWith("/") || requestPath.charAt(cookiePath.length()) == '/';
+  }
+
+  private static String pathOnly(String path) {
+    if (path == null || path.isEmpty()) return "/";
+    int q = path.indexOf('?');
+    return q >= 0 ? path.substring(0, q) : path;
+  }
+
+  private static String defaultPath(String requestPath) {
+    String p = pathOnly(requestPath);
+    if (!p.startsWith("/")) return "/";
+    int slash = p.lastIndexOf('/');
+    return slash <= 0 ? "/" : p.substring(0, slash);
+  }
+}
@@ -0,0 +1,184 @@
+package autorize.core;
+
+import burp.api.montoya.core.ToolType;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size ring buffer recording how far each message got through the HTTP handler.
+ *
+ * Records are spread over parallel primitive arrays, so recording takes no lock and allocates nothing:
+ * one sequence increment and a handful of array stores. Each slot is guarded like a seqlock: the writer
+ * marks it in progress, fills it and then publishes the sequence number, and a reader keeps a copy only
+ * when the stamp was the same before and after reading. URLs are only kept while someone is looking
+ * (see {@link #setCaptureUrls}); otherwise the slot holds null.
+ */
+public final class DecisionTrace {
+  public static final int CAPACITY = 8192;
+  private static final int MASK = CAPACITY - 1;
+
+  /** Where a message left the pipeline, in pipeline order. */
+  public enum Stage {
+    DISABLED("Autorize off"),
+    OWN_REPLAY("Own replay"),
+    OUT_OF_SCOPE("Out of scope"),
+    TOOL("Tool not intercepted"),
+    IGNORED_304("Ignored 304/204"),
+    FILTER("Interception filter"),
+    EXPRESSION("Filter expression"),
+    QUEUED("Queued for replay");
+
+    private final String label;
+
+    Stage(String label) {
+      this.label = label;
+    }
+
+    public String label() {
+      return label;
+    }
+  }
+
+  private static final Stage[] STAGES = Stage.values();
+  private static final ToolType[] TOOLS = ToolType.values();
+  private static final VarHandle STAMP = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final AtomicLong sequence = new AtomicLong();
+  private final long[] stamps = new long[CAPACITY];
+  private final long[] times = new long[CAPACITY];
+  private final long[] totalNanos = new long[CAPACITY];
+  private final long[] filterNanos = new long[CAPACITY];
+  private final int[] filterIndexes = new int[CAPACITY];
+  private final short[] statuses = new short[CAPACITY];
+  private final byte[] stages = new byte[CAPACITY];
+  private final byte[] tools = new byte[CAPACITY];
+  private final String[] urls = new String[CAPACITY];
+
+  private volatile boolean captureUrls;
+
+  public boolean captureUrls() {
+    return captureUrls;
+  }
+
+  /** URLs cost a string per message, so they are only recorded while the trace is being viewed. */
+  public void setCaptureUrls(boolean value) {
+    captureUrls = value;
+  }
+
+  /**
+   * @param filterIndex index of the rejecting filter for {@link Stage#FILTER}, otherwise -1
+   * @param url         ignored unless URL capture is on
+   */
+  public void record(Stage stage, int filterIndex, ToolType tool, short status,
+                     long totalNanos, long filterNanos, String url) {
+    long seq = sequence.incrementAndGet();
+    int i = (int) (seq & MASK);
+    STAMP.setOpaque(stamps, i, -seq);
+    VarHandle.storeStoreFence();
+    times[i] = System.currentTimeMillis();
+    this.totalNanos[i] = totalNanos;
+    this.filterNanos[i] = filterNanos;
+    filterIndexes[i] = filterIndex;
+    statuses[i] = status;
+    stages[i] = (byte) stage.ordinal();
+    tools[i] = (byte) (tool == null ? -1 : tool.ordinal());
+    urls[i] = captureUrls ? url : null;
+    STAMP.setRelease(stamps, i, seq);
+  }
+
+  /** Total number of messages recorded since the extension loaded. */
+  public long recorded() {
+    return sequence.get();
+  }
+
+  /** The retained records, newest first. */
+  public List<Record> snapshot() {
+    long last = sequence.get();
+    long first = Math.max(1, last - CAPACITY + 1);
+    List<Record> out = new ArrayList<>((int) (last - first + 1));
+    for (long seq = last; seq >= first; seq--) {
+      int i = (int) (seq & MASK);
+      if ((long) STAMP.getAcquire(stamps, i) != seq) continue;
+      Record r = new Record(seq, times[i], STAGES[stages[i]], filterIndexes[i],
+          tools[i] < 0 ? null : TOOLS[tools[i]], statuses[i], totalNanos[i], filterNanos[i], urls[i]);
+      VarHandle.acquireFence();
+      if ((long) STAMP.getVolatile(stamps, i) == seq) out.add(r);
+    }
+    return out;
+  }
+
+  /** Drops the retained records; concurrent writers may still land a few. */
+  public void clear() {
+    for (int i = 0; i < CAPACITY; i++) {
+      STAMP.setVolatile(stamps, i, 0L);
+    }
+    Arrays.fill(urls, null);
+  }
+
+  /** Immutable copy of one slot. */
+  public static final class Record {
+    private final long sequence;
+    private final long timeMillis;
+    private final Stage stage;
+    private final int filterIndex;
+    private final ToolType tool;
+    private final short status;
+    private final long totalNanos;
+    private final long filterNanos;
+    private final String url;
+
+    Record(long sequence, long timeMillis, Stage stage, int filterIndex, ToolType tool, short status,
+           long totalNanos, long filterNanos, String url) {
+      this.sequence = sequence;
+      this.timeMillis = timeMillis;
+      this.stage = stage;
+      this.filterIndex = filterIndex;
+      this.tool = tool;
+      this.status = status;
+      this.totalNanos = totalNanos;
+      this.filterNanos = filterNanos;
+      this.url = url;
+    }
+
+    public long sequence() {
+      return sequence;
+    }
+
+    public long timeMillis() {
+      return timeMillis;
+    }
+
+    public Stage stage() {
+      return stage;
+    }
+
+    public int filterIndex() {
+      return filterIndex;
+    }
+
+    public ToolType tool() {
+      return tool;
+    }
+
+    public short status() {
+      return status;
+    }
+
+    public long totalNanos() {
+      return totalNanos;
+    }
+
+    public long filterNanos() {
+      return filterNanos;
+    }
+
+    public String url() {
+      return url;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package autorize.core;
+
+import autorize.spi.DetectorResponse;
+import autorize.spi.EnforcementDetector;
+import autorize.spi.ResponsePart;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The installed EnforcementDetectors, loaded once with ServiceLoader from the extension's class loader.
+ *
+ * Detectors are ordered by the parts they read (status-only, then headers, then body) so the cheap ones
+ * short-circuit the rest. Each one sees a DetectorResponse limited to its declared parts, backed by the
+ * replay's shared ResponseView: byte views wrap the raw copy the built-in checks already made, and the
+ * decoded body is the one the regex rules use. Calls, hits, errors and time are counted per detector.
+ */
+public final class Detectors {
+  public static final Detectors NONE = new Detectors(List.of(), List.of());
+
+  // Providers that fail to load are skipped; stop if a broken service file keeps failing.
+  private static final int MAX_LOAD_ERRORS = 64;
+
+  private final Entry[] entries;
+  private final List<String> loadErrors;
+
+  private Detectors(List<Entry> entries, List<String> loadErrors) {
+    List<Entry> sorted = new ArrayList<>(entries);
+    sorted.sort((a, b) -> Integer.compare(a.cost, b.cost));
+    this.entries = sorted.toArray(new Entry[0]);
+    this.loadErrors = Collections.unmodifiableList(new ArrayList<>(loadErrors));
+  }
+
+  /** The detectors on the extension's class path, loaded on first use. */
+  public static Detectors installed() {
+    return Installed.DETECTORS;
+  }
+
+  private static final class Installed {
+    private static final Detectors DETECTORS = load(Detectors.class.getClassLoader());
+  }
+
+  static Detectors load(ClassLoader loader) {
+    List<Entry> entries = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    Iterator<EnforcementDetector> it = ServiceLoader.load(EnforcementDetector.class, loader).iterator();
+    while (errors.size() < MAX_LOAD_ERRORS) {
+      try {
+        if (!it.hasNext()) break;
+        entries.add(new Entry(it.next()));
+      } catch (ServiceConfigurationError | RuntimeException e) {
+        errors.add(String.valueOf(e.getMessage()));
+      }
+    }
+    return entries.isEmpty() && errors.isEmpty() ? NONE : new Detectors(entries, errors);
+  }
+
+  public boolean isEmpty() {
+    return entries.length == 0;
+  }
+
+  public List<String> loadErrors() {
+    return loadErrors;
+  }
+
+  /** True at the first detector that reports enforcement. */
+  public boolean enforced(ResponseView replay) {
+    for (Entry e : entries) {
+      long t0 = System.nanoTime();
+      boolean hit;
+      try {
+        hit = e.detector.enforced(new View(replay, e));
+      } catch (RuntimeException ex) {
+        e.errors.increment();
+        hit = false;
+      }
+      e.nanos.add(System.nanoTime() - t0);
+      e.calls.increment();
+      if (hit) {
+        e.hits.increment();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public List<Stat> stats() {
+    List<Stat> out = new ArrayList<>(entries.length);
+    for (Entry e : entries) {
+      out.add(new Stat(e.name, e.calls.sum(), e.hits.sum(), e.errors.sum(), e.nanos.sum()));
+    }
+    return out;
+  }
+
+  /** Counters of one detector since the extension was loaded. */
+  public static final class Stat {
+    private final String name;
+    private final long calls;
+    private final long hits;
+    private final long errors;
+    private final long nanos;
+
+    Stat(String name, long calls, long hits, long errors, long nanos) {
+      this.name = name;
+      this.calls = calls;
+      this.hits = hits;
+      this.errors = errors;
+      this.nanos = nanos;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    public long calls() {
+      return calls;
+    }
+
+    public long hits() {
+      return hits;
+    }
+
+    public long errors() {
+      return errors;
+    }
+
+    public long nanos() {
+      return nanos;
+    }
+  }
+
+  private static final class Entry {
+    private final EnforcementDetector detector;
+    private final String name;
+    private final boolean headers;
+    private final boolean body;
+    // 0 = status only, 1 = headers, 2 = body.
+    private final int cost;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    Entry(EnforcementDetector detector) {
+      this.detector = detector;
+      this.name = detector.name() == null ? detector.getClass().getName() : detector.name();
+      Set<ResponsePart> needs = detector.needs();
+      if (needs == null) needs = EnumSet.allOf(ResponsePart.class);
+      this.headers = needs.contains(ResponsePart.HEADERS);
+      this.body = needs.contains(ResponsePart.BODY);
+      this.cost = body ? 2 : headers ? 1 : 0;
+    }
+  }
+
+  private static final class View implements DetectorResponse {
+    private final ResponseView view;
+    private final Entry entry;
+
+    View(ResponseView view, Entry entry) {
+      this.view = view;
+      this.entry = entry;
+    }
+
+    @Override
+    public int status() {
+      return view.status();
+    }
+
+    @Override
+    public String contentType() {
+      return view.signature().contentType();
+    }
+
+    @Override
+    public int bodyLength() {
+      return view.signature().bodyLength();
+    }
+
+    @Override
+    public String bodyDigest() {
+      return view.signature().digestHex();
+    }
+
+    @Override
+    public ByteBuffer headers() {
+      require(entry.headers, ResponsePart.HEADERS);
+      byte[] raw = view.raw();
+      return ByteBuffer.wrap(raw, 0, Math.min(view.bodyOffset(), raw.length)).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public String header(String name) {
+      require(entry.headers, ResponsePart.HEADERS);
+      return view.response().headerValue(name);
+    }
+
+    @Override
+    public ByteBuffer body() {
+      require(entry.body, ResponsePart.BODY);
+      byte[] raw = view.raw();
+      int from = Math.min(view.bodyOffset(), raw.length);
+      return ByteBuffer.wrap(raw, from, raw.length - from).slice().asReadOnlyBuffer();
+    }
+
+    @Override
+    public CharSequence bodyText() {
+      require(entry.body, ResponsePart.BODY);
+      return view.body();
+    }
+
+    private void require(boolean declared, ResponsePart part) {
+      if (!declared) throw new IllegalStateException(entry.name + " did not declare ResponsePart." + part);
+    }
+  }
+}
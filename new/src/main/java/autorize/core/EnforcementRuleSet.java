@@ -0,0 +1,236 @@
+package autorize.core;
+
+import autorize.model.AndOr;
+import autorize.model.EnforcementRule;
+import autorize.model.EnforcementRuleType;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiled form of one enforcement rule list.
+ *
+ * All *_CONTAINS literals share one Aho-Corasick automaton, so a response is scanned once over its raw
+ * bytes, no matter how many literal rules there are; each rule then reads its own match bit for its
+ * region (headers, body or whole message). Regex rules run on decoded text, taken from the shared
+ * ResponseView so each region is decoded at most once per response (and not at all when no regex rule
+ * is reached), under the RegexGuard's engine and time budget. Status and length operands are parsed
+ * at compile time and compared against message metadata. JSON_PATH_* rules share one streaming parse
+ * of the body (see JsonPathRules), done at most once per response and only when such a rule is reached.
+ *
+ * Every compilation gets a new version number, so results cached under one version (see VerdictCache)
+ * can never be served for an edited list.
+ */
+public final class EnforcementRuleSet {
+  private static final int REGION_HEADERS = 0;
+  private static final int REGION_BODY = 1;
+  private static final int REGION_FULL = 2;
+
+  private static final AtomicLong VERSIONS = new AtomicLong();
+
+  private final long version = VERSIONS.incrementAndGet();
+
+  private final EnforcementRule[] rules;
+  // Automaton pattern id per rule, or -1 when the rule is not a literal.
+  private final int[] literalIds;
+  private final int[] regionOf;
+  // Parsed operand of STATUS_EQUALS / FULL_LENGTH_EQUALS rules; -1 when it can never match.
+  private final long[] numbers;
+  private final AhoCorasick literals;
+  // Index into the JSON pass's result per rule, or -1 when the rule is not an evaluable JSON_PATH_* rule.
+  private final int[] jsonIds;
+  private final JsonPathRules json;
+  private final RegexGuard regex;
+  private final boolean bodyOnly;
+  private final boolean readsLength;
+
+  private EnforcementRuleSet(EnforcementRule[] rules, int[] literalIds, AhoCorasick literals, int[] jsonIds,
+                             JsonPathRules json, RegexGuard regex) {
+    this.rules = rules;
+    this.literalIds = literalIds;
+    this.jsonIds = jsonIds;
+    this.json = json;
+    this.numbers = new long[rules.length];
+    for (int i = 0; i < rules.length; i++) {
+      numbers[i] = parseNumber(rules[i].content());
+    }
+    this.literals = literals;
+    this.regex = regex;
+    this.regionOf = new int[literals == null ? 0 : literals.patternCount()];
+    for (int i = 0; i < rules.length; i++) {
+      if (literalIds[i] >= 0) regionOf[literalIds[i]] = regionFor(rules[i].type());
+    }
+    boolean headers = false;
+    boolean length = false;
+    for (EnforcementRule r : rules) {
+      EnforcementRuleType t = r.type();
+      headers |= t == EnforcementRuleType.HEADERS_CONTAINS || t == EnforcementRuleType.HEADERS_REGEX
+          || t == EnforcementRuleType.FULL_CONTAINS || t == EnforcementRuleType.FULL_REGEX;
+      length |= t == EnforcementRuleType.FULL_LENGTH_EQUALS;
+    }
+    this.bodyOnly = !headers;
+    this.readsLength = length;
+  }
+
+  /**
+   * Returns {@code previous} when it was compiled from exactly these rule objects, otherwise compiles
+   * the list. Rules are immutable, so identity is enough to detect edits made through the UI. The
+   * guard's engine and budget are read at evaluation time, not baked in, so changing them needs no
+   * recompilation; VerdictCache keys on them instead.
+   */
+  public static EnforcementRuleSet compile(List<EnforcementRule> list, EnforcementRuleSet previous, RegexGuard regex) {
+    EnforcementRule[] rules = list == null ? new EnforcementRule[0] : list.toArray(new EnforcementRule[0]);
+    if (previous != null && previous.regex == regex && previous.sameRules(rules)) return previous;
+
+    int[] literalIds = new int[rules.length];
+    int[] jsonIds = new int[rules.length];
+    AhoCorasick.Builder b = new AhoCorasick.Builder();
+    JsonPathRules.Builder j = new JsonPathRules.Builder();
+    for (int i = 0; i < rules.length; i++) {
+      EnforcementRule r = rules[i];
+      literalIds[i] = isLiteral(r.type()) && !r.content().isEmpty() ? b.add(r.content()) : -1;
+      jsonIds[i] = JsonPathRules.isEvaluable(r) ? j.add(r) : -1;
+    }
+    return new EnforcementRuleSet(rules, literalIds, b.isEmpty() ? null : b.build(), jsonIds,
+        j.isEmpty() ? null : j.build(), regex);
+  }
+
+  private boolean sameRules(EnforcementRule[] other) {
+    if (other.length != rules.length) return false;
+    for (int i = 0; i < rules.length; i++) {
+      if (other[i] != rules[i]) return false;
+    }
+    return true;
+  }
+
+  public boolean isEmpty() {
+    return rules.length == 0;
+  }
+
+  public long version() {
+    return version;
+  }
+
+  RegexGuard regexGuard() {
+    return regex;
+  }
+
+  /** True when the outcome depends only on status, message length and body, never on headers. */
+  public boolean readsBodyOnly() {
+    return bodyOnly;
+  }
+
+  public boolean readsLength() {
+    return readsLength;
+  }
+
+  /** Evaluates the rules with AND/OR semantics; an empty set never reports enforcement. */
+  public boolean enforced(ResponseView view, AndOr mode) {
+    if (rules.length == 0 || view == null || view.response() == null) return false;
+
+    boolean andMode = mode == AndOr.AND;
+    boolean[] found = null;
+    boolean[] jsonFound = null;
+
+    for (int i = 0; i < rules.length; i++) {
+      EnforcementRule r = rules[i];
+      EnforcementRuleType t = r.type();
+      boolean matched = false;
+
+      if (literalIds[i] >= 0) {
+        if (found == null) found = scanLiterals(view.raw(), view.bodyOffset());
+        matched = found[literalIds[i]];
+      } else if (jsonIds[i] >= 0) {
+        if (jsonFound == null) {
+          byte[] raw = view.raw();
+          jsonFound = json.evaluate(raw, Math.min(view.bodyOffset(), raw.length), raw.length, regex);
+        }
+        matched = jsonFound[jsonIds[i]];
+      } else if (t == EnforcementRuleType.HEADERS_CONTAINS
+          || t == EnforcementRuleType.BODY_CONTAINS
+          || t == EnforcementRuleType.FULL_CONTAINS) {
+        // Empty literal: String.contains("") semantics.
+        matched = true;
+      } else if (t == EnforcementRuleType.STATUS_EQUALS) {
+        matched = numbers[i] == view.status();
+      } else if (t == EnforcementRuleType.HEADERS_REGEX) {
+        matched = regex.find(r.regex(), view.headers());
+      } else if (t == EnforcementRuleType.BODY_REGEX) {
+        matched = regex.find(r.regex(), view.body());
+      } else if (t == EnforcementRuleType.FULL_REGEX) {
+        matched = regex.find(r.regex(), view.full());
+      } else if (t == EnforcementRuleType.FULL_LENGTH_EQUALS) {
+        matched = numbers[i] == view.length();
+      }
+
+      if (r.inverse()) {
+        matched = !matched;
+      }
+
+      if (andMode) {
+        if (!matched) return false;
+      } else {
+        if (matched) return true;
+      }
+    }
+
+    return andMode;
+  }
+
+  /** One pass over the whole message; each hit is attributed to the regions it lies in. */
+  private boolean[] scanLiterals(byte[] raw, int bodyOffset) {
+    int n = literals.patternCount();
+    boolean[] found = new boolean[n];
+    int bodyStart = Math.max(0, Math.min(bodyOffset, raw.length));
+    int headersStart = statusLineEnd(raw, bodyStart);
+    // The blank line ending the header block is not part of any header.
+    int headersEnd = Math.max(headersStart, bodyStart - 2);
+    int[] remaining = {n};
+
+    literals.scan(raw, 0, raw.length, (id, start, end) -> {
+      if (found[id]) return false;
+      int region = regionOf[id];
+      boolean in = region == REGION_FULL
+          || (region == REGION_BODY && start >= bodyStart)
+          || (region == REGION_HEADERS && start >= headersStart && end <= headersEnd);
+      if (in) {
+        found[id] = true;
+        remaining[0]--;
+      }
+      return remaining[0] == 0;
+    });
+    return found;
+  }
+
+  /**
+   * The old comparison was String.valueOf(actual).equals(content.trim()), so only a canonical decimal
+   * (no sign, no leading zeros) can ever match.
+   */
+  private static long parseNumber(String content) {
+    String s = content == null ? "" : content.trim();
+    if (s.isEmpty() || s.length() > 18 || (s.length() > 1 && s.charAt(0) == '0')) return -1;
+    for (int i = 0; i < s.length(); i++) {
+      char ch = s.charAt(i);
+      if (ch < '0' || ch > '9') return -1;
+    }
+    return Long.parseLong(s);
+  }
+
+  private static int statusLineEnd(byte[] raw, int limit) {
+    for (int i = 0; i < limit; i++) {
+      if (raw[i] == '\n') return i + 1;
+    }
+    return limit;
+  }
+
+  private static boolean isLiteral(EnforcementRuleType t) {
+    return t == EnforcementRuleType.HEADERS_CONTAINS
+        || t == EnforcementRuleType.BODY_CONTAINS
+        || t == EnforcementRuleType.FULL_CONTAINS;
+  }
+
+  private static int regionFor(EnforcementRuleType t) {
+    if (t == EnforcementRuleType.HEADERS_CONTAINS) return REGION_HEADERS;
+    if (t == EnforcementRuleType.BODY_CONTAINS) return REGION_BODY;
+    return REGION_FULL;
+  }
+}
@@ -0,0 +1,240 @@
+package autorize.core;
+
+import autorize.model.InterceptionFilter;
+import autorize.model.InterceptionFilterType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Boolean expression over interception filter predicates.
+ *
+ * Grammar (keywords are case-insensitive; &&, || and ! are accepted as well):
+ * <pre>
+ *   expr    := and ( OR and )*
+ *   and     := unary ( AND unary )*
+ *   unary   := NOT unary | '(' expr ')' | leaf
+ *   leaf    := TYPE [ '(' [ "content" ] ')' ]
+ * </pre>
+ * TYPE is any message-level {@link InterceptionFilterType}, e.g.
+ * {@code (URL_CONTAINS("/api") AND ONLY_METHODS("POST")) OR REQ_HEADER_CONTAINS("X-Admin")}.
+ * Each leaf has the same pass semantics as the corresponding list filter. Tool and port filters act
+ * before a message exists and are rejected here.
+ */
+public final class FilterExpression {
+  abstract static class Node {
+  }
+
+  static final class Leaf extends Node {
+    final InterceptionFilter filter;
+
+    Leaf(InterceptionFilter filter) {
+      this.filter = filter;
+    }
+  }
+
+  static final class Not extends Node {
+    final Node child;
+
+    Not(Node child) {
+      this.child = child;
+    }
+  }
+
+  static final class And extends Node {
+    final List<Node> children;
+
+    And(List<Node> children) {
+      this.children = children;
+    }
+  }
+
+  static final class Or extends Node {
+    final List<Node> children;
+
+    Or(List<Node> children) {
+      this.children = children;
+    }
+  }
+
+  private final String text;
+  private final Node root;
+
+  private FilterExpression(String text, Node root) {
+    this.text = text;
+    this.root = root;
+  }
+
+  public String text() {
+    return text;
+  }
+
+  Node root() {
+    return root;
+  }
+
+  /**
+   * Parses an expression.
+   *
+   * @throws IllegalArgumentException with a position-annotated message when the text is malformed
+   */
+  public static FilterExpression parse(String text) {
+    String t = text == null ? "" : text;
+    Parser p = new Parser(t);
+    Node root = p.expr();
+    p.skipSpace();
+    if (p.pos < t.length()) throw p.error("unexpected '" + t.charAt(p.pos) + "'");
+    return new FilterExpression(t, root);
+  }
+
+  /** Null when the expression parses; otherwise the parse error message. */
+  public static String validate(String text) {
+    if (text == null || text.isBlank()) return null;
+    try {
+      parse(text);
+      return null;
+    } catch (IllegalArgumentException e) {
+      return e.getMessage();
+    }
+  }
+
+  private static final class Parser {
+    private final String s;
+    private int pos;
+
+    Parser(String s) {
+      this.s = s;
+    }
+
+    Node expr() {
+      List<Node> parts = new ArrayList<>();
+      parts.add(and());
+      while (keyword("OR", "||")) {
+        parts.add(and());
+      }
+      return parts.size() == 1 ? parts.get(0) : new Or(parts);
+    }
+
+    private Node and() {
+      List<Node> parts = new ArrayList<>();
+      parts.add(unary());
+      while (keyword("AND", "&&")) {
+        parts.add(unary());
+      }
+      return parts.size() == 1 ? parts.get(0) : new And(parts);
+    }
+
+    private Node unary() {
+      if (keyword("NOT", "!")) return new Not(unary());
+      skipSpace();
+      if (peek('(')) {
+        pos++;
+        Node inner = expr();
+        expect(')');
+        return inner;
+      }
+      return leaf();
+    }
+
+    private Node leaf() {
+      skipSpace();
+      int start = pos;
+      while (pos < s.length() && (Character.isLetterOrDigit(s.charAt(pos)) || s.charAt(pos) == '_')) pos++;
+      if (start == pos) {
+        throw error(pos < s.length() ? "expected a filter type" : "unexpected end of expression");
+      }
+      String name = s.substring(start, pos);
+      InterceptionFilterType type;
+      try {
+        type = InterceptionFilterType.valueOf(name.toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw error(start, "unknown filter type " + name);
+      }
+      if (type == InterceptionFilterType.IGNORE_PROXY
+          || type == InterceptionFilterType.IGNORE_TARGET
+          || type == InterceptionFilterType.DROP_PROXY_PORTS) {
+        throw error(start, type + " applies before a message exists; use the filter list");
+      }
+
+      String content = "";
+      skipSpace();
+      if (peek('(')) {
+        pos++;
+        skipSpace();
+        if (peek('"')) content = string();
+        expect(')');
+      }
+
+      InterceptionFilter f = new InterceptionFilter(type, content);
+      if (isRegexType(type) && !content.isEmpty() && f.regex() == null) {
+        throw error(start, "invalid regex for " + type);
+      }
+      return new Leaf(f);
+    }
+
+    private String string() {
+      int start = pos;
+      pos++;
+      StringBuilder sb = new StringBuilder();
+      while (pos < s.length()) {
+        char c = s.charAt(pos++);
+        if (c == '"') return sb.toString();
+        if (c == '\\' && pos < s.length()) {
+          char e = s.charAt(pos++);
+          sb.append(e == 'n' ? '\n' : e == 'r' ? '\r' : e == 't' ? '\t' : e);
+        } else {
+          sb.append(c);
+        }
+      }
+      throw error(start, "unterminated string");
+    }
+
+    private boolean keyword(String word, String symbol) {
+      skipSpace();
+      if (s.startsWith(symbol, pos)) {
+        pos += symbol.length();
+        return true;
+      }
+      int end = pos + word.length();
+      if (end <= s.length()
+          && s.regionMatches(true, pos, word, 0, word.length())
+          && (end == s.length() || !(Character.isLetterOrDigit(s.charAt(end)) || s.charAt(end) == '_'))) {
+        pos = end;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(char c) {
+      skipSpace();
+      if (!peek(c)) throw error("expected '" + c + "'");
+      pos++;
+    }
+
+    private boolean peek(char c) {
+      return pos < s.length() && s.charAt(pos) == c;
+    }
+
+    void skipSpace() {
+      while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+    }
+
+    IllegalArgumentException error(String msg) {
+      return error(pos, msg);
+    }
+
+    private IllegalArgumentException error(int at, String msg) {
+      return new IllegalArgumentException(msg + " at position " + (at + 1));
+    }
+  }
+
+  private static boolean isRegexType(InterceptionFilterType t) {
+    return t == InterceptionFilterType.URL_REGEX
+        || t == InterceptionFilterType.URL_NOT_REGEX
+        || t == InterceptionFilterType.REQ_BODY_REGEX
+        || t == InterceptionFilterType.REQ_BODY_NOT_REGEX
+        || t == InterceptionFilterType.RES_BODY_REGEX
+        || t == InterceptionFilterType.RES_BODY_NOT_REGEX;
+  }
+}
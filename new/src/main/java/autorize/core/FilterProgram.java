@@ -0,0 +1,541 @@
+package autorize.core;
+
+import autorize.model.InterceptionFilter;
+import autorize.model.InterceptionFilterType;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable, pre-compiled form of the interception filter list.
+ *
+ * Compiled once whenever the filter list changes (see AutorizeState). Method lists become bitmasks,
+ * proxy ports a BitSet, and checks run cheapest-first: method, URL, scope, headers, then bodies. Because
+ * the list has AND semantics the order does not change the outcome, and bodies are only decoded when
+ * every cheaper check has already passed. Body "contains" literals are compiled into one Aho-Corasick
+ * automaton per side, so all of them cost a single pass over the decoded body, which regex filters on
+ * the same side share.
+ *
+ * Each filter keeps live counters (evaluations, rejections, time spent). Only one run in
+ * {@link #TIME_EVERY} is timed, since a clock read costs as much as a cheap check. Every {@link #REORDER_INTERVAL}
+ * runs the order is re-ranked by expected cost per rejection, so a cheap filter that rejects most traffic
+ * moves ahead of an expensive one that rarely does. Counters survive recompilation for filters that did
+ * not change. Bodies above the large-body threshold are only examined up to it.
+ *
+ * An optional {@link FilterExpression} is ANDed with the list. It compiles into a tree of the same
+ * predicates, sharing the lazy message view and literal automata, with each AND/OR node testing its
+ * cheapest children first; the tree as a whole takes part in the adaptive ordering like one filter.
+ */
+public final class FilterProgram {
+  /** Returned by {@link #firstRejecting} when every filter passed. */
+  public static final int PASS = -1;
+  /** Returned by {@link #firstRejecting} when the filter expression rejected the exchange. */
+  public static final int EXPRESSION = -2;
+  /** Returned by {@link #firstRejecting} when there is no request or response to evaluate. */
+  public static final int NO_MESSAGE = -3;
+
+  static final int COST_METHOD = 0;
+  static final int COST_URL = 1;
+  static final int COST_URL_REGEX = 2;
+  static final int COST_SCOPE = 2;
+  static final int COST_HEADER = 3;
+  static final int COST_BODY = 4;
+  static final int COST_BODY_REGEX = 5;
+
+  // Assumed per-evaluation cost (ns) by cost class, used until a filter has enough samples.
+  private static final long[] PRIOR_NANOS = {100, 300, 2_000, 3_000, 50_000, 100_000};
+  private static final int MIN_TIMED = 8;
+  static final int TIME_EVERY = 8;
+  static final int REORDER_INTERVAL = 256;
+
+  private static final String[] KNOWN_METHODS = {
+      "GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "TRACE", "CONNECT"
+  };
+  private static final int OPTIONS_BIT = methodBit("OPTIONS");
+
+  private final Stats[] statsBySource;
+  private final Map<InterceptionFilter, Stats> statsByFilter;
+  private final boolean ignoreProxy;
+  private final boolean ignoreTarget;
+  private final BitSet dropPorts;
+  private final AhoCorasick reqBodyLiterals;
+  private final AhoCorasick resBodyLiterals;
+  private final FilterExpression expression;
+  private final Stats expressionStats;
+  private final int bodyWindow;
+  private final AtomicLong runs = new AtomicLong();
+  private volatile Step[] order;
+
+  private FilterProgram(Step[] order, Stats[] statsBySource, Map<InterceptionFilter, Stats> statsByFilter,
+                        boolean ignoreProxy, boolean ignoreTarget, BitSet dropPorts,
+                        AhoCorasick reqBodyLiterals, AhoCorasick resBodyLiterals,
+                        FilterExpression expression, Stats expressionStats, int bodyWindow) {
+    this.order = order;
+    this.statsBySource = statsBySource;
+    this.statsByFilter = statsByFilter;
+    this.ignoreProxy = ignoreProxy;
+    this.ignoreTarget = ignoreTarget;
+    this.dropPorts = dropPorts;
+    this.reqBodyLiterals = reqBodyLiterals;
+    this.resBodyLiterals = resBodyLiterals;
+    this.expression = expression;
+    this.expressionStats = expressionStats;
+    this.bodyWindow = bodyWindow;
+  }
+
+  /**
+   * Compiles the list, carrying counters over from {@code previous} for filters that are unchanged.
+   * Regex filters run through {@code regex}, which applies the configured engine and time budget.
+   * {@code expression} may be null. Body filters see at most the first {@code bodyWindow} bytes.
+   */
+  public static FilterProgram compile(List<InterceptionFilter> filters, FilterExpression expression,
+                                      FilterProgram previous, RegexGuard regex, int bodyWindow) {
+    List<Step> steps = new ArrayList<>();
+    boolean ignoreProxy = false;
+    boolean ignoreTarget = false;
+    BitSet ports = new BitSet();
+    int n = filters == null ? 0 : filters.size();
+    Stats[] statsBySource = new Stats[n];
+    Map<InterceptionFilter, Stats> statsByFilter = new IdentityHashMap<>();
+    AhoCorasick.Builder reqLits = new AhoCorasick.Builder();
+    AhoCorasick.Builder resLits = new AhoCorasick.Builder();
+
+    for (int i = 0; i < n; i++) {
+      InterceptionFilter f = filters.get(i);
+      InterceptionFilterType t = f.type();
+      if (t == InterceptionFilterType.IGNORE_PROXY) {
+        ignoreProxy = true;
+      } else if (t == InterceptionFilterType.IGNORE_TARGET) {
+        ignoreTarget = true;
+      } else if (t == InterceptionFilterType.DROP_PROXY_PORTS) {
+        addPorts(ports, f.content());
+      } else {
+        Step s = step(i, f, regex, reqLits, resLits);
+        if (s == null) continue;
+        Stats old = previous == null ? null : previous.statsByFilter.get(f);
+        s.stats = old != null && !statsByFilter.containsKey(f) ? old : new Stats();
+        statsBySource[i] = s.stats;
+        statsByFilter.put(f, s.stats);
+        steps.add(s);
+      }
+    }
+
+    Stats expressionStats = null;
+    if (expression != null) {
+      Step root = node(expression.root(), regex, reqLits, resLits);
+      boolean same = previous != null && previous.expression != null
+          && previous.expression.text().equals(expression.text());
+      root.stats = expressionStats = same ? previous.expressionStats : new Stats();
+      steps.add(root);
+    }
+
+    Step[] order = steps.toArray(new Step[0]);
+    rank(order);
+    return new FilterProgram(order, statsBySource, statsByFilter, ignoreProxy, ignoreTarget, ports,
+        reqLits.isEmpty() ? null : reqLits.build(), resLits.isEmpty() ? null : resLits.build(),
+        expression, expressionStats, Math.max(0, bodyWindow));
+  }
+
+  /** Counters for the filter at {@code index} in the user's list, or null for tool/port filters. */
+  public Stats stats(int index) {
+    return index >= 0 && index < statsBySource.length ? statsBySource[index] : null;
+  }
+
+  /** Counters for the filter expression, or null when there is none. */
+  public Stats expressionStats() {
+    return expressionStats;
+  }
+
+  public boolean ignoresTool(ToolType toolType) {
+    if (toolType == null) return false;
+    return (ignoreProxy && toolType == ToolType.PROXY) || (ignoreTarget && toolType == ToolType.TARGET);
+  }
+
+  public boolean dropsPort(int port) {
+    return port > 0 && dropPorts.get(port);
+  }
+
+  /**
+   * Evaluates the program against one exchange.
+   *
+   * @return {@link #PASS}, {@link #EXPRESSION}, {@link #NO_MESSAGE}, or the index (in the user's filter list) of the first
+   *     filter that rejected it
+   */
+  public int firstRejecting(HttpRequest req, HttpResponse res, Predicate<HttpRequest> inScope) {
+    if (req == null || res == null) return NO_MESSAGE;
+    Message m = new Message(this, req, res, inScope);
+    long run = runs.incrementAndGet();
+    boolean timed = run % TIME_EVERY == 0;
+    int rejectedBy = PASS;
+    for (Step s : order) {
+      boolean ok;
+      if (timed) {
+        long t0 = System.nanoTime();
+        ok = s.test(m);
+        s.stats.record(!ok, System.nanoTime() - t0);
+      } else {
+        ok = s.test(m);
+        s.stats.record(!ok);
+      }
+      if (!ok) {
+        rejectedBy = s.sourceIndex;
+        break;
+      }
+    }
+    if (run % REORDER_INTERVAL == 0) {
+      Step[] next = order.clone();
+      rank(next);
+      order = next;
+    }
+    return rejectedBy;
+  }
+
+  /**
+   * Sorts steps by expected cost per rejection (ascending), the optimal order for independent AND-ed
+   * predicates. Filters without enough samples use their cost class; ties keep the user's order.
+   */
+  private static void rank(Step[] steps) {
+    Map<Step, Double> score = new IdentityHashMap<>();
+    for (Step s : steps) {
+      long evals = s.stats.evaluations.sum();
+      long timed = s.stats.timed.sum();
+      double nanos = timed >= MIN_TIMED
+          ? Math.max(1.0, s.stats.nanos.sum() / (double) timed)
+          : PRIOR_NANOS[s.cost];
+      double rejectRate = (s.stats.rejections.sum() + 1.0) / (evals + 2.0);
+      score.put(s, nanos / rejectRate);
+    }
+    Arrays.sort(steps, Comparator.comparingDouble((Step s) -> score.get(s))
+        .thenComparingInt(s -> s.sourceIndex));
+  }
+
+  /**
+   * Compiles an expression node. AND and OR short-circuit and the predicates have no side effects, so
+   * children are reordered cheapest-first; a node costs as much as its most expensive child.
+   */
+  private static Step node(FilterExpression.Node n, RegexGuard regex,
+                           AhoCorasick.Builder reqLits, AhoCorasick.Builder resLits) {
+    if (n instanceof FilterExpression.Leaf) {
+      return step(EXPRESSION, ((FilterExpression.Leaf) n).filter, regex, reqLits, resLits);
+    }
+    if (n instanceof FilterExpression.Not) {
+      Step c = node(((FilterExpression.Not) n).child, regex, reqLits, resLits);
+      return new Step(EXPRESSION, c.cost) {
+        boolean test(Message m) { return !c.test(m); }
+      };
+    }
+
+    boolean all = n instanceof FilterExpression.And;
+    List<FilterExpression.Node> kids = all
+        ? ((FilterExpression.And) n).children
+        : ((FilterExpression.Or) n).children;
+    Step[] cs = new Step[kids.size()];
+    int cost = COST_METHOD;
+    for (int i = 0; i < cs.length; i++) {
+      cs[i] = node(kids.get(i), regex, reqLits, resLits);
+      cost = Math.max(cost, cs[i].cost);
+    }
+    Arrays.sort(cs, Comparator.comparingInt((Step s) -> s.cost));
+    if (all) {
+      return new Step(EXPRESSION, cost) {
+        boolean test(Message m) {
+          for (Step c : cs) {
+            if (!c.test(m)) return false;
+          }
+          return true;
+        }
+      };
+    }
+    return new Step(EXPRESSION, cost) {
+      boolean test(Message m) {
+        for (Step c : cs) {
+          if (c.test(m)) return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  private static Step step(int index, InterceptionFilter f, RegexGuard regex,
+                           AhoCorasick.Builder reqLits, AhoCorasick.Builder resLits) {
+    String c = f.content();
+    Pattern p = f.regex();
+    // Body literals resolve to an automaton id; an empty literal is contained in every body.
+    int reqId = c.isEmpty() ? -1 : isReqBodyLiteral(f.type()) ? reqLits.add(c) : -1;
+    int resId = c.isEmpty() ? -1 : isResBodyLiteral(f.type()) ? resLits.add(c) : -1;
+    return switch (f.type()) {
+      case SCOPE_ONLY -> new Step(index, COST_SCOPE) {
+        boolean test(Message m) { return m.inScope.test(m.req); }
+      };
+      case URL_CONTAINS -> new Step(index, COST_URL) {
+        boolean test(Message m) { String u = m.url(); return u != null && u.contains(c); }
+      };
+      case URL_NOT_CONTAINS -> new Step(index, COST_URL) {
+        boolean test(Message m) { String u = m.url(); return u == null || !u.contains(c); }
+      };
+      case URL_REGEX -> new Step(index, COST_URL_REGEX) {
+        boolean test(Message m) { String u = m.url(); return p != null && u != null && regex.find(p, u); }
+      };
+      case URL_NOT_REGEX -> new Step(index, COST_URL_REGEX) {
+        boolean test(Message m) { String u = m.url(); return p == null || u == null || !regex.find(p, u); }
+      };
+      case REQ_BODY_CONTAINS -> new Step(index, COST_BODY) {
+        boolean test(Message m) { return reqId < 0 || m.reqHits().get(reqId); }
+      };
+      case REQ_BODY_NOT_CONTAINS -> new Step(index, COST_BODY) {
+        boolean test(Message m) { return reqId >= 0 && !m.reqHits().get(reqId); }
+      };
+      case REQ_BODY_REGEX -> new Step(index, COST_BODY_REGEX) {
+        boolean test(Message m) { String b = m.reqBody(); return p != null && b != null && regex.find(p, b); }
+      };
+      case REQ_BODY_NOT_REGEX -> new Step(index, COST_BODY_REGEX) {
+        boolean test(Message m) { String b = m.reqBody(); return p == null || b == null || !regex.find(p, b); }
+      };
+      case RES_BODY_CONTAINS -> new Step(index, COST_BODY) {
+        boolean test(Message m) { return resId < 0 || m.resHits().get(resId); }
+      };
+      case RES_BODY_NOT_CONTAINS -> new Step(index, COST_BODY) {
+        boolean test(Message m) { return resId >= 0 && !m.resHits().get(resId); }
+      };
+      case RES_BODY_REGEX -> new Step(index, COST_BODY_REGEX) {
+        boolean test(Message m) { String b = m.resBody(); return p != null && b != null && regex.find(p, b); }
+      };
+      case RES_BODY_NOT_REGEX -> new Step(index, COST_BODY_REGEX) {
+        boolean test(Message m) { String b = m.resBody(); return p == null || b == null || !regex.find(p, b); }
+      };
+      case REQ_HEADER_CONTAINS -> new Step(index, COST_HEADER) {
+        boolean test(Message m) { return anyHeaderContains(m.req.headers(), c); }
+      };
+      case REQ_HEADER_NOT_CONTAINS -> new Step(index, COST_HEADER) {
+        boolean test(Message m) { return !anyHeaderContains(m.req.headers(), c); }
+      };
+      case RES_HEADER_CONTAINS -> new Step(index, COST_HEADER) {
+        boolean test(Message m) { return anyHeaderContains(m.res.headers(), c); }
+      };
+      case RES_HEADER_NOT_CONTAINS -> new Step(index, COST_HEADER) {
+        boolean test(Message m) { return !anyHeaderContains(m.res.headers(), c); }
+      };
+      case ONLY_METHODS -> {
+        MethodSet ms = MethodSet.parse(c);
+        yield new Step(index, COST_METHOD) {
+          boolean test(Message m) { return ms.contains(m); }
+        };
+      }
+      case IGNORE_METHODS -> {
+        MethodSet ms = MethodSet.parse(c);
+        yield new Step(index, COST_METHOD) {
+          boolean test(Message m) { return !ms.contains(m); }
+        };
+      }
+      case IGNORE_OPTIONS -> new Step(index, COST_METHOD) {
+        boolean test(Message m) { return m.methodBit() != OPTIONS_BIT; }
+      };
+      case IGNORE_PROXY, IGNORE_TARGET, DROP_PROXY_PORTS -> null;
+    };
+  }
+
+  private static boolean isReqBodyLiteral(InterceptionFilterType t) {
+    return t == InterceptionFilterType.REQ_BODY_CONTAINS || t == InterceptionFilterType.REQ_BODY_NOT_CONTAINS;
+  }
+
+  private static boolean isResBodyLiteral(InterceptionFilterType t) {
+    return t == InterceptionFilterType.RES_BODY_CONTAINS || t == InterceptionFilterType.RES_BODY_NOT_CONTAINS;
+  }
+
+  private static boolean anyHeaderContains(List<HttpHeader> headers, String c) {
+    if (headers == null) return false;
+    for (HttpHeader h : headers) {
+      if (h.toString().contains(c)) return true;
+    }
+    return false;
+  }
+
+  static int methodBit(String method) {
+    if (method == null) return 0;
+    for (int i = 0; i < KNOWN_METHODS.length; i++) {
+      if (KNOWN_METHODS[i].equalsIgnoreCase(method)) return 1 << i;
+    }
+    return 0;
+  }
+
+  private static void addPorts(BitSet ports, String s) {
+    if (s == null) return;
+    for (String p : s.split(",")) {
+      try {
+        String t = p.trim();
+        if (t.isEmpty()) continue;
+        int port = Integer.parseInt(t);
+        if (port > 0 && port <= 65535) ports.set(port);
+      } catch (NumberFormatException ignored) {
+      }
+    }
+  }
+
+  /** Method list compiled to a bitmask over the standard methods, plus a set for anything else. */
+  static final class MethodSet {
+    private final int mask;
+    private final Set<String> others;
+
+    private MethodSet(int mask, Set<String> others) {
+      this.mask = mask;
+      this.others = others;
+    }
+
+    static MethodSet parse(String content) {
+      int mask = 0;
+      Set<String> others = new HashSet<>();
+      for (String raw : (content == null ? "" : content).split("[\\r\\n,]+")) {
+        String m = raw.trim();
+        if (m.isEmpty()) continue;
+        int bit = methodBit(m);
+        if (bit != 0) {
+          mask |= bit;
+        } else {
+          others.add(m.toUpperCase(Locale.ROOT));
+        }
+      }
+      return new MethodSet(mask, others);
+    }
+
+    boolean contains(Message m) {
+      int bit = m.methodBit();
+      if (bit != 0) return (mask & bit) != 0;
+      String method = m.method();
+      return method != null && !others.isEmpty() && others.contains(method.toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /** Live per-filter counters; safe to read from the UI while traffic is being evaluated. */
+  public static final class Stats {
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder timed = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    void record(boolean rejected) {
+      evaluations.increment();
+      if (rejected) rejections.increment();
+    }
+
+    void record(boolean rejected, long elapsedNanos) {
+      record(rejected);
+      timed.increment();
+      nanos.add(elapsedNanos);
+    }
+
+    public long evaluations() {
+      return evaluations.sum();
+    }
+
+    public long rejections() {
+      return rejections.sum();
+    }
+
+    public double avgMicros() {
+      long n = timed.sum();
+      return n == 0 ? 0.0 : nanos.sum() / 1000.0 / n;
+    }
+  }
+
+  abstract static class Step {
+    final int sourceIndex;
+    final int cost;
+    Stats stats;
+
+    Step(int sourceIndex, int cost) {
+      this.sourceIndex = sourceIndex;
+      this.cost = cost;
+    }
+
+    abstract boolean test(Message m);
+  }
+
+  /** Per-exchange view with lazily computed fields, so unused parts are never decoded. */
+  static final class Message {
+    final FilterProgram program;
+    final HttpRequest req;
+    final HttpResponse res;
+    final Predicate<HttpRequest> inScope;
+
+    private String url;
+    private String method;
+    private int methodBit = -1;
+    private String reqBody;
+    private String resBody;
+    private BitSet reqHits;
+    private BitSet resHits;
+
+    Message(FilterProgram program, HttpRequest req, HttpResponse res, Predicate<HttpRequest> inScope) {
+      this.program = program;
+      this.req = req;
+      this.res = res;
+      this.inScope = inScope;
+    }
+
+    String url() {
+      if (url == null) url = req.url();
+      return url;
+    }
+
+    String method() {
+      if (method == null) method = req.method();
+      return method;
+    }
+
+    int methodBit() {
+      if (methodBit < 0) methodBit = FilterProgram.methodBit(method());
+      return methodBit;
+    }
+
+    String reqBody() {
+      if (reqBody == null) {
+        ByteArray b = req.body();
+        reqBody = b != null && b.length() > program.bodyWindow ? windowed(b).toString() : req.bodyToString();
+      }
+      return reqBody;
+    }
+
+    String resBody() {
+      if (resBody == null) {
+        try {
+          ByteArray b = res.body();
+          resBody = b != null && b.length() > program.bodyWindow ? windowed(b).toString() : res.bodyToString();
+        } catch (Throwable t) {
+          resBody = "";
+        }
+      }
+      return resBody;
+    }
+
+    BitSet reqHits() {
+      if (reqHits == null) reqHits = program.reqBodyLiterals.findAll(reqBody());
+      return reqHits;
+    }
+
+    BitSet resHits() {
+      if (resHits == null) resHits = program.resBodyLiterals.findAll(resBody());
+      return resHits;
+    }
+
+    private ByteArray windowed(ByteArray body) {
+      return body == null || body.length() <= program.bodyWindow ? body : body.subArray(0, program.bodyWindow);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package autorize.core;
+
+import autorize.model.MatchReplaceRule;
+import autorize.model.MatchReplaceType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * The JSON_SET / JSON_REMOVE / JSON_RENAME rules of one profile, applied to a replay body in one pass.
+ *
+ * A JSON body is streamed from a JsonParser into a JsonGenerator, so no tree is built and memory is
+ * bounded by the nesting depth. Paths use the syntax of JsonPathRules ({@code $.user.id},
+ * {@code items[*].owner}, {@code ..tenantId} or {@code $..tenantId}); when several rules name the same
+ * value, the first one wins. JSON_SET on {@code $} replaces the whole body; JSON_REMOVE on it is ignored,
+ * as removing the root would send an empty body. JSON_SET writes its operand as JSON when it is a valid JSON value ({@code 42}, {@code true},
+ * {@code "x"}, {@code {"a":1}}) and as a string otherwise; JSON_RENAME gives a key a new name. Untouched
+ * values are copied exactly, but whitespace between tokens is not kept. A body that does not parse is
+ * left as it was.
+ *
+ * A form-encoded body is edited the same way, by parameter name: rules whose path is a single key
+ * ({@code $.user} or {@code user}) set, remove or rename that parameter, URL-encoding what they write.
+ */
+final class JsonBodyEdits {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  private final MatchReplaceType[] types;
+  // Path hash, or key hash when anyDepth is set.
+  private final long[] targets;
+  private final boolean[] anyDepth;
+  // The parameter a rule edits in a form body; null when its path has more than one segment.
+  private final String[] formNames;
+  private final String[] operands;
+
+  private JsonBodyEdits(List<MatchReplaceRule> rules) {
+    int n = rules.size();
+    this.types = new MatchReplaceType[n];
+    this.targets = new long[n];
+    this.anyDepth = new boolean[n];
+    this.formNames = new String[n];
+    this.operands = new String[n];
+    for (int i = 0; i < n; i++) {
+      MatchReplaceRule r = rules.get(i);
+      String path = r.match().trim();
+      types[i] = r.type();
+      String key = JsonStructure.anyDepthKey(path);
+      anyDepth[i] = key != null;
+      targets[i] = anyDepth[i] ? JsonStructure.nameHash(key) : JsonStructure.pathHash(path);
+      if (key == null) key = path.startsWith("$.") ? path.substring(2) : path.equals("$") ? "" : path;
+      formNames[i] = key.isEmpty() || key.indexOf('.') >= 0 || key.indexOf('[') >= 0 ? null : key;
+      operands[i] = r.replace();
+    }
+  }
+
+  /**
+   * Returns the edited body as a byte string (see RequestRewriter), or {@code body} itself when it is
+   * neither JSON nor a form, or nothing matched.
+   *
+   * @param form   whether the request declares a form-encoded body
+   * @param values resolves session placeholders in the operands
+   */
+  String apply(String body, boolean form, UnaryOperator<String> values) {
+    String[] ops = new String[operands.length];
+    for (int i = 0; i < ops.length; i++) {
+      ops[i] = values.apply(operands[i]);
+    }
+    int first = 0;
+    while (first < body.length() && Character.isWhitespace(body.charAt(first))) first++;
+    if (first < body.length() && (body.charAt(first) == '{' || body.charAt(first) == '[')) {
+      boolean[] literal = new boolean[ops.length];
+      for (int i = 0; i < ops.length; i++) {
+        literal[i] = types[i] == MatchReplaceType.JSON_SET && isJsonValue(ops[i]);
+      }
+      return applyJson(body, ops, literal);
+    }
+    return form ? applyForm(body, ops) : body;
+  }
+
+  private String applyJson(String body, String[] ops, boolean[] literal) {
+    byte[] in = body.getBytes(StandardCharsets.ISO_8859_1);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(in.length + 64);
+    boolean edited = false;
+    long[] paths = new long[16];
+    int depth = 0;
+
+    try (JsonParser p = FACTORY.createParser(in); JsonGenerator g = FACTORY.createGenerator(out)) {
+      JsonToken t;
+      while ((t = p.nextToken()) != null) {
+        if (t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) {
+          depth--;
+          g.copyCurrentEvent(p);
+          continue;
+        }
+        long at;
+        long name = 0;
+        String fieldName = null;
+        if (t == JsonToken.FIELD_NAME) {
+          fieldName = p.currentName();
+          name = JsonStructure.nameHash(fieldName);
+          at = JsonStructure.child(paths[depth - 1], name);
+          t = p.nextToken();
+        } else if (depth > 0) {
+          at = JsonStructure.child(paths[depth - 1], JsonStructure.ELEMENT);
+        } else {
+          at = JsonStructure.ROOT;
+        }
+
+        int rule = find(at, fieldName != null, name);
+        MatchReplaceType type = rule < 0 ? null : types[rule];
+        if (type == MatchReplaceType.JSON_REMOVE) {
+          p.skipChildren();
+          edited = true;
+          continue;
+        }
+        if (fieldName != null) {
+          if (type == MatchReplaceType.JSON_RENAME) {
+            fieldName = ops[rule];
+            edited = true;
+          }
+          g.writeFieldName(fieldName);
+        }
+        if (type == MatchReplaceType.JSON_SET) {
+          if (literal[rule]) {
+            g.writeRawValue(ops[rule]);
+          } else {
+            g.writeString(ops[rule]);
+          }
+          p.skipChildren();
+          edited = true;
+          continue;
+        }
+
+        g.copyCurrentEventExact(p);
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
+          if (depth == paths.length) paths = Arrays.copyOf(paths, depth * 2);
+          paths[depth++] = at;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // Not JSON after all, or malformed: send the body unchanged.
+      return body;
+    }
+    return edited ? new String(out.toByteArray(), StandardCharsets.ISO_8859_1) : body;
+  }
+
+  // First rule naming this value; RENAME only applies to object members, REMOVE never to the root.
+  private int find(long at, boolean named, long name) {
+    for (int i = 0; i < types.length; i++) {
+      if (anyDepth[i] ? !named || name != targets[i] : at != targets[i]) continue;
+      if (types[i] == MatchReplaceType.JSON_RENAME && !named) continue;
+      if (types[i] == MatchReplaceType.JSON_REMOVE && at == JsonStructure.ROOT) continue;
+      return i;
+    }
+    return -1;
+  }
+
+  private static boolean isJsonValue(String text) {
+    try (JsonParser v = FACTORY.createParser(text)) {
+      if (v.nextToken() == null) return false;
+      v.skipChildren();
+      return v.nextToken() == null;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private String applyForm(String body, String[] ops) {
+    StringBuilder sb = new StringBuilder(body.length() + 64);
+    boolean edited = false;
+    int from = 0;
+    while (from <= body.length()) {
+      int amp = body.indexOf('&', from);
+      if (amp < 0) amp = body.length();
+      String pair = body.substring(from, amp);
+      from = amp + 1;
+      int eq = pair.indexOf('=');
+      int rule = pair.isEmpty() ? -1 : findForm(decode(eq < 0 ? pair : pair.substring(0, eq)));
+      if (rule < 0) {
+        append(sb, pair);
+        continue;
+      }
+      edited = true;
+      if (types[rule] == MatchReplaceType.JSON_REMOVE) continue;
+      if (types[rule] == MatchReplaceType.JSON_RENAME) {
+        append(sb, encode(ops[rule]) + (eq < 0 ? "" : pair.substring(eq)));
+      } else {
+        append(sb, (eq < 0 ? pair : pair.substring(0, eq)) + "=" + encode(ops[rule]));
+      }
+    }
+    return edited ? sb.toString() : body;
+  }
+
+  private int findForm(String name) {
+    for (int i = 0; i < types.length; i++) {
+      if (name.equals(formNames[i])) return i;
+    }
+    return -1;
+  }
+
+  private static void append(StringBuilder sb, String pair) {
+    if (sb.length() > 0) sb.append('&');
+    sb.append(pair);
+  }
+
+  // Byte strings in, byte strings out: URL encoding is pure ASCII.
+  private static String encode(String text) {
+    return URLEncoder.encode(text, StandardCharsets.UTF_8);
+  }
+
+  private static String decode(String raw) {
+    String utf8 = new String(raw.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+    try {
+      return URLDecoder.decode(utf8, StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return utf8;
+    }
+  }
+
+  static final class Builder {
+    private final List<MatchReplaceRule> rules = new ArrayList<>();
+
+    void add(MatchReplaceRule rule) {
+      rules.add(rule);
+    }
+
+    boolean isEmpty() {
+      return rules.isEmpty();
+    }
+
+    JsonBodyEdits build() {
+      return new JsonBodyEdits(rules);
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package autorize.core;
+
+import autorize.model.EnforcementRule;
+import autorize.model.EnforcementRuleType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The JSON_PATH_* rules of one rule set, evaluated together in a single streaming pass over the body.
+ *
+ * Paths use the ignore-path syntax of JsonStructure: {@code $.error.code}, {@code errors[*].extensions.code}
+ * (any index stands for every element) or {@code ..code} / {@code $..code} for a key at any depth. A rule holds when any
+ * value at its path exists / equals the operand / matches the regex; scalars are compared by their JSON
+ * text (strings unquoted), objects and arrays only satisfy "exists". No tree is built, the text of a
+ * value is only materialized when a rule's path is reached, and parsing stops as soon as every rule holds.
+ * A body that is not JSON matches nothing; in a malformed one, matches before the syntax error count.
+ */
+final class JsonPathRules {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  private final EnforcementRuleType[] types;
+  // Path hash, or key hash when anyDepth is set.
+  private final long[] targets;
+  private final boolean[] anyDepth;
+  private final String[] values;
+  private final Pattern[] patterns;
+
+  private JsonPathRules(List<EnforcementRule> rules) {
+    int n = rules.size();
+    this.types = new EnforcementRuleType[n];
+    this.targets = new long[n];
+    this.anyDepth = new boolean[n];
+    this.values = new String[n];
+    this.patterns = new Pattern[n];
+    for (int i = 0; i < n; i++) {
+      EnforcementRule r = rules.get(i);
+      String path = r.jsonPath();
+      types[i] = r.type();
+      String key = JsonStructure.anyDepthKey(path);
+      anyDepth[i] = key != null;
+      targets[i] = anyDepth[i] ? JsonStructure.nameHash(key) : JsonStructure.pathHash(path);
+      values[i] = r.jsonValue();
+      patterns[i] = r.regex();
+    }
+  }
+
+  /** Whether a rule can ever hold; rules without a path or operand are left out of the pass. */
+  static boolean isEvaluable(EnforcementRule r) {
+    if (!EnforcementRule.isJsonPath(r.type()) || r.jsonPath().isEmpty()) return false;
+    if (r.type() == EnforcementRuleType.JSON_PATH_EQUALS) return r.jsonValue() != null;
+    if (r.type() == EnforcementRuleType.JSON_PATH_REGEX) return r.regex() != null;
+    return true;
+  }
+
+  int size() {
+    return types.length;
+  }
+
+  /** One flag per rule, in the order they were added. */
+  boolean[] evaluate(byte[] data, int from, int to, RegexGuard regex) {
+    boolean[] found = new boolean[types.length];
+    if (from >= to) return found;
+    int remaining = types.length;
+    long[] paths = new long[16];
+    int depth = 0;
+
+    try (JsonParser p = FACTORY.createParser(data, from, to - from)) {
+      JsonToken t;
+      while ((t = p.nextToken()) != null) {
+        if (t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) {
+          depth--;
+          continue;
+        }
+        long at;
+        long name = 0;
+        boolean named = false;
+        if (t == JsonToken.FIELD_NAME) {
+          name = JsonStructure.nameHash(p.currentName());
+          named = true;
+          at = JsonStructure.child(paths[depth - 1], name);
+          t = p.nextToken();
+        } else if (depth > 0) {
+          at = JsonStructure.child(paths[depth - 1], JsonStructure.ELEMENT);
+        } else {
+          at = JsonStructure.ROOT;
+        }
+
+        String text = null;
+        for (int i = 0; i < types.length; i++) {
+          if (found[i]) continue;
+          if (anyDepth[i] ? !named || name != targets[i] : at != targets[i]) continue;
+          boolean hit;
+          if (types[i] == EnforcementRuleType.JSON_PATH_EXISTS) {
+            hit = true;
+          } else if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
+            hit = false;
+          } else {
+            if (text == null) text = p.getText();
+            hit = types[i] == EnforcementRuleType.JSON_PATH_EQUALS
+                ? values[i].equals(text)
+                : regex.find(patterns[i], text);
+          }
+          if (hit) {
+            found[i] = true;
+            if (--remaining == 0) return found;
+          }
+        }
+
+        if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) {
+          if (depth == paths.length) paths = Arrays.copyOf(paths, depth * 2);
+          paths[depth++] = at;
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      // Not JSON, or malformed past this point: keep what was found.
+    }
+    return found;
+  }
+
+  static final class Builder {
+    private final List<EnforcementRule> rules = new ArrayList<>();
+
+    /** Returns the rule's index in the result of {@link JsonPathRules#evaluate}. */
+    int add(EnforcementRule rule) {
+      rules.add(rule);
+      return rules.size() - 1;
+    }
+
+    boolean isEmpty() {
+      return rules.isEmpty();
+    }
+
+    JsonPathRules build() {
+      return new JsonPathRules(rules);
+    }
+  }
+}
@@ -0,0 +1,248 @@
+package autorize.core;
+
+import autorize.model.Fingerprint;
+import autorize.model.NoiseMask;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structural fingerprint of a JSON body, built by streaming it with a JsonParser (no tree is built).
+ *
+ * Every value contributes one feature: the hash of its path (object keys, array elements collapsed to
+ * [*]) and its type, plus a hash of the value itself when values are included. Features are summed, so
+ * key order, array order and whitespace do not matter. Memory is bounded by the nesting depth; string
+ * values are only looked at when they are hashed, and then through the parser's own buffer.
+ *
+ * Ignore paths are dotted paths such as {@code $.meta.requestId} or {@code data[*].updatedAt}; a path
+ * starting with {@code ..} or {@code $..} names a key to ignore at any depth ({@code ..csrf}). Ignored values and
+ * everything below them are skipped, as are the paths an endpoint's NoiseMask marks as volatile.
+ */
+public final class JsonStructure {
+  private static final JsonFactory FACTORY = new JsonFactory();
+
+  static final long ROOT = 0x6a09e667f3bcc908L;
+  static final long ELEMENT = 0xbb67ae8584caa73bL;
+
+  private static final int OBJECT = 1;
+  private static final int ARRAY = 2;
+  private static final int STRING = 3;
+  private static final int NUMBER = 4;
+  private static final int BOOLEAN = 5;
+  private static final int NULL = 6;
+
+  private final String ignorePaths;
+  private final boolean hashValues;
+  // Sorted for binary search; usually empty or a handful of entries.
+  private final long[] ignoredPaths;
+  private final long[] ignoredNames;
+
+  private JsonStructure(String ignorePaths, boolean hashValues, long[] ignoredPaths, long[] ignoredNames) {
+    this.ignorePaths = ignorePaths;
+    this.hashValues = hashValues;
+    this.ignoredPaths = ignoredPaths;
+    this.ignoredNames = ignoredNames;
+  }
+
+  /**
+   * @param ignorePaths comma- or newline-separated paths; blanks are skipped
+   * @param hashValues  include scalar values in the features, not only paths and types
+   */
+  public static JsonStructure compile(String ignorePaths, boolean hashValues) {
+    List<Long> paths = new ArrayList<>();
+    List<Long> names = new ArrayList<>();
+    String text = ignorePaths == null ? "" : ignorePaths;
+    for (String raw : text.split("[,\\n]")) {
+      String p = raw.trim();
+      if (p.isEmpty()) continue;
+      String key = anyDepthKey(p);
+      if (key != null) {
+        names.add(nameHash(key));
+      } else {
+        paths.add(pathHash(p));
+      }
+    }
+    return new JsonStructure(text, hashValues, sorted(paths), sorted(names));
+  }
+
+  public String ignorePaths() {
+    return ignorePaths;
+  }
+
+  public boolean hashValues() {
+    return hashValues;
+  }
+
+  /** Null when data[from, to) is not well-formed JSON. */
+  public Fingerprint fingerprint(byte[] data, int from, int to) {
+    return fingerprint(data, from, to, NoiseMask.NONE);
+  }
+
+  /** As above, leaving out the paths the endpoint's noise mask calls volatile. */
+  public Fingerprint fingerprint(byte[] data, int from, int to, NoiseMask noise) {
+    Fingerprint.Builder out = new Fingerprint.Builder();
+    boolean ok = walk(data, from, to, noise, hashValues, (path, type, value) -> out.add(feature(path, type, value)));
+    return ok ? out.build() : null;
+  }
+
+  /**
+   * Paths whose values differ between two bodies of the same endpoint (values are always compared
+   * here, whatever {@link #hashValues()} says). Empty unless both bodies are well-formed JSON.
+   */
+  public long[] volatilePaths(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+    Map<Long, Long> valuesA = new HashMap<>();
+    Map<Long, Long> valuesB = new HashMap<>();
+    if (!walk(a, aFrom, aTo, NoiseMask.NONE, true, (path, type, value) ->
+        valuesA.merge(path, feature(path, type, value), Long::sum))) {
+      return new long[0];
+    }
+    if (!walk(b, bFrom, bTo, NoiseMask.NONE, true, (path, type, value) ->
+        valuesB.merge(path, feature(path, type, value), Long::sum))) {
+      return new long[0];
+    }
+    Set<Long> paths = new HashSet<>();
+    valuesA.forEach((path, sum) -> {
+      if (!sum.equals(valuesB.get(path))) paths.add(path);
+    });
+    valuesB.forEach((path, sum) -> {
+      if (!valuesA.containsKey(path)) paths.add(path);
+    });
+    long[] out = new long[paths.size()];
+    int i = 0;
+    for (long p : paths) out[i++] = p;
+    return out;
+  }
+
+  private interface Visitor {
+    void value(long path, int type, long value);
+  }
+
+  // Streams data[from, to) and reports every kept value; false when it is not well-formed JSON.
+  private boolean walk(byte[] data, int from, int to, NoiseMask noise, boolean values, Visitor visitor) {
+    long[] paths = new long[16];
+    int depth = 0;
+    try (JsonParser p = FACTORY.createParser(data, from, to - from)) {
+      JsonToken t;
+      while ((t = p.nextToken()) != null) {
+        if (t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) {
+          depth--;
+          continue;
+        }
+        long at;
+        if (t == JsonToken.FIELD_NAME) {
+          long name = nameHash(p.currentName());
+          at = child(paths[depth - 1], name);
+          t = p.nextToken();
+          if (contains(ignoredNames, name) || contains(ignoredPaths, at) || noise.volatilePath(at)) {
+            p.skipChildren();
+            continue;
+          }
+        } else if (depth > 0) {
+          at = child(paths[depth - 1], ELEMENT);
+          if (contains(ignoredPaths, at) || noise.volatilePath(at)) {
+            p.skipChildren();
+            continue;
+          }
+        } else {
+          at = ROOT;
+        }
+
+        switch (t) {
+          case START_OBJECT, START_ARRAY -> {
+            visitor.value(at, t == JsonToken.START_OBJECT ? OBJECT : ARRAY, 0);
+            if (depth == paths.length) paths = Arrays.copyOf(paths, depth * 2);
+            paths[depth++] = at;
+          }
+          case VALUE_STRING -> visitor.value(at, STRING, values ? textHash(p) : 0);
+          case VALUE_NUMBER_INT, VALUE_NUMBER_FLOAT -> visitor.value(at, NUMBER, values ? textHash(p) : 0);
+          case VALUE_TRUE -> visitor.value(at, BOOLEAN, values ? 1 : 0);
+          case VALUE_FALSE -> visitor.value(at, BOOLEAN, values ? 2 : 0);
+          case VALUE_NULL -> visitor.value(at, NULL, 0);
+          default -> {
+          }
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      return false;
+    }
+    return depth == 0;
+  }
+
+  /** The key of an any-depth path ({@code ..key} or {@code $..key}), or null for an ordinary path. */
+  static String anyDepthKey(String path) {
+    if (path.startsWith("$..")) return path.substring(3);
+    if (path.startsWith("..")) return path.substring(2);
+    return null;
+  }
+
+  /** Hash of an ordinary path; any-depth paths must be split off with {@link #anyDepthKey} first. */
+  static long pathHash(String path) {
+    String p = path;
+    if (p.startsWith("$")) p = p.substring(1);
+    long h = ROOT;
+    for (String segment : p.split("\\.")) {
+      String s = segment;
+      int bracket = s.indexOf('[');
+      String name = bracket < 0 ? s : s.substring(0, bracket);
+      if (!name.isEmpty()) h = child(h, nameHash(name));
+      // Any index, written [*], [] or [n], stands for every element.
+      for (int i = bracket; i >= 0; i = s.indexOf('[', i + 1)) {
+        h = child(h, ELEMENT);
+      }
+    }
+    return h;
+  }
+
+  static long nameHash(String name) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < name.length(); i++) {
+      h = (h ^ name.charAt(i)) * 0x100000001b3L;
+    }
+    return h;
+  }
+
+  private static long textHash(JsonParser p) throws IOException {
+    char[] chars = p.getTextCharacters();
+    int end = p.getTextOffset() + p.getTextLength();
+    long h = 0xcbf29ce484222325L;
+    for (int i = p.getTextOffset(); i < end; i++) {
+      h = (h ^ chars[i]) * 0x100000001b3L;
+    }
+    return h;
+  }
+
+  static long child(long parent, long step) {
+    long h = (parent ^ Long.rotateLeft(step, 23)) * 0x9e3779b97f4a7c15L;
+    return h ^ (h >>> 31);
+  }
+
+  private static long feature(long path, int type, long value) {
+    long h = path + type * 0xc2b2ae3d27d4eb4fL + value * 0x165667b19e3779f9L;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static boolean contains(long[] sorted, long value) {
+    return sorted.length > 0 && Arrays.binarySearch(sorted, value) >= 0;
+  }
+
+  private static long[] sorted(List<Long> values) {
+    long[] a = new long[values.size()];
+    for (int i = 0; i < a.length; i++) a[i] = values.get(i);
+    Arrays.sort(a);
+    return a;
+  }
+}
@@ -0,0 +1,157 @@
+package autorize.core;
+
+import autorize.model.NoiseMask;
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Learned noise masks per endpoint template (method, scheme, host, port and path with id-like segments
+ * collapsed; query excluded).
+ *
+ * The first capture of a template replays the original request unchanged and diffs the two responses;
+ * every later capture of the template reuses the mask, so the extra request is paid once per endpoint.
+ * While one capture is learning a template, concurrent captures of it go without a mask rather than
+ * sending a second baseline. Masks live in a bounded LRU.
+ */
+public final class NoiseBaselines {
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final Map<String, NoiseMask> masks;
+  private final Set<String> learning = new HashSet<>();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder baselines = new LongAdder();
+
+  public NoiseBaselines() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public NoiseBaselines(int capacity) {
+    this.masks = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, NoiseMask> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * Returns the template's mask, learning it first on the template's first capture.
+   *
+   * @param json     how JSON bodies are fingerprinted, or null to learn word contexts only
+   * @param baseline sends the request once more and returns the response (null on failure)
+   */
+  public NoiseMask maskFor(HttpRequest req, ResponseView original, JsonStructure json,
+                           Function<HttpRequest, HttpResponse> baseline) {
+    String key = template(req);
+    if (key == null) return NoiseMask.NONE;
+    synchronized (masks) {
+      NoiseMask mask = masks.get(key);
+      if (mask != null) {
+        hits.increment();
+        return mask;
+      }
+      if (!learning.add(key)) return NoiseMask.NONE;
+    }
+
+    NoiseMask mask = null;
+    try {
+      baselines.increment();
+      HttpResponse res = baseline.apply(req);
+      if (res != null) mask = learn(original, new ResponseView(res, null, original.window()), json);
+      return mask == null ? NoiseMask.NONE : mask;
+    } finally {
+      synchronized (masks) {
+        learning.remove(key);
+        // A failed baseline is retried on the next capture.
+        if (mask != null) masks.put(key, mask);
+      }
+    }
+  }
+
+  /** The template's mask if it has been learned already, otherwise NONE; never sends a baseline. */
+  public NoiseMask learnedMask(HttpRequest req) {
+    String key = req == null ? null : template(req);
+    if (key == null) return NoiseMask.NONE;
+    synchronized (masks) {
+      NoiseMask mask = masks.get(key);
+      return mask == null ? NoiseMask.NONE : mask;
+    }
+  }
+
+  /** Differences between two responses to the same request; nothing is masked if even the status differs. */
+  static NoiseMask learn(ResponseView a, ResponseView b, JsonStructure json) {
+    if (a.status() != b.status()) return NoiseMask.NONE;
+    byte[] ra = a.raw();
+    byte[] rb = b.raw();
+    int fa = Math.min(a.bodyOffset(), ra.length);
+    int fb = Math.min(b.bodyOffset(), rb.length);
+    long[] words = NoiseMask.volatileWordContexts(ra, fa, rb, fb);
+    long[] paths = json != null && a.signature().isJson()
+        ? json.volatilePaths(ra, fa, ra.length, rb, fb, rb.length)
+        : new long[0];
+    return NoiseMask.of(words, paths);
+  }
+
+  public void clear() {
+    synchronized (masks) {
+      masks.clear();
+    }
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  /** Baseline requests sent so far. */
+  public long baselines() {
+    return baselines.sum();
+  }
+
+  public int size() {
+    synchronized (masks) {
+      return masks.size();
+    }
+  }
+
+  static String template(HttpRequest req) {
+    try {
+      HttpService svc = req.httpService();
+      if (svc == null || svc.host() == null) return null;
+      String path = req.pathWithoutQuery();
+      StringBuilder sb = new StringBuilder();
+      sb.append(req.method()).append(' ')
+          .append(svc.secure() ? "https://" : "http://")
+          .append(svc.host().toLowerCase(Locale.ROOT)).append(':').append(svc.port());
+      if (path == null || path.isEmpty()) return sb.append('/').toString();
+      for (String segment : path.split("/", -1)) {
+        if (segment.isEmpty()) continue;
+        sb.append('/').append(isIdLike(segment) ? "{id}" : segment);
+      }
+      if (path.endsWith("/")) sb.append('/');
+      return sb.toString();
+    } catch (Exception e) {
+      return null;
+    }
+  }
+
+  // Numbers, UUIDs and long hex strings: the parts of a path that name a record rather than an endpoint.
+  private static boolean isIdLike(String s) {
+    boolean digits = true;
+    boolean hex = true;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c < '0' || c > '9') digits = false;
+      if (Character.digit(c, 16) < 0 && c != '-') hex = false;
+    }
+    return digits || (hex && s.length() >= 16);
+  }
+}
@@ -0,0 +1,171 @@
+package autorize.core;
+
+import com.google.re2j.PatternSyntaxException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Runs user-supplied regexes (interception filters, enforcement rules, match/replace) under a time budget.
+ *
+ * With the linear engine enabled, patterns are executed by RE2/J, whose run time is linear in the input;
+ * patterns RE2/J cannot express (lookaround, backreferences) fall back to java.util.regex. Either way the
+ * input is wrapped in a CharSequence that aborts the match once the budget is spent. An aborted match
+ * counts as "no match" (or "no replacement"), and the pattern is remembered as over budget so the UI can
+ * flag the rule. {@link #aborts()} counts aborted matches, so callers that memoize outcomes can tell
+ * a cut-short evaluation from a complete one.
+ */
+public final class RegexGuard {
+  public static final int DEFAULT_BUDGET_MILLIS = 1000;
+
+  // Sentinel cache value for patterns RE2/J rejects.
+  private static final Object UNSUPPORTED = new Object();
+  private static final int MAX_CACHED = 512;
+
+  private volatile boolean linear;
+  private volatile int budgetMillis = DEFAULT_BUDGET_MILLIS;
+
+  private final Map<Pattern, Object> linearCache = Collections.synchronizedMap(new WeakHashMap<>());
+  private final Set<Pattern> overBudget = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+  private final AtomicLong aborts = new AtomicLong();
+
+  public boolean linear() {
+    return linear;
+  }
+
+  public void setLinear(boolean value) {
+    linear = value;
+  }
+
+  public int budgetMillis() {
+    return budgetMillis;
+  }
+
+  /** Values of zero or less disable the watchdog. */
+  public void setBudgetMillis(int value) {
+    budgetMillis = value;
+  }
+
+  /** Matches aborted by the watchdog so far, on any thread. */
+  public long aborts() {
+    return aborts.get();
+  }
+
+  /** True once any match with this pattern has been aborted by the watchdog. */
+  public boolean isOverBudget(Pattern p) {
+    return p != null && overBudget.contains(p);
+  }
+
+  /** True when the linear engine is on but cannot run this pattern (it then uses java.util.regex). */
+  public boolean fallsBack(Pattern p) {
+    return p != null && linear && linearPattern(p) == null;
+  }
+
+  public boolean find(Pattern p, CharSequence text) {
+    if (p == null || text == null) return false;
+    CharSequence in = guarded(text);
+    try {
+      com.google.re2j.Pattern lp = linear ? linearPattern(p) : null;
+      return lp != null ? lp.matcher(in).find() : p.matcher(in).find();
+    } catch (BudgetExceeded e) {
+      aborts.incrementAndGet();
+      overBudget.add(p);
+      return false;
+    }
+  }
+
+  /** Pattern.matcher(text).replaceAll(replacement); returns the input unchanged when over budget. */
+  public String replaceAll(Pattern p, String text, String replacement) {
+    if (p == null || text == null) return text;
+    CharSequence in = guarded(text);
+    try {
+      com.google.re2j.Pattern lp = linear ? linearPattern(p) : null;
+      return lp != null ? lp.matcher(in).replaceAll(replacement) : p.matcher(in).replaceAll(replacement);
+    } catch (BudgetExceeded e) {
+      aborts.incrementAndGet();
+      overBudget.add(p);
+      return text;
+    }
+  }
+
+  /** Forgets over-budget flags, e.g. after the budget was raised. */
+  public void resetFlags() {
+    overBudget.clear();
+  }
+
+  private CharSequence guarded(CharSequence text) {
+    int ms = budgetMillis;
+    return ms <= 0 ? text : new DeadlineCharSequence(text, System.nanoTime() + ms * 1_000_000L);
+  }
+
+  private com.google.re2j.Pattern linearPattern(Pattern p) {
+    Object cached = linearCache.get(p);
+    if (cached == null) {
+      try {
+        cached = com.google.re2j.Pattern.compile(p.pattern(), linearFlags(p.flags()));
+      } catch (PatternSyntaxException | IllegalArgumentException e) {
+        cached = UNSUPPORTED;
+      }
+      if (linearCache.size() >= MAX_CACHED) linearCache.clear();
+      linearCache.put(p, cached);
+    }
+    return cached == UNSUPPORTED ? null : (com.google.re2j.Pattern) cached;
+  }
+
+  private static int linearFlags(int javaFlags) {
+    int f = 0;
+    if ((javaFlags & Pattern.CASE_INSENSITIVE) != 0) f |= com.google.re2j.Pattern.CASE_INSENSITIVE;
+    if ((javaFlags & Pattern.DOTALL) != 0) f |= com.google.re2j.Pattern.DOTALL;
+    if ((javaFlags & Pattern.MULTILINE) != 0) f |= com.google.re2j.Pattern.MULTILINE;
+    return f;
+  }
+
+  private static final class BudgetExceeded extends RuntimeException {
+    BudgetExceeded() {
+      super(null, null, false, false);
+    }
+  }
+
+  /** Checks the clock every few thousand reads, so both engines can be interrupted mid-match. */
+  private static final class DeadlineCharSequence implements CharSequence {
+    private static final int CHECK_EVERY = 4096;
+
+    private final CharSequence inner;
+    private final long deadlineNanos;
+    private int reads;
+
+    DeadlineCharSequence(CharSequence inner, long deadlineNanos) {
+      this.inner = inner;
+      this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (++reads >= CHECK_EVERY) {
+        reads = 0;
+        if (System.nanoTime() > deadlineNanos) throw new BudgetExceeded();
+      }
+      return inner.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return inner.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new DeadlineCharSequence(inner.subSequence(start, end), deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+      return inner.toString();
+    }
+  }
+}
@@ -0,0 +1,255 @@
+package autorize.core;
+
+import autorize.model.MatchReplaceRule;
+import autorize.model.MatchReplaceType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiled form of one profile's match/replace rules and extra headers, as applied to every replay.
+ *
+ * Rules are bucketed by stage once (path, header replace, header lines, body, JSON/form body, cookie
+ * seeds, stepper header), keeping their relative order, and stages without rules are skipped entirely,
+ * so a profile that only sets a Cookie never touches the path or decodes the body. The headers text is
+ * split and parsed at compile time; only lines holding a {{placeholder}} are resolved and parsed per
+ * replay, since session values change between logins. Replacement values of HEADER_REPLACE,
+ * COOKIE_REPLACE, STEPPER_HEADER and JSON_* rules are likewise resolved per replay.
+ *
+ * Edits are made on a RequestRewriter, so rule literals are converted to its byte strings here, once.
+ * Regex rules run through the RegexGuard passed per replay, which reads its engine and budget on every
+ * call; a plan therefore does not depend on the guard's settings and survives a change to them.
+ */
+final class ReplayPlan {
+  private final MatchReplaceRule[] rules;
+  private final String headersText;
+
+  private final Edit[] pathEdits;
+  private final String[] replaceNames;
+  private final String[] replaceValues;
+  private final Edit[] headerLineEdits;
+  private final Edit[] bodyEdits;
+  // JSON_* rules; null without any.
+  private final JsonBodyEdits jsonEdits;
+  // Per headers-text line: name and value, or a null name with the raw line kept for per-replay resolution.
+  private final String[] extraNames;
+  private final String[] extraValues;
+  private final String[] cookieNames;
+  private final String[] cookieValues;
+  // Only the last STEPPER_HEADER rule survives replay; null without one.
+  private final String stepperValue;
+
+  private ReplayPlan(MatchReplaceRule[] rules, String headersText) {
+    this.rules = rules;
+    this.headersText = headersText;
+
+    List<Edit> path = new ArrayList<>();
+    List<Edit> lines = new ArrayList<>();
+    List<Edit> body = new ArrayList<>();
+    JsonBodyEdits.Builder json = new JsonBodyEdits.Builder();
+    Map<String, String> replaced = new LinkedHashMap<>();
+    List<String> cookieNames = new ArrayList<>();
+    List<String> cookieValues = new ArrayList<>();
+    String stepper = null;
+    for (MatchReplaceRule rule : rules) {
+      switch (rule.type()) {
+        case PATH_SIMPLE, PATH_REGEX -> Edit.add(path, rule);
+        case HEADERS_SIMPLE, HEADERS_REGEX -> Edit.add(lines, rule);
+        case BODY_SIMPLE, BODY_REGEX -> Edit.add(body, rule);
+        case JSON_SET, JSON_REMOVE, JSON_RENAME -> json.add(rule);
+        case HEADER_REPLACE -> {
+          String name = RequestRewriter.bytes(rule.match().trim());
+          if (name.isEmpty()) break;
+          // A later rule for the same header removes the earlier one's header, then adds its own last.
+          replaced.keySet().removeIf(name::equalsIgnoreCase);
+          replaced.put(name, rule.replace());
+        }
+        case COOKIE_REPLACE -> {
+          String name = rule.match().trim();
+          if (name.isEmpty()) break;
+          cookieNames.add(RequestRewriter.bytes(name));
+          cookieValues.add(rule.replace());
+        }
+        case STEPPER_HEADER -> stepper = rule.replace();
+        default -> {
+        }
+      }
+    }
+    this.pathEdits = path.toArray(new Edit[0]);
+    this.headerLineEdits = lines.toArray(new Edit[0]);
+    this.bodyEdits = body.toArray(new Edit[0]);
+    this.jsonEdits = json.isEmpty() ? null : json.build();
+    this.replaceNames = replaced.keySet().toArray(new String[0]);
+    this.replaceValues = replaced.values().toArray(new String[0]);
+    this.cookieNames = cookieNames.toArray(new String[0]);
+    this.cookieValues = cookieValues.toArray(new String[0]);
+    this.stepperValue = stepper;
+
+    List<String> names = new ArrayList<>();
+    List<String> values = new ArrayList<>();
+    for (String raw : headersText.split("\\r?\\n")) {
+      String line = raw.trim();
+      if (line.isEmpty()) continue;
+      if (line.contains("{{")) {
+        names.add(null);
+        values.add(line);
+        continue;
+      }
+      String[] h = parseHeaderLine(RequestRewriter.bytes(line));
+      if (h == null) continue;
+      names.add(h[0]);
+      values.add(h[1]);
+    }
+    this.extraNames = names.toArray(new String[0]);
+    this.extraValues = values.toArray(new String[0]);
+  }
+
+  /** Returns {@code previous} when neither the rules nor the headers text changed. */
+  static ReplayPlan compile(List<MatchReplaceRule> list, String headersText, ReplayPlan previous) {
+    MatchReplaceRule[] rules = list == null ? new MatchReplaceRule[0] : list.toArray(new MatchReplaceRule[0]);
+    String text = headersText == null ? "" : headersText;
+    if (previous != null && previous.headersText.equals(text) && previous.sameRules(rules)) {
+      return previous;
+    }
+    return new ReplayPlan(rules, text);
+  }
+
+  private boolean sameRules(MatchReplaceRule[] other) {
+    if (other.length != rules.length) return false;
+    for (int i = 0; i < rules.length; i++) {
+      if (other[i] != rules[i]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Path rules, HEADER_REPLACE rules, header-line rules, text body rules and JSON/form body rules, in
+   * that order.
+   */
+  void applyMatchReplace(RequestRewriter r, UnaryOperator<String> values, RegexGuard regex) {
+    if (pathEdits.length > 0) {
+      r.setPath(apply(pathEdits, r.path(), regex));
+    }
+
+    for (int i = 0; i < replaceNames.length; i++) {
+      r.removeHeader(replaceNames[i]);
+      r.addHeader(replaceNames[i], RequestRewriter.bytes(values.apply(replaceValues[i])));
+    }
+
+    if (headerLineEdits.length > 0) {
+      r.editHeaderLines(line -> apply(headerLineEdits, line, regex));
+    }
+
+    if (bodyEdits.length > 0) {
+      r.setBody(apply(bodyEdits, r.body(), regex));
+    }
+
+    if (jsonEdits != null) {
+      String type = r.header("Content-Type");
+      boolean form = type != null && type.toLowerCase(Locale.ROOT).contains("application/x-www-form-urlencoded");
+      r.setBody(jsonEdits.apply(r.body(), form, values));
+    }
+  }
+
+  /** The profile's extra headers, each replacing any header of the same name. */
+  void applyHeaders(RequestRewriter r, UnaryOperator<String> values) {
+    for (int i = 0; i < extraNames.length; i++) {
+      String[] h = extraHeader(i, values);
+      if (h == null) continue;
+      r.removeHeader(h[0]);
+      r.addHeader(h[0], h[1]);
+    }
+  }
+
+  /**
+   * The cookies the profile sets explicitly, by name: those of a Cookie line in its headers text, then
+   * COOKIE_REPLACE values in rule order (a later rule for a name wins).
+   */
+  Map<String, String> cookieSeeds(UnaryOperator<String> values) {
+    Map<String, String> seeds = new LinkedHashMap<>();
+    for (int i = 0; i < extraNames.length; i++) {
+      if (extraNames[i] != null && !extraNames[i].equalsIgnoreCase("Cookie")) continue;
+      String[] h = extraHeader(i, values);
+      if (h == null || !h[0].equalsIgnoreCase("Cookie")) continue;
+      for (String raw : h[1].split(";")) {
+        String pair = raw.trim();
+        int eq = pair.indexOf('=');
+        if (eq > 0) seeds.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+      }
+    }
+    for (int i = 0; i < cookieNames.length; i++) {
+      seeds.put(cookieNames[i], RequestRewriter.bytes(values.apply(cookieValues[i])));
+    }
+    return seeds;
+  }
+
+  void applyStepperHeader(RequestRewriter r, String headerName, UnaryOperator<String> values) {
+    if (stepperValue == null) return;
+    r.removeHeader(headerName);
+    r.addHeader(headerName, RequestRewriter.bytes(values.apply(stepperValue)));
+  }
+
+  // Name and value of a headers-text line, resolving a placeholder line; null if it is not a header.
+  private String[] extraHeader(int i, UnaryOperator<String> values) {
+    if (extraNames[i] != null) return new String[] {extraNames[i], extraValues[i]};
+    return parseHeaderLine(RequestRewriter.bytes(values.apply(extraValues[i])));
+  }
+
+  private static String apply(Edit[] edits, String text, RegexGuard regex) {
+    String s = text;
+    for (Edit e : edits) {
+      s = e.pattern == null ? s.replace(e.match, e.replace) : regex.replaceAll(e.pattern, s, e.replace);
+    }
+    return s;
+  }
+
+  private static String[] parseHeaderLine(String line) {
+    int idx = line.indexOf(':');
+    if (idx <= 0) return null;
+    String name = line.substring(0, idx).trim();
+    String value = line.substring(idx + 1).trim();
+    if (name.isEmpty()) return null;
+    return new String[] {name, value};
+  }
+
+  /** One path, header-line or body rule with its literals as byte strings. */
+  private static final class Edit {
+    private final String match;
+    private final String replace;
+    // Null for the *_SIMPLE types.
+    private final Pattern pattern;
+
+    private Edit(String match, String replace, Pattern pattern) {
+      this.match = match;
+      this.replace = replace;
+      this.pattern = pattern;
+    }
+
+    static void add(List<Edit> out, MatchReplaceRule rule) {
+      String match = RequestRewriter.bytes(rule.match());
+      String replace = RequestRewriter.bytes(rule.replace());
+      if (rule.type() == MatchReplaceType.PATH_SIMPLE || rule.type() == MatchReplaceType.HEADERS_SIMPLE
+          || rule.type() == MatchReplaceType.BODY_SIMPLE) {
+        out.add(new Edit(match, replace, null));
+        return;
+      }
+      if (rule.regex() == null) return;
+      // Non-ASCII literals in the pattern have to match their UTF-8 bytes.
+      Pattern p = rule.regex();
+      if (!match.equals(rule.match())) {
+        try {
+          p = Pattern.compile(match, p.flags());
+        } catch (PatternSyntaxException e) {
+          return;
+        }
+      }
+      out.add(new Edit(match, replace, p));
+    }
+  }
+}
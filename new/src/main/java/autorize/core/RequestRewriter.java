@@ -0,0 +1,287 @@
+package autorize.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * Edits one request on its raw bytes: the request line and header offsets are parsed once, edits are
+ * collected on that parsed form, and {@link #toByteArray()} writes the result in a single pass into a
+ * buffer of the exact final size, setting Content-Length to the final body length.
+ *
+ * Text is exchanged as "byte strings": ISO-8859-1 decodings where every char is one byte, so any body
+ * (binary, gzip, non-UTF-8 form data) survives untouched outside the edited ranges. Text that comes from
+ * the user (rule literals, header values, session tokens) is brought into that form with
+ * {@link #bytes(String)}, i.e. written as UTF-8. The body is only decoded when a body edit asks for it;
+ * otherwise it is copied straight from the original array.
+ */
+final class RequestRewriter {
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  private final byte[] raw;
+  private final String method;
+  private final String version;
+  // Scheme and authority of an absolute-form target ("http://host"), otherwise empty.
+  private final String origin;
+  private String path;
+  private final List<String> names = new ArrayList<>();
+  private final List<String> values = new ArrayList<>();
+  private final int bodyOffset;
+  // Replaced body as a byte string; null while the original body is kept.
+  private String body;
+
+  private RequestRewriter(byte[] raw) {
+    this.raw = raw;
+    int lineEnd = lineEnd(raw, 0);
+    String requestLine = latin1(raw, 0, lineEnd);
+    int sp1 = requestLine.indexOf(' ');
+    int sp2 = requestLine.lastIndexOf(' ');
+    if (sp1 < 0) {
+      method = requestLine;
+      version = "";
+      path = "";
+    } else if (sp2 == sp1) {
+      method = requestLine.substring(0, sp1);
+      version = "";
+      path = requestLine.substring(sp1 + 1);
+    } else {
+      method = requestLine.substring(0, sp1);
+      version = requestLine.substring(sp2 + 1);
+      path = requestLine.substring(sp1 + 1, sp2);
+    }
+    int scheme = path.startsWith("/") ? -1 : path.indexOf("://");
+    if (scheme > 0) {
+      int slash = path.indexOf('/', scheme + 3);
+      origin = slash < 0 ? path : path.substring(0, slash);
+      path = slash < 0 ? "/" : path.substring(slash);
+    } else {
+      origin = "";
+    }
+
+    int at = next(raw, lineEnd);
+    while (at < raw.length) {
+      int end = lineEnd(raw, at);
+      if (end == at) {
+        at = next(raw, end);
+        break;
+      }
+      String line = latin1(raw, at, end);
+      int colon = line.indexOf(':');
+      if (colon > 0) {
+        names.add(line.substring(0, colon).trim());
+        values.add(line.substring(colon + 1).trim());
+      }
+      at = next(raw, end);
+    }
+    this.bodyOffset = Math.min(at, raw.length);
+  }
+
+  static RequestRewriter parse(byte[] raw) {
+    return new RequestRewriter(raw);
+  }
+
+  /** The request target without the origin of an absolute-form target, as a byte string. */
+  String path() {
+    return path;
+  }
+
+  void setPath(String path) {
+    this.path = path;
+  }
+
+  boolean hasHeader(String name) {
+    return indexOf(name) >= 0;
+  }
+
+  /** The first value of the header, or null. */
+  String header(String name) {
+    int i = indexOf(name);
+    return i < 0 ? null : values.get(i);
+  }
+
+  void removeHeader(String name) {
+    for (int i = names.size() - 1; i >= 0; i--) {
+      if (names.get(i).equalsIgnoreCase(name)) {
+        names.remove(i);
+        values.remove(i);
+      }
+    }
+  }
+
+  void addHeader(String name, String value) {
+    names.add(name);
+    values.add(value);
+  }
+
+  /** Replaces the first header of that name in place, or adds it. */
+  void setHeader(String name, String value) {
+    int i = indexOf(name);
+    if (i < 0) {
+      addHeader(name, value);
+    } else {
+      values.set(i, value);
+    }
+  }
+
+  /**
+   * Passes every header as a "Name: value" line through {@code edit} and parses the result back;
+   * a line that no longer has a name keeps its previous value.
+   */
+  void editHeaderLines(UnaryOperator<String> edit) {
+    for (int i = 0; i < names.size(); i++) {
+      String line = edit.apply(names.get(i) + ": " + values.get(i));
+      int colon = line.indexOf(':');
+      if (colon <= 0) continue;
+      String name = line.substring(0, colon).trim();
+      if (name.isEmpty()) continue;
+      names.set(i, name);
+      values.set(i, line.substring(colon + 1).trim());
+    }
+  }
+
+  /** The body as a byte string, decoded on first use. */
+  String body() {
+    if (body == null) body = latin1(raw, bodyOffset, raw.length);
+    return body;
+  }
+
+  void setBody(String body) {
+    this.body = body;
+  }
+
+  /** Sets every URL query parameter named {@code key} to {@code value}, or appends it when there is none. */
+  void setUrlParameter(String key, String value) {
+    int q = path.indexOf('?');
+    if (q < 0) {
+      path = path + "?" + key + "=" + value;
+      return;
+    }
+    int hash = path.indexOf('#', q);
+    String query = hash < 0 ? path.substring(q + 1) : path.substring(q + 1, hash);
+    String tail = hash < 0 ? "" : path.substring(hash);
+    StringBuilder sb = new StringBuilder(path.length() + value.length());
+    sb.append(path, 0, q + 1);
+    boolean found = false;
+    int from = 0;
+    while (from <= query.length()) {
+      int amp = query.indexOf('&', from);
+      if (amp < 0) amp = query.length();
+      String pair = query.substring(from, amp);
+      int eq = pair.indexOf('=');
+      String name = eq < 0 ? pair : pair.substring(0, eq);
+      if (from > 0) sb.append('&');
+      if (name.equals(key)) {
+        sb.append(key).append('=').append(value);
+        found = true;
+      } else {
+        sb.append(pair);
+      }
+      from = amp + 1;
+    }
+    if (!found) sb.append(query.isEmpty() ? "" : "&").append(key).append('=').append(value);
+    path = sb.append(tail).toString();
+  }
+
+  /** Serializes the request; Content-Length is rewritten (or added) unless the body is chunked. */
+  byte[] toByteArray() {
+    byte[] replaced = body == null ? null : body.getBytes(StandardCharsets.ISO_8859_1);
+    int bodyLength = replaced == null ? raw.length - bodyOffset : replaced.length;
+    String te = header("Transfer-Encoding");
+    if (te == null || !te.toLowerCase(Locale.ROOT).contains("chunked")) {
+      if (hasHeader("Content-Length")) {
+        removeDuplicates("Content-Length");
+        setHeader("Content-Length", Integer.toString(bodyLength));
+      } else if (bodyLength > 0) {
+        addHeader("Content-Length", Integer.toString(bodyLength));
+      }
+    }
+
+    String requestLine = version.isEmpty() ? method + " " + origin + path : method + " " + origin + path + " " + version;
+    int size = requestLine.length() + 2 + 2 + bodyLength;
+    for (int i = 0; i < names.size(); i++) {
+      size += names.get(i).length() + 2 + values.get(i).length() + 2;
+    }
+
+    byte[] out = new byte[size];
+    int at = put(out, 0, requestLine);
+    at = put(out, at, CRLF);
+    for (int i = 0; i < names.size(); i++) {
+      at = put(out, at, names.get(i));
+      out[at++] = ':';
+      out[at++] = ' ';
+      at = put(out, at, values.get(i));
+      at = put(out, at, CRLF);
+    }
+    at = put(out, at, CRLF);
+    if (replaced == null) {
+      System.arraycopy(raw, bodyOffset, out, at, bodyLength);
+    } else {
+      System.arraycopy(replaced, 0, out, at, bodyLength);
+    }
+    return out;
+  }
+
+  /** User text as a byte string: its UTF-8 bytes, one char per byte. */
+  static String bytes(String text) {
+    if (text == null) return null;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) >= 0x80) return latin1(text.getBytes(StandardCharsets.UTF_8));
+    }
+    return text;
+  }
+
+  private int indexOf(String name) {
+    for (int i = 0; i < names.size(); i++) {
+      if (names.get(i).equalsIgnoreCase(name)) return i;
+    }
+    return -1;
+  }
+
+  private void removeDuplicates(String name) {
+    int first = indexOf(name);
+    for (int i = names.size() - 1; i > first; i--) {
+      if (names.get(i).equalsIgnoreCase(name)) {
+        names.remove(i);
+        values.remove(i);
+      }
+    }
+  }
+
+  private static String latin1(byte[] b) {
+    return new String(b, StandardCharsets.ISO_8859_1);
+  }
+
+  private static String latin1(byte[] b, int from, int to) {
+    return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+  }
+
+  // End of the line starting at {@code from}, excluding CR LF or a bare LF.
+  private static int lineEnd(byte[] b, int from) {
+    int i = from;
+    while (i < b.length && b[i] != '\n') i++;
+    return i > from && b[i - 1] == '\r' ? i - 1 : i;
+  }
+
+  // Start of the line after the one ending at {@code end}.
+  private static int next(byte[] b, int end) {
+    int i = end;
+    if (i < b.length && b[i] == '\r') i++;
+    if (i < b.length && b[i] == '\n') i++;
+    return i;
+  }
+
+  private static int put(byte[] out, int at, String s) {
+    // Byte strings only hold chars below 0x100, so the low byte is the whole char.
+    for (int i = 0; i < s.length(); i++) {
+      out[at++] = (byte) s.charAt(i);
+    }
+    return at;
+  }
+
+  private static int put(byte[] out, int at, byte[] b) {
+    System.arraycopy(b, 0, out, at, b.length);
+    return at + b.length;
+  }
+}
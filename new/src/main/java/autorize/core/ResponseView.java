@@ -0,0 +1,213 @@
+package autorize.core;
+
+import autorize.model.Fingerprint;
+import autorize.model.NoiseMask;
+import autorize.model.ResponseSignature;
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lazily materialised views of one response, shared by everything that judges it.
+ *
+ * Each view is produced at most once and only when asked for: status comes from message metadata and
+ * lengths from the body offset plus the body's length, raw bytes are copied once for the literal scan,
+ * and the body is decoded once no matter how many regexes (built-in or user rules) look at it. The
+ * signature is computed from the same raw copy, or handed in when it was stored with the log entry.
+ *
+ * A body longer than the view's window (the large-body threshold) is never held whole, and the message
+ * is never asked for as a whole: raw bytes are the head rebuilt from the parsed status line and headers
+ * (as the HEADERS_* rules see them) followed by a window of the body, decoded text stops at the window,
+ * and the signature is computed by streaming the body in chunks, so it still covers its full length
+ * and digest.
+ */
+public final class ResponseView {
+  /** Added to responses the log keeps cut to the window; the value is the original body length. */
+  public static final String TRUNCATED_HEADER = "X-Autorize-Truncated";
+
+  // Chunk size for streaming a large body into its signature.
+  private static final int CHUNK = 1 << 20;
+
+  private final HttpResponse response;
+  private final int window;
+  // The body as Burp hands it out; asked for once per view, since each call may copy it.
+  private ByteArray bodyBytes;
+  private byte[] raw;
+  private int rawBodyOffset = -1;
+  private String headers;
+  private String body;
+  private String full;
+  private ResponseSignature signature;
+
+  public ResponseView(HttpResponse response) {
+    this(response, null, Integer.MAX_VALUE);
+  }
+
+  public ResponseView(HttpResponse response, ResponseSignature signature) {
+    this(response, signature, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param signature the stored signature, or null to compute it on demand
+   * @param window    body bytes held at most (Integer.MAX_VALUE for no limit)
+   */
+  public ResponseView(HttpResponse response, ResponseSignature signature, int window) {
+    this.response = response;
+    this.signature = signature;
+    this.window = Math.max(0, window);
+  }
+
+  /**
+   * A response kept in the log. Its stored signature is reused, unless {@code fresh} asks for one
+   * computed under the current settings and the logged body is complete (a cut body cannot give one).
+   */
+  public static ResponseView stored(HttpResponse response, ResponseSignature signature, boolean fresh) {
+    return new ResponseView(response, fresh && !isTruncated(response) ? null : signature);
+  }
+
+  public static boolean isTruncated(HttpResponse response) {
+    return response != null && response.hasHeader(TRUNCATED_HEADER);
+  }
+
+  public HttpResponse response() {
+    return response;
+  }
+
+  public int status() {
+    return signature != null ? signature.status() : response.statusCode();
+  }
+
+  /** Where the body starts in {@link #raw()}; for a large body that is the end of the rebuilt head. */
+  public int bodyOffset() {
+    if (rawBodyOffset < 0) rawBodyOffset = large() ? head().length : response.bodyOffset();
+    return rawBodyOffset;
+  }
+
+  /** Length of the whole message, from the body offset and the body's length; nothing is copied. */
+  public int length() {
+    return response.bodyOffset() + bodyLength();
+  }
+
+  private int bodyLength() {
+    ByteArray b = bodyBytes();
+    return b == null ? 0 : b.length();
+  }
+
+  private ByteArray bodyBytes() {
+    if (bodyBytes == null) bodyBytes = response.body();
+    return bodyBytes;
+  }
+
+  public int window() {
+    return window;
+  }
+
+  /** True when the body is longer than the window, so only its leading part is ever held. */
+  public boolean large() {
+    return window != Integer.MAX_VALUE && bodyLength() > window;
+  }
+
+  /** The whole message, or for a large body the rebuilt head and the body's first {@link #window()} bytes. */
+  public byte[] raw() {
+    if (raw == null) {
+      if (large()) {
+        byte[] head = head();
+        byte[] part = bodyBytes().subArray(0, window).getBytes();
+        raw = Arrays.copyOf(head, head.length + part.length);
+        System.arraycopy(part, 0, raw, head.length, part.length);
+      } else {
+        raw = response.toByteArray().getBytes();
+      }
+    }
+    return raw;
+  }
+
+  private byte[] head() {
+    String line = response.httpVersion() + " " + response.statusCode() + " " + response.reasonPhrase() + "\r\n";
+    return (line + headers() + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * The response as the log should keep it: unchanged, or for a large body cut to the window and marked
+   * with {@link #TRUNCATED_HEADER}. The stored signature still describes the full body.
+   */
+  public HttpResponse forLog() {
+    if (!large()) return response;
+    return response.withBody(bodyBytes().subArray(0, window))
+        .withAddedHeader(TRUNCATED_HEADER, String.valueOf(bodyLength()));
+  }
+
+  /** Header lines joined with CRLF, as the HEADERS_* rules have always seen them. */
+  public String headers() {
+    if (headers == null) {
+      StringBuilder sb = new StringBuilder();
+      for (HttpHeader h : response.headers()) {
+        sb.append(h.toString()).append("\r\n");
+      }
+      headers = sb.toString();
+    }
+    return headers;
+  }
+
+  public String body() {
+    if (body == null && large()) {
+      byte[] bytes = raw();
+      int from = Math.min(bodyOffset(), bytes.length);
+      body = new String(bytes, from, bytes.length - from, StandardCharsets.ISO_8859_1);
+    }
+    if (body == null) {
+      try {
+        body = response.bodyToString();
+      } catch (Throwable t) {
+        body = "";
+      }
+    }
+    return body;
+  }
+
+  public ResponseSignature signature() {
+    return signature(null);
+  }
+
+  /**
+   * The signature as the comparison needs it: fingerprinted under its noise mask, with a structural
+   * fingerprint attached when it compares JSON and the body is JSON. The mask only applies if this is
+   * the first time the signature is asked for.
+   */
+  public ResponseSignature signature(BodyComparison bodies) {
+    NoiseMask noise = bodies == null ? NoiseMask.NONE : bodies.noise();
+    if (signature == null) {
+      signature = large()
+          ? streamedSignature(noise)
+          : ResponseSignature.of(response.statusCode(), response.headerValue("Content-Type"), raw(),
+              response.bodyOffset(), noise);
+    }
+    JsonStructure json = bodies == null ? null : bodies.json();
+    if (json != null && signature.json() == null && signature.isJson() && !large()) {
+      byte[] bytes = raw();
+      Fingerprint f = json.fingerprint(bytes, Math.min(bodyOffset(), bytes.length), bytes.length, noise);
+      if (f != null) signature = signature.withJson(f);
+    }
+    return signature;
+  }
+
+  // One chunk of the body in memory at a time.
+  private ResponseSignature streamedSignature(NoiseMask noise) {
+    ByteArray body = bodyBytes();
+    int end = body.length();
+    ResponseSignature.Builder b = new ResponseSignature.Builder(noise);
+    for (int i = 0; i < end; i += CHUNK) {
+      byte[] chunk = body.subArray(i, Math.min(end, i + CHUNK)).getBytes();
+      b.update(chunk, 0, chunk.length);
+    }
+    return b.build(response.statusCode(), response.headerValue("Content-Type"), response.bodyOffset());
+  }
+
+  public String full() {
+    if (full == null) full = large() ? new String(raw(), StandardCharsets.ISO_8859_1) : response.toString();
+    return full;
+  }
+}
@@ -0,0 +1,499 @@
+package autorize.core;
+
+import autorize.model.LogEntry;
+import autorize.model.ResponseSignature;
+import autorize.model.Verdict;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The results log: append-only, in fixed-size chunks, with snapshots that copy nothing.
+ *
+ * Each chunk keeps the per-row metadata the table, filters and exports read in primitive columns:
+ * request number, method code, status and body length of the original, the unauthenticated replay and
+ * every profile, and verdicts as one-byte codes (see Verdict). Profile columns are indexed by an ordinal
+ * the log assigns to a profile id on first sight and never reuses. The LogEntry with the messages and
+ * signatures stays out of line; it is only needed to open a row or recompute its verdicts.
+ *
+ * An append reserves a slot with one atomic increment, writes its columns and entry into its chunk
+ * (allocated by compare-and-set on first use) and then advances the published length over every written
+ * slot that follows it, so readers only ever see fully written rows and no appender waits for another. A
+ * snapshot is the chunk table plus the published length at the time it is taken; later appends do not
+ * show up in it, and reads are O(1) array accesses.
+ *
+ * Removing rows only marks them in a copy-on-write tombstone set (one bit per slot); snapshots taken
+ * while tombstones are pending skip them through a position table. A background compaction then copies
+ * the live rows into a fresh store and swaps it in for readers. Appends go to the fresh store as soon as
+ * the old one is sealed, after the slots reserved for the copied rows, and show up in snapshots once the
+ * copy is done; a clear hands appends the new store before sealing the old one. An append that finds
+ * its store sealed therefore only spins for the few instructions between a compaction's seal and its
+ * hand-over, never for the copy. Removals, compactions, clears and verdict updates are serialized on the
+ * log.
+ */
+public final class ResultsLog {
+  private static final int CHUNK_BITS = 12;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  // 128M rows; the table of chunk references is allocated once per store.
+  private static final int MAX_CHUNKS = 1 << 15;
+
+  // Method codes; 0 means "ask the entry".
+  private static final String[] METHODS = {
+      null, "GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "TRACE", "CONNECT"
+  };
+
+  private final Map<UUID, Integer> ordinals = new ConcurrentHashMap<>();
+  // What snapshots read; appends go to appending, which is a different store only during a compaction.
+  private volatile Store current = new Store();
+  private volatile Store appending = current;
+
+  /**
+   * @param unauth   verdict of the unauthenticated replay (DISABLED when it was not sent)
+   * @param verdicts verdict per profile id; profiles without one read as NONE
+   */
+  public void add(LogEntry entry, Verdict unauth, Map<UUID, Verdict> verdicts) {
+    if (entry == null) throw new NullPointerException("entry");
+    Row row = new Row(entry, unauth, verdicts);
+    while (!appending.append(row)) {
+      Thread.onSpinWait();
+    }
+  }
+
+  /** The column index of a profile, assigned on first use. */
+  public int ordinal(UUID profileId) {
+    Integer o = ordinals.get(profileId);
+    if (o != null) return o;
+    synchronized (ordinals) {
+      return ordinals.computeIfAbsent(profileId, id -> ordinals.size());
+    }
+  }
+
+  /** The live rows at this moment, in insertion order; unaffected by later appends or removals. */
+  public View snapshot() {
+    Store s = current;
+    int length = s.published();
+    return new View(this, s, length, s.tombstones, ordinals.size());
+  }
+
+  public int size() {
+    Store s = current;
+    return s.published() - s.tombstones.count;
+  }
+
+  /**
+   * Removes rows by their position in the current live order (a snapshot's indexes); invalid
+   * positions are ignored. The space is reclaimed by a later compaction.
+   */
+  public synchronized void remove(List<Integer> positions) {
+    if (positions == null || positions.isEmpty()) return;
+    Store s = current;
+    View live = new View(this, s, s.published(), s.tombstones, 0);
+    long[] bits = s.tombstones.bits;
+    bits = Arrays.copyOf(bits, Math.max(bits.length, (live.length + 63) >>> 6));
+    int count = s.tombstones.count;
+    for (Integer p : positions) {
+      if (p == null || p < 0 || p >= live.size()) continue;
+      int slot = live.slot(p);
+      if ((bits[slot >>> 6] & (1L << slot)) != 0) continue;
+      bits[slot >>> 6] |= 1L << slot;
+      count++;
+    }
+    if (count == s.tombstones.count) return;
+    s.tombstones = new Tombstones(bits, count);
+    ForkJoinPool.commonPool().execute(this::compact);
+  }
+
+  public synchronized void clear() {
+    Store old = current;
+    Store fresh = new Store();
+    appending = fresh;
+    current = fresh;
+    old.seal();
+  }
+
+  /** Copies the live rows of the current store into a new one, if it has tombstones. */
+  synchronized void compact() {
+    Store old = current;
+    if (old.tombstones.count == 0) return;
+    Tombstones dead = old.tombstones;
+    Store fresh = new Store();
+    int length = old.seal();
+    // Tombstones only mark published slots, so the live rows fill exactly the first length - count slots.
+    fresh.reserved.set(length - dead.count);
+    appending = fresh;
+    // Appenders that reserved a slot before the seal are still writing it.
+    while (old.published() < length) {
+      Thread.yield();
+    }
+    int[] movedTo = new int[length];
+    int n = 0;
+    for (int slot = 0; slot < length; slot++) {
+      if (dead.contains(slot)) {
+        movedTo[slot] = -1;
+        continue;
+      }
+      movedTo[slot] = n;
+      fresh.chunk(n, true).copyFrom(old.chunk(slot, false), slot & CHUNK_MASK, n & CHUNK_MASK);
+      n++;
+    }
+    // Publishes the copied rows and whatever was appended behind them meanwhile.
+    fresh.publish();
+    old.movedTo = movedTo;
+    old.successor = fresh;
+    current = fresh;
+  }
+
+  // Follows the row through any compaction since the view was taken; removed or cleared rows are skipped.
+  private synchronized void setVerdict(Store store, int slot, int ordinal, Verdict verdict) {
+    Store s = store;
+    int at = slot;
+    while (s.successor != null) {
+      at = s.movedTo[at];
+      if (at < 0) return;
+      s = s.successor;
+    }
+    if (s != current) return;
+    Chunk c = s.chunk(at, false);
+    if (ordinal < 0) {
+      c.unauthVerdict[at & CHUNK_MASK] = verdict.code();
+    } else {
+      c.profile(ordinal, true).verdict[at & CHUNK_MASK] = verdict.code();
+    }
+  }
+
+  private static byte methodCode(String method) {
+    for (int i = 1; i < METHODS.length; i++) {
+      if (METHODS[i].equals(method)) return (byte) i;
+    }
+    return 0;
+  }
+
+  private static short status(ResponseSignature sig) {
+    return sig == null ? 0 : sig.status();
+  }
+
+  private static int length(ResponseSignature sig) {
+    return sig == null ? 0 : sig.bodyLength();
+  }
+
+  /** One row's column values, computed before its slot is reserved. */
+  private final class Row {
+    private final LogEntry entry;
+    private final byte method;
+    private final byte unauth;
+    private final int[] profileOrdinals;
+    private final byte[] profileVerdicts;
+    private final ResponseSignature[] profileSignatures;
+
+    Row(LogEntry entry, Verdict unauth, Map<UUID, Verdict> verdicts) {
+      int n = verdicts == null ? 0 : verdicts.size();
+      this.entry = entry;
+      this.method = methodCode(entry.method());
+      this.unauth = (unauth == null ? Verdict.NONE : unauth).code();
+      this.profileOrdinals = new int[n];
+      this.profileVerdicts = new byte[n];
+      this.profileSignatures = new ResponseSignature[n];
+      if (n == 0) return;
+      int i = 0;
+      for (Map.Entry<UUID, Verdict> v : verdicts.entrySet()) {
+        profileOrdinals[i] = ordinal(v.getKey());
+        profileVerdicts[i] = (v.getValue() == null ? Verdict.NONE : v.getValue()).code();
+        profileSignatures[i] = entry.perProfileSignature().get(v.getKey());
+        i++;
+      }
+    }
+  }
+
+  /** Columns of one profile within a chunk. */
+  private static final class ProfileColumns {
+    private final short[] status = new short[CHUNK_SIZE];
+    private final int[] length = new int[CHUNK_SIZE];
+    private final byte[] verdict = new byte[CHUNK_SIZE];
+  }
+
+  private static final class Chunk {
+    private final AtomicReferenceArray<LogEntry> entries = new AtomicReferenceArray<>(CHUNK_SIZE);
+    private final int[] number = new int[CHUNK_SIZE];
+    private final byte[] method = new byte[CHUNK_SIZE];
+    private final short[] status = new short[CHUNK_SIZE];
+    private final int[] length = new int[CHUNK_SIZE];
+    private final short[] unauthStatus = new short[CHUNK_SIZE];
+    private final int[] unauthLength = new int[CHUNK_SIZE];
+    private final byte[] unauthVerdict = new byte[CHUNK_SIZE];
+    // By profile ordinal; grown under the chunk's lock, and a profile's columns are never replaced.
+    private volatile ProfileColumns[] profiles = new ProfileColumns[0];
+
+    ProfileColumns profile(int ordinal, boolean create) {
+      ProfileColumns[] p = profiles;
+      if (ordinal < p.length && p[ordinal] != null) return p[ordinal];
+      if (!create) return null;
+      synchronized (this) {
+        p = profiles;
+        if (ordinal >= p.length) p = Arrays.copyOf(p, Math.max(ordinal + 1, p.length * 2));
+        if (p[ordinal] == null) p[ordinal] = new ProfileColumns();
+        profiles = p;
+        return p[ordinal];
+      }
+    }
+
+    // The entry goes last: publication waits for it.
+    void write(int i, Row row) {
+      LogEntry e = row.entry;
+      number[i] = e.number();
+      method[i] = row.method;
+      status[i] = status(e.originalSignature());
+      length[i] = length(e.originalSignature());
+      unauthStatus[i] = status(e.unauthSignature());
+      unauthLength[i] = length(e.unauthSignature());
+      unauthVerdict[i] = row.unauth;
+      for (int k = 0; k < row.profileOrdinals.length; k++) {
+        ProfileColumns p = profile(row.profileOrdinals[k], true);
+        p.status[i] = status(row.profileSignatures[k]);
+        p.length[i] = length(row.profileSignatures[k]);
+        p.verdict[i] = row.profileVerdicts[k];
+      }
+      entries.set(i, e);
+    }
+
+    void copyFrom(Chunk from, int i, int to) {
+      number[to] = from.number[i];
+      method[to] = from.method[i];
+      status[to] = from.status[i];
+      length[to] = from.length[i];
+      unauthStatus[to] = from.unauthStatus[i];
+      unauthLength[to] = from.unauthLength[i];
+      unauthVerdict[to] = from.unauthVerdict[i];
+      ProfileColumns[] src = from.profiles;
+      for (int o = 0; o < src.length; o++) {
+        if (src[o] == null || src[o].verdict[i] == 0) continue;
+        ProfileColumns p = profile(o, true);
+        p.status[to] = src[o].status[i];
+        p.length[to] = src[o].length[i];
+        p.verdict[to] = src[o].verdict[i];
+      }
+      entries.set(to, from.entries.get(i));
+    }
+  }
+
+  private static final class Store {
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger published = new AtomicInteger();
+    private volatile Tombstones tombstones = Tombstones.NONE;
+    // Set by the compaction that replaced this store, with the new slot of each old one (-1 if removed).
+    private volatile Store successor;
+    private int[] movedTo;
+
+    /** False once the store is sealed; the caller retries on the store that replaced it. */
+    boolean append(Row row) {
+      int slot = reserved.getAndIncrement();
+      if (slot < 0) return false;
+      if (slot >>> CHUNK_BITS >= MAX_CHUNKS) {
+        reserved.decrementAndGet();
+        throw new IllegalStateException("Results log is full");
+      }
+      chunk(slot, true).write(slot & CHUNK_MASK, row);
+      publish();
+      return true;
+    }
+
+    // Publish every written slot after the published length, including ones written by appenders that
+    // finished before this one; nobody waits for a slower writer, the last one to finish does it.
+    void publish() {
+      for (int p = published.get(); isWritten(p); p = published.get()) {
+        published.compareAndSet(p, p + 1);
+      }
+    }
+
+    Chunk chunk(int slot, boolean create) {
+      int c = slot >>> CHUNK_BITS;
+      Chunk chunk = chunks.get(c);
+      if (chunk == null && create) {
+        chunks.compareAndSet(c, null, new Chunk());
+        chunk = chunks.get(c);
+      }
+      return chunk;
+    }
+
+    private boolean isWritten(int slot) {
+      if (slot >>> CHUNK_BITS >= MAX_CHUNKS) return false;
+      Chunk c = chunks.get(slot >>> CHUNK_BITS);
+      return c != null && c.entries.get(slot & CHUNK_MASK) != null;
+    }
+
+    int published() {
+      return published.get();
+    }
+
+    /** Stops further appends; returns the number of slots reserved before that. */
+    int seal() {
+      int n = reserved.getAndSet(Integer.MIN_VALUE);
+      return n < 0 ? published.get() : n;
+    }
+  }
+
+  private static final class Tombstones {
+    static final Tombstones NONE = new Tombstones(new long[0], 0);
+
+    private final long[] bits;
+    private final int count;
+    // Slot of each live position, built on first use for a given published length.
+    private int[] slots;
+    private int slotsLength = -1;
+
+    Tombstones(long[] bits, int count) {
+      this.bits = bits;
+      this.count = count;
+    }
+
+    boolean contains(int slot) {
+      int word = slot >>> 6;
+      return word < bits.length && (bits[word] & (1L << slot)) != 0;
+    }
+
+    synchronized int[] slots(int length) {
+      if (slotsLength != length) {
+        int[] out = new int[length];
+        int n = 0;
+        for (int slot = 0; slot < length; slot++) {
+          if (!contains(slot)) out[n++] = slot;
+        }
+        slots = Arrays.copyOf(out, n);
+        slotsLength = length;
+      }
+      return slots;
+    }
+  }
+
+  /**
+   * A snapshot: the entries as a list, plus the columns by row index. Rows that profiles have no
+   * result for read as status 0, length 0 and NONE.
+   */
+  public static final class View extends AbstractList<LogEntry> implements RandomAccess {
+    private final ResultsLog log;
+    private final Store store;
+    private final int length;
+    // Null when there are no tombstones below length.
+    private final int[] slots;
+    private final int profileColumns;
+
+    View(ResultsLog log, Store store, int length, Tombstones dead, int profileColumns) {
+      this.log = log;
+      this.store = store;
+      this.length = length;
+      this.slots = dead.count == 0 ? null : dead.slots(length);
+      this.profileColumns = profileColumns;
+    }
+
+    int slot(int row) {
+      if (row < 0 || row >= size()) throw new IndexOutOfBoundsException(row);
+      return slots == null ? row : slots[row];
+    }
+
+    // Only for slots below the published length, which happen-before the read of that length.
+    private Chunk chunk(int slot) {
+      return store.chunks.getPlain(slot >>> CHUNK_BITS);
+    }
+
+    private ProfileColumns profile(int slot, int ordinal) {
+      return ordinal < 0 ? null : chunk(slot).profile(ordinal, false);
+    }
+
+    @Override
+    public LogEntry get(int row) {
+      int slot = slot(row);
+      return chunk(slot).entries.getPlain(slot & CHUNK_MASK);
+    }
+
+    @Override
+    public int size() {
+      return slots == null ? length : slots.length;
+    }
+
+    /** Profile ordinals in use when the view was taken run from 0 to this, exclusive. */
+    public int profileColumns() {
+      return profileColumns;
+    }
+
+    /** -1 for a profile that has no results yet. */
+    public int ordinal(UUID profileId) {
+      Integer o = log.ordinals.get(profileId);
+      return o == null ? -1 : o;
+    }
+
+    public int number(int row) {
+      int slot = slot(row);
+      return chunk(slot).number[slot & CHUNK_MASK];
+    }
+
+    public String method(int row) {
+      int slot = slot(row);
+      byte code = chunk(slot).method[slot & CHUNK_MASK];
+      return code == 0 ? get(row).method() : METHODS[code];
+    }
+
+    /** Status of the original response. */
+    public int status(int row) {
+      int slot = slot(row);
+      return chunk(slot).status[slot & CHUNK_MASK];
+    }
+
+    /** Body length of the original response. */
+    public int length(int row) {
+      int slot = slot(row);
+      return chunk(slot).length[slot & CHUNK_MASK];
+    }
+
+    public int unauthStatus(int row) {
+      int slot = slot(row);
+      return chunk(slot).unauthStatus[slot & CHUNK_MASK];
+    }
+
+    public int unauthLength(int row) {
+      int slot = slot(row);
+      return chunk(slot).unauthLength[slot & CHUNK_MASK];
+    }
+
+    public Verdict unauthVerdict(int row) {
+      int slot = slot(row);
+      return Verdict.of(chunk(slot).unauthVerdict[slot & CHUNK_MASK]);
+    }
+
+    public int status(int row, int ordinal) {
+      int slot = slot(row);
+      ProfileColumns p = profile(slot, ordinal);
+      return p == null ? 0 : p.status[slot & CHUNK_MASK];
+    }
+
+    public int length(int row, int ordinal) {
+      int slot = slot(row);
+      ProfileColumns p = profile(slot, ordinal);
+      return p == null ? 0 : p.length[slot & CHUNK_MASK];
+    }
+
+    public Verdict verdict(int row, int ordinal) {
+      int slot = slot(row);
+      ProfileColumns p = profile(slot, ordinal);
+      return p == null ? Verdict.NONE : Verdict.of(p.verdict[slot & CHUNK_MASK]);
+    }
+
+    /** The update lands in the live log even if it was compacted since this view was taken. */
+    public void setUnauthVerdict(int row, Verdict verdict) {
+      log.setVerdict(store, slot(row), -1, verdict);
+    }
+
+    public void setVerdict(int row, int ordinal, Verdict verdict) {
+      if (ordinal < 0) return;
+      log.setVerdict(store, slot(row), ordinal, verdict);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package autorize.core;
+
+import burp.api.montoya.http.HttpService;
+import burp.api.montoya.http.message.requests.HttpRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Caches Burp scope decisions per scheme, host, port and path (query excluded).
+ *
+ * Scope is consulted several times per message (HTTP handler, SCOPE_ONLY filter, manual submit), and
+ * busy proxies revisit the same endpoints constantly; with the cache that costs one hash lookup. The
+ * cache is a bounded LRU and is cleared whenever Burp reports a scope change. A generation counter keeps
+ * a lookup that raced with a clear from storing a stale decision.
+ */
+public final class ScopeCache {
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final Map<String, Boolean> decisions;
+  private final AtomicLong generation = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public ScopeCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ScopeCache(int capacity) {
+    this.decisions = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /** Returns the cached decision for the request's endpoint, asking {@code engine} on a miss. */
+  public boolean isInScope(HttpRequest req, Predicate<HttpRequest> engine) {
+    if (req == null) return false;
+    String key = key(req);
+    if (key == null) return engine.test(req);
+
+    synchronized (decisions) {
+      Boolean cached = decisions.get(key);
+      if (cached != null) {
+        hits.increment();
+        return cached;
+      }
+    }
+
+    misses.increment();
+    long gen = generation.get();
+    boolean decision = engine.test(req);
+    synchronized (decisions) {
+      if (generation.get() == gen) decisions.put(key, decision);
+    }
+    return decision;
+  }
+
+  /** Drops every decision; called when Burp's target scope changes. */
+  public void clear() {
+    synchronized (decisions) {
+      generation.incrementAndGet();
+      decisions.clear();
+    }
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public int size() {
+    synchronized (decisions) {
+      return decisions.size();
+    }
+  }
+
+  private static String key(HttpRequest req) {
+    try {
+      HttpService svc = req.httpService();
+      if (svc == null || svc.host() == null) return null;
+      String path = req.pathWithoutQuery();
+      return (svc.secure() ? "https://" : "http://")
+          + svc.host().toLowerCase(Locale.ROOT) + ":" + svc.port()
+          + (path == null || path.isEmpty() ? "/" : path);
+    } catch (Exception e) {
+      return null;
+    }
+  }
+}
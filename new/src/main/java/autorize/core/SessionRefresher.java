@@ -0,0 +1,285 @@
+package autorize.core;
+
+import autorize.model.TokenExtractor;
+import autorize.model.TokenExtractorType;
+import autorize.model.UserProfile;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-profile session refresh: runs the profile's login request, extracts tokens and caches them with a TTL.
+ *
+ * Concurrent replays for the same profile share one in-flight login. The transport is pluggable so the
+ * refresher does not depend on Burp and can be driven against a local stub login server.
+ */
+public final class SessionRefresher {
+  private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{([A-Za-z0-9_.-]+)}}");
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  // A failed login is retried at most this often, so a broken recipe does not hammer the target.
+  private static final long FAILURE_BACKOFF_MILLIS = 30_000L;
+  // An auth failure on a session younger than this does not trigger another login.
+  private static final long MIN_REFRESH_INTERVAL_MILLIS = 10_000L;
+
+  public interface Transport {
+    LoginResponse send(String serviceUrl, String rawRequest) throws Exception;
+  }
+
+  public static final class LoginResponse {
+    private final int status;
+    private final List<Map.Entry<String, String>> headers;
+    private final String body;
+
+    public LoginResponse(int status, List<Map.Entry<String, String>> headers, String body) {
+      this.status = status;
+      this.headers = headers == null ? List.of() : headers;
+      this.body = body == null ? "" : body;
+    }
+
+    public int status() {
+      return status;
+    }
+
+    public List<Map.Entry<String, String>> headers() {
+      return headers;
+    }
+
+    public String body() {
+      return body;
+    }
+  }
+
+  /** Immutable set of extracted values for one profile. */
+  public static final class Session {
+    static final Session NONE = new Session("", Collections.emptyMap(), 0L, Long.MAX_VALUE);
+
+    private final String recipeKey;
+    private final Map<String, String> values;
+    private final long fetchedAtMillis;
+    private final long expiresAtMillis;
+
+    Session(String recipeKey, Map<String, String> values, long fetchedAtMillis, long expiresAtMillis) {
+      this.recipeKey = recipeKey;
+      this.values = values;
+      this.fetchedAtMillis = fetchedAtMillis;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+
+    public boolean isActive() {
+      return this != NONE;
+    }
+
+    public Map<String, String> values() {
+      return values;
+    }
+
+    /** Replaces {{name}} placeholders with extracted values; unknown placeholders are left as-is. */
+    public String resolve(String text) {
+      if (text == null || values.isEmpty() || text.indexOf("{{") < 0) return text;
+      Matcher m = PLACEHOLDER.matcher(text);
+      StringBuilder sb = new StringBuilder(text.length() + 32);
+      while (m.find()) {
+        String v = values.get(m.group(1));
+        m.appendReplacement(sb, Matcher.quoteReplacement(v == null ? m.group() : v));
+      }
+      m.appendTail(sb);
+      return sb.toString();
+    }
+  }
+
+  private final Transport transport;
+  private final LongSupplier clock;
+  private final Map<UUID, Session> cache = new ConcurrentHashMap<>();
+  private final Map<UUID, CompletableFuture<Session>> inFlight = new ConcurrentHashMap<>();
+
+  public SessionRefresher(Transport transport) {
+    this(transport, System::currentTimeMillis);
+  }
+
+  public SessionRefresher(Transport transport, LongSupplier clock) {
+    this.transport = transport;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the cached session for the profile, logging in first when it is missing, expired or the
+   * recipe changed. Profiles without a recipe get an inactive session that resolves nothing.
+   */
+  public Session current(UserProfile profile) {
+    if (profile == null || !profile.hasRefreshRecipe()) return Session.NONE;
+    String key = recipeKey(profile);
+    Session s = cache.get(profile.id());
+    if (isFresh(s, key)) return s;
+    return refresh(profile, key);
+  }
+
+  /**
+   * Reports that a replay made with {@code used} was rejected as unauthenticated.
+   *
+   * Only the first report for a given session invalidates it, and only once it is old enough, so a burst
+   * of failures (or a profile that is simply not allowed) costs at most one extra login.
+   *
+   * @return true if the session was invalidated and a retry with a fresh session makes sense
+   */
+  public boolean onAuthFailure(UserProfile profile, Session used) {
+    if (profile == null || used == null || !used.isActive()) return false;
+    if (clock.getAsLong() - used.fetchedAtMillis < MIN_REFRESH_INTERVAL_MILLIS) return false;
+    return cache.remove(profile.id(), used);
+  }
+
+  public void invalidate(UUID profileId) {
+    if (profileId != null) cache.remove(profileId);
+  }
+
+  public void clear() {
+    cache.clear();
+  }
+
+  private Session refresh(UserProfile profile, String key) {
+    UUID id = profile.id();
+    CompletableFuture<Session> mine = new CompletableFuture<>();
+    CompletableFuture<Session> existing = inFlight.putIfAbsent(id, mine);
+    if (existing != null) {
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        return Session.NONE;
+      }
+    }
+
+    try {
+      // Another thread may have logged in and left between our cache read and taking the in-flight slot.
+      Session cached = cache.get(id);
+      if (isFresh(cached, key)) {
+        mine.complete(cached);
+        return cached;
+      }
+      Session s = login(profile, key);
+      cache.put(id, s);
+      mine.complete(s);
+      return s;
+    } catch (RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(id, mine);
+    }
+  }
+
+  private boolean isFresh(Session s, String key) {
+    return s != null && s.recipeKey.equals(key) && clock.getAsLong() < s.expiresAtMillis;
+  }
+
+  private Session login(UserProfile profile, String key) {
+    long now = clock.getAsLong();
+    LoginResponse res;
+    try {
+      res = transport.send(profile.refreshServiceUrl(), profile.refreshRequestText());
+    } catch (Exception e) {
+      res = null;
+    }
+    if (res == null) {
+      return new Session(key, Collections.emptyMap(), now, now + FAILURE_BACKOFF_MILLIS);
+    }
+
+    Map<String, String> values = new LinkedHashMap<>();
+    for (TokenExtractor x : profile.tokenExtractors()) {
+      if (x.name().isEmpty()) continue;
+      String v = extract(x, res);
+      if (v != null) values.put(x.name(), v);
+    }
+
+    long ttl = profile.refreshTtlSeconds() * 1000L;
+    if (values.isEmpty()) ttl = Math.min(ttl, FAILURE_BACKOFF_MILLIS);
+    return new Session(key, Collections.unmodifiableMap(values), now, now + ttl);
+  }
+
+  static String extract(TokenExtractor x, LoginResponse res) {
+    TokenExtractorType t = x.type();
+    if (t == TokenExtractorType.SET_COOKIE) {
+      String want = x.expression().trim();
+      for (Map.Entry<String, String> h : res.headers()) {
+        if (!"set-cookie".equalsIgnoreCase(h.getKey().trim())) continue;
+        String v = h.getValue() == null ? "" : h.getValue();
+        int semi = v.indexOf(';');
+        String pair = semi >= 0 ? v.substring(0, semi) : v;
+        int eq = pair.indexOf('=');
+        if (eq <= 0) continue;
+        if (pair.substring(0, eq).trim().equals(want)) {
+          return pair.substring(eq + 1).trim();
+        }
+      }
+      return null;
+    }
+
+    if (t == TokenExtractorType.JSON_PATH) {
+      try {
+        JsonNode root = MAPPER.readTree(res.body());
+        if (root == null) return null;
+        JsonNode n = root.at(toPointer(x.expression()));
+        if (n == null || n.isMissingNode() || n.isNull()) return null;
+        return n.isValueNode() ? n.asText() : n.toString();
+      } catch (Exception e) {
+        return null;
+      }
+    }
+
+    if (t == TokenExtractorType.REGEX) {
+      Pattern p = x.regex();
+      if (p == null) return null;
+      Matcher m = p.matcher(rawText(res));
+      if (!m.find()) return null;
+      return m.groupCount() >= 1 ? m.group(1) : m.group();
+    }
+    return null;
+  }
+
+  /** Converts "$.data.items[0].token" into the JSON pointer "/data/items/0/token". */
+  static JsonPointer toPointer(String path) {
+    String p = path == null ? "" : path.trim();
+    if (p.startsWith("/")) return JsonPointer.compile(p);
+    if (p.startsWith("$")) p = p.substring(1);
+    StringBuilder sb = new StringBuilder();
+    for (String seg : p.replace("[", ".").replace("]", "").split("\\.")) {
+      if (seg.isEmpty()) continue;
+      sb.append('/').append(seg.replace("~", "~0").replace("/", "~1"));
+    }
+    return JsonPointer.compile(sb.toString());
+  }
+
+  private static String rawText(LoginResponse res) {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, String> h : res.headers()) {
+      sb.append(h.getKey()).append(": ").append(h.getValue()).append("\r\n");
+    }
+    sb.append("\r\n").append(res.body());
+    return sb.toString();
+  }
+
+  private static String recipeKey(UserProfile p) {
+    List<Object> parts = new ArrayList<>();
+    parts.add(p.refreshServiceUrl());
+    parts.add(p.refreshRequestText());
+    parts.add(p.refreshTtlSeconds());
+    for (TokenExtractor x : p.tokenExtractors()) {
+      parts.add(x.type());
+      parts.add(x.name());
+      parts.add(x.expression());
+    }
+    return parts.toString();
+  }
+}
@@ -0,0 +1,157 @@
+package autorize.core;
+
+import autorize.model.AndOr;
+import autorize.model.ResponseSignature;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Remembers whether a response's content showed enforcement, keyed on the rule set's version and mode,
+ * the regex engine and budget it ran under, the status and the body digest (plus the message length for
+ * rule sets with a length rule).
+ *
+ * Error pages, login redirects and "access denied" bodies come back byte-identical across thousands of
+ * replays; with the cache their literals and regexes are evaluated once per rule-set version. Rule sets
+ * that look at headers are not cached, since a body digest says nothing about them. Neither is an
+ * outcome during which a regex ran out of budget: its "no match" says nothing about the body, and the
+ * same body may finish in time on the next replay. The cache is a bounded LRU; entries of edited rule
+ * sets are never hit again and age out.
+ */
+public final class VerdictCache {
+  public static final int DEFAULT_CAPACITY = 8192;
+
+  private final Map<Key, Result> results;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder uncacheable = new LongAdder();
+  private final LongAdder savedNanos = new LongAdder();
+
+  public VerdictCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public VerdictCache(int capacity) {
+    this.results = new LinkedHashMap<>(256, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /** Returns the cached outcome for this response, running {@code evaluate} on a miss. */
+  public boolean enforced(EnforcementRuleSet rules, AndOr mode, ResponseSignature sig, BooleanSupplier evaluate) {
+    if (!rules.readsBodyOnly()) {
+      uncacheable.increment();
+      return evaluate.getAsBoolean();
+    }
+
+    RegexGuard guard = rules.regexGuard();
+    Key key = new Key(rules.version(), mode, guard, sig, rules.readsLength());
+    synchronized (results) {
+      Result cached = results.get(key);
+      if (cached != null) {
+        hits.increment();
+        savedNanos.add(cached.nanos);
+        return cached.enforced;
+      }
+    }
+
+    // The counter is shared, so an abort on another thread also skips caching here; that only costs a miss.
+    long aborts = guard == null ? 0 : guard.aborts();
+    long t0 = System.nanoTime();
+    boolean enforced = evaluate.getAsBoolean();
+    Result result = new Result(enforced, System.nanoTime() - t0);
+    if (guard != null && guard.aborts() != aborts) {
+      uncacheable.increment();
+      return enforced;
+    }
+    misses.increment();
+    synchronized (results) {
+      results.put(key, result);
+    }
+    return enforced;
+  }
+
+  public void clear() {
+    synchronized (results) {
+      results.clear();
+    }
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  /** Evaluations not cached because the rule set reads headers or a regex ran out of budget. */
+  public long uncacheable() {
+    return uncacheable.sum();
+  }
+
+  /** Evaluation time the hits would have cost, as measured when each entry was first computed (an estimate). */
+  public long savedNanos() {
+    return savedNanos.sum();
+  }
+
+  public int size() {
+    synchronized (results) {
+      return results.size();
+    }
+  }
+
+  private static final class Result {
+    private final boolean enforced;
+    private final long nanos;
+
+    Result(boolean enforced, long nanos) {
+      this.enforced = enforced;
+      this.nanos = nanos;
+    }
+  }
+
+  private static final class Key {
+    private final long version;
+    private final AndOr mode;
+    private final boolean linear;
+    private final int budgetMillis;
+    private final int status;
+    private final int bodyLength;
+    // -1 unless the rule set compares the whole message's length.
+    private final int fullLength;
+    private final long digestHigh;
+    private final long digestLow;
+
+    Key(long version, AndOr mode, RegexGuard guard, ResponseSignature sig, boolean withLength) {
+      this.version = version;
+      this.mode = mode;
+      this.linear = guard != null && guard.linear();
+      this.budgetMillis = guard == null ? 0 : guard.budgetMillis();
+      this.status = sig.status();
+      this.bodyLength = sig.bodyLength();
+      this.fullLength = withLength ? sig.headerLength() + sig.bodyLength() : -1;
+      this.digestHigh = sig.digestHigh();
+      this.digestLow = sig.digestLow();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) return false;
+      Key k = (Key) o;
+      return version == k.version && mode == k.mode && linear == k.linear && budgetMillis == k.budgetMillis
+          && status == k.status && bodyLength == k.bodyLength
+          && fullLength == k.fullLength && digestHigh == k.digestHigh && digestLow == k.digestLow;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(digestHigh ^ (version * 0x9e3779b97f4a7c15L)) + 31 * status;
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package autorize.core;
+
+import autorize.model.AndOr;
+import autorize.model.LogEntry;
+import autorize.model.ResponseSignature;
+import autorize.model.UserProfile;
+import autorize.model.Verdict;
+import burp.api.montoya.http.message.HttpRequestResponse;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Recomputes the verdicts shown in the log under the current enforcement rules and body comparison,
+ * from the responses each entry already stores; nothing is sent.
+ *
+ * Entries are split across cores with fork/join, like WhatIfSimulator, and updated in place. Stored
+ * signatures are reused, except in JSON mode, where the ignore paths may have changed since capture and
+ * fingerprints are rebuilt with the endpoint's already learned noise mask (no baseline is sent).
+ */
+public final class VerdictReevaluator {
+  private static final int SPLIT_BELOW = 512;
+
+  private final AutorizeState state;
+  private final Map<UUID, UserProfile> profiles = new HashMap<>();
+  private final Map<UUID, EnforcementRuleSet> rules = new HashMap<>();
+  private final EnforcementRuleSet unauthRules;
+  private final BodyComparison bodies;
+  private final AtomicInteger done = new AtomicInteger();
+
+  /**
+   * @param ruleSets    compiled rules per live profile (the controller's cache, so versions are shared
+   *                    with the verdict cache)
+   * @param unauthRules compiled rules for the unauthenticated replay
+   */
+  public VerdictReevaluator(AutorizeState state, Map<UUID, EnforcementRuleSet> ruleSets,
+                            EnforcementRuleSet unauthRules) {
+    this.state = state;
+    for (UserProfile p : state.profilesSnapshot()) {
+      profiles.put(p.id(), p);
+    }
+    this.rules.putAll(ruleSets);
+    this.unauthRules = unauthRules;
+    this.bodies = state.bodyComparison();
+  }
+
+  /** Blocks until every entry is done; {@code progress} gets the number of entries finished so far. */
+  public Result run(ResultsLog.View log, IntConsumer progress) {
+    long t0 = System.nanoTime();
+    Result r = ForkJoinPool.commonPool().invoke(new Slice(log, 0, log.size(), progress));
+    r.elapsedMillis = (System.nanoTime() - t0) / 1_000_000L;
+    return r;
+  }
+
+  private final class Slice extends RecursiveTask<Result> {
+    private final ResultsLog.View log;
+    private final int from;
+    private final int to;
+    private final IntConsumer progress;
+
+    Slice(ResultsLog.View log, int from, int to, IntConsumer progress) {
+      this.log = log;
+      this.from = from;
+      this.to = to;
+      this.progress = progress;
+    }
+
+    @Override
+    protected Result compute() {
+      if (to - from > SPLIT_BELOW) {
+        int mid = (from + to) >>> 1;
+        Slice left = new Slice(log, from, mid, progress);
+        left.fork();
+        Result right = new Slice(log, mid, to, progress).compute();
+        return left.join().merge(right);
+      }
+      Result r = new Result();
+      for (int i = from; i < to; i++) {
+        try {
+          reevaluate(log, i, r);
+        } catch (RuntimeException e) {
+          r.errors++;
+        }
+      }
+      progress.accept(done.addAndGet(to - from));
+      return r;
+    }
+  }
+
+  private void reevaluate(ResultsLog.View log, int row, Result r) {
+    LogEntry e = log.get(row);
+    HttpRequestResponse original = e.original();
+    if (original == null || original.response() == null) return;
+    r.entries++;
+
+    boolean fresh = bodies != null && bodies.json() != null;
+    BodyComparison b = bodies;
+    if (fresh && state.learnNoise()) b = b.withNoise(state.noiseBaselines().learnedMask(original.request()));
+    ResponseSignature originalSig = ResponseView.stored(original.response(), e.originalSignature(), fresh).signature(b);
+
+    for (Map.Entry<UUID, HttpRequestResponse> p : e.perProfile().entrySet()) {
+      UUID id = p.getKey();
+      UserProfile profile = profiles.get(id);
+      EnforcementRuleSet set = rules.get(id);
+      if (profile == null || set == null) continue;
+      int ordinal = log.ordinal(id);
+      Verdict verdict = verdict(originalSig, p.getValue(), e.perProfileSignature().get(id), fresh, set,
+          profile.enforcementAndOr(), b);
+      if (verdict == null) continue;
+      r.verdicts++;
+      if (verdict != log.verdict(row, ordinal)) {
+        log.setVerdict(row, ordinal, verdict);
+        r.changed++;
+      }
+    }
+
+    if (e.unauthenticated() != null && log.unauthVerdict(row) != Verdict.DISABLED) {
+      Verdict verdict = verdict(originalSig, e.unauthenticated(), e.unauthSignature(), fresh, unauthRules,
+          state.unauthEnforcementAndOr(), b);
+      if (verdict != null) {
+        r.verdicts++;
+        if (verdict != log.unauthVerdict(row)) {
+          log.setUnauthVerdict(row, verdict);
+          r.changed++;
+        }
+      }
+    }
+  }
+
+  private Verdict verdict(ResponseSignature original, HttpRequestResponse replay, ResponseSignature replaySig,
+                         boolean fresh, EnforcementRuleSet set, AndOr mode, BodyComparison b) {
+    if (replay == null || replay.response() == null) return null;
+    ResponseView view = ResponseView.stored(replay.response(), replaySig, fresh);
+    return AutorizeController.checkBypass(original, view, set, mode, b, state.verdictCache(), state.detectors());
+  }
+
+  /** Counts for one run; slices are merged pairwise as the fork/join tree unwinds. */
+  public static final class Result {
+    private long entries;
+    private long verdicts;
+    private long changed;
+    private long errors;
+    private long elapsedMillis;
+
+    private Result merge(Result o) {
+      entries += o.entries;
+      verdicts += o.verdicts;
+      changed += o.changed;
+      errors += o.errors;
+      return this;
+    }
+
+    public long changed() {
+      return changed;
+    }
+
+    public String summary() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("Re-evaluated ").append(verdicts).append(" verdicts in ").append(entries).append(" entries, ")
+          .append(changed).append(" changed.");
+      if (errors > 0) sb.append("\nSkipped ").append(errors).append(" entries that could not be evaluated.");
+      sb.append("\nFinished in ").append(elapsedMillis).append(" ms.");
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,246 @@
+package autorize.core;
+
+import autorize.model.AndOr;
+import autorize.model.LogEntry;
+import autorize.model.ResponseSignature;
+import autorize.model.UserProfile;
+import autorize.model.Verdict;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.HttpRequestResponse;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Predicate;
+
+/**
+ * Evaluates a candidate configuration against traffic that has already been seen, without sending
+ * anything.
+ *
+ * Both sides are standalone AutorizeState copies (see AutorizeController#simulate), so the live filter
+ * counters are not touched. Proxy history messages go through the same gates as the HTTP handler (port
+ * drop, tool filter, scope, ignore 304/204, interception filters) to count captures and the replays
+ * they would cost. Log entries already carry their replay responses, so their verdicts are recomputed
+ * offline under the candidate's enforcement rules and compared with the verdicts shown in the table.
+ * Messages are split across cores with fork/join.
+ */
+public final class WhatIfSimulator {
+  private static final int SPLIT_BELOW = 512;
+
+  private final AutorizeState current;
+  private final AutorizeState candidate;
+  private final Predicate<HttpRequest> inScope;
+  // Log entries reference live profile ids; candidate profiles are matched by name.
+  private final Map<UUID, String> liveProfileNames = new HashMap<>();
+  private final Map<String, UserProfile> candidateProfiles = new HashMap<>();
+  private final Map<String, EnforcementRuleSet> candidateRules = new HashMap<>();
+  private final EnforcementRuleSet candidateUnauthRules;
+  // Shared by all slices; the candidate's rule sets are compiled once per run, so their versions hold.
+  private final VerdictCache cache = new VerdictCache();
+
+  public WhatIfSimulator(AutorizeState current, AutorizeState candidate, Predicate<HttpRequest> inScope,
+                         List<UserProfile> liveProfiles) {
+    this.current = current;
+    this.candidate = candidate;
+    this.inScope = inScope;
+    for (UserProfile p : liveProfiles) {
+      liveProfileNames.put(p.id(), p.name());
+    }
+    for (UserProfile p : candidate.profilesSnapshot()) {
+      if (candidateProfiles.putIfAbsent(p.name(), p) == null) {
+        candidateRules.put(p.name(), EnforcementRuleSet.compile(p.enforcementRules(), null, candidate.regexGuard()));
+      }
+    }
+    this.candidateUnauthRules =
+        EnforcementRuleSet.compile(candidate.unauthEnforcementRules(), null, candidate.regexGuard());
+  }
+
+  public Report run(ResultsLog.View log, List<ProxyHttpRequestResponse> history) {
+    long t0 = System.nanoTime();
+    Report r = ForkJoinPool.commonPool().invoke(new Slice(log, history, 0, history.size() + log.size()));
+    r.replaysPerMessageNow = replaysPerMessage(current);
+    r.replaysPerMessageCandidate = replaysPerMessage(candidate);
+    r.elapsedMillis = (System.nanoTime() - t0) / 1_000_000L;
+    return r;
+  }
+
+  private static int replaysPerMessage(AutorizeState s) {
+    return s.profilesSnapshot().size() + (s.checkUnauthenticated() ? 1 : 0);
+  }
+
+  private final class Slice extends RecursiveTask<Report> {
+    private final ResultsLog.View log;
+    private final List<ProxyHttpRequestResponse> history;
+    private final int from;
+    private final int to;
+
+    Slice(ResultsLog.View log, List<ProxyHttpRequestResponse> history, int from, int to) {
+      this.log = log;
+      this.history = history;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected Report compute() {
+      if (to - from > SPLIT_BELOW) {
+        int mid = (from + to) >>> 1;
+        Slice left = new Slice(log, history, from, mid);
+        left.fork();
+        Report right = new Slice(log, history, mid, to).compute();
+        return left.join().merge(right);
+      }
+      Report r = new Report();
+      for (int i = from; i < to; i++) {
+        try {
+          if (i < history.size()) {
+            simulateHistory(history.get(i), r);
+          } else {
+            simulateLog(log, i - history.size(), r);
+          }
+        } catch (RuntimeException e) {
+          r.errors++;
+        }
+      }
+      return r;
+    }
+  }
+
+  private void simulateHistory(ProxyHttpRequestResponse item, Report r) {
+    HttpRequest req = item.finalRequest();
+    HttpResponse res = item.response();
+    if (req == null || res == null) return;
+    r.historyMessages++;
+    boolean now = captures(current, ToolType.PROXY, item.listenerPort(), req, res);
+    boolean cand = captures(candidate, ToolType.PROXY, item.listenerPort(), req, res);
+    if (now) r.historyCapturedNow++;
+    if (cand) r.historyCapturedCandidate++;
+    if (cand && !now) r.historyGained++;
+    if (now && !cand) r.historyLost++;
+  }
+
+  private void simulateLog(ResultsLog.View log, int row, Report r) {
+    LogEntry e = log.get(row);
+    HttpRequestResponse original = e.original();
+    if (original == null || original.request() == null || original.response() == null) return;
+    r.logEntries++;
+    // Log entries may come from Repeater or manual submission; only the message-level gates apply.
+    if (captures(candidate, null, -1, original.request(), original.response())) r.logCapturedCandidate++;
+
+    // Stored JSON fingerprints were made with the live ignore paths, so JSON mode starts from scratch.
+    BodyComparison bodies = candidate.bodyComparison();
+    boolean fresh = bodies != null && bodies.json() != null;
+    ResponseSignature originalSig =
+        ResponseView.stored(original.response(), e.originalSignature(), fresh).signature(fresh ? bodies : null);
+    for (Map.Entry<UUID, HttpRequestResponse> p : e.perProfile().entrySet()) {
+      String name = liveProfileNames.get(p.getKey());
+      UserProfile cp = name == null ? null : candidateProfiles.get(name);
+      if (cp == null) continue;
+      compare(r, log.verdict(row, log.ordinal(p.getKey())), originalSig, p.getValue(),
+          e.perProfileSignature().get(p.getKey()), fresh, candidateRules.get(name), cp.enforcementAndOr(), bodies);
+    }
+    if (candidate.checkUnauthenticated() && e.unauthenticated() != null) {
+      compare(r, log.unauthVerdict(row), originalSig, e.unauthenticated(), e.unauthSignature(), fresh,
+          candidateUnauthRules, candidate.unauthEnforcementAndOr(), bodies);
+    }
+  }
+
+  private void compare(Report r, Verdict shown, ResponseSignature original, HttpRequestResponse replay,
+                       ResponseSignature replaySig, boolean fresh, EnforcementRuleSet rules, AndOr mode,
+                       BodyComparison bodies) {
+    if (shown == Verdict.NONE || replay == null || replay.response() == null) return;
+    Verdict verdict = AutorizeController.checkBypass(original, ResponseView.stored(replay.response(), replaySig, fresh),
+        rules, mode, bodies, cache, candidate.detectors());
+    r.verdictsEvaluated++;
+    if (verdict != shown) {
+      r.verdictsFlipped++;
+      r.flips.merge(shown.text() + " -> " + verdict.text(), 1L, Long::sum);
+    }
+  }
+
+  private boolean captures(AutorizeState s, ToolType tool, int listenerPort, HttpRequest req, HttpResponse res) {
+    FilterProgram program = s.filterProgram();
+    if (program.dropsPort(listenerPort)) return false;
+    if (tool != null && program.ignoresTool(tool)) return false;
+    if (!inScope.test(req)) return false;
+    if (s.ignore304()) {
+      short sc = res.statusCode();
+      if (sc == 304 || sc == 204) return false;
+    }
+    return program.firstRejecting(req, res, inScope) == FilterProgram.PASS;
+  }
+
+  /** Aggregated outcome; slices are merged pairwise as the fork/join tree unwinds. */
+  public static final class Report {
+    private long historyMessages;
+    private long historyCapturedNow;
+    private long historyCapturedCandidate;
+    private long historyGained;
+    private long historyLost;
+    private long logEntries;
+    private long logCapturedCandidate;
+    private long verdictsEvaluated;
+    private long verdictsFlipped;
+    private long errors;
+    private final Map<String, Long> flips = new TreeMap<>();
+    private int replaysPerMessageNow;
+    private int replaysPerMessageCandidate;
+    private long elapsedMillis;
+
+    private Report merge(Report o) {
+      historyMessages += o.historyMessages;
+      historyCapturedNow += o.historyCapturedNow;
+      historyCapturedCandidate += o.historyCapturedCandidate;
+      historyGained += o.historyGained;
+      historyLost += o.historyLost;
+      logEntries += o.logEntries;
+      logCapturedCandidate += o.logCapturedCandidate;
+      verdictsEvaluated += o.verdictsEvaluated;
+      verdictsFlipped += o.verdictsFlipped;
+      errors += o.errors;
+      o.flips.forEach((k, v) -> flips.merge(k, v, Long::sum));
+      return this;
+    }
+
+    public long historyCapturedCandidate() {
+      return historyCapturedCandidate;
+    }
+
+    public long replaysCandidate() {
+      return historyCapturedCandidate * replaysPerMessageCandidate;
+    }
+
+    public long verdictsFlipped() {
+      return verdictsFlipped;
+    }
+
+    public String summary() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("Proxy history: ").append(historyMessages).append(" messages\n");
+      sb.append("  captured now:       ").append(historyCapturedNow)
+          .append("  (").append(historyCapturedNow * replaysPerMessageNow).append(" replays)\n");
+      sb.append("  captured candidate: ").append(historyCapturedCandidate)
+          .append("  (").append(replaysCandidate()).append(" replays)\n");
+      sb.append("  newly captured: ").append(historyGained)
+          .append(", no longer captured: ").append(historyLost).append('\n');
+      sb.append('\n');
+      sb.append("Autorize log: ").append(logEntries).append(" entries, ")
+          .append(logCapturedCandidate).append(" still captured by the candidate filters\n");
+      sb.append("  verdicts re-evaluated: ").append(verdictsEvaluated)
+          .append(", flipped: ").append(verdictsFlipped).append('\n');
+      for (Map.Entry<String, Long> f : flips.entrySet()) {
+        sb.append("    ").append(f.getKey()).append(": ").append(f.getValue()).append('\n');
+      }
+      if (errors > 0) sb.append("\nSkipped ").append(errors).append(" messages that could not be evaluated\n");
+      sb.append("\nFinished in ").append(elapsedMillis).append(" ms");
+      return sb.toString();
+    }
+  }
+}
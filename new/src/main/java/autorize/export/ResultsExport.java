@@ -1,7 +1,8 @@
 package autorize.export;
 
 import autorize.core.AutorizeState;
-import autorize.model.LogEntry;
+import autorize.core.ResultsLog;
+import autorize.model.Verdict;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
@@ -34,17 +35,19 @@ public final class ResultsExport {
     }
     sb.append("\n");
 
-    for (LogEntry e : state.logSnapshot()) {
-      sb.append(e.number()).append(',');
-      sb.append(csv(e.method())).append(',');
-      sb.append(csv(e.url())).append(',');
-      sb.append(origLen(e)).append(',');
-      sb.append(unauthLen(e)).append(',');
-      sb.append(csv(e.unauthVerdict()));
-
-      for (UUID id : profileIds) {
-        sb.append(',').append(profileLen(e, id));
-        sb.append(',').append(csv(e.perProfileVerdict().getOrDefault(id, "")));
+    ResultsLog.View log = state.logSnapshot();
+    int[] ordinals = ordinals(log, profileIds);
+    for (int i = 0; i < log.size(); i++) {
+      sb.append(log.number(i)).append(',');
+      sb.append(csv(log.method(i))).append(',');
+      sb.append(csv(log.get(i).url())).append(',');
+      sb.append(log.length(i)).append(',');
+      sb.append(log.unauthLength(i)).append(',');
+      sb.append(csv(log.unauthVerdict(i).text()));
+
+      for (int o : ordinals) {
+        sb.append(',').append(log.length(i, o));
+        sb.append(',').append(csv(log.verdict(i, o).text()));
       }
       sb.append("\n");
     }
@@ -57,21 +60,23 @@ public final class ResultsExport {
     List<UUID> profileIds = new ArrayList<>(profiles.keySet());
 
     List<Map<String, Object>> rows = new ArrayList<>();
-    for (LogEntry e : state.logSnapshot()) {
+    ResultsLog.View log = state.logSnapshot();
+    int[] ordinals = ordinals(log, profileIds);
+    for (int i = 0; i < log.size(); i++) {
       Map<String, Object> row = new LinkedHashMap<>();
-      row.put("id", e.number());
-      row.put("method", e.method());
-      row.put("url", e.url());
-      row.put("origLen", origLen(e));
-      row.put("unauthLen", unauthLen(e));
-      row.put("unauthStatus", e.unauthVerdict());
+      row.put("id", log.number(i));
+      row.put("method", log.method(i));
+      row.put("url", log.get(i).url());
+      row.put("origLen", log.length(i));
+      row.put("unauthLen", log.unauthLength(i));
+      row.put("unauthStatus", log.unauthVerdict(i).text());
 
       Map<String, Object> perUser = new LinkedHashMap<>();
-      for (UUID id : profileIds) {
+      for (int p = 0; p < profileIds.size(); p++) {
         Map<String, Object> u = new LinkedHashMap<>();
-        u.put("len", profileLen(e, id));
-        u.put("status", e.perProfileVerdict().getOrDefault(id, ""));
-        perUser.put(profiles.get(id), u);
+        u.put("len", log.length(i, ordinals[p]));
+        u.put("status", log.verdict(i, ordinals[p]).text());
+        perUser.put(profiles.get(profileIds.get(p)), u);
       }
       row.put("profiles", perUser);
       rows.add(row);
@@ -111,23 +116,26 @@ public final class ResultsExport {
     }
     sb.append("</tr></thead><tbody>");
 
-    for (LogEntry e : state.logSnapshot()) {
-      if (!shouldIncludeRow(state, e, mode)) continue;
+    ResultsLog.View log = state.logSnapshot();
+    int[] ordinals = ordinals(log, profileIds);
+    for (int i = 0; i < log.size(); i++) {
+      if (!shouldIncludeRow(state, log, i, mode)) continue;
 
       sb.append("<tr>");
-      sb.append("<td>").append(e.number()).append("</td>");
-      sb.append("<td>").append(escapeHtml(e.method())).append("</td>");
-      sb.append("<td>").append(escapeHtml(e.url())).append("</td>");
-      sb.append("<td>").append(origLen(e)).append("</td>");
-      sb.append("<td>").append(unauthLen(e)).append("</td>");
-      sb.append("<td class=\"").append(cssClassForStatus(e.unauthVerdict())).append("\">")
-          .append(escapeHtml(e.unauthVerdict())).append("</td>");
-
-      for (UUID id : profileIds) {
-        sb.append("<td>").append(profileLen(e, id)).append("</td>");
-        String st = e.perProfileVerdict().getOrDefault(id, "");
+      sb.append("<td>").append(log.number(i)).append("</td>");
+      sb.append("<td>").append(escapeHtml(log.method(i))).append("</td>");
+      sb.append("<td>").append(escapeHtml(log.get(i).url())).append("</td>");
+      sb.append("<td>").append(log.length(i)).append("</td>");
+      sb.append("<td>").append(log.unauthLength(i)).append("</td>");
+      Verdict unauth = log.unauthVerdict(i);
+      sb.append("<td class=\"").append(cssClassForStatus(unauth)).append("\">")
+          .append(escapeHtml(unauth.text())).append("</td>");
+
+      for (int o : ordinals) {
+        sb.append("<td>").append(log.length(i, o)).append("</td>");
+        Verdict st = log.verdict(i, o);
         sb.append("<td class=\"").append(cssClassForStatus(st)).append("\">")
-            .append(escapeHtml(st)).append("</td>");
+            .append(escapeHtml(st.text())).append("</td>");
       }
       sb.append("</tr>");
     }
@@ -137,34 +145,13 @@ public final class ResultsExport {
     return sb.toString();
   }
 
-  private static int origLen(LogEntry e) {
-    try {
-      var rr = e.original();
-      if (rr == null || !rr.hasResponse() || rr.response() == null) return 0;
-      return rr.response().body().length();
-    } catch (Exception ex) {
-      return 0;
-    }
-  }
-
-  private static int unauthLen(LogEntry e) {
-    try {
-      var rr = e.unauthenticated();
-      if (rr == null || !rr.hasResponse() || rr.response() == null) return 0;
-      return rr.response().body().length();
-    } catch (Exception ex) {
-      return 0;
-    }
-  }
-
-  private static int profileLen(LogEntry e, UUID id) {
-    try {
-      var rr = e.perProfile().get(id);
-      if (rr == null || !rr.hasResponse() || rr.response() == null) return 0;
-      return rr.response().body().length();
-    } catch (Exception ex) {
-      return 0;
+  // Column ordinal of each exported profile; -1 (empty cells) for one without results yet.
+  private static int[] ordinals(ResultsLog.View log, List<UUID> profileIds) {
+    int[] out = new int[profileIds.size()];
+    for (int p = 0; p < out.length; p++) {
+      out[p] = log.ordinal(profileIds.get(p));
     }
+    return out;
   }
 
   private static String csv(String s) {
@@ -176,7 +163,7 @@ public final class ResultsExport {
     return v;
   }
 
-  private static boolean shouldIncludeRow(AutorizeState state, LogEntry e, String filterMode) {
+  private static boolean shouldIncludeRow(AutorizeState state, ResultsLog.View log, int row, String filterMode) {
     String mode = filterMode == null ? FILTER_ALL : filterMode;
     if (FILTER_ALL.equals(mode)) return true;
 
@@ -185,36 +172,41 @@ public final class ResultsExport {
       boolean allowEnforced = state.showEnforced();
       boolean allowUnknown = state.showUnknown();
       if (allowBypassed && allowEnforced && allowUnknown) return true;
-      if ("Disabled".equals(e.unauthVerdict())) return true;
-      if (statusMatches(e.unauthVerdict(), allowBypassed, allowUnknown, allowEnforced)) return true;
-      for (String v : e.perProfileVerdict().values()) {
-        if (statusMatches(v, allowBypassed, allowUnknown, allowEnforced)) return true;
+      Verdict unauth = log.unauthVerdict(row);
+      if (unauth == Verdict.DISABLED) return true;
+      if (statusMatches(unauth, allowBypassed, allowUnknown, allowEnforced)) return true;
+      for (int o = 0; o < log.profileColumns(); o++) {
+        if (statusMatches(log.verdict(row, o), allowBypassed, allowUnknown, allowEnforced)) return true;
       }
       return false;
     }
 
-    if (mode.equals(e.unauthVerdict())) return true;
-    for (String v : e.perProfileVerdict().values()) {
-      if (mode.equals(v)) return true;
+    Verdict wanted = Verdict.parse(mode);
+    if (wanted == Verdict.NONE) return false;
+    if (log.unauthVerdict(row) == wanted) return true;
+    for (int o = 0; o < log.profileColumns(); o++) {
+      if (log.verdict(row, o) == wanted) return true;
     }
     return false;
   }
 
-  private static boolean statusMatches(String status, boolean allowBypassed, boolean allowUnknown, boolean allowEnforced) {
-    if (status == null) return false;
-    if (status.contains("Bypassed")) return allowBypassed;
-    if (status.contains("Is enforced")) return allowUnknown;
-    if (status.contains("Enforced")) return allowEnforced;
-    return false;
+  private static boolean statusMatches(Verdict v, boolean allowBypassed, boolean allowUnknown, boolean allowEnforced) {
+    return switch (v) {
+      case BYPASSED -> allowBypassed;
+      case UNKNOWN -> allowUnknown;
+      case ENFORCED -> allowEnforced;
+      default -> false;
+    };
   }
 
-  private static String cssClassForStatus(String status) {
-    if (status == null) return "";
-    if ("Disabled".equals(status)) return "disabled";
-    if (status.contains("Bypassed")) return "bypassed";
-    if (status.contains("Is enforced")) return "unknown";
-    if (status.contains("Enforced")) return "enforced";
-    return "";
+  private static String cssClassForStatus(Verdict v) {
+    return switch (v) {
+      case DISABLED -> "disabled";
+      case BYPASSED -> "bypassed";
+      case UNKNOWN -> "unknown";
+      case ENFORCED -> "enforced";
+      default -> "";
+    };
   }
 
   private static String escapeHtml(String s) {
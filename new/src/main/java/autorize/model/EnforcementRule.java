@@ -8,12 +8,23 @@ public final class EnforcementRule {
   private final boolean inverse;
   private final String content;
   private final Pattern regex;
+  // JSON_PATH_* rules: content is "path" (exists) or "path=value" (equals / regex), split at the first '='.
+  private final String jsonPath;
+  private final String jsonValue;
 
   public EnforcementRule(EnforcementRuleType type, boolean inverse, String content) {
     this.type = type;
     this.inverse = inverse;
     this.content = content == null ? "" : content;
-    this.regex = compileIfRegex(type, this.content);
+    if (isJsonPath(type)) {
+      int eq = type == EnforcementRuleType.JSON_PATH_EXISTS ? -1 : this.content.indexOf('=');
+      this.jsonPath = (eq < 0 ? this.content : this.content.substring(0, eq)).trim();
+      this.jsonValue = eq < 0 ? null : this.content.substring(eq + 1).trim();
+    } else {
+      this.jsonPath = null;
+      this.jsonValue = null;
+    }
+    this.regex = compileIfRegex(type, type == EnforcementRuleType.JSON_PATH_REGEX ? jsonValue : this.content);
   }
 
   public EnforcementRuleType type() {
@@ -32,12 +43,30 @@ public final class EnforcementRule {
     return regex;
   }
 
+  /** The path of a JSON_PATH_* rule, e.g. {@code $.error.code}; null for other types. */
+  public String jsonPath() {
+    return jsonPath;
+  }
+
+  /** The expected value (or regex) of a JSON_PATH_EQUALS / JSON_PATH_REGEX rule; null when missing. */
+  public String jsonValue() {
+    return jsonValue;
+  }
+
+  public static boolean isJsonPath(EnforcementRuleType type) {
+    return type == EnforcementRuleType.JSON_PATH_EXISTS
+        || type == EnforcementRuleType.JSON_PATH_EQUALS
+        || type == EnforcementRuleType.JSON_PATH_REGEX;
+  }
+
   private static Pattern compileIfRegex(EnforcementRuleType type, String content) {
     if (type != EnforcementRuleType.HEADERS_REGEX
         && type != EnforcementRuleType.BODY_REGEX
-        && type != EnforcementRuleType.FULL_REGEX) {
+        && type != EnforcementRuleType.FULL_REGEX
+        && type != EnforcementRuleType.JSON_PATH_REGEX) {
       return null;
     }
+    if (content == null) return null;
     try {
       return Pattern.compile(content, Pattern.CASE_INSENSITIVE);
     } catch (PatternSyntaxException e) {
@@ -8,6 +8,9 @@ public enum EnforcementRuleType {
   BODY_REGEX,
   FULL_CONTAINS,
   FULL_REGEX,
-  FULL_LENGTH_EQUALS
+  FULL_LENGTH_EQUALS,
+  JSON_PATH_EXISTS,
+  JSON_PATH_EQUALS,
+  JSON_PATH_REGEX
 }
 
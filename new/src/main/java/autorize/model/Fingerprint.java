@@ -0,0 +1,63 @@
+package autorize.model;
+
+/**
+ * Fixed-size sketch of a set of features: a one-permutation MinHash (32 buckets of 16 bits) plus an
+ * order-independent hash of the whole feature multiset.
+ *
+ * Features must already be well mixed in their high bits; the bucket and the stored value are taken
+ * from there. Two sketches compare in constant time whatever the size of the input they came from.
+ */
+public final class Fingerprint {
+  private static final int BUCKETS = 32;
+
+  private final long exact;
+  private final char[] minHash;
+  private final int mask;
+
+  private Fingerprint(long exact, char[] minHash, int mask) {
+    this.exact = exact;
+    this.minHash = minHash;
+    this.mask = mask;
+  }
+
+  /** Sum of all features added, so equal multisets hash equal regardless of order. */
+  public long exact() {
+    return exact;
+  }
+
+  public boolean isEmpty() {
+    return mask == 0;
+  }
+
+  /** Estimated share of distinct features the two sets have in common, 0..100; 0 if both are empty. */
+  public int estimatePercent(Fingerprint other) {
+    int union = mask | other.mask;
+    if (union == 0) return 0;
+    int both = mask & other.mask;
+    int same = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      if ((both & (1 << b)) != 0 && minHash[b] == other.minHash[b]) same++;
+    }
+    return same * 100 / Integer.bitCount(union);
+  }
+
+  public static final class Builder {
+    private final char[] minHash = new char[BUCKETS];
+    private int mask;
+    private long exact;
+
+    public void add(long feature) {
+      exact += feature;
+      int bucket = (int) (feature >>> 59);
+      char value = (char) (feature >>> 40);
+      if ((mask & (1 << bucket)) == 0 || value < minHash[bucket]) {
+        minHash[bucket] = value;
+        mask |= 1 << bucket;
+      }
+    }
+
+    public Fingerprint build() {
+      return new Fingerprint(exact, minHash.clone(), mask);
+    }
+  }
+}
@@ -6,6 +6,10 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * The messages and signatures of one results row. Its number, statuses, lengths and verdicts are kept
+ * in the columns of ResultsLog, which is what the table, filters and exports read.
+ */
 public final class LogEntry {
   private final int number;
   private final String method;
@@ -13,24 +17,27 @@ public final class LogEntry {
 
   private final HttpRequestResponse original;
   private final HttpRequestResponse unauthenticated;
+  private final ResponseSignature originalSignature;
+  private final ResponseSignature unauthSignature;
   private final Map<UUID, HttpRequestResponse> perProfile = new LinkedHashMap<>();
-  private final Map<UUID, String> perProfileVerdict = new LinkedHashMap<>();
-  private String unauthVerdict;
+  private final Map<UUID, ResponseSignature> perProfileSignature = new LinkedHashMap<>();
 
   public LogEntry(
       int number,
       String method,
       String url,
       HttpRequestResponse original,
+      ResponseSignature originalSignature,
       HttpRequestResponse unauthenticated,
-      String unauthVerdict
+      ResponseSignature unauthSignature
   ) {
     this.number = number;
     this.method = method;
     this.url = url;
     this.original = original;
+    this.originalSignature = originalSignature;
     this.unauthenticated = unauthenticated;
-    this.unauthVerdict = unauthVerdict;
+    this.unauthSignature = unauthSignature;
   }
 
   public int number() {
@@ -49,29 +56,30 @@ public final class LogEntry {
     return original;
   }
 
-  public HttpRequestResponse unauthenticated() {
-    return unauthenticated;
+  public ResponseSignature originalSignature() {
+    return originalSignature;
   }
 
-  public String unauthVerdict() {
-    return unauthVerdict;
+  public HttpRequestResponse unauthenticated() {
+    return unauthenticated;
   }
 
-  public void setUnauthVerdict(String verdict) {
-    this.unauthVerdict = verdict;
+  /** Null when the unauthenticated check was off or got no response. */
+  public ResponseSignature unauthSignature() {
+    return unauthSignature;
   }
 
-  public void putProfileResult(UUID profileId, HttpRequestResponse rr, String verdict) {
+  public void putProfileResult(UUID profileId, HttpRequestResponse rr, ResponseSignature signature) {
     perProfile.put(profileId, rr);
-    perProfileVerdict.put(profileId, verdict);
+    if (signature != null) perProfileSignature.put(profileId, signature);
   }
 
   public Map<UUID, HttpRequestResponse> perProfile() {
     return perProfile;
   }
 
-  public Map<UUID, String> perProfileVerdict() {
-    return perProfileVerdict;
+  public Map<UUID, ResponseSignature> perProfileSignature() {
+    return perProfileSignature;
   }
 }
 
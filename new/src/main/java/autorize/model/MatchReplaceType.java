@@ -9,5 +9,9 @@ public enum MatchReplaceType {
   BODY_SIMPLE,
   BODY_REGEX,
   PATH_SIMPLE,
-  PATH_REGEX
+  PATH_REGEX,
+  // Body edits at a JSON path (or of a form parameter): match is the path, replace the value / new name.
+  JSON_SET,
+  JSON_REMOVE,
+  JSON_RENAME
 }
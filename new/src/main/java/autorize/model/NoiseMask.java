@@ -0,0 +1,99 @@
+package autorize.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * The parts of an endpoint's responses that change from call to call for the same user: words that
+ * follow a volatile context (the word before a timestamp, a nonce, a CSRF token) and JSON paths whose
+ * values differ. Learned once per endpoint from two identical requests and applied while fingerprinting,
+ * so later comparisons only look at the stable parts.
+ */
+public final class NoiseMask {
+  public static final NoiseMask NONE = new NoiseMask(new long[0], new long[0]);
+
+  // Distinct word pairs considered per body while learning; the rest of a huge body is not examined.
+  private static final int MAX_PAIRS = 1 << 16;
+
+  // Both sorted for binary search.
+  private final long[] wordContexts;
+  private final long[] jsonPaths;
+
+  private NoiseMask(long[] wordContexts, long[] jsonPaths) {
+    this.wordContexts = wordContexts;
+    this.jsonPaths = jsonPaths;
+  }
+
+  public static NoiseMask of(long[] wordContexts, long[] jsonPaths) {
+    long[] w = wordContexts.clone();
+    long[] j = jsonPaths.clone();
+    Arrays.sort(w);
+    Arrays.sort(j);
+    return new NoiseMask(w, j);
+  }
+
+  public boolean isEmpty() {
+    return wordContexts.length == 0 && jsonPaths.length == 0;
+  }
+
+  public int wordContextCount() {
+    return wordContexts.length;
+  }
+
+  public int jsonPathCount() {
+    return jsonPaths.length;
+  }
+
+  /** True when the word following {@code previousWord} (its FNV-1a hash) is volatile. */
+  public boolean volatileAfter(long previousWord) {
+    return wordContexts.length > 0 && Arrays.binarySearch(wordContexts, previousWord) >= 0;
+  }
+
+  /** True when the value at {@code path} (a JsonStructure path hash) is volatile. */
+  public boolean volatilePath(long path) {
+    return jsonPaths.length > 0 && Arrays.binarySearch(jsonPaths, path) >= 0;
+  }
+
+  /**
+   * Word contexts whose following word differs between two bodies of the same endpoint: the previous
+   * word of every word pair that occurs in only one of them.
+   */
+  public static long[] volatileWordContexts(byte[] a, int aFrom, byte[] b, int bFrom) {
+    Map<Long, Long> pairsA = wordPairs(a, aFrom);
+    Map<Long, Long> pairsB = wordPairs(b, bFrom);
+    TreeSet<Long> contexts = new TreeSet<>();
+    for (Map.Entry<Long, Long> e : pairsA.entrySet()) {
+      if (!pairsB.containsKey(e.getKey())) contexts.add(e.getValue());
+    }
+    for (Map.Entry<Long, Long> e : pairsB.entrySet()) {
+      if (!pairsA.containsKey(e.getKey())) contexts.add(e.getValue());
+    }
+    long[] out = new long[contexts.size()];
+    int i = 0;
+    for (long c : contexts) out[i++] = c;
+    return out;
+  }
+
+  // Word pair hash -> hash of its first word, tokenized exactly like ResponseSignature's fingerprint.
+  private static Map<Long, Long> wordPairs(byte[] raw, int from) {
+    Map<Long, Long> pairs = new HashMap<>();
+    long word = ResponseSignature.FNV_OFFSET;
+    long previous = 0;
+    boolean inWord = false;
+    for (int i = Math.max(0, from); i <= raw.length && pairs.size() < MAX_PAIRS; i++) {
+      int b = i < raw.length ? raw[i] & 0xFF : ' ';
+      if (ResponseSignature.WORD[b]) {
+        word = (word ^ b) * ResponseSignature.FNV_PRIME;
+        inWord = true;
+      } else if (inWord) {
+        pairs.putIfAbsent(ResponseSignature.wordPair(previous, word), previous);
+        previous = word;
+        word = ResponseSignature.FNV_OFFSET;
+        inWord = false;
+      }
+    }
+    return pairs;
+  }
+}
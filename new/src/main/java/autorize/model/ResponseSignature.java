@@ -0,0 +1,344 @@
+package autorize.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Compact summary of one response, computed once when it is captured or replayed.
+ *
+ * One pass over the body produces a 128-bit digest (MurmurHash3 x64) together with a few structural
+ * counts, so the table, exports and verdict logic never need to touch the body again to learn its
+ * length or to tell whether two bodies are identical.
+ *
+ * The same pass builds a {@link Fingerprint} of the body's word pairs, so near-identical bodies
+ * (differing in a timestamp, a CSRF token, a user name) can be told apart from unrelated ones by
+ * comparing 64 bytes instead of the bodies themselves. JSON bodies can additionally carry a structural
+ * fingerprint (see autorize.core.JsonStructure), attached with {@link #withJson}.
+ */
+public final class ResponseSignature {
+  private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  static final long FNV_PRIME = 0x100000001b3L;
+  // Stands in for a word that the endpoint's noise mask marks as volatile.
+  private static final long VOLATILE_WORD = 0x5be0cd19137e2179L;
+
+  // Feature class per byte value: 0 none, 1 newline, 2 '<', 3 '{' or '[', 4 non-ASCII.
+  private static final byte[] FEATURE = new byte[256];
+  // Bytes that belong to words for shingling: ASCII letters and digits, and anything non-ASCII.
+  static final boolean[] WORD = new boolean[256];
+  static {
+    FEATURE['\n'] = 1;
+    FEATURE['<'] = 2;
+    FEATURE['{'] = 3;
+    FEATURE['['] = 3;
+    for (int b = 0x80; b < 0x100; b++) FEATURE[b] = 4;
+    for (int b = 0; b < 256; b++) {
+      WORD[b] = b >= 0x80 || (b >= '0' && b <= '9') || (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+  }
+
+  private final short status;
+  private final int headerLength;
+  private final int bodyLength;
+  private final String contentType;
+  private final long digestHigh;
+  private final long digestLow;
+  private final int lines;
+  private final int tags;
+  private final int brackets;
+  private final int nonAscii;
+  private final Fingerprint words;
+  private final Fingerprint json;
+
+  private ResponseSignature(short status, int headerLength, int bodyLength, String contentType,
+                            long digestHigh, long digestLow, int lines, int tags, int brackets, int nonAscii,
+                            Fingerprint words, Fingerprint json) {
+    this.status = status;
+    this.headerLength = headerLength;
+    this.bodyLength = bodyLength;
+    this.contentType = contentType;
+    this.digestHigh = digestHigh;
+    this.digestLow = digestLow;
+    this.lines = lines;
+    this.tags = tags;
+    this.brackets = brackets;
+    this.nonAscii = nonAscii;
+    this.words = words;
+    this.json = json;
+  }
+
+  /**
+   * @param raw         the whole message; the body is raw[bodyOffset, raw.length)
+   * @param contentType Content-Type header value, or null
+   */
+  public static ResponseSignature of(short status, String contentType, byte[] raw, int bodyOffset) {
+    return of(status, contentType, raw, bodyOffset, NoiseMask.NONE);
+  }
+
+  /** As above, with the words the endpoint's noise mask calls volatile left out of the fingerprint. */
+  public static ResponseSignature of(short status, String contentType, byte[] raw, int bodyOffset, NoiseMask noise) {
+    int from = Math.max(0, Math.min(bodyOffset, raw.length));
+    Builder b = new Builder(noise);
+    b.update(raw, from, raw.length - from);
+    return b.build(status, contentType, from);
+  }
+
+  /**
+   * The same pass fed a body in chunks, for bodies too large to hold at once; the result is identical to
+   * {@link #of} over the concatenated chunks. One builder makes one signature.
+   */
+  public static final class Builder {
+    private final Features f;
+    private final byte[] pending = new byte[16];
+    private int pendingLength;
+    private long length;
+    private long h1;
+    private long h2;
+
+    public Builder(NoiseMask noise) {
+      this.f = new Features(noise == null ? NoiseMask.NONE : noise);
+    }
+
+    public void update(byte[] data, int offset, int count) {
+      int i = offset;
+      int end = offset + count;
+      length += count;
+      if (pendingLength > 0) {
+        while (pendingLength < 16 && i < end) {
+          pending[pendingLength++] = data[i++];
+        }
+        if (pendingLength < 16) return;
+        pendingLength = 0;
+        blocks(pending, 0, 16);
+      }
+      int blocksEnd = i + ((end - i) & ~15);
+      blocks(data, i, blocksEnd);
+      for (i = blocksEnd; i < end; i++) {
+        pending[pendingLength++] = data[i];
+      }
+    }
+
+    // The hash state stays in locals for the whole run of blocks; this loop is the signature's cost.
+    private void blocks(byte[] data, int from, int to) {
+      long a = h1;
+      long b = h2;
+      Features features = f;
+      for (int i = from; i < to; i += 16) {
+        long k1 = (long) LONG_LE.get(data, i);
+        long k2 = (long) LONG_LE.get(data, i + 8);
+
+        a ^= mixK1(k1);
+        a = Long.rotateLeft(a, 27);
+        a += b;
+        a = a * 5 + 0x52dce729;
+        b ^= mixK2(k2);
+        b = Long.rotateLeft(b, 31);
+        b += a;
+        b = b * 5 + 0x38495ab5;
+
+        for (int j = i; j < i + 16; j++) {
+          features.add(data[j] & 0xFF);
+        }
+      }
+      h1 = a;
+      h2 = b;
+    }
+
+    /**
+     * @param headerLength bytes before the body in the whole message
+     * @param contentType  Content-Type header value, or null
+     */
+    public ResponseSignature build(short status, String contentType, int headerLength) {
+      long k1 = 0;
+      long k2 = 0;
+      for (int j = 0; j < pendingLength; j++) {
+        byte b = pending[j];
+        f.add(b & 0xFF);
+        int shift = (j & 7) * 8;
+        if (j >= 8) k2 |= (b & 0xFFL) << shift;
+        else k1 |= (b & 0xFFL) << shift;
+      }
+      long a = h1;
+      long b = h2;
+      if (pendingLength > 8) b ^= mixK2(k2);
+      if (pendingLength > 0) a ^= mixK1(k1);
+
+      a ^= length;
+      b ^= length;
+      a += b;
+      b += a;
+      a = fmix(a);
+      b = fmix(b);
+      a += b;
+      b += a;
+      f.endWord();
+
+      return new ResponseSignature(status, headerLength, (int) Math.min(length, Integer.MAX_VALUE),
+          normalizeContentType(contentType), a, b, f.counts[1], f.counts[2], f.counts[3], f.counts[4],
+          f.words.build(), null);
+    }
+  }
+
+  /** Per-byte state of the pass: feature counts and the word-pair fingerprint. */
+  private static final class Features {
+    final int[] counts = new int[5];
+    final Fingerprint.Builder words = new Fingerprint.Builder();
+    final NoiseMask noise;
+    long word = FNV_OFFSET;
+    long previous;
+    boolean inWord;
+
+    Features(NoiseMask noise) {
+      this.noise = noise;
+    }
+
+    void add(int b) {
+      counts[FEATURE[b]]++;
+      if (WORD[b]) {
+        word = (word ^ b) * FNV_PRIME;
+        inWord = true;
+      } else if (inWord) {
+        endWord();
+      }
+    }
+
+    void endWord() {
+      if (!inWord) return;
+      if (noise.volatileAfter(previous)) word = VOLATILE_WORD;
+      words.add(wordPair(previous, word));
+      previous = word;
+      word = FNV_OFFSET;
+      inWord = false;
+    }
+  }
+
+  private static long mixK1(long k) {
+    k *= C1;
+    k = Long.rotateLeft(k, 31);
+    return k * C2;
+  }
+
+  private static long mixK2(long k) {
+    k *= C2;
+    k = Long.rotateLeft(k, 33);
+    return k * C1;
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  // One multiply is enough: the fingerprint only looks at the well-mixed high bits.
+  static long wordPair(long previous, long word) {
+    return (previous ^ Long.rotateLeft(word, 29)) * 0x9e3779b97f4a7c15L;
+  }
+
+  // "text/html; charset=UTF-8" -> "text/html"
+  private static String normalizeContentType(String value) {
+    if (value == null) return "";
+    int semi = value.indexOf(';');
+    return (semi < 0 ? value : value.substring(0, semi)).trim().toLowerCase(Locale.ROOT);
+  }
+
+  public short status() {
+    return status;
+  }
+
+  /** Bytes before the body: status line, headers and the blank line. */
+  public int headerLength() {
+    return headerLength;
+  }
+
+  public int bodyLength() {
+    return bodyLength;
+  }
+
+  /** Media type without parameters, lower case; empty when the header is missing. */
+  public String contentType() {
+    return contentType;
+  }
+
+  public long digestHigh() {
+    return digestHigh;
+  }
+
+  public long digestLow() {
+    return digestLow;
+  }
+
+  public String digestHex() {
+    return String.format("%016x%016x", digestHigh, digestLow);
+  }
+
+  public int lines() {
+    return lines;
+  }
+
+  /** Occurrences of '&lt;', a rough count of markup tags. */
+  public int tags() {
+    return tags;
+  }
+
+  /** Occurrences of '{' and '[', a rough count of JSON objects and arrays. */
+  public int brackets() {
+    return brackets;
+  }
+
+  public int nonAscii() {
+    return nonAscii;
+  }
+
+  /** True for application/json and the +json media types. */
+  public boolean isJson() {
+    return contentType.endsWith("/json") || contentType.endsWith("+json");
+  }
+
+  /** Structural fingerprint of a JSON body, or null if none was attached. */
+  public Fingerprint json() {
+    return json;
+  }
+
+  public ResponseSignature withJson(Fingerprint json) {
+    return new ResponseSignature(status, headerLength, bodyLength, contentType, digestHigh, digestLow,
+        lines, tags, brackets, nonAscii, words, json);
+  }
+
+  /**
+   * Estimated share of word pairs the two bodies have in common, 0..100. Only identical bodies score
+   * 100; any difference caps the estimate at 99. Bodies without words (empty, binary) score 0 unless
+   * identical.
+   */
+  public int similarityPercent(ResponseSignature other) {
+    if (sameBody(other)) return 100;
+    if (other == null) return 0;
+    return Math.min(99, words.estimatePercent(other.words));
+  }
+
+  /**
+   * Structural overlap of two JSON bodies, 0..100, or -1 unless both carry a JSON fingerprint. Scores
+   * 100 when the canonical structures are equal, even if key order or whitespace differ.
+   */
+  public int jsonSimilarityPercent(ResponseSignature other) {
+    if (json == null || other == null || other.json == null) return -1;
+    if (json.exact() == other.json.exact()) return 100;
+    return Math.min(99, json.estimatePercent(other.json));
+  }
+
+  /** True when both bodies have the same length and digest. */
+  public boolean sameBody(ResponseSignature other) {
+    return other != null
+        && bodyLength == other.bodyLength
+        && digestHigh == other.digestHigh
+        && digestLow == other.digestLow;
+  }
+}
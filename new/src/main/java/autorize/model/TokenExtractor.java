@@ -0,0 +1,55 @@
+package autorize.model;
+
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Pulls one named value out of a session refresh (login) response.
+ *
+ * The extracted value fills the {{name}} placeholder in the profile's headers and match/replace values.
+ */
+public final class TokenExtractor {
+  private final TokenExtractorType type;
+  private final String name;
+  private final String expression;
+  private final Pattern regex;
+
+  public TokenExtractor(TokenExtractorType type, String name, String expression) {
+    this.type = type;
+    this.name = name == null ? "" : name.trim();
+    this.expression = expression == null ? "" : expression;
+    this.regex = compileIfRegex(type, this.expression);
+  }
+
+  public TokenExtractorType type() {
+    return type;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public String expression() {
+    return expression;
+  }
+
+  public Pattern regex() {
+    return regex;
+  }
+
+  private static Pattern compileIfRegex(TokenExtractorType type, String expression) {
+    if (type != TokenExtractorType.REGEX) {
+      return null;
+    }
+    try {
+      return Pattern.compile(expression);
+    } catch (PatternSyntaxException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return type + " | " + name + " <- " + expression;
+  }
+}
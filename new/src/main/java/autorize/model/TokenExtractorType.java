@@ -0,0 +1,7 @@
+package autorize.model;
+
+public enum TokenExtractorType {
+  REGEX,
+  JSON_PATH,
+  SET_COOKIE
+}
@@ -5,13 +5,21 @@ import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 public final class UserProfile {
+  public static final int DEFAULT_REFRESH_TTL_SECONDS = 300;
+
   private final UUID id;
   private volatile String name;
   private volatile String headersText;
   private volatile AndOr enforcementAndOr = AndOr.OR;
 
+  // Optional session refresh recipe: a raw login request plus extractors that fill {{name}} placeholders.
+  private volatile String refreshServiceUrl = "";
+  private volatile String refreshRequestText = "";
+  private volatile int refreshTtlSeconds = DEFAULT_REFRESH_TTL_SECONDS;
+
   private final List<MatchReplaceRule> matchReplaceRules = new CopyOnWriteArrayList<>();
   private final List<EnforcementRule> enforcementRules = new CopyOnWriteArrayList<>();
+  private final List<TokenExtractor> tokenExtractors = new CopyOnWriteArrayList<>();
 
   private UserProfile(UUID id, String name) {
     this.id = id;
@@ -51,6 +59,34 @@ public final class UserProfile {
     this.enforcementAndOr = enforcementAndOr == null ? AndOr.OR : enforcementAndOr;
   }
 
+  public String refreshServiceUrl() {
+    return refreshServiceUrl;
+  }
+
+  public void setRefreshServiceUrl(String refreshServiceUrl) {
+    this.refreshServiceUrl = refreshServiceUrl == null ? "" : refreshServiceUrl.trim();
+  }
+
+  public String refreshRequestText() {
+    return refreshRequestText;
+  }
+
+  public void setRefreshRequestText(String refreshRequestText) {
+    this.refreshRequestText = refreshRequestText == null ? "" : refreshRequestText;
+  }
+
+  public int refreshTtlSeconds() {
+    return refreshTtlSeconds;
+  }
+
+  public void setRefreshTtlSeconds(int refreshTtlSeconds) {
+    this.refreshTtlSeconds = refreshTtlSeconds <= 0 ? DEFAULT_REFRESH_TTL_SECONDS : refreshTtlSeconds;
+  }
+
+  public boolean hasRefreshRecipe() {
+    return !refreshServiceUrl.isEmpty() && !refreshRequestText.isBlank() && !tokenExtractors.isEmpty();
+  }
+
   public List<MatchReplaceRule> matchReplaceRules() {
     return matchReplaceRules;
   }
@@ -59,12 +95,20 @@ public final class UserProfile {
     return enforcementRules;
   }
 
+  public List<TokenExtractor> tokenExtractors() {
+    return tokenExtractors;
+  }
+
   public UserProfile deepCopyWithName(String newName) {
     UserProfile copy = new UserProfile(UUID.randomUUID(), newName);
     copy.setHeadersText(headersText);
     copy.setEnforcementAndOr(enforcementAndOr);
     copy.matchReplaceRules.addAll(matchReplaceRules);
     copy.enforcementRules.addAll(enforcementRules);
+    copy.setRefreshServiceUrl(refreshServiceUrl);
+    copy.setRefreshRequestText(refreshRequestText);
+    copy.setRefreshTtlSeconds(refreshTtlSeconds);
+    copy.tokenExtractors.addAll(tokenExtractors);
     return copy;
   }
 }
@@ -0,0 +1,52 @@
+package autorize.model;
+
+/**
+ * The outcome shown for one replay, stored in the results log as its one-byte code.
+ *
+ * NONE is the code of a profile that has no result for a row (it was added later, or removed).
+ */
+public enum Verdict {
+  NONE(""),
+  ENFORCED("Enforced!"),
+  BYPASSED("Bypassed!"),
+  UNKNOWN("Is enforced???"),
+  DISABLED("Disabled");
+
+  private static final Verdict[] BY_CODE = values();
+
+  private final String text;
+
+  Verdict(String text) {
+    this.text = text;
+  }
+
+  /** The text the UI and exports show ("Bypassed!" etc.). */
+  public String text() {
+    return text;
+  }
+
+  public byte code() {
+    return (byte) ordinal();
+  }
+
+  public static Verdict of(byte code) {
+    return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : NONE;
+  }
+
+  /** The verdict with this text; other text is classified as the UI always did, by its keywords. */
+  public static Verdict parse(String text) {
+    if (text == null || text.isEmpty()) return NONE;
+    for (Verdict v : BY_CODE) {
+      if (v.text.equals(text)) return v;
+    }
+    if (text.contains("Bypassed")) return BYPASSED;
+    if (text.contains("Is enforced")) return UNKNOWN;
+    if (text.contains("Enforced")) return ENFORCED;
+    return NONE;
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
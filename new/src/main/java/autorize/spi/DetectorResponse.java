@@ -0,0 +1,35 @@
+package autorize.spi;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A replayed response as handed to an EnforcementDetector.
+ *
+ * Byte views are read-only windows onto the message bytes the engine already holds; nothing is copied.
+ * Reading a part the detector did not declare in {@link EnforcementDetector#needs()} throws
+ * IllegalStateException. Bodies above the large-body threshold are seen up to it only; the metadata
+ * still describes the full body. Instances are only valid during the call.
+ */
+public interface DetectorResponse {
+  int status();
+
+  /** Lower-case media type without parameters, e.g. {@code application/json}; empty when absent. */
+  String contentType();
+
+  int bodyLength();
+
+  /** Hex of the body's 128-bit digest; equal bodies have equal digests. */
+  String bodyDigest();
+
+  /** Raw header block, status line included. Needs {@link ResponsePart#HEADERS}. */
+  ByteBuffer headers();
+
+  /** First value of the named header (case-insensitive), or null. Needs {@link ResponsePart#HEADERS}. */
+  String header(String name);
+
+  /** Raw body bytes, still content-encoded as received. Needs {@link ResponsePart#BODY}. */
+  ByteBuffer body();
+
+  /** Body decoded as text, shared with the built-in regex rules. Needs {@link ResponsePart#BODY}. */
+  CharSequence bodyText();
+}
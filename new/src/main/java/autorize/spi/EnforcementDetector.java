@@ -0,0 +1,28 @@
+package autorize.spi;
+
+import java.util.Set;
+
+/**
+ * An application-specific enforcement signal (a custom error envelope, a signed error code, a GraphQL
+ * {@code errors[].extensions.code}, ...), consulted for every replay after the built-in checks.
+ *
+ * Implementations are discovered with java.util.ServiceLoader: list the class names in
+ * {@code META-INF/services/autorize.spi.EnforcementDetector} of a jar on the extension's class path.
+ * They need a public no-argument constructor and must be thread-safe; replays are judged concurrently.
+ *
+ * Detectors are run cheapest first (status-only, then headers, then body) and evaluation stops at the
+ * first one that reports enforcement, so the body is never decoded unless a detector that reads it is
+ * reached. A detector that throws counts as "not enforced" and is recorded as an error.
+ */
+public interface EnforcementDetector {
+  /** Shown in the statistics; the class name by default. */
+  default String name() {
+    return getClass().getSimpleName();
+  }
+
+  /** The parts {@link #enforced} reads; anything else is not available to it. */
+  Set<ResponsePart> needs();
+
+  /** True when the response shows that the replayed user was refused. */
+  boolean enforced(DetectorResponse response);
+}
@@ -0,0 +1,11 @@
+package autorize.spi;
+
+/** The parts of a replayed response an EnforcementDetector reads. */
+public enum ResponsePart {
+  /** Status code, body length, content type and digest; no message bytes. */
+  STATUS,
+  /** The header block, raw or by name. */
+  HEADERS,
+  /** The body, raw or decoded. */
+  BODY
+}
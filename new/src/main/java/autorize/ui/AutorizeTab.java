@@ -27,6 +27,8 @@ public final class AutorizeTab {
   private final InterceptionFiltersPanel interceptionFiltersPanel;
   private final EnforcementRulesPanel unauthEnforcementPanel;
   private final SaveRestorePanel saveRestorePanel;
+  private final WhatIfPanel whatIfPanel;
+  private final PipelinePanel pipelinePanel;
 
   public AutorizeTab(MontoyaApi api, AutorizeState state) {
     this.state = state;
@@ -37,15 +39,22 @@ public final class AutorizeTab {
         state.unauthEnforcementRules(),
         state::unauthEnforcementAndOr,
         state::setUnauthEnforcementAndOr,
-        state::notifyConfigChanged
+        state::notifyConfigChanged,
+        state.regexGuard()
     );
     this.saveRestorePanel = new SaveRestorePanel(state);
+    this.whatIfPanel = new WhatIfPanel(state);
+    this.pipelinePanel = new PipelinePanel(state);
   }
 
   public ResultsPanel resultsPanel() {
     return resultsPanel;
   }
 
+  public WhatIfPanel whatIfPanel() {
+    return whatIfPanel;
+  }
+
   public JPanel build() {
     JPanel root = new JPanel(new BorderLayout());
 
@@ -66,6 +75,59 @@ public final class AutorizeTab {
     prevent304.setSelected(state.prevent304());
     prevent304.addActionListener(e -> state.setPrevent304(prevent304.isSelected()));
 
+    JCheckBox compareBodies = new JCheckBox("Compare bodies");
+    compareBodies.setToolTipText("For same-status replays, decide by body similarity instead of calling them all Bypassed!.");
+    compareBodies.setSelected(state.compareBodies());
+    compareBodies.addActionListener(e -> state.setCompareBodies(compareBodies.isSelected()));
+
+    JTextField bypassedAt = new JTextField(String.valueOf(state.bypassedAtPercent()), 3);
+    bypassedAt.setToolTipText("Replays at least this similar to the original (0-100) are Bypassed!; 100 means identical.");
+    bypassedAt.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      try {
+        state.setBypassedAtPercent(Integer.parseInt(bypassedAt.getText().trim()));
+      } catch (NumberFormatException ignored) {
+      }
+    }));
+
+    JTextField enforcedBelow = new JTextField(String.valueOf(state.enforcedBelowPercent()), 3);
+    enforcedBelow.setToolTipText("Replays less similar than this (0-100) are Enforced!; 0 turns the band off.");
+    enforcedBelow.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      try {
+        state.setEnforcedBelowPercent(Integer.parseInt(enforcedBelow.getText().trim()));
+      } catch (NumberFormatException ignored) {
+      }
+    }));
+
+    JCheckBox compareJson = new JCheckBox("JSON by structure");
+    compareJson.setToolTipText("Compare JSON bodies by key paths and value types; key order and whitespace do not count.");
+    compareJson.setSelected(state.compareJson());
+    compareJson.addActionListener(e -> state.setCompareJson(compareJson.isSelected()));
+
+    JCheckBox jsonHashValues = new JCheckBox("with values");
+    jsonHashValues.setToolTipText("Also compare scalar values, not only their paths and types.");
+    jsonHashValues.setSelected(state.jsonHashValues());
+    jsonHashValues.addActionListener(e -> state.setJsonHashValues(jsonHashValues.isSelected()));
+
+    JTextField jsonIgnorePaths = new JTextField(state.jsonIgnorePaths(), 18);
+    jsonIgnorePaths.setToolTipText("Comma-separated JSON paths to leave out, e.g. $.meta.requestId, data[*].updatedAt, ..csrf (any depth).");
+    jsonIgnorePaths.getDocument().addDocumentListener(new SimpleDocumentListener(() ->
+        state.setJsonIgnorePaths(jsonIgnorePaths.getText())
+    ));
+
+    JCheckBox learnNoise = new JCheckBox("Learn noise per endpoint (one extra request each)");
+    learnNoise.setToolTipText("On an endpoint's first capture, replay it as the original user and leave what changed out of later comparisons.");
+    learnNoise.setSelected(state.learnNoise());
+    learnNoise.addActionListener(e -> state.setLearnNoise(learnNoise.isSelected()));
+
+    JTextField largeBodyKb = new JTextField(String.valueOf(state.largeBodyKb()), 6);
+    largeBodyKb.setToolTipText("Replays with bodies larger than this are compared by status, length and digest; rules and filters see only the first part, and the log keeps only that part (0 = off).");
+    largeBodyKb.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      try {
+        state.setLargeBodyKb(Integer.parseInt(largeBodyKb.getText().trim()));
+      } catch (NumberFormatException ignored) {
+      }
+    }));
+
     JCheckBox interceptRepeater = new JCheckBox("Intercept from Repeater");
     interceptRepeater.setSelected(state.interceptRepeater());
     interceptRepeater.addActionListener(e -> state.setInterceptRepeater(interceptRepeater.isSelected()));
@@ -88,6 +150,20 @@ public final class AutorizeTab {
         state.setReplaceQueryParamText(replaceQueryText.getText())
     ));
 
+    JCheckBox linearRegex = new JCheckBox("Linear-time regex (RE2/J)");
+    linearRegex.setToolTipText("Run filter/rule regexes on a linear-time engine; lookaround and backreferences fall back to java.util.regex.");
+    linearRegex.setSelected(state.linearRegex());
+    linearRegex.addActionListener(e -> state.setLinearRegex(linearRegex.isSelected()));
+
+    JTextField regexBudget = new JTextField(String.valueOf(state.regexBudgetMillis()), 5);
+    regexBudget.setToolTipText("Abort a single regex match after this many milliseconds (0 = no limit).");
+    regexBudget.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      try {
+        state.setRegexBudgetMillis(Integer.parseInt(regexBudget.getText().trim()));
+      } catch (NumberFormatException ignored) {
+      }
+    }));
+
     JButton clear = new JButton("Clear table");
     clear.addActionListener(e -> state.clearLog());
 
@@ -107,6 +183,34 @@ public final class AutorizeTab {
     c.gridy++;
     controls.add(checkUnauth, c);
     c.gridy++;
+    JPanel bp = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+    bp.add(compareBodies);
+    bp.add(new JLabel("  Bypassed! at \u2265 "));
+    bp.add(bypassedAt);
+    bp.add(new JLabel("%  Enforced! below "));
+    bp.add(enforcedBelow);
+    bp.add(new JLabel("%"));
+    controls.add(bp, c);
+    c.gridy++;
+    JPanel jp = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+    jp.add(new JLabel("    "));
+    jp.add(compareJson);
+    jp.add(jsonHashValues);
+    jp.add(new JLabel("  Ignore paths: "));
+    jp.add(jsonIgnorePaths);
+    controls.add(jp, c);
+    c.gridy++;
+    JPanel np = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+    np.add(new JLabel("    "));
+    np.add(learnNoise);
+    controls.add(np, c);
+    c.gridy++;
+    JPanel lp = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+    lp.add(new JLabel("Large bodies above "));
+    lp.add(largeBodyKb);
+    lp.add(new JLabel(" KB: compare by digest, keep and scan only the first part"));
+    controls.add(lp, c);
+    c.gridy++;
     controls.add(ignore304, c);
     c.gridy++;
     controls.add(prevent304, c);
@@ -120,6 +224,13 @@ public final class AutorizeTab {
     qp.add(replaceQueryText);
     controls.add(qp, c);
 
+    c.gridy++;
+    JPanel rp = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+    rp.add(linearRegex);
+    rp.add(new JLabel("  Regex budget (ms): "));
+    rp.add(regexBudget);
+    controls.add(rp, c);
+
     c.gridy++;
     controls.add(clear, c);
 
@@ -128,6 +239,8 @@ public final class AutorizeTab {
     configTabs.addTab("Interception Filters", interceptionFiltersPanel.ui());
     configTabs.addTab("Unauth Detector", unauthEnforcementPanel.ui());
     configTabs.addTab("Save/Restore", saveRestorePanel.ui());
+    configTabs.addTab("What-if", whatIfPanel.ui());
+    configTabs.addTab("Pipeline", pipelinePanel.ui());
 
     JPanel left = new JPanel(new BorderLayout());
     left.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
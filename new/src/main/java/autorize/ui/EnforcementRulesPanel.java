@@ -1,5 +1,6 @@
 package autorize.ui;
 
+import autorize.core.RegexGuard;
 import autorize.model.AndOr;
 import autorize.model.EnforcementRule;
 import autorize.model.EnforcementRuleType;
@@ -37,6 +38,7 @@ public final class EnforcementRulesPanel {
   private final Supplier<AndOr> modeGetter;
   private final Consumer<AndOr> modeSetter;
   private final Runnable onChange;
+  private final RegexGuard regexGuard;
 
   private final JPanel root = new JPanel(new BorderLayout());
   private final JLabel hint = new JLabel(" ");
@@ -52,7 +54,10 @@ public final class EnforcementRulesPanel {
     BODY_REGEX("body_regex", EnforcementRuleType.BODY_REGEX),
     FULL_CONTAINS("full_contains", EnforcementRuleType.FULL_CONTAINS),
     FULL_REGEX("full_regex", EnforcementRuleType.FULL_REGEX),
-    FULL_LENGTH_EQUALS("full_length_equals", EnforcementRuleType.FULL_LENGTH_EQUALS);
+    FULL_LENGTH_EQUALS("full_length_equals", EnforcementRuleType.FULL_LENGTH_EQUALS),
+    JSON_PATH_EXISTS("json_path_exists", EnforcementRuleType.JSON_PATH_EXISTS),
+    JSON_PATH_EQUALS("json_path_equals", EnforcementRuleType.JSON_PATH_EQUALS),
+    JSON_PATH_REGEX("json_path_regex", EnforcementRuleType.JSON_PATH_REGEX);
 
     private final String label;
     private final EnforcementRuleType type;
@@ -83,12 +88,14 @@ public final class EnforcementRulesPanel {
       List<EnforcementRule> rules,
       Supplier<AndOr> modeGetter,
       Consumer<AndOr> modeSetter,
-      Runnable onChange
+      Runnable onChange,
+      RegexGuard regexGuard
   ) {
     this.rules = rules;
     this.modeGetter = modeGetter;
     this.modeSetter = modeSetter;
     this.onChange = onChange == null ? () -> {} : onChange;
+    this.regexGuard = regexGuard;
 
     root.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
 
@@ -222,9 +229,9 @@ public final class EnforcementRulesPanel {
     if (r == null) return;
 
     String msg = describe(r.type(), r.inverse());
-    boolean regexInvalid = isRegexType(r.type()) && !r.content().isEmpty() && r.regex() == null;
-    if (regexInvalid) {
-      hint.setText(msg + "  (Invalid regex)");
+    String problem = RegexHints.problem(isRegexType(r.type()), r.content(), r.regex(), regexGuard);
+    if (problem != null) {
+      hint.setText(msg + "  (" + problem + ")");
       hint.setForeground(new Color(160, 60, 60));
     } else {
       hint.setText(msg);
@@ -235,7 +242,8 @@ public final class EnforcementRulesPanel {
   private static boolean isRegexType(EnforcementRuleType t) {
     return t == EnforcementRuleType.HEADERS_REGEX
         || t == EnforcementRuleType.BODY_REGEX
-        || t == EnforcementRuleType.FULL_REGEX;
+        || t == EnforcementRuleType.FULL_REGEX
+        || t == EnforcementRuleType.JSON_PATH_REGEX;
   }
 
   private static String describe(EnforcementRuleType t, boolean inverse) {
@@ -249,6 +257,9 @@ public final class EnforcementRulesPanel {
       case FULL_CONTAINS -> not + "Match when full response contains the content substring.";
       case FULL_REGEX -> not + "Match when full response matches the regex.";
       case FULL_LENGTH_EQUALS -> not + "Match when full response byte length equals the content (number).";
+      case JSON_PATH_EXISTS -> not + "Match when the JSON body has a value at the path (e.g., $.error or ..code).";
+      case JSON_PATH_EQUALS -> not + "Match when a JSON value at the path equals the text after '=' (e.g., $.error.code=FORBIDDEN).";
+      case JSON_PATH_REGEX -> not + "Match when a JSON value at the path matches the regex after '=' (e.g., errors[*].message=denied).";
     };
   }
 
@@ -1,6 +1,9 @@
 package autorize.ui;
 
 import autorize.core.AutorizeState;
+import autorize.core.FilterExpression;
+import autorize.core.FilterProgram;
+import autorize.core.ScopeCache;
 import autorize.model.InterceptionFilter;
 import autorize.model.InterceptionFilterType;
 
@@ -12,8 +15,11 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableColumn;
@@ -31,15 +37,25 @@ import java.util.List;
  * - DROP_PROXY_PORTS is applied by the proxy handler before the HTTP handler sees the request.
  *
  * Note: Project scope is enforced separately in AutorizeController (always-on).
+ *
+ * The counter columns come from the compiled FilterProgram and show which filters actually reject
+ * traffic; filters are evaluated in the program's adaptive order, not necessarily top to bottom.
+ *
+ * The optional expression (see FilterExpression) is ANDed with the list. While it does not parse it is
+ * ignored and the error is shown next to it.
  */
 public final class InterceptionFiltersPanel {
   private final AutorizeState state;
 
   private final JPanel root = new JPanel(new BorderLayout());
   private final JLabel hint = new JLabel(" ");
+  private final JLabel scopeStats = new JLabel(" ");
+  private final JTextField expression = new JTextField();
+  private final JLabel expressionStatus = new JLabel(" ");
 
   private final FiltersTableModel model;
   private final JTable table;
+  private final Timer statsTimer;
 
   public InterceptionFiltersPanel(AutorizeState state) {
     this.state = state;
@@ -51,6 +67,19 @@ public final class InterceptionFiltersPanel {
     hint.setBorder(BorderFactory.createEmptyBorder(0, 0, 6, 0));
     top.add(hint, BorderLayout.CENTER);
 
+    JPanel exprRow = new JPanel(new BorderLayout(6, 0));
+    exprRow.setBorder(BorderFactory.createEmptyBorder(0, 0, 6, 0));
+    exprRow.add(new JLabel("Expression:"), BorderLayout.WEST);
+    expression.setText(state.interceptionExpression());
+    expression.setToolTipText("Optional, ANDed with the list. E.g. (URL_CONTAINS(\"/api\") AND ONLY_METHODS(\"POST\")) OR NOT RES_BODY_CONTAINS(\"login\")");
+    expression.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      state.setInterceptionExpression(expression.getText());
+      updateExpressionStatus();
+    }));
+    exprRow.add(expression, BorderLayout.CENTER);
+    exprRow.add(expressionStatus, BorderLayout.SOUTH);
+    top.add(exprRow, BorderLayout.SOUTH);
+
     this.model = new FiltersTableModel();
     this.table = new JTable(model);
     this.table.setFillsViewportHeight(true);
@@ -81,11 +110,31 @@ public final class InterceptionFiltersPanel {
       }
     });
 
+    DefaultTableCellRenderer numberRenderer = new DefaultTableCellRenderer();
+    numberRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+    for (int col = FiltersTableModel.COL_EVALUATED; col <= FiltersTableModel.COL_AVG_MICROS; col++) {
+      TableColumn c = table.getColumnModel().getColumn(col);
+      c.setCellRenderer(numberRenderer);
+      c.setPreferredWidth(90);
+    }
+
     table.getSelectionModel().addListSelectionListener(e -> {
       if (e.getValueIsAdjusting()) return;
       updateHintFromSelection();
     });
 
+    // Counters change with every request; repaint them while the tab is visible.
+    statsTimer = new Timer(1000, e -> {
+      if (!root.isShowing() || table.isEditing()) return;
+      if (model.getRowCount() > 0) {
+        model.fireTableRowsUpdated(0, model.getRowCount() - 1);
+        updateHintFromSelection();
+      }
+      updateExpressionStatus();
+      updateScopeStats();
+    });
+    statsTimer.start();
+
     JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
     JButton add = new JButton("+");
     JButton remove = new JButton("-");
@@ -95,6 +144,8 @@ public final class InterceptionFiltersPanel {
     buttons.add(remove);
     buttons.add(up);
     buttons.add(down);
+    scopeStats.setForeground(new Color(90, 90, 90));
+    buttons.add(scopeStats);
 
     add.addActionListener(e -> {
       int idx = model.addFilter();
@@ -125,6 +176,7 @@ public final class InterceptionFiltersPanel {
       table.getSelectionModel().setSelectionInterval(0, 0);
     }
     updateHintFromSelection();
+    updateExpressionStatus();
   }
 
   public JPanel ui() {
@@ -138,6 +190,11 @@ public final class InterceptionFiltersPanel {
         table.getSelectionModel().setSelectionInterval(0, 0);
       }
       updateHintFromSelection();
+      // Config imports replace the expression; don't fight the user while they are typing.
+      if (!expression.hasFocus() && !expression.getText().equals(state.interceptionExpression())) {
+        expression.setText(state.interceptionExpression());
+      }
+      updateExpressionStatus();
     });
   }
 
@@ -156,6 +213,35 @@ public final class InterceptionFiltersPanel {
     }
   }
 
+  private void updateExpressionStatus() {
+    String error = FilterExpression.validate(expression.getText());
+    if (error != null) {
+      expressionStatus.setText("Invalid expression (ignored): " + error);
+      expressionStatus.setForeground(new Color(160, 60, 60));
+      return;
+    }
+    FilterProgram.Stats st = state.filterProgram().expressionStats();
+    if (st == null) {
+      expressionStatus.setText("AND, OR, NOT and parentheses over filter types, e.g. URL_CONTAINS(\"/api\"). Tool and port filters stay in the list.");
+    } else {
+      expressionStatus.setText(String.format("Evaluated %d, rejected %d, avg %.1f \u00b5s",
+          st.evaluations(), st.rejections(), st.avgMicros()));
+    }
+    expressionStatus.setForeground(new Color(90, 90, 90));
+  }
+
+  private void updateScopeStats() {
+    ScopeCache sc = state.scopeCache();
+    long hits = sc.hits();
+    long total = hits + sc.misses();
+    if (total == 0) {
+      scopeStats.setText(" ");
+      return;
+    }
+    scopeStats.setText(String.format("   Scope cache: %.1f%% hits (%d of %d lookups), %d endpoints",
+        100.0 * hits / total, hits, total, sc.size()));
+  }
+
   private void updateHintFromSelection() {
     int row = table.getSelectedRow();
     if (row < 0 || row >= table.getRowCount()) {
@@ -170,9 +256,9 @@ public final class InterceptionFiltersPanel {
     if (f == null) return;
 
     String msg = describe(f.type());
-    boolean regexInvalid = isRegexType(f.type()) && !f.content().isEmpty() && f.regex() == null;
-    if (regexInvalid) {
-      hint.setText(msg + "  (Invalid regex)");
+    String problem = RegexHints.problem(isRegexType(f.type()), f.content(), f.regex(), state.regexGuard());
+    if (problem != null) {
+      hint.setText(msg + "  (" + problem + ")");
       hint.setForeground(new Color(160, 60, 60));
     } else {
       hint.setText(msg);
@@ -220,6 +306,9 @@ public final class InterceptionFiltersPanel {
   private final class FiltersTableModel extends AbstractTableModel {
     private static final int COL_TYPE = 0;
     private static final int COL_CONTENT = 1;
+    private static final int COL_EVALUATED = 2;
+    private static final int COL_REJECTED = 3;
+    private static final int COL_AVG_MICROS = 4;
 
     @Override
     public int getRowCount() {
@@ -228,13 +317,16 @@ public final class InterceptionFiltersPanel {
 
     @Override
     public int getColumnCount() {
-      return 2;
+      return 5;
     }
 
     @Override
     public String getColumnName(int column) {
       if (column == COL_TYPE) return "Type";
       if (column == COL_CONTENT) return "Content";
+      if (column == COL_EVALUATED) return "Evaluated";
+      if (column == COL_REJECTED) return "Rejected";
+      if (column == COL_AVG_MICROS) return "Avg \u00b5s";
       return "";
     }
 
@@ -246,7 +338,7 @@ public final class InterceptionFiltersPanel {
 
     @Override
     public boolean isCellEditable(int rowIndex, int columnIndex) {
-      return true;
+      return columnIndex == COL_TYPE || columnIndex == COL_CONTENT;
     }
 
     @Override
@@ -256,6 +348,13 @@ public final class InterceptionFiltersPanel {
       InterceptionFilter f = fs.get(rowIndex);
       if (columnIndex == COL_TYPE) return f.type();
       if (columnIndex == COL_CONTENT) return f.content();
+
+      // Tool and port filters are applied outside the program and have no counters.
+      FilterProgram.Stats st = state.filterProgram().stats(rowIndex);
+      if (st == null) return "";
+      if (columnIndex == COL_EVALUATED) return st.evaluations();
+      if (columnIndex == COL_REJECTED) return st.rejections();
+      if (columnIndex == COL_AVG_MICROS) return st.evaluations() == 0 ? "" : String.format("%.1f", st.avgMicros());
       return "";
     }
 
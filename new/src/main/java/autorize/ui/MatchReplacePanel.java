@@ -1,5 +1,6 @@
 package autorize.ui;
 
+import autorize.core.RegexGuard;
 import autorize.model.MatchReplaceRule;
 import autorize.model.MatchReplaceType;
 
@@ -7,6 +8,7 @@ import javax.swing.BorderFactory;
 import javax.swing.DefaultCellEditor;
 import javax.swing.JButton;
 import javax.swing.JComboBox;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
@@ -14,6 +16,7 @@ import javax.swing.ListSelectionModel;
 import javax.swing.table.AbstractTableModel;
 import javax.swing.table.TableColumn;
 import java.awt.BorderLayout;
+import java.awt.Color;
 import java.awt.FlowLayout;
 import java.util.List;
 
@@ -27,8 +30,10 @@ public final class MatchReplacePanel {
 
   private final List<MatchReplaceRule> rules;
   private final Runnable onChange;
+  private final RegexGuard regexGuard;
 
   private final JPanel root = new JPanel(new BorderLayout());
+  private final JLabel hint = new JLabel(" ");
 
   private final MatchReplaceTableModel model;
   private final JTable table;
@@ -38,7 +43,10 @@ public final class MatchReplacePanel {
     COOKIE_REPLACE("cookie_replace", MatchReplaceType.COOKIE_REPLACE),
     STEPPER_HEADER("stepper_header", MatchReplaceType.STEPPER_HEADER),
     BODY_REGEX("body_regex", MatchReplaceType.BODY_REGEX),
-    PATH_REGEX("path_regex", MatchReplaceType.PATH_REGEX);
+    PATH_REGEX("path_regex", MatchReplaceType.PATH_REGEX),
+    JSON_SET("json_set", MatchReplaceType.JSON_SET),
+    JSON_REMOVE("json_remove", MatchReplaceType.JSON_REMOVE),
+    JSON_RENAME("json_rename", MatchReplaceType.JSON_RENAME);
 
     private final String label;
     private final MatchReplaceType type;
@@ -58,6 +66,9 @@ public final class MatchReplacePanel {
       if (type == MatchReplaceType.STEPPER_HEADER) return STEPPER_HEADER;
       if (type == MatchReplaceType.BODY_REGEX) return BODY_REGEX;
       if (type == MatchReplaceType.PATH_REGEX) return PATH_REGEX;
+      if (type == MatchReplaceType.JSON_SET) return JSON_SET;
+      if (type == MatchReplaceType.JSON_REMOVE) return JSON_REMOVE;
+      if (type == MatchReplaceType.JSON_RENAME) return JSON_RENAME;
       // Backward compatibility for legacy configs that used old header modes.
       if (type == MatchReplaceType.HEADERS_REGEX || type == MatchReplaceType.HEADERS_SIMPLE) return HEADER_REPLACE;
       return HEADER_REPLACE;
@@ -69,9 +80,10 @@ public final class MatchReplacePanel {
     }
   }
 
-  public MatchReplacePanel(List<MatchReplaceRule> rules, Runnable onChange) {
+  public MatchReplacePanel(List<MatchReplaceRule> rules, Runnable onChange, RegexGuard regexGuard) {
     this.rules = rules;
     this.onChange = onChange == null ? () -> {} : onChange;
+    this.regexGuard = regexGuard;
 
     root.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
 
@@ -94,6 +106,13 @@ public final class MatchReplacePanel {
     JButton remove = new JButton("-");
     buttons.add(add);
     buttons.add(remove);
+    hint.setForeground(new Color(90, 90, 90));
+    buttons.add(hint);
+
+    table.getSelectionModel().addListSelectionListener(e -> {
+      if (e.getValueIsAdjusting()) return;
+      updateHintFromSelection();
+    });
 
     add.addActionListener(e -> {
       int idx = model.addRule();
@@ -119,6 +138,30 @@ public final class MatchReplacePanel {
     return root;
   }
 
+  private void updateHintFromSelection() {
+    int row = table.getSelectedRow();
+    MatchReplaceRule r = rules != null && row >= 0 && row < rules.size() ? rules.get(row) : null;
+    String problem = r == null ? null : RegexHints.problem(isRegexType(r.type()), r.match(), r.regex(), regexGuard);
+    hint.setText(problem != null ? problem : r == null ? " " : describe(r.type()));
+    hint.setForeground(problem == null ? new Color(90, 90, 90) : new Color(160, 60, 60));
+  }
+
+  private static String describe(MatchReplaceType t) {
+    return switch (t) {
+      case JSON_SET -> "Match: JSON path ($.user.id, items[*].owner, ..tenantId) or form parameter."
+          + " Replace: new value (JSON literal or text).";
+      case JSON_REMOVE -> "Match: JSON path or form parameter to remove from the body.";
+      case JSON_RENAME -> "Match: JSON path or form parameter. Replace: its new name.";
+      default -> " ";
+    };
+  }
+
+  private static boolean isRegexType(MatchReplaceType t) {
+    return t == MatchReplaceType.BODY_REGEX
+        || t == MatchReplaceType.PATH_REGEX
+        || t == MatchReplaceType.HEADERS_REGEX;
+  }
+
   private final class MatchReplaceTableModel extends AbstractTableModel {
     private static final int COL_TYPE = 0;
     private static final int COL_MATCH = 1;
@@ -196,6 +239,7 @@ public final class MatchReplacePanel {
 
       rules.set(rowIndex, new MatchReplaceRule(type, match, replace));
       fireTableRowsUpdated(rowIndex, rowIndex);
+      updateHintFromSelection();
       onChange.run();
     }
 
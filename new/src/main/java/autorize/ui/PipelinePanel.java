@@ -0,0 +1,242 @@
+package autorize.ui;
+
+import autorize.core.AutorizeState;
+import autorize.core.DecisionTrace;
+import autorize.core.Detectors;
+import autorize.core.VerdictCache;
+import autorize.model.InterceptionFilter;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.event.HierarchyEvent;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows the decision trace: for each recent message seen by the HTTP handler, the stage at which it was
+ * dropped (or queued), the rejecting filter and how long the handler took. URLs are recorded only while
+ * this view is on screen, so the trace costs a few array stores per message otherwise. The verdict
+ * cache's hit ratio is shown alongside, and so are the installed enforcement detectors' counters.
+ */
+public final class PipelinePanel {
+  private final AutorizeState state;
+
+  private final JPanel root = new JPanel(new BorderLayout());
+  private final JLabel summary = new JLabel(" ");
+  private final JLabel cacheStats = new JLabel(" ");
+  private final JLabel detectorStats = new JLabel(" ");
+  private final TraceTableModel model = new TraceTableModel();
+  private final Timer refreshTimer;
+
+  public PipelinePanel(AutorizeState state) {
+    this.state = state;
+
+    root.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+    summary.setForeground(new Color(90, 90, 90));
+    cacheStats.setForeground(new Color(90, 90, 90));
+    cacheStats.setBorder(BorderFactory.createEmptyBorder(0, 0, 6, 0));
+    detectorStats.setForeground(new Color(90, 90, 90));
+    detectorStats.setBorder(BorderFactory.createEmptyBorder(0, 0, 6, 0));
+    detectorStats.setVisible(!state.detectors().isEmpty());
+
+    JTable table = new JTable(model);
+    table.setFillsViewportHeight(true);
+    DefaultTableCellRenderer numberRenderer = new DefaultTableCellRenderer();
+    numberRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+    for (int col : new int[] {TraceTableModel.COL_STATUS, TraceTableModel.COL_TOTAL, TraceTableModel.COL_FILTERS}) {
+      table.getColumnModel().getColumn(col).setCellRenderer(numberRenderer);
+      table.getColumnModel().getColumn(col).setPreferredWidth(70);
+    }
+    table.getColumnModel().getColumn(TraceTableModel.COL_URL).setPreferredWidth(500);
+
+    JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    JButton refresh = new JButton("Refresh");
+    JButton clear = new JButton("Clear");
+    JButton dump = new JButton("Dump to File...");
+    buttons.add(refresh);
+    buttons.add(clear);
+    buttons.add(dump);
+
+    refresh.addActionListener(e -> reload());
+    clear.addActionListener(e -> {
+      state.decisionTrace().clear();
+      reload();
+    });
+    dump.addActionListener(e -> dumpToFile());
+
+    JPanel top = new JPanel(new BorderLayout());
+    top.add(summary, BorderLayout.NORTH);
+    top.add(cacheStats, BorderLayout.CENTER);
+    top.add(detectorStats, BorderLayout.SOUTH);
+
+    root.add(top, BorderLayout.NORTH);
+    root.add(new JScrollPane(table), BorderLayout.CENTER);
+    root.add(buttons, BorderLayout.SOUTH);
+
+    // Capture URLs only while the view is visible; refresh it while it is.
+    refreshTimer = new Timer(1000, e -> reload());
+    root.addHierarchyListener(e -> {
+      if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) == 0) return;
+      boolean showing = root.isShowing();
+      state.decisionTrace().setCaptureUrls(showing);
+      if (showing) {
+        reload();
+        refreshTimer.start();
+      } else {
+        refreshTimer.stop();
+      }
+    });
+  }
+
+  public JPanel ui() {
+    return root;
+  }
+
+  private void reload() {
+    DecisionTrace trace = state.decisionTrace();
+    List<DecisionTrace.Record> records = trace.snapshot();
+    model.setRecords(records);
+
+    Map<DecisionTrace.Stage, Integer> counts = new EnumMap<>(DecisionTrace.Stage.class);
+    for (DecisionTrace.Record r : records) {
+      counts.merge(r.stage(), 1, Integer::sum);
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(trace.recorded()).append(" messages seen, last ").append(records.size()).append(":");
+    for (Map.Entry<DecisionTrace.Stage, Integer> c : counts.entrySet()) {
+      sb.append("  ").append(c.getKey().label()).append(" ").append(c.getValue());
+    }
+    summary.setText(sb.toString());
+    updateCacheStats();
+    updateDetectorStats();
+  }
+
+  private void updateCacheStats() {
+    VerdictCache vc = state.verdictCache();
+    long hits = vc.hits();
+    long total = hits + vc.misses();
+    if (total == 0 && vc.uncacheable() == 0) {
+      cacheStats.setText("Verdict cache: no replays judged yet");
+      return;
+    }
+    cacheStats.setText(String.format("Verdict cache: %.1f%% hits (%d of %d), %d uncached (rules read headers or a regex ran out of time), %d bodies, about %.0f ms saved",
+        total == 0 ? 0.0 : 100.0 * hits / total, hits, total, vc.uncacheable(), vc.size(), vc.savedNanos() / 1e6));
+  }
+
+  private void updateDetectorStats() {
+    Detectors detectors = state.detectors();
+    if (detectors.isEmpty()) return;
+    StringBuilder sb = new StringBuilder("Detectors:");
+    for (Detectors.Stat d : detectors.stats()) {
+      sb.append(String.format("  %s %d calls, %d enforced, %d errors, %.1f \u00b5s avg;", d.name(), d.calls(), d.hits(),
+          d.errors(), d.calls() == 0 ? 0.0 : d.nanos() / 1e3 / d.calls()));
+    }
+    sb.setLength(sb.length() - 1);
+    detectorStats.setText(sb.toString());
+  }
+
+  private void dumpToFile() {
+    JFileChooser fc = new JFileChooser();
+    fc.setDialogTitle("Dump decision trace");
+    if (fc.showSaveDialog(root) != JFileChooser.APPROVE_OPTION) return;
+    var file = fc.getSelectedFile().toPath();
+
+    List<DecisionTrace.Record> records = state.decisionTrace().snapshot();
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      w.write("seq\ttime\ttool\tstatus\tstage\tfilter\ttotal_us\tfilters_us\turl\n");
+      for (DecisionTrace.Record r : records) {
+        w.write(r.sequence() + "\t" + Instant.ofEpochMilli(r.timeMillis()) + "\t" + (r.tool() == null ? "" : r.tool())
+            + "\t" + r.status() + "\t" + r.stage() + "\t" + filterLabel(r) + "\t" + micros(r.totalNanos())
+            + "\t" + micros(r.filterNanos()) + "\t" + (r.url() == null ? "" : r.url()) + "\n");
+      }
+      JOptionPane.showMessageDialog(root, "Wrote " + records.size() + " records to:\n" + file, "Autorize", JOptionPane.INFORMATION_MESSAGE);
+    } catch (Exception ex) {
+      JOptionPane.showMessageDialog(root, "Dump failed:\n" + ex, "Autorize", JOptionPane.ERROR_MESSAGE);
+    }
+  }
+
+  // Resolved against the current list; the filter may have been edited since the record was written.
+  private String filterLabel(DecisionTrace.Record r) {
+    if (r.stage() != DecisionTrace.Stage.FILTER || r.filterIndex() < 0) return "";
+    List<InterceptionFilter> fs = state.interceptionFilters();
+    int i = r.filterIndex();
+    return i < fs.size() ? "#" + (i + 1) + " " + fs.get(i).type() : "#" + (i + 1);
+  }
+
+  private static String micros(long nanos) {
+    return String.format("%.1f", nanos / 1000.0);
+  }
+
+  private final class TraceTableModel extends AbstractTableModel {
+    private static final int COL_TIME = 0;
+    private static final int COL_TOOL = 1;
+    private static final int COL_STATUS = 2;
+    private static final int COL_STAGE = 3;
+    private static final int COL_FILTER = 4;
+    private static final int COL_TOTAL = 5;
+    private static final int COL_FILTERS = 6;
+    private static final int COL_URL = 7;
+    private static final String[] NAMES = {
+        "Time", "Tool", "Status", "Stage", "Filter", "Total \u00b5s", "Filters \u00b5s", "URL"
+    };
+
+    private List<DecisionTrace.Record> records = List.of();
+
+    void setRecords(List<DecisionTrace.Record> records) {
+      this.records = records;
+      fireTableDataChanged();
+    }
+
+    @Override
+    public int getRowCount() {
+      return records.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return NAMES[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+      DecisionTrace.Record r = records.get(rowIndex);
+      return switch (columnIndex) {
+        case COL_TIME -> LocalTime.ofInstant(Instant.ofEpochMilli(r.timeMillis()), ZoneId.systemDefault()).withNano(0).toString();
+        case COL_TOOL -> r.tool() == null ? "" : r.tool().toolName();
+        case COL_STATUS -> r.status();
+        case COL_STAGE -> r.stage().label();
+        case COL_FILTER -> filterLabel(r);
+        case COL_TOTAL -> micros(r.totalNanos());
+        case COL_FILTERS -> r.filterNanos() == 0 ? "" : micros(r.filterNanos());
+        case COL_URL -> r.url() == null ? "" : r.url();
+        default -> "";
+      };
+    }
+  }
+}
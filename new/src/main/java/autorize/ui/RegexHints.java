@@ -0,0 +1,25 @@
+package autorize.ui;
+
+import autorize.core.RegexGuard;
+
+import java.util.regex.Pattern;
+
+/**
+ * Shared wording for regex problems shown in the rule editors' hint lines.
+ */
+final class RegexHints {
+  private RegexHints() {
+  }
+
+  /**
+   * @return a short problem description for a regex rule, or null when there is nothing to flag
+   */
+  static String problem(boolean isRegexType, String content, Pattern regex, RegexGuard guard) {
+    if (!isRegexType || content == null || content.isEmpty()) return null;
+    if (regex == null) return "Invalid regex";
+    if (guard == null) return null;
+    if (guard.isOverBudget(regex)) return "Over time budget; treated as no match";
+    if (guard.fallsBack(regex)) return "Not supported by the linear engine; runs on java.util.regex";
+    return null;
+  }
+}
@@ -1,7 +1,10 @@
 package autorize.ui;
 
 import autorize.core.AutorizeState;
+import autorize.core.ResultsLog;
+import autorize.core.VerdictReevaluator;
 import autorize.model.LogEntry;
+import autorize.model.Verdict;
 
 import burp.api.montoya.MontoyaApi;
 import burp.api.montoya.core.ByteArray;
@@ -16,6 +19,7 @@ import javax.swing.JCheckBox;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
@@ -25,9 +29,11 @@ import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.JToggleButton;
 import javax.swing.KeyStroke;
+import javax.swing.ProgressMonitor;
 import javax.swing.ListSelectionModel;
 import javax.swing.SortOrder;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.TableRowSorter;
@@ -48,9 +54,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public final class ResultsPanel {
+  public interface Reevaluator {
+    VerdictReevaluator.Result run(IntConsumer progress) throws Exception;
+  }
+
   private final MontoyaApi api;
   private final AutorizeState state;
 
@@ -87,11 +99,13 @@ public final class ResultsPanel {
   private final JMenuItem sendToComparer = new JMenuItem("Send Responses to Comparer");
   private final JMenuItem retestSelected = new JMenuItem("Retest selected request");
   private final JMenuItem retestAll = new JMenuItem("Retest all requests");
+  private final JMenuItem reevaluate = new JMenuItem("Re-evaluate all verdicts (no requests sent)");
   private final JMenuItem copyUrl = new JMenuItem("Copy URL");
   private final JMenuItem deleteRows = new JMenuItem("Delete Selected Rows");
 
   private volatile Consumer<List<Integer>> retestSelectedHandler = null;
   private volatile Runnable retestAllHandler = null;
+  private volatile Reevaluator reevaluateHandler = null;
 
   public ResultsPanel(MontoyaApi api, AutorizeState state) {
     this.api = api;
@@ -129,6 +143,7 @@ public final class ResultsPanel {
     popup.addSeparator();
     popup.add(retestSelected);
     popup.add(retestAll);
+    popup.add(reevaluate);
     popup.add(copyUrl);
     popup.addSeparator();
     popup.add(deleteRows);
@@ -137,6 +152,7 @@ public final class ResultsPanel {
     sendToComparer.addActionListener(e -> doSendToComparer());
     retestSelected.addActionListener(e -> doRetestSelected());
     retestAll.addActionListener(e -> doRetestAll());
+    reevaluate.addActionListener(e -> doReevaluate());
     copyUrl.addActionListener(e -> copySelectedUrlToClipboard());
     deleteRows.addActionListener(e -> doDeleteSelectedRows());
 
@@ -234,6 +250,10 @@ public final class ResultsPanel {
     this.retestAllHandler = retestAllHandler;
   }
 
+  public void setReevaluateHandler(Reevaluator reevaluateHandler) {
+    this.reevaluateHandler = reevaluateHandler;
+  }
+
   public void refreshProfiles() {
     SwingUtilities.invokeLater(() -> {
       model.fireTableStructureChanged();
@@ -381,21 +401,21 @@ public final class ResultsPanel {
       @Override
       public boolean include(Entry<? extends ResultsTableModel, ? extends Integer> entry) {
         int row = entry.getIdentifier();
-        List<LogEntry> log = state.logSnapshot();
+        ResultsLog.View log = state.logSnapshot();
         if (row < 0 || row >= log.size()) return true;
-        LogEntry e = log.get(row);
 
-        String url = e.url() == null ? "" : e.url();
-        if (!q.isEmpty() && !url.toLowerCase().contains(q)) {
-          return false;
+        if (!q.isEmpty()) {
+          String url = log.get(row).url();
+          if (url == null || !url.toLowerCase().contains(q)) return false;
         }
 
         if (allowBypassed && allowEnforced && allowUnknown) return true;
-        if ("Disabled".equals(e.unauthVerdict())) return true;
+        Verdict unauth = log.unauthVerdict(row);
+        if (unauth == Verdict.DISABLED) return true;
 
-        if (statusMatches(e.unauthVerdict(), allowBypassed, allowUnknown, allowEnforced)) return true;
-        for (String v : e.perProfileVerdict().values()) {
-          if (statusMatches(v, allowBypassed, allowUnknown, allowEnforced)) return true;
+        if (statusMatches(unauth, allowBypassed, allowUnknown, allowEnforced)) return true;
+        for (int o = 0; o < log.profileColumns(); o++) {
+          if (statusMatches(log.verdict(row, o), allowBypassed, allowUnknown, allowEnforced)) return true;
         }
         return false;
       }
@@ -581,6 +601,39 @@ public final class ResultsPanel {
     h.run();
   }
 
+  private void doReevaluate() {
+    Reevaluator h = reevaluateHandler;
+    if (h == null) return;
+    int total = model.getRowCount();
+    if (total == 0) return;
+
+    reevaluate.setEnabled(false);
+    ProgressMonitor monitor = new ProgressMonitor(root, "Re-evaluating verdicts from stored responses", null, 0, total);
+    monitor.setMillisToDecideToPopup(200);
+
+    new SwingWorker<VerdictReevaluator.Result, Void>() {
+      @Override
+      protected VerdictReevaluator.Result doInBackground() throws Exception {
+        return h.run(done -> SwingUtilities.invokeLater(() -> monitor.setProgress(Math.min(done, total))));
+      }
+
+      @Override
+      protected void done() {
+        reevaluate.setEnabled(true);
+        monitor.close();
+        try {
+          VerdictReevaluator.Result r = get();
+          JOptionPane.showMessageDialog(root, r.summary(), "Autorize", JOptionPane.INFORMATION_MESSAGE);
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+          JOptionPane.showMessageDialog(root, "Re-evaluation failed:\n" + cause, "Autorize", JOptionPane.ERROR_MESSAGE);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }.execute();
+  }
+
   private void doDeleteSelectedRows() {
     int[] viewRows = table.getSelectedRows();
     if (viewRows == null || viewRows.length == 0) return;
@@ -607,12 +660,13 @@ public final class ResultsPanel {
     }
   }
 
-  private boolean statusMatches(String status, boolean allowBypassed, boolean allowUnknown, boolean allowEnforced) {
-    if (status == null) return false;
-    if (status.contains("Bypassed")) return allowBypassed;
-    if (status.contains("Is enforced")) return allowUnknown;
-    if (status.contains("Enforced")) return allowEnforced;
-    return false;
+  private static boolean statusMatches(Verdict v, boolean allowBypassed, boolean allowUnknown, boolean allowEnforced) {
+    return switch (v) {
+      case BYPASSED -> allowBypassed;
+      case UNKNOWN -> allowUnknown;
+      case ENFORCED -> allowEnforced;
+      default -> false;
+    };
   }
 
   private final class VerdictRenderer extends DefaultTableCellRenderer {
@@ -626,6 +680,7 @@ public final class ResultsPanel {
       super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
 
       int modelCol = table.convertColumnIndexToModel(column);
+      int modelRow = table.convertRowIndexToModel(row);
       boolean isStatusCol = modelCol == 4 || (modelCol >= 5 && ((modelCol - 5) % 2 == 1));
 
       Color baseBg = table.getBackground();
@@ -636,12 +691,12 @@ public final class ResultsPanel {
       }
 
       if (!isSelected && isStatusCol) {
-        String s = value == null ? "" : value.toString();
+        Verdict v = model.verdictAt(modelRow, modelCol);
         float alpha = isDark(baseBg) ? 0.35f : 0.55f;
-        if (s.contains("Bypassed")) setBackground(blend(baseBg, BYPASSED_TINT, alpha));
-        else if (s.contains("Is enforced")) setBackground(blend(baseBg, UNKNOWN_TINT, alpha));
-        else if (s.contains("Enforced")) setBackground(blend(baseBg, ENFORCED_TINT, alpha));
-        else if (s.equals("Disabled")) setBackground(blend(baseBg, DISABLED_TINT, alpha));
+        if (v == Verdict.BYPASSED) setBackground(blend(baseBg, BYPASSED_TINT, alpha));
+        else if (v == Verdict.UNKNOWN) setBackground(blend(baseBg, UNKNOWN_TINT, alpha));
+        else if (v == Verdict.ENFORCED) setBackground(blend(baseBg, ENFORCED_TINT, alpha));
+        else if (v == Verdict.DISABLED) setBackground(blend(baseBg, DISABLED_TINT, alpha));
       }
 
       // Mask lengths/statuses based on filter checkboxes like legacy.
@@ -651,30 +706,25 @@ public final class ResultsPanel {
         boolean allowUnknown = filterUnknown.isSelected();
         if (!(allowBypassed && allowEnforced && allowUnknown)) {
           if (modelCol == 3) {
-            int unauthStatusView = table.convertColumnIndexToView(4);
-            String st = String.valueOf(table.getValueAt(row, unauthStatusView));
-            if (!statusMatches(st, allowBypassed, allowUnknown, allowEnforced) && !"Disabled".equals(st)) {
+            Verdict st = model.verdictAt(modelRow, 4);
+            if (!statusMatches(st, allowBypassed, allowUnknown, allowEnforced) && st != Verdict.DISABLED) {
               setText("");
               setForeground(baseFg);
               setBackground(baseBg);
             }
           } else if (isStatusCol) {
-            String st = value == null ? "" : value.toString();
-            if (!statusMatches(st, allowBypassed, allowUnknown, allowEnforced) && !"Disabled".equals(st)) {
+            Verdict st = model.verdictAt(modelRow, modelCol);
+            if (!statusMatches(st, allowBypassed, allowUnknown, allowEnforced) && st != Verdict.DISABLED) {
               setText("");
               setForeground(baseFg);
               setBackground(baseBg);
             }
           } else if (modelCol >= 5 && ((modelCol - 5) % 2 == 0)) {
-            int statusModelCol = modelCol + 1;
-            int statusViewCol = table.convertColumnIndexToView(statusModelCol);
-            if (statusViewCol >= 0) {
-              String st = String.valueOf(table.getValueAt(row, statusViewCol));
-              if (!statusMatches(st, allowBypassed, allowUnknown, allowEnforced)) {
-                setText("");
-                setForeground(baseFg);
-                setBackground(baseBg);
-              }
+            Verdict st = model.verdictAt(modelRow, modelCol + 1);
+            if (!statusMatches(st, allowBypassed, allowUnknown, allowEnforced)) {
+              setText("");
+              setForeground(baseFg);
+              setBackground(baseBg);
             }
           }
         }
@@ -1,7 +1,8 @@
 package autorize.ui;
 
 import autorize.core.AutorizeState;
-import autorize.model.LogEntry;
+import autorize.core.ResultsLog;
+import autorize.model.Verdict;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
@@ -64,22 +65,14 @@ public final class ResultsTableModel extends AbstractTableModel {
 
   @Override
   public Object getValueAt(int rowIndex, int columnIndex) {
-    List<LogEntry> log = state.logSnapshot();
+    ResultsLog.View log = state.logSnapshot();
     if (rowIndex < 0 || rowIndex >= log.size()) return "";
-    LogEntry e = log.get(rowIndex);
 
-    if (columnIndex == 0) return e.number();
-    if (columnIndex == 1) return e.url();
-    if (columnIndex == 2) {
-      var res = e.original() == null ? null : e.original().response();
-      return res == null ? 0 : res.body().length();
-    }
-    if (columnIndex == 3) {
-      var rr = e.unauthenticated();
-      if (rr == null || !rr.hasResponse() || rr.response() == null) return 0;
-      return rr.response().body().length();
-    }
-    if (columnIndex == 4) return e.unauthVerdict();
+    if (columnIndex == 0) return log.number(rowIndex);
+    if (columnIndex == 1) return log.get(rowIndex).url();
+    if (columnIndex == 2) return log.length(rowIndex);
+    if (columnIndex == 3) return log.unauthLength(rowIndex);
+    if (columnIndex == 4) return log.unauthVerdict(rowIndex).text();
 
     int idx = columnIndex - 5;
     int userIdx = idx / 2;
@@ -87,14 +80,23 @@ public final class ResultsTableModel extends AbstractTableModel {
 
     List<UUID> ids = new ArrayList<>(state.profileNamesSnapshot().keySet());
     if (userIdx >= 0 && userIdx < ids.size()) {
-      UUID id = ids.get(userIdx);
-      if (colType == 0) {
-        var rr = e.perProfile().get(id);
-        if (rr == null || !rr.hasResponse() || rr.response() == null) return 0;
-        return rr.response().body().length();
-      }
-      return e.perProfileVerdict().getOrDefault(id, "");
+      int ordinal = log.ordinal(ids.get(userIdx));
+      if (colType == 0) return log.length(rowIndex, ordinal);
+      return log.verdict(rowIndex, ordinal).text();
     }
     return "";
   }
+
+  /** The verdict behind a status cell (unauthenticated or a profile's), NONE for any other cell. */
+  public Verdict verdictAt(int rowIndex, int columnIndex) {
+    ResultsLog.View log = state.logSnapshot();
+    if (rowIndex < 0 || rowIndex >= log.size()) return Verdict.NONE;
+    if (columnIndex == 4) return log.unauthVerdict(rowIndex);
+
+    int idx = columnIndex - 5;
+    if (idx < 0 || idx % 2 != 1) return Verdict.NONE;
+    List<UUID> ids = new ArrayList<>(state.profileNamesSnapshot().keySet());
+    if (idx / 2 >= ids.size()) return Verdict.NONE;
+    return log.verdict(rowIndex, log.ordinal(ids.get(idx / 2)));
+  }
 }
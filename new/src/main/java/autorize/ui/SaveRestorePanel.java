@@ -3,6 +3,7 @@ package autorize.ui;
 import autorize.config.AutorizeConfigCodec;
 import autorize.core.AutorizeState;
 import autorize.export.ResultsExport;
+import autorize.model.Verdict;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
@@ -56,9 +57,9 @@ public final class SaveRestorePanel {
     JComboBox<String> exportFilter = new JComboBox<>(new String[] {
         ResultsExport.FILTER_ALL,
         ResultsExport.FILTER_AS_TABLE,
-        "Bypassed!",
-        "Is enforced???",
-        "Enforced!"
+        Verdict.BYPASSED.text(),
+        Verdict.UNKNOWN.text(),
+        Verdict.ENFORCED.text()
     });
 
     resultsRow.add(exportCsvBtn);
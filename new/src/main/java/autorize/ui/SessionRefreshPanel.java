@@ -0,0 +1,222 @@
+package autorize.ui;
+
+import autorize.model.TokenExtractor;
+import autorize.model.TokenExtractorType;
+import autorize.model.UserProfile;
+
+import javax.swing.BorderFactory;
+import javax.swing.DefaultCellEditor;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.TableColumn;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.util.List;
+
+/**
+ * Session refresh recipe editor for one profile.
+ *
+ * The login request is replayed when the cached tokens expire (or a replay gets a 401); each extractor
+ * fills a {{name}} placeholder used in the profile's headers and match/replace values.
+ */
+public final class SessionRefreshPanel {
+  private final UserProfile profile;
+  private final Runnable onChange;
+
+  private final JPanel root = new JPanel(new BorderLayout());
+
+  private final ExtractorsTableModel model;
+  private final JTable table;
+
+  public SessionRefreshPanel(UserProfile profile, Runnable onChange) {
+    this.profile = profile;
+    this.onChange = onChange == null ? () -> {} : onChange;
+
+    root.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+    JTextField serviceUrl = new JTextField(profile.refreshServiceUrl(), 28);
+    serviceUrl.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      profile.setRefreshServiceUrl(serviceUrl.getText());
+      this.onChange.run();
+    }));
+
+    JTextField ttl = new JTextField(String.valueOf(profile.refreshTtlSeconds()), 5);
+    ttl.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      try {
+        profile.setRefreshTtlSeconds(Integer.parseInt(ttl.getText().trim()));
+        this.onChange.run();
+      } catch (NumberFormatException ignored) {
+      }
+    }));
+
+    JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    top.add(new JLabel("Login service:"));
+    top.add(serviceUrl);
+    top.add(new JLabel("TTL (s):"));
+    top.add(ttl);
+
+    JTextArea request = new JTextArea(profile.refreshRequestText(), 8, 60);
+    request.setFont(new Font(Font.MONOSPACED, Font.PLAIN, request.getFont().getSize()));
+    request.getDocument().addDocumentListener(new SimpleDocumentListener(() -> {
+      profile.setRefreshRequestText(request.getText());
+      this.onChange.run();
+    }));
+
+    JPanel requestPanel = new JPanel(new BorderLayout());
+    requestPanel.setBorder(BorderFactory.createTitledBorder("Login request (raw HTTP)"));
+    requestPanel.add(new JScrollPane(request), BorderLayout.CENTER);
+
+    this.model = new ExtractorsTableModel();
+    this.table = new JTable(model);
+    this.table.setFillsViewportHeight(true);
+    this.table.setRowSelectionAllowed(true);
+    this.table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+    TableColumn typeCol = table.getColumnModel().getColumn(1);
+    JComboBox<TokenExtractorType> typeBox = new JComboBox<>(TokenExtractorType.values());
+    typeCol.setCellEditor(new DefaultCellEditor(typeBox));
+    typeCol.setPreferredWidth(120);
+    table.getColumnModel().getColumn(0).setPreferredWidth(140);
+    table.getColumnModel().getColumn(2).setPreferredWidth(520);
+
+    JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+    JButton add = new JButton("+");
+    JButton remove = new JButton("-");
+    buttons.add(add);
+    buttons.add(remove);
+    JLabel hint = new JLabel("Use {{name}} in headers or match/replace values. JSON path: $.data.token; Set-Cookie: cookie name.");
+    hint.setForeground(new Color(90, 90, 90));
+    buttons.add(hint);
+
+    add.addActionListener(e -> {
+      int idx = model.addExtractor();
+      if (idx >= 0) {
+        table.getSelectionModel().setSelectionInterval(idx, idx);
+      }
+      this.onChange.run();
+    });
+
+    remove.addActionListener(e -> {
+      int row = table.getSelectedRow();
+      if (row < 0) return;
+      model.removeExtractor(row);
+      this.onChange.run();
+    });
+
+    JPanel extractorsPanel = new JPanel(new BorderLayout());
+    extractorsPanel.setBorder(BorderFactory.createTitledBorder("Extractors"));
+    extractorsPanel.add(buttons, BorderLayout.NORTH);
+    extractorsPanel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+    JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+    split.setResizeWeight(0.5);
+    split.setTopComponent(requestPanel);
+    split.setBottomComponent(extractorsPanel);
+
+    root.add(top, BorderLayout.NORTH);
+    root.add(split, BorderLayout.CENTER);
+  }
+
+  public JPanel ui() {
+    return root;
+  }
+
+  private final class ExtractorsTableModel extends AbstractTableModel {
+    private static final int COL_NAME = 0;
+    private static final int COL_TYPE = 1;
+    private static final int COL_EXPRESSION = 2;
+
+    private List<TokenExtractor> extractors() {
+      return profile.tokenExtractors();
+    }
+
+    @Override
+    public int getRowCount() {
+      return extractors().size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return 3;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      if (column == COL_NAME) return "Name";
+      if (column == COL_TYPE) return "Type";
+      if (column == COL_EXPRESSION) return "Expression";
+      return "";
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+      if (columnIndex == COL_TYPE) return TokenExtractorType.class;
+      return String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+      return true;
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+      List<TokenExtractor> xs = extractors();
+      if (rowIndex < 0 || rowIndex >= xs.size()) return "";
+      TokenExtractor x = xs.get(rowIndex);
+      if (columnIndex == COL_NAME) return x.name();
+      if (columnIndex == COL_TYPE) return x.type();
+      if (columnIndex == COL_EXPRESSION) return x.expression();
+      return "";
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+      List<TokenExtractor> xs = extractors();
+      if (rowIndex < 0 || rowIndex >= xs.size()) return;
+      TokenExtractor cur = xs.get(rowIndex);
+
+      TokenExtractorType type = cur.type();
+      String name = cur.name();
+      String expression = cur.expression();
+
+      if (columnIndex == COL_TYPE) {
+        if (aValue instanceof TokenExtractorType) {
+          type = (TokenExtractorType) aValue;
+        }
+      } else if (columnIndex == COL_NAME) {
+        name = aValue == null ? "" : String.valueOf(aValue);
+      } else if (columnIndex == COL_EXPRESSION) {
+        expression = aValue == null ? "" : String.valueOf(aValue);
+      }
+
+      xs.set(rowIndex, new TokenExtractor(type, name, expression));
+      fireTableRowsUpdated(rowIndex, rowIndex);
+      onChange.run();
+    }
+
+    int addExtractor() {
+      extractors().add(new TokenExtractor(TokenExtractorType.JSON_PATH, "token", "$.token"));
+      int idx = extractors().size() - 1;
+      fireTableRowsInserted(idx, idx);
+      return idx;
+    }
+
+    void removeExtractor(int rowIndex) {
+      if (rowIndex < 0 || rowIndex >= extractors().size()) return;
+      extractors().remove(rowIndex);
+      fireTableDataChanged();
+    }
+  }
+}
@@ -200,7 +200,7 @@ public final class UsersPanel {
     JTabbedPane subtabs = new JTabbedPane();
 
     // Match/Replace tab
-    MatchReplacePanel mr = new MatchReplacePanel(profile.matchReplaceRules(), state::notifyConfigChanged);
+    MatchReplacePanel mr = new MatchReplacePanel(profile.matchReplaceRules(), state::notifyConfigChanged, state.regexGuard());
     subtabs.addTab("Match/Replace", mr.ui());
 
     // Enforcement Detector tab
@@ -208,10 +208,15 @@ public final class UsersPanel {
         profile.enforcementRules(),
         profile::enforcementAndOr,
         profile::setEnforcementAndOr,
-        state::notifyConfigChanged
+        state::notifyConfigChanged,
+        state.regexGuard()
     );
     subtabs.addTab("Enforcement Detector", ed.ui());
 
+    // Session Refresh tab
+    SessionRefreshPanel sr = new SessionRefreshPanel(profile, state::notifyConfigChanged);
+    subtabs.addTab("Session Refresh", sr.ui());
+
     p.add(subtabs, BorderLayout.CENTER);
     return p;
   }
@@ -0,0 +1,150 @@
+package autorize.ui;
+
+import autorize.config.AutorizeConfigCodec;
+import autorize.core.AutorizeState;
+import autorize.core.WhatIfSimulator;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTextArea;
+import javax.swing.SwingWorker;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * What-if simulator: edit a candidate config (same JSON as Save/Restore) and see what it would capture,
+ * how many replays that costs, and which verdicts in the log would flip. Nothing is applied or sent; the
+ * run happens on a background worker.
+ */
+public final class WhatIfPanel {
+  /** Runs one simulation; supplied by the controller, which owns Burp's proxy history and scope. */
+  public interface Simulator {
+    WhatIfSimulator.Report run(String candidateJson, boolean includeProxyHistory) throws Exception;
+  }
+
+  private final AutorizeState state;
+
+  private final JPanel root = new JPanel(new BorderLayout());
+  private final JTextArea candidate = new JTextArea(12, 80);
+  private final JTextArea result = new JTextArea(10, 80);
+  private final JLabel status = new JLabel(" ");
+  private final JButton run = new JButton("Run");
+
+  private volatile Simulator simulator = null;
+
+  public WhatIfPanel(AutorizeState state) {
+    this.state = state;
+
+    root.setBorder(BorderFactory.createEmptyBorder(6, 6, 6, 6));
+
+    JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 4));
+    JButton loadCurrent = new JButton("Load Current Config");
+    JButton loadFile = new JButton("Load JSON...");
+    JCheckBox includeHistory = new JCheckBox("Include proxy history", true);
+    row.add(loadCurrent);
+    row.add(loadFile);
+    row.add(includeHistory);
+    row.add(run);
+    status.setForeground(new Color(90, 90, 90));
+    row.add(status);
+
+    candidate.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    JPanel candidatePanel = new JPanel(new BorderLayout());
+    candidatePanel.setBorder(BorderFactory.createTitledBorder("Candidate Config (JSON)"));
+    candidatePanel.add(new JScrollPane(candidate), BorderLayout.CENTER);
+
+    result.setEditable(false);
+    result.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+    JPanel resultPanel = new JPanel(new BorderLayout());
+    resultPanel.setBorder(BorderFactory.createTitledBorder("Result"));
+    resultPanel.add(new JScrollPane(result), BorderLayout.CENTER);
+
+    JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT);
+    split.setResizeWeight(0.6);
+    split.setTopComponent(candidatePanel);
+    split.setBottomComponent(resultPanel);
+
+    root.add(row, BorderLayout.NORTH);
+    root.add(split, BorderLayout.CENTER);
+
+    loadCurrent.addActionListener(e -> loadCurrent());
+    loadFile.addActionListener(e -> loadFile());
+    run.addActionListener(e -> runSimulation(includeHistory.isSelected()));
+
+    loadCurrent();
+  }
+
+  public JPanel ui() {
+    return root;
+  }
+
+  public void setSimulator(Simulator simulator) {
+    this.simulator = simulator;
+  }
+
+  private void loadCurrent() {
+    try {
+      candidate.setText(AutorizeConfigCodec.toJson(state));
+      candidate.setCaretPosition(0);
+    } catch (IOException ex) {
+      status.setText("Failed to load current config: " + ex.getMessage());
+    }
+  }
+
+  private void loadFile() {
+    JFileChooser fc = new JFileChooser();
+    fc.setDialogTitle("Load candidate config");
+    fc.setFileFilter(new FileNameExtensionFilter("JSON", "json"));
+    if (fc.showOpenDialog(root) != JFileChooser.APPROVE_OPTION) return;
+    try {
+      candidate.setText(Files.readString(fc.getSelectedFile().toPath(), StandardCharsets.UTF_8));
+      candidate.setCaretPosition(0);
+    } catch (IOException ex) {
+      status.setText("Failed to read file: " + ex.getMessage());
+    }
+  }
+
+  private void runSimulation(boolean includeHistory) {
+    Simulator s = simulator;
+    if (s == null) return;
+    String json = candidate.getText();
+    run.setEnabled(false);
+    status.setText("Running...");
+
+    new SwingWorker<WhatIfSimulator.Report, Void>() {
+      @Override
+      protected WhatIfSimulator.Report doInBackground() throws Exception {
+        return s.run(json, includeHistory);
+      }
+
+      @Override
+      protected void done() {
+        run.setEnabled(true);
+        try {
+          WhatIfSimulator.Report r = get();
+          result.setText(r.summary());
+          result.setCaretPosition(0);
+          status.setText(" ");
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+          status.setText("Simulation failed: " + cause.getMessage());
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }.execute();
+  }
+}
@@ -0,0 +1,167 @@
+package autorize.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CookieJarTest {
+  // 2020-01-01T00:00:00Z
+  private final AtomicLong now = new AtomicLong(1_577_836_800_000L);
+  private final CookieJar jar = new CookieJar(now::get);
+
+  private static long utc(int y, int mo, int d, int h, int mi, int s) {
+    return LocalDateTime.of(y, mo, d, h, mi, s).toInstant(ZoneOffset.UTC).toEpochMilli();
+  }
+
+  @Test
+  void hostOnlyCookieIsNotSentToSubdomains() {
+    jar.learn("example.com", "/", List.of("a=1"));
+
+    assertEquals("a=1", jar.apply("example.com", "/", false, null));
+    assertNull(jar.apply("api.example.com", "/", false, null));
+  }
+
+  @Test
+  void domainCookieIsSentToSubdomainsOnly() {
+    jar.learn("www.example.com", "/", List.of("a=1; Domain=.example.com"));
+
+    assertEquals("a=1", jar.apply("api.example.com", "/", false, null));
+    assertEquals("a=1", jar.apply("example.com", "/", false, null));
+    assertNull(jar.apply("badexample.com", "/", false, null));
+  }
+
+  @Test
+  void domainNotCoveringTheHostIsRejected() {
+    jar.learn("www.example.com", "/", List.of("a=1; Domain=other.com"));
+
+    assertEquals(0, jar.learnedCount());
+  }
+
+  @Test
+  void pathMatchingFollowsRfc6265() {
+    jar.learn("h", "/", List.of("a=1; Path=/api"));
+
+    assertEquals("a=1", jar.apply("h", "/api", false, null));
+    assertEquals("a=1", jar.apply("h", "/api/users?x=1", false, null));
+    assertNull(jar.apply("h", "/apix", false, null));
+    assertNull(jar.apply("h", "/", false, null));
+  }
+
+  @Test
+  void defaultPathIsTheRequestDirectory() {
+    jar.learn("h", "/app/login?next=/", List.of("a=1"));
+
+    assertEquals("a=1", jar.apply("h", "/app/home", false, null));
+    assertNull(jar.apply("h", "/other", false, null));
+  }
+
+  @Test
+  void moreSpecificPathWins() {
+    jar.learn("h", "/", List.of("a=root; Path=/", "a=api; Path=/api"));
+
+    assertEquals("a=api", jar.apply("h", "/api/x", false, null));
+    assertEquals("a=root", jar.apply("h", "/x", false, null));
+  }
+
+  @Test
+  void secureCookieNeedsHttps() {
+    jar.learn("h", "/", List.of("a=1; Secure"));
+
+    assertNull(jar.apply("h", "/", false, null));
+    assertEquals("a=1", jar.apply("h", "/", true, null));
+  }
+
+  @Test
+  void maxAgeExpiresAndZeroDeletes() {
+    jar.learn("h", "/", List.of("a=1; Max-Age=60", "b=2"));
+    now.addAndGet(60_000);
+    assertEquals("b=2", jar.apply("h", "/", false, null));
+
+    jar.learn("h", "/", List.of("b=gone; Max-Age=0"));
+    assertEquals(0, jar.learnedCount());
+  }
+
+  @Test
+  void hugeMaxAgeDoesNotOverflowIntoThePast() {
+    jar.learn("h", "/", List.of("a=1; Max-Age=9223372036854775807"));
+
+    assertEquals("a=1", jar.apply("h", "/", false, null));
+  }
+
+  @Test
+  void maxAgeTakesPrecedenceOverExpires() {
+    jar.learn("h", "/", List.of("a=1; Max-Age=60; Expires=Thu, 01 Jan 1970 00:00:00 GMT"));
+
+    assertEquals("a=1", jar.apply("h", "/", false, null));
+  }
+
+  @Test
+  void expiresInThePastDeletes() {
+    jar.learn("h", "/", List.of("a=1"));
+    jar.learn("h", "/", List.of("a=; Expires=Sunday, 06-Nov-94 08:49:37 GMT"));
+
+    assertEquals(0, jar.learnedCount());
+  }
+
+  @Test
+  void expiresIsReadInAllCookieDateFormats() {
+    long expected = utc(1994, 11, 6, 8, 49, 37);
+    assertEquals(expected, CookieJar.parseCookieDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+    assertEquals(expected, CookieJar.parseCookieDate("Sunday, 06-Nov-94 08:49:37 GMT"));
+    assertEquals(expected, CookieJar.parseCookieDate("Sun Nov  6 08:49:37 1994"));
+    assertEquals(expected, CookieJar.parseCookieDate("Sun, 06-Nov-1994 08:49:37 GMT"));
+    assertEquals(utc(2038, 1, 19, 3, 14, 7), CookieJar.parseCookieDate("Tue, 19 Jan 38 03:14:07 GMT"));
+
+    assertEquals(CookieJar.NOT_A_DATE, CookieJar.parseCookieDate("tomorrow"));
+    assertEquals(CookieJar.NOT_A_DATE, CookieJar.parseCookieDate("Fri, 30 Feb 2024 00:00:00 GMT"));
+    assertEquals(CookieJar.NOT_A_DATE, CookieJar.parseCookieDate("Mon, 01 Jan 2024 25:00:00 GMT"));
+  }
+
+  @Test
+  void expiresInTheFutureKeepsTheCookieUntilThen() {
+    jar.learn("h", "/", List.of("a=1; Expires=Wed, 01-Jan-20 00:01:00 GMT"));
+    assertEquals("a=1", jar.apply("h", "/", false, null));
+
+    now.addAndGet(60_000);
+    assertNull(jar.apply("h", "/", false, null));
+  }
+
+  @Test
+  void seedsWinOverLearnedCookies() {
+    jar.seed(Map.of("sid", "alice"));
+    jar.learn("h", "/", List.of("sid=anonymous", "csrf=t1"));
+
+    assertEquals("sid=alice; theme=dark; csrf=t1", jar.apply("h", "/", false, "sid=alice; theme=dark"));
+  }
+
+  @Test
+  void learnedCookiesReplaceRequestValues() {
+    jar.learn("h", "/", List.of("csrf=new"));
+
+    assertEquals("csrf=new; a=1", jar.apply("h", "/", false, "csrf=old; a=1"));
+  }
+
+  @Test
+  void changedSeedsDropLearnedCookies() {
+    jar.seed(Map.of("sid", "alice"));
+    jar.learn("h", "/", List.of("csrf=t1"));
+    jar.seed(Map.of("sid", "alice"));
+    assertEquals(1, jar.learnedCount());
+
+    jar.seed(Map.of("sid", "bob"));
+    assertEquals(0, jar.learnedCount());
+    assertEquals("sid=bob", jar.apply("h", "/", false, null));
+  }
+
+  @Test
+  void emptyJarLeavesTheHeaderAlone() {
+    assertNull(jar.apply("h", "/", false, "a=1"));
+  }
+}
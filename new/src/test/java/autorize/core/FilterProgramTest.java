@@ -0,0 +1,278 @@
+package autorize.core;
+
+import autorize.model.InterceptionFilter;
+import autorize.model.InterceptionFilterType;
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FilterProgramTest {
+  private static final Predicate<HttpRequest> IN_SCOPE = r -> r.url().contains("/api/");
+
+  private static final String[] URLS = {
+      "https://h.example/api/users?id=1", "https://h.example/static/app.js", "https://h.example/API/admin",
+      "https://other.example/api/orders/7", "https://h.example/login"
+  };
+  private static final String[] METHODS = {"GET", "POST", "PUT", "OPTIONS", "delete", "PROPFIND"};
+  private static final String[] BODIES = {
+      "", "id=1&role=user", "{\"token\":\"abc\",\"admin\":false}", "<html>Access denied</html>", "ADMIN panel 42"
+  };
+  private static final String[] CONTENTS = {
+      "", "api", "/api/", "admin", "ADMIN", "id=", "token", "denied", "json", "Cookie", "X-Role: admin",
+      "GET", "POST, PUT", "get\ndelete", "PROPFIND", "OPTIONS", "^https://h\\.example/api", "[0-9]+", "admin|token",
+      "(", "\\d{3}", "8080, 9090"
+  };
+  private static final InterceptionFilterType[] TYPES = InterceptionFilterType.values();
+
+  private static HttpRequest request(Random rnd) {
+    List<HttpHeader> headers = MontoyaFakes.headers("Host", "h.example", "Cookie", "sid=" + rnd.nextInt(3));
+    if (rnd.nextBoolean()) headers.add(MontoyaFakes.header("X-Role", "admin"));
+    return MontoyaFakes.request(pick(rnd, METHODS), pick(rnd, URLS), headers,
+        pick(rnd, BODIES).getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static HttpResponse response(Random rnd) {
+    List<HttpHeader> headers = MontoyaFakes.headers("Content-Type", rnd.nextBoolean() ? "application/json" : "text/html");
+    return MontoyaFakes.response(rnd.nextBoolean() ? 200 : 403, headers,
+        pick(rnd, BODIES).getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static List<InterceptionFilter> filters(Random rnd) {
+    List<InterceptionFilter> out = new ArrayList<>();
+    int n = 1 + rnd.nextInt(4);
+    for (int i = 0; i < n; i++) out.add(new InterceptionFilter(pick(rnd, TYPES), pick(rnd, CONTENTS)));
+    return out;
+  }
+
+  private static <T> T pick(Random rnd, T[] values) {
+    return values[rnd.nextInt(values.length)];
+  }
+
+  @Test
+  void compiledProgramAgreesWithInterpretedLoop() {
+    Random rnd = new Random(20240501L);
+    for (int round = 0; round < 400; round++) {
+      List<InterceptionFilter> filters = filters(rnd);
+      FilterProgram program = FilterProgram.compile(filters, null, null, new RegexGuard(), Integer.MAX_VALUE);
+      // Enough exchanges per program that the adaptive re-ranking kicks in at least once.
+      for (int i = 0; i < FilterProgram.REORDER_INTERVAL + 20; i++) {
+        HttpRequest req = request(rnd);
+        HttpResponse res = response(rnd);
+        boolean expected = LegacyFilters.shouldProcess(filters, req, res, IN_SCOPE);
+
+        int rejectedBy = program.firstRejecting(req, res, IN_SCOPE);
+
+        assertEquals(expected, rejectedBy == FilterProgram.PASS, () -> filters + " on " + req.method() + " " + req.url());
+        if (rejectedBy >= 0) {
+          assertFalse(LegacyFilters.shouldProcess(List.of(filters.get(rejectedBy)), req, res, IN_SCOPE),
+              () -> "filter " + rejectedBy + " of " + filters + " does not reject on its own");
+        }
+      }
+    }
+  }
+
+  @Test
+  void linearEngineAgreesWithInterpretedLoop() {
+    Random rnd = new Random(7L);
+    RegexGuard guard = new RegexGuard();
+    guard.setLinear(true);
+    for (int round = 0; round < 200; round++) {
+      List<InterceptionFilter> filters = filters(rnd);
+      FilterProgram program = FilterProgram.compile(filters, null, null, guard, Integer.MAX_VALUE);
+      for (int i = 0; i < 20; i++) {
+        HttpRequest req = request(rnd);
+        HttpResponse res = response(rnd);
+
+        assertEquals(LegacyFilters.shouldProcess(filters, req, res, IN_SCOPE),
+            program.firstRejecting(req, res, IN_SCOPE) == FilterProgram.PASS, filters::toString);
+      }
+    }
+  }
+
+  @Test
+  void toolAndPortFiltersAgreeWithInterpretedLoop() {
+    Random rnd = new Random(11L);
+    for (int round = 0; round < 200; round++) {
+      List<InterceptionFilter> filters = filters(rnd);
+      FilterProgram program = FilterProgram.compile(filters, null, null, new RegexGuard(), Integer.MAX_VALUE);
+      for (ToolType tool : ToolType.values()) {
+        assertEquals(LegacyFilters.ignoresTool(filters, tool), program.ignoresTool(tool), filters::toString);
+      }
+      for (int port : new int[]{-1, 0, 80, 8080, 9090}) {
+        assertEquals(LegacyFilters.dropsPort(filters, port), program.dropsPort(port), filters::toString);
+      }
+    }
+  }
+
+  @Test
+  void missingMessageIsReportedSeparately() {
+    FilterProgram program = FilterProgram.compile(List.of(), null, null, new RegexGuard(), Integer.MAX_VALUE);
+    HttpRequest req = MontoyaFakes.request("GET", "https://h/", List.of(), new byte[0]);
+
+    assertEquals(FilterProgram.NO_MESSAGE, program.firstRejecting(req, null, IN_SCOPE));
+    assertEquals(FilterProgram.NO_MESSAGE, program.firstRejecting(null, MontoyaFakes.response(200, ""), IN_SCOPE));
+    assertEquals(FilterProgram.PASS, program.firstRejecting(req, MontoyaFakes.response(200, ""), IN_SCOPE));
+  }
+
+  @Test
+  void bodyFiltersOnlySeeTheWindow() {
+    List<InterceptionFilter> filters = List.of(new InterceptionFilter(InterceptionFilterType.RES_BODY_CONTAINS, "tail"));
+    FilterProgram program = FilterProgram.compile(filters, null, null, new RegexGuard(), 8);
+    HttpRequest req = MontoyaFakes.request("GET", "https://h/", List.of(), new byte[0]);
+
+    assertEquals(FilterProgram.PASS, program.firstRejecting(req, MontoyaFakes.response(200, "ok tail"), IN_SCOPE));
+    assertEquals(0, program.firstRejecting(req, MontoyaFakes.response(200, "0123456789 tail"), IN_SCOPE));
+  }
+
+  @Test
+  void expressionIsAndedWithTheList() {
+    List<InterceptionFilter> filters = List.of(new InterceptionFilter(InterceptionFilterType.IGNORE_OPTIONS, ""));
+    FilterExpression expr = FilterExpression.parse("URL_CONTAINS(\"/api/\") OR REQ_HEADER_CONTAINS(\"X-Role\")");
+    FilterProgram program = FilterProgram.compile(filters, expr, null, new RegexGuard(), Integer.MAX_VALUE);
+    HttpResponse res = MontoyaFakes.response(200, "");
+
+    assertEquals(FilterProgram.PASS, program.firstRejecting(
+        MontoyaFakes.request("GET", "https://h/api/x", List.of(), new byte[0]), res, IN_SCOPE));
+    assertEquals(FilterProgram.EXPRESSION, program.firstRejecting(
+        MontoyaFakes.request("GET", "https://h/x", List.of(), new byte[0]), res, IN_SCOPE));
+    assertEquals(0, program.firstRejecting(
+        MontoyaFakes.request("OPTIONS", "https://h/api/x", List.of(), new byte[0]), res, IN_SCOPE));
+    assertTrue(program.expressionStats().evaluations() >= 2);
+  }
+
+  /** The filter loop as it was interpreted per exchange before FilterProgram existed. */
+  static final class LegacyFilters {
+    private LegacyFilters() {
+    }
+
+    static boolean shouldProcess(List<InterceptionFilter> filters, HttpRequest req, HttpResponse res,
+                                 Predicate<HttpRequest> inScope) {
+      if (req == null || res == null) return false;
+      String url = req.url();
+      String method = req.method();
+      String reqBody = req.bodyToString();
+      String resBody = res.bodyToString();
+
+      for (InterceptionFilter f : filters) {
+        InterceptionFilterType t = f.type();
+        String c = f.content();
+        Pattern p = f.regex();
+        switch (t) {
+          case SCOPE_ONLY -> {
+            if (!inScope.test(req)) return false;
+          }
+          case URL_CONTAINS -> {
+            if (url == null || !url.contains(c)) return false;
+          }
+          case URL_REGEX -> {
+            if (p == null || url == null || !p.matcher(url).find()) return false;
+          }
+          case URL_NOT_CONTAINS -> {
+            if (url != null && url.contains(c)) return false;
+          }
+          case URL_NOT_REGEX -> {
+            if (p != null && url != null && p.matcher(url).find()) return false;
+          }
+          case REQ_BODY_CONTAINS -> {
+            if (reqBody == null || !reqBody.contains(c)) return false;
+          }
+          case REQ_BODY_REGEX -> {
+            if (p == null || reqBody == null || !p.matcher(reqBody).find()) return false;
+          }
+          case REQ_BODY_NOT_CONTAINS -> {
+            if (reqBody != null && reqBody.contains(c)) return false;
+          }
+          case REQ_BODY_NOT_REGEX -> {
+            if (p != null && reqBody != null && p.matcher(reqBody).find()) return false;
+          }
+          case RES_BODY_CONTAINS -> {
+            if (resBody == null || !resBody.contains(c)) return false;
+          }
+          case RES_BODY_REGEX -> {
+            if (p == null || resBody == null || !p.matcher(resBody).find()) return false;
+          }
+          case RES_BODY_NOT_CONTAINS -> {
+            if (resBody != null && resBody.contains(c)) return false;
+          }
+          case RES_BODY_NOT_REGEX -> {
+            if (p != null && resBody != null && p.matcher(resBody).find()) return false;
+          }
+          case REQ_HEADER_CONTAINS -> {
+            if (!anyContains(req.headers(), c)) return false;
+          }
+          case REQ_HEADER_NOT_CONTAINS -> {
+            if (anyContains(req.headers(), c)) return false;
+          }
+          case RES_HEADER_CONTAINS -> {
+            if (!anyContains(res.headers(), c)) return false;
+          }
+          case RES_HEADER_NOT_CONTAINS -> {
+            if (anyContains(res.headers(), c)) return false;
+          }
+          case ONLY_METHODS -> {
+            if (!listsMethod(c, method)) return false;
+          }
+          case IGNORE_METHODS -> {
+            if (listsMethod(c, method)) return false;
+          }
+          case IGNORE_OPTIONS -> {
+            if ("OPTIONS".equalsIgnoreCase(method)) return false;
+          }
+          case DROP_PROXY_PORTS, IGNORE_PROXY, IGNORE_TARGET -> {
+          }
+        }
+      }
+      return true;
+    }
+
+    static boolean ignoresTool(List<InterceptionFilter> filters, ToolType toolType) {
+      if (toolType == null) return false;
+      for (InterceptionFilter f : filters) {
+        if (f.type() == InterceptionFilterType.IGNORE_PROXY && toolType == ToolType.PROXY) return true;
+        if (f.type() == InterceptionFilterType.IGNORE_TARGET && toolType == ToolType.TARGET) return true;
+      }
+      return false;
+    }
+
+    static boolean dropsPort(List<InterceptionFilter> filters, int port) {
+      if (port <= 0) return false;
+      for (InterceptionFilter f : filters) {
+        if (f.type() != InterceptionFilterType.DROP_PROXY_PORTS) continue;
+        for (String s : f.content().split(",")) {
+          try {
+            if (Integer.parseInt(s.trim()) == port) return true;
+          } catch (NumberFormatException ignored) {
+          }
+        }
+      }
+      return false;
+    }
+
+    private static boolean anyContains(List<HttpHeader> headers, String c) {
+      for (HttpHeader h : headers) {
+        if (h.toString().contains(c)) return true;
+      }
+      return false;
+    }
+
+    private static boolean listsMethod(String content, String method) {
+      for (String m : content.split("[\\r\\n,]+")) {
+        if (method.equalsIgnoreCase(m.trim())) return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package autorize.core;
+
+import autorize.model.MatchReplaceRule;
+import autorize.model.MatchReplaceType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JsonBodyEditsTest {
+
+  private static MatchReplaceRule set(String path, String value) {
+    return new MatchReplaceRule(MatchReplaceType.JSON_SET, path, value);
+  }
+
+  private static MatchReplaceRule remove(String path) {
+    return new MatchReplaceRule(MatchReplaceType.JSON_REMOVE, path, "");
+  }
+
+  private static MatchReplaceRule rename(String path, String name) {
+    return new MatchReplaceRule(MatchReplaceType.JSON_RENAME, path, name);
+  }
+
+  private static JsonBodyEdits edits(MatchReplaceRule... rules) {
+    JsonBodyEdits.Builder b = new JsonBodyEdits.Builder();
+    for (MatchReplaceRule r : rules) b.add(r);
+    return b.build();
+  }
+
+  // Bodies and results are byte strings, as RequestRewriter hands them over.
+  private static String json(String body, MatchReplaceRule... rules) {
+    return edits(rules).apply(RequestRewriter.bytes(body), false, UnaryOperator.identity());
+  }
+
+  private static String form(String body, MatchReplaceRule... rules) {
+    return edits(rules).apply(body, true, UnaryOperator.identity());
+  }
+
+  @Test
+  void setRemoveAndRenameNestedMembers() {
+    String body = "{\"user\":{\"id\":7,\"role\":\"user\",\"tmp\":{\"a\":[1,2]}},\"n\":1}";
+
+    assertEquals("{\"user\":{\"id\":8,\"role\":\"admin\"},\"n\":1}",
+        json(body, set("$.user.id", "8"), set("user.role", "admin"), remove("$.user.tmp")));
+    assertEquals("{\"user\":{\"uid\":7,\"role\":\"user\",\"tmp\":{\"a\":[1,2]}},\"n\":1}",
+        json(body, rename("$.user.id", "uid")));
+    assertEquals("{\"user\":{\"id\":{\"x\":true},\"role\":\"user\",\"tmp\":{\"a\":[1,2]}},\"n\":1}",
+        json(body, set("$.user.id", "{\"x\":true}")));
+  }
+
+  @Test
+  void arrayElementsAndAnyDepthKeys() {
+    String body = "{\"items\":[{\"owner\":1,\"tenantId\":5},{\"owner\":2}],\"meta\":{\"tenantId\":5}}";
+
+    assertEquals("{\"items\":[{\"owner\":9,\"tenantId\":5},{\"owner\":9}],\"meta\":{\"tenantId\":5}}",
+        json(body, set("items[*].owner", "9")));
+    assertEquals("{\"items\":[{\"owner\":1,\"tenantId\":6},{\"owner\":2}],\"meta\":{\"tenantId\":6}}",
+        json(body, set("..tenantId", "6")));
+    assertEquals(json(body, set("..tenantId", "6")), json(body, set("$..tenantId", "6")));
+    assertEquals("{\"items\":[{\"owner\":1},{\"owner\":2}],\"meta\":{}}", json(body, remove("$..tenantId")));
+    assertEquals("{\"items\":[{\"owner\":1,\"tenant\":5},{\"owner\":2}],\"meta\":{\"tenant\":5}}",
+        json(body, rename("$..tenantId", "tenant")));
+    assertEquals("[{\"a\":0},{\"a\":0}]", json("[{\"a\":1},{\"a\":2}]", set("$[*].a", "0")));
+  }
+
+  @Test
+  void removingTheRootLeavesTheBody() {
+    String body = "{\"a\":1}";
+
+    assertEquals(body, json(body, remove("$")));
+    assertEquals(body, json(body, remove("")));
+    assertEquals("[1]", json("[1]", remove("$")));
+    assertEquals("{\"b\":2}", json(body, remove("$"), set("$", "{\"b\":2}")));
+  }
+
+  @Test
+  void firstRuleForAValueWins() {
+    assertEquals("{\"a\":1}", json("{\"a\":0}", set("$.a", "1"), remove("..a")));
+  }
+
+  @Test
+  void formParametersBySingleKeyPath() {
+    String body = "user=bob&role=user&csrf=x&flag";
+
+    assertEquals("user=alice&role=admin&flag",
+        form(body, set("$.user", "alice"), set("role", "admin"), remove("csrf")));
+    assertEquals("login=bob&role=user&csrf=x&flag", form(body, rename("$..user", "login")));
+    assertEquals("user=a+b%26c&role=user&csrf=x&flag", form(body, set("user", "a b&c")));
+    assertSame(body, form(body, set("$.user.id", "1"), remove("$")));
+    assertSame(body, edits(set("user", "x")).apply(body, false, UnaryOperator.identity()));
+  }
+
+  @Test
+  void nonAsciiOperandsAndKeysAreUtf8() {
+    String out = json("{\"名前\":\"x\",\"n\":\"é\"}", set("$.名前", "€"), rename("n", "ñ"));
+    assertArrayEquals("{\"名前\":\"€\",\"ñ\":\"é\"}".getBytes(StandardCharsets.UTF_8),
+        out.getBytes(StandardCharsets.ISO_8859_1));
+
+    String encoded = form(RequestRewriter.bytes("n%C3%A9=1&a=2"), set("né", "ü€"));
+    assertEquals("n%C3%A9=%C3%BC%E2%82%AC&a=2", encoded);
+  }
+
+  @Test
+  void placeholdersAreResolvedPerApply() {
+    JsonBodyEdits e = edits(set("$.token", "{{csrf}}"));
+
+    assertEquals("{\"token\":\"abc\"}", e.apply("{\"token\":\"\"}", false, v -> v.replace("{{csrf}}", "abc")));
+    assertEquals("{\"token\":\"def\"}", e.apply("{\"token\":\"\"}", false, v -> v.replace("{{csrf}}", "def")));
+  }
+
+  @Test
+  void throughTheRewriterContentLengthFollows() {
+    byte[] raw = "POST / HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 9\r\n\r\n{\"a\":\"b\"}"
+        .getBytes(StandardCharsets.ISO_8859_1);
+    RequestRewriter r = RequestRewriter.parse(raw);
+
+    r.setBody(edits(set("$.a", "é")).apply(r.body(), false, UnaryOperator.identity()));
+
+    assertEquals("POST / HTTP/1.1\r\nContent-Type: application/json\r\nContent-Length: 10\r\n\r\n{\"a\":\"é\"}",
+        new String(r.toByteArray(), StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,62 @@
+package autorize.core;
+
+import autorize.model.EnforcementRule;
+import autorize.model.EnforcementRuleType;
+import autorize.model.Fingerprint;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class JsonPathRulesTest {
+  private static final byte[] BODY =
+      "{\"data\":{\"items\":[{\"code\":\"A1\"},{\"code\":\"B2\"}]},\"error\":{\"code\":403}}"
+          .getBytes(StandardCharsets.UTF_8);
+
+  private static boolean[] evaluate(EnforcementRule... rules) {
+    JsonPathRules.Builder b = new JsonPathRules.Builder();
+    for (EnforcementRule r : rules) b.add(r);
+    return b.build().evaluate(BODY, 0, BODY.length, new RegexGuard());
+  }
+
+  private static EnforcementRule rule(EnforcementRuleType type, String content) {
+    return new EnforcementRule(type, false, content);
+  }
+
+  @Test
+  void dotPathsAndWildcardIndexes() {
+    assertArrayEquals(new boolean[]{true, true, true, false}, evaluate(
+        rule(EnforcementRuleType.JSON_PATH_EQUALS, "$.error.code=403"),
+        rule(EnforcementRuleType.JSON_PATH_EQUALS, "data.items[*].code=B2"),
+        rule(EnforcementRuleType.JSON_PATH_EXISTS, "$.data.items"),
+        rule(EnforcementRuleType.JSON_PATH_EXISTS, "$.code")));
+  }
+
+  @Test
+  void anyDepthPathsWithAndWithoutDollar() {
+    assertArrayEquals(new boolean[]{true, true, true, true, false}, evaluate(
+        rule(EnforcementRuleType.JSON_PATH_EQUALS, "..code=A1"),
+        rule(EnforcementRuleType.JSON_PATH_EQUALS, "$..code=A1"),
+        rule(EnforcementRuleType.JSON_PATH_REGEX, "$..code=^4\\d\\d$"),
+        rule(EnforcementRuleType.JSON_PATH_EXISTS, "$..items"),
+        rule(EnforcementRuleType.JSON_PATH_EXISTS, "$..missing")));
+  }
+
+  @Test
+  void ignorePathsAcceptDollarAnyDepth() {
+    byte[] a = "{\"csrf\":\"x1\",\"user\":{\"csrf\":\"y1\",\"id\":7}}".getBytes(StandardCharsets.UTF_8);
+    byte[] b = "{\"csrf\":\"x2\",\"user\":{\"csrf\":\"y2\",\"id\":7}}".getBytes(StandardCharsets.UTF_8);
+
+    assertEquals(fingerprint("..csrf", a).exact(), fingerprint("..csrf", b).exact());
+    assertEquals(fingerprint("..csrf", a).exact(), fingerprint("$..csrf", a).exact());
+    assertEquals(fingerprint("$..csrf", a).exact(), fingerprint("$..csrf", b).exact());
+    assertNotEquals(fingerprint("", a).exact(), fingerprint("", b).exact());
+  }
+
+  private static Fingerprint fingerprint(String ignore, byte[] body) {
+    return JsonStructure.compile(ignore, true).fingerprint(body, 0, body.length);
+  }
+}
@@ -0,0 +1,152 @@
+package autorize.core;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.HttpHeader;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal stand-ins for the Montoya message types, built on dynamic proxies so tests and benchmarks can
+ * run without Burp. Only the methods the core classes call are answered; anything else throws.
+ */
+final class MontoyaFakes {
+  private MontoyaFakes() {
+  }
+
+  /** Counts calls to {@code toByteArray()} on fake messages, to assert that a code path avoids the copy. */
+  static final AtomicInteger MESSAGE_COPIES = new AtomicInteger();
+
+  static ByteArray bytes(byte[] data) {
+    return bytes(data, 0, data.length);
+  }
+
+  static ByteArray bytes(String latin1) {
+    return bytes(latin1.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static ByteArray bytes(byte[] data, int from, int to) {
+    InvocationHandler h = (proxy, m, args) -> switch (m.getName()) {
+      case "length" -> to - from;
+      case "getByte" -> data[from + (Integer) args[0]];
+      case "getBytes" -> Arrays.copyOfRange(data, from, to);
+      case "subArray" -> {
+        int s = (Integer) args[0];
+        int e = (Integer) args[1];
+        if (s < 0 || e < s || from + e > to) throw new IndexOutOfBoundsException(s + ".." + e);
+        yield bytes(data, from + s, from + e);
+      }
+      case "toString" -> new String(data, from, to - from, StandardCharsets.ISO_8859_1);
+      case "hashCode" -> System.identityHashCode(proxy);
+      case "equals" -> proxy == args[0];
+      default -> throw new UnsupportedOperationException("ByteArray." + m.getName());
+    };
+    return (ByteArray) Proxy.newProxyInstance(ByteArray.class.getClassLoader(), new Class<?>[]{ByteArray.class}, h);
+  }
+
+  static HttpHeader header(String name, String value) {
+    InvocationHandler h = (proxy, m, args) -> switch (m.getName()) {
+      case "name" -> name;
+      case "value" -> value;
+      case "toString" -> name + ": " + value;
+      case "hashCode" -> System.identityHashCode(proxy);
+      case "equals" -> proxy == args[0];
+      default -> throw new UnsupportedOperationException("HttpHeader." + m.getName());
+    };
+    return (HttpHeader) Proxy.newProxyInstance(HttpHeader.class.getClassLoader(), new Class<?>[]{HttpHeader.class}, h);
+  }
+
+  /** Headers given as alternating names and values. */
+  static List<HttpHeader> headers(String... namesAndValues) {
+    List<HttpHeader> out = new ArrayList<>();
+    for (int i = 0; i + 1 < namesAndValues.length; i += 2) out.add(header(namesAndValues[i], namesAndValues[i + 1]));
+    return out;
+  }
+
+  static HttpRequest request(String method, String url, List<HttpHeader> headers, byte[] body) {
+    int slash = url.indexOf('/', url.indexOf("://") + 3);
+    String path = slash < 0 ? "/" : url.substring(slash);
+    byte[] message = message(method + " " + path + " HTTP/1.1", headers, body);
+    int offset = message.length - body.length;
+    InvocationHandler h = (proxy, m, args) -> switch (m.getName()) {
+      case "method" -> method;
+      case "url" -> url;
+      case "path" -> path;
+      case "headers" -> headers;
+      case "headerValue" -> headerValue(headers, (String) args[0]);
+      case "hasHeader" -> args[0] instanceof String && headerValue(headers, (String) args[0]) != null;
+      case "body" -> bytes(body);
+      case "bodyToString" -> new String(body, StandardCharsets.ISO_8859_1);
+      case "bodyOffset" -> offset;
+      case "toByteArray" -> {
+        MESSAGE_COPIES.incrementAndGet();
+        yield bytes(message.clone());
+      }
+      case "toString" -> new String(message, StandardCharsets.ISO_8859_1);
+      case "hashCode" -> System.identityHashCode(proxy);
+      case "equals" -> proxy == args[0];
+      default -> throw new UnsupportedOperationException("HttpRequest." + m.getName());
+    };
+    return (HttpRequest) Proxy.newProxyInstance(HttpRequest.class.getClassLoader(), new Class<?>[]{HttpRequest.class}, h);
+  }
+
+  static HttpResponse response(int status, List<HttpHeader> headers, byte[] body) {
+    byte[] message = message("HTTP/1.1 " + status + " X", headers, body);
+    int offset = message.length - body.length;
+    InvocationHandler h = (proxy, m, args) -> switch (m.getName()) {
+      case "statusCode" -> (short) status;
+      case "httpVersion" -> "HTTP/1.1";
+      case "reasonPhrase" -> "X";
+      case "withBody" -> response(status, headers, args[0] instanceof String t
+          ? t.getBytes(StandardCharsets.ISO_8859_1) : ((ByteArray) args[0]).getBytes());
+      case "withAddedHeader" -> {
+        List<HttpHeader> more = new ArrayList<>(headers);
+        more.add(header((String) args[0], (String) args[1]));
+        yield response(status, more, body);
+      }
+      case "headers" -> headers;
+      case "headerValue" -> headerValue(headers, (String) args[0]);
+      case "hasHeader" -> args[0] instanceof String && headerValue(headers, (String) args[0]) != null;
+      case "body" -> bytes(body);
+      case "bodyToString" -> new String(body, StandardCharsets.ISO_8859_1);
+      case "bodyOffset" -> offset;
+      case "toByteArray" -> {
+        MESSAGE_COPIES.incrementAndGet();
+        yield bytes(message.clone());
+      }
+      case "toString" -> new String(message, StandardCharsets.ISO_8859_1);
+      case "hashCode" -> System.identityHashCode(proxy);
+      case "equals" -> proxy == args[0];
+      default -> throw new UnsupportedOperationException("HttpResponse." + m.getName());
+    };
+    return (HttpResponse) Proxy.newProxyInstance(HttpResponse.class.getClassLoader(), new Class<?>[]{HttpResponse.class}, h);
+  }
+
+  static HttpResponse response(int status, String body, String... headerNamesAndValues) {
+    return response(status, headers(headerNamesAndValues), body.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  private static String headerValue(List<HttpHeader> headers, String name) {
+    for (HttpHeader x : headers) {
+      if (x.name().equalsIgnoreCase(name)) return x.value();
+    }
+    return null;
+  }
+
+  private static byte[] message(String firstLine, List<HttpHeader> headers, byte[] body) {
+    StringBuilder head = new StringBuilder(firstLine).append("\r\n");
+    for (HttpHeader x : headers) head.append(x.name()).append(": ").append(x.value()).append("\r\n");
+    head.append("\r\n");
+    byte[] h = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    byte[] out = Arrays.copyOf(h, h.length + body.length);
+    System.arraycopy(body, 0, out, h.length, body.length);
+    return out;
+  }
+}
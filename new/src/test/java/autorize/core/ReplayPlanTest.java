@@ -0,0 +1,227 @@
+package autorize.core;
+
+import autorize.model.MatchReplaceRule;
+import autorize.model.MatchReplaceType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReplayPlanTest {
+  private static final String STEPPER = "X-PwnFox-Color";
+  private static final UnaryOperator<String> VALUES = v -> v.replace("{{token}}", "t-1").replace("{{sid}}", "s-9");
+
+  private static final String[] REQUESTS = {
+      "GET /api/users/7?x=1 HTTP/1.1\r\nHost: h\r\nAuthorization: Bearer a\r\nCookie: sid=1\r\n\r\n",
+      "POST /api/orders HTTP/1.1\r\nHost: h\r\nContent-Type: application/json\r\nContent-Length: 30\r\n\r\n"
+          + "{\"owner\":7,\"items\":[{\"id\":1}]}",
+      "POST /login HTTP/1.1\r\nHost: h\r\nContent-Type: application/x-www-form-urlencoded\r\n"
+          + "Content-Length: 22\r\n\r\nuser=bob&role=user&x=1",
+      "PUT /cafÃ©/7 HTTP/1.1\r\nHost: h\r\nX-Role: user\r\n\r\nrole=user",
+  };
+  private static final MatchReplaceRule[] POOL = {
+      new MatchReplaceRule(MatchReplaceType.PATH_SIMPLE, "/users/7", "/users/8"),
+      new MatchReplaceRule(MatchReplaceType.PATH_REGEX, "/\\d+", "/1"),
+      new MatchReplaceRule(MatchReplaceType.PATH_SIMPLE, "café", "tea"),
+      new MatchReplaceRule(MatchReplaceType.HEADER_REPLACE, "Authorization", "Bearer {{token}}"),
+      new MatchReplaceRule(MatchReplaceType.HEADER_REPLACE, "authorization", "Basic x"),
+      new MatchReplaceRule(MatchReplaceType.HEADER_REPLACE, "X-New", "é"),
+      new MatchReplaceRule(MatchReplaceType.HEADERS_SIMPLE, "X-Role: user", "X-Role: admin"),
+      new MatchReplaceRule(MatchReplaceType.HEADERS_REGEX, "(?i)^host: .*", "Host: other"),
+      new MatchReplaceRule(MatchReplaceType.HEADERS_REGEX, "^Cookie: .*", ": broken"),
+      new MatchReplaceRule(MatchReplaceType.BODY_SIMPLE, "role=user", "role=admin"),
+      new MatchReplaceRule(MatchReplaceType.BODY_REGEX, "\"owner\":\\d+", "\"owner\":1"),
+      new MatchReplaceRule(MatchReplaceType.BODY_SIMPLE, "bob", "üml"),
+      new MatchReplaceRule(MatchReplaceType.JSON_SET, "$.owner", "{{token}}"),
+      new MatchReplaceRule(MatchReplaceType.JSON_REMOVE, "$..id", ""),
+      new MatchReplaceRule(MatchReplaceType.JSON_RENAME, "user", "login"),
+      new MatchReplaceRule(MatchReplaceType.STEPPER_HEADER, "", "blue"),
+      new MatchReplaceRule(MatchReplaceType.STEPPER_HEADER, "", "{{sid}}"),
+      new MatchReplaceRule(MatchReplaceType.COOKIE_REPLACE, "sid", "{{sid}}"),
+  };
+  private static final String[] HEADERS_TEXTS = {
+      "", "Authorization: Bearer {{token}}", "X-Api-Key: k\r\nnot a header\r\n\r\nX-Role: {{sid}}",
+      "Cookie: a=1; sid=2\nX-é: v",
+  };
+
+  private static String replay(ReplayPlan plan, String request, RegexGuard regex) {
+    RequestRewriter r = RequestRewriter.parse(request.getBytes(StandardCharsets.ISO_8859_1));
+    plan.applyMatchReplace(r, VALUES, regex);
+    plan.applyHeaders(r, VALUES);
+    plan.applyStepperHeader(r, STEPPER, VALUES);
+    return new String(r.toByteArray(), StandardCharsets.ISO_8859_1);
+  }
+
+  private static String legacy(List<MatchReplaceRule> rules, String headersText, String request, RegexGuard regex) {
+    RequestRewriter r = RequestRewriter.parse(request.getBytes(StandardCharsets.ISO_8859_1));
+    LegacyReplay.applyMatchReplace(r, rules, VALUES, regex);
+    LegacyReplay.applyHeaders(r, headersText, VALUES);
+    LegacyReplay.applyStepperHeader(r, rules, STEPPER, VALUES);
+    return new String(r.toByteArray(), StandardCharsets.ISO_8859_1);
+  }
+
+  @Test
+  void planBuildsTheSameRequestAsTheStageByStagePath() {
+    Random rnd = new Random(20240610L);
+    RegexGuard regex = new RegexGuard();
+    for (int round = 0; round < 500; round++) {
+      List<MatchReplaceRule> rules = new ArrayList<>();
+      int n = rnd.nextInt(7);
+      for (int i = 0; i < n; i++) rules.add(POOL[rnd.nextInt(POOL.length)]);
+      String text = HEADERS_TEXTS[rnd.nextInt(HEADERS_TEXTS.length)];
+      ReplayPlan plan = ReplayPlan.compile(rules, text, null);
+
+      for (String request : REQUESTS) {
+        assertEquals(legacy(rules, text, request, regex), replay(plan, request, regex),
+            () -> rules + " / " + text + " on " + request);
+      }
+    }
+  }
+
+  @Test
+  void compileReusesThePlanUntilRulesOrHeadersChange() {
+    List<MatchReplaceRule> rules = List.of(POOL[0], POOL[3]);
+    ReplayPlan plan = ReplayPlan.compile(rules, "X-A: 1", null);
+
+    assertSame(plan, ReplayPlan.compile(new ArrayList<>(rules), "X-A: 1", plan));
+    assertNotSame(plan, ReplayPlan.compile(rules, "X-A: 2", plan));
+    assertNotSame(plan, ReplayPlan.compile(List.of(POOL[0]), "X-A: 1", plan));
+    assertNotSame(plan, ReplayPlan.compile(List.of(POOL[0],
+        new MatchReplaceRule(MatchReplaceType.HEADER_REPLACE, "Authorization", "Bearer {{token}}")), "X-A: 1", plan));
+  }
+
+  @Test
+  void guardSettingsAreReadPerReplay() {
+    RegexGuard regex = new RegexGuard();
+    regex.setBudgetMillis(1);
+    // Backtracks exponentially on the first branch before the second can match the "b".
+    MatchReplaceRule rule = new MatchReplaceRule(MatchReplaceType.PATH_REGEX, "(.*a){20}$|b", "c");
+    ReplayPlan plan = ReplayPlan.compile(List.of(rule), "", null);
+    String request = "GET /" + "a".repeat(60) + "b HTTP/1.1\r\nHost: h\r\n\r\n";
+
+    assertEquals(request, replay(plan, request, regex));
+    assertEquals(1, regex.aborts());
+
+    regex.setLinear(true);
+    assertEquals(request.replace("b HTTP", "c HTTP"), replay(plan, request, regex));
+    assertSame(plan, ReplayPlan.compile(List.of(rule), "", plan));
+  }
+
+  @Test
+  void cookieSeedsFromHeadersTextThenRules() {
+    ReplayPlan plan = ReplayPlan.compile(List.of(POOL[17]), "Cookie: a=1; sid=2\nX-B: 3", null);
+
+    assertEquals(Map.of("a", "1", "sid", "s-9"), plan.cookieSeeds(VALUES));
+    assertEquals(List.of("a", "sid"), new ArrayList<>(plan.cookieSeeds(VALUES).keySet()));
+  }
+
+  /** The replay rules as applied before ReplayPlan: every stage walks the whole rule list on every replay. */
+  static final class LegacyReplay {
+    private LegacyReplay() {
+    }
+
+    static void applyMatchReplace(RequestRewriter r, List<MatchReplaceRule> rules, UnaryOperator<String> values,
+                                  RegexGuard regex) {
+      String path = r.path();
+      for (MatchReplaceRule rule : rules) {
+        if (rule.type() == MatchReplaceType.PATH_SIMPLE) {
+          path = path.replace(bytes(rule.match()), bytes(rule.replace()));
+        } else if (rule.type() == MatchReplaceType.PATH_REGEX && rule.regex() != null) {
+          path = replaceAll(regex, rule, path);
+        }
+      }
+      r.setPath(path);
+
+      for (MatchReplaceRule rule : rules) {
+        if (rule.type() != MatchReplaceType.HEADER_REPLACE) continue;
+        String name = bytes(rule.match().trim());
+        if (name.isEmpty()) continue;
+        r.removeHeader(name);
+        r.addHeader(name, bytes(values.apply(rule.replace())));
+      }
+
+      r.editHeaderLines(line -> {
+        String s = line;
+        for (MatchReplaceRule rule : rules) {
+          if (rule.type() == MatchReplaceType.HEADERS_SIMPLE) {
+            s = s.replace(bytes(rule.match()), bytes(rule.replace()));
+          } else if (rule.type() == MatchReplaceType.HEADERS_REGEX && rule.regex() != null) {
+            s = replaceAll(regex, rule, s);
+          }
+        }
+        return s;
+      });
+
+      String body = r.body();
+      for (MatchReplaceRule rule : rules) {
+        if (rule.type() == MatchReplaceType.BODY_SIMPLE) {
+          body = body.replace(bytes(rule.match()), bytes(rule.replace()));
+        } else if (rule.type() == MatchReplaceType.BODY_REGEX && rule.regex() != null) {
+          body = replaceAll(regex, rule, body);
+        }
+      }
+      r.setBody(body);
+
+      JsonBodyEdits.Builder json = new JsonBodyEdits.Builder();
+      for (MatchReplaceRule rule : rules) {
+        switch (rule.type()) {
+          case JSON_SET, JSON_REMOVE, JSON_RENAME -> json.add(rule);
+          default -> {
+          }
+        }
+      }
+      if (!json.isEmpty()) {
+        String type = r.header("Content-Type");
+        r.setBody(json.build().apply(r.body(), type != null && type.contains("x-www-form-urlencoded"), values));
+      }
+    }
+
+    static void applyHeaders(RequestRewriter r, String headersText, UnaryOperator<String> values) {
+      for (String raw : values.apply(headersText).split("\\r?\\n")) {
+        String line = bytes(raw.trim());
+        int idx = line.indexOf(':');
+        if (idx <= 0) continue;
+        String name = line.substring(0, idx).trim();
+        if (name.isEmpty()) continue;
+        r.removeHeader(name);
+        r.addHeader(name, line.substring(idx + 1).trim());
+      }
+    }
+
+    static void applyStepperHeader(RequestRewriter r, List<MatchReplaceRule> rules, String name,
+                                   UnaryOperator<String> values) {
+      for (MatchReplaceRule rule : rules) {
+        if (rule.type() != MatchReplaceType.STEPPER_HEADER) continue;
+        r.removeHeader(name);
+        r.addHeader(name, bytes(values.apply(rule.replace())));
+      }
+    }
+
+    // The rewriter holds byte strings, so a non-ASCII literal in the pattern must match its UTF-8 bytes.
+    private static String replaceAll(RegexGuard regex, MatchReplaceRule rule, String text) {
+      Pattern p = rule.regex();
+      if (!bytes(rule.match()).equals(rule.match())) {
+        try {
+          p = Pattern.compile(bytes(rule.match()), p.flags());
+        } catch (PatternSyntaxException e) {
+          return text;
+        }
+      }
+      return regex.replaceAll(p, text, bytes(rule.replace()));
+    }
+
+    private static String bytes(String text) {
+      return RequestRewriter.bytes(text);
+    }
+  }
+}
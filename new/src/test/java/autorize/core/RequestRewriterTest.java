@@ -0,0 +1,171 @@
+package autorize.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestRewriterTest {
+
+  private static byte[] request(String head, byte[] body) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] h = head.getBytes(StandardCharsets.ISO_8859_1);
+    out.write(h, 0, h.length);
+    out.write(body, 0, body.length);
+    return out.toByteArray();
+  }
+
+  private static byte[] allBytes() {
+    byte[] b = new byte[256];
+    for (int i = 0; i < b.length; i++) b[i] = (byte) i;
+    return b;
+  }
+
+  private static byte[] bodyOf(byte[] message) {
+    String text = new String(message, StandardCharsets.ISO_8859_1);
+    int at = text.indexOf("\r\n\r\n") + 4;
+    byte[] body = new byte[message.length - at];
+    System.arraycopy(message, at, body, 0, body.length);
+    return body;
+  }
+
+  private static String headOf(byte[] message) {
+    String text = new String(message, StandardCharsets.ISO_8859_1);
+    return text.substring(0, text.indexOf("\r\n\r\n") + 4);
+  }
+
+  @Test
+  void unchangedRequestRoundTripsEveryByteValue() {
+    byte[] raw = request("POST /upload HTTP/1.1\r\nHost: h\r\nContent-Length: 256\r\n\r\n", allBytes());
+
+    byte[] out = RequestRewriter.parse(raw).toByteArray();
+
+    assertArrayEquals(raw, out);
+  }
+
+  @Test
+  void headerEditKeepsBinaryBody() {
+    byte[] raw = request("POST /upload HTTP/1.1\r\nHost: h\r\nContent-Length: 256\r\n\r\n", allBytes());
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    r.setHeader("Authorization", "Bearer x");
+    byte[] out = r.toByteArray();
+
+    assertArrayEquals(allBytes(), bodyOf(out));
+    assertTrue(headOf(out).contains("Authorization: Bearer x\r\n"));
+  }
+
+  @Test
+  void decodedBodyRoundTripsEveryByteValue() {
+    byte[] raw = request("POST / HTTP/1.1\r\nHost: h\r\nContent-Length: 256\r\n\r\n", allBytes());
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    r.setBody(r.body());
+
+    assertArrayEquals(raw, r.toByteArray());
+  }
+
+  @Test
+  void nonAsciiEditIsWrittenAsUtf8() {
+    byte[] raw = request("POST / HTTP/1.1\r\nHost: h\r\nContent-Length: 5\r\n\r\n", "a=old".getBytes(StandardCharsets.ISO_8859_1));
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    r.setBody(r.body().replace("old", RequestRewriter.bytes("é€")));
+    byte[] out = r.toByteArray();
+
+    assertArrayEquals("a=é€".getBytes(StandardCharsets.UTF_8), bodyOf(out));
+    assertTrue(headOf(out).contains("Content-Length: 7\r\n"));
+  }
+
+  @Test
+  void contentLengthFollowsBodyEdit() {
+    byte[] raw = request("POST / HTTP/1.1\r\nHost: h\r\nContent-Length: 3\r\n\r\n", "abc".getBytes(StandardCharsets.ISO_8859_1));
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    r.setBody("abcdefgh");
+
+    assertEquals("POST / HTTP/1.1\r\nHost: h\r\nContent-Length: 8\r\n\r\nabcdefgh",
+        new String(r.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void contentLengthIsAddedForNewBody() {
+    RequestRewriter r = RequestRewriter.parse(request("POST / HTTP/1.1\r\nHost: h\r\n\r\n", new byte[0]));
+    r.setBody("x=1");
+
+    assertEquals("POST / HTTP/1.1\r\nHost: h\r\nContent-Length: 3\r\n\r\nx=1",
+        new String(r.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void duplicateContentLengthCollapsesToOne() {
+    byte[] raw = request("POST / HTTP/1.1\r\nContent-Length: 3\r\nHost: h\r\ncontent-length: 99\r\n\r\n",
+        "abc".getBytes(StandardCharsets.ISO_8859_1));
+
+    String out = new String(RequestRewriter.parse(raw).toByteArray(), StandardCharsets.ISO_8859_1);
+
+    assertEquals("POST / HTTP/1.1\r\nContent-Length: 3\r\nHost: h\r\n\r\nabc", out);
+  }
+
+  @Test
+  void chunkedBodyKeepsItsFraming() {
+    byte[] raw = request("POST / HTTP/1.1\r\nHost: h\r\nTransfer-Encoding: chunked\r\n\r\n",
+        "3\r\nabc\r\n0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    r.setHeader("X-A", "1");
+    byte[] out = r.toByteArray();
+
+    assertNull(RequestRewriter.parse(out).header("Content-Length"));
+    assertEquals("3\r\nabc\r\n0\r\n\r\n", new String(bodyOf(out), StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void absoluteFormTargetKeepsItsOrigin() {
+    byte[] raw = request("GET http://example.com/a/b?x=1 HTTP/1.1\r\nHost: example.com\r\n\r\n", new byte[0]);
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    assertEquals("/a/b?x=1", r.path());
+    r.setPath(r.path().replace("/a/", "/c/"));
+    r.setUrlParameter("x", "2");
+
+    assertEquals("GET http://example.com/c/b?x=2 HTTP/1.1\r\nHost: example.com\r\n\r\n",
+        new String(r.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void absoluteFormTargetWithoutPath() {
+    RequestRewriter r = RequestRewriter.parse(request("GET http://example.com HTTP/1.1\r\n\r\n", new byte[0]));
+
+    assertEquals("/", r.path());
+    assertEquals("GET http://example.com/ HTTP/1.1\r\n\r\n", new String(r.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void bareLfHeadersAreParsed() {
+    byte[] raw = request("POST /p HTTP/1.1\nHost: h\nCookie: a=1\nContent-Length: 2\n\n", "\r\n".getBytes(StandardCharsets.ISO_8859_1));
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    assertEquals("h", r.header("host"));
+    assertEquals("a=1", r.header("Cookie"));
+    assertEquals("\r\n", r.body());
+
+    assertEquals("POST /p HTTP/1.1\r\nHost: h\r\nCookie: a=1\r\nContent-Length: 2\r\n\r\n\r\n",
+        new String(r.toByteArray(), StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void headerBytesAboveAsciiAreNotReencoded() {
+    byte[] raw = request("GET / HTTP/1.1\r\nCookie: n=é\r\n\r\n", new byte[0]);
+
+    RequestRewriter r = RequestRewriter.parse(raw);
+    r.setHeader("Cookie", r.header("Cookie") + "; m=1");
+
+    assertArrayEquals(request("GET / HTTP/1.1\r\nCookie: n=é; m=1\r\n\r\n", new byte[0]), r.toByteArray());
+  }
+}
@@ -0,0 +1,89 @@
+package autorize.core;
+
+import autorize.model.ResponseSignature;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResponseViewTest {
+
+  private static HttpResponse response(String body) {
+    return MontoyaFakes.response(200, body, "Content-Type", "text/plain", "Server", "x");
+  }
+
+  private static int copies(Runnable r) {
+    int before = MontoyaFakes.MESSAGE_COPIES.get();
+    r.run();
+    return MontoyaFakes.MESSAGE_COPIES.get() - before;
+  }
+
+  @Test
+  void lengthComesFromBodyOffsetAndBodyLength() {
+    HttpResponse res = response("hello world");
+    ResponseView view = new ResponseView(res);
+
+    assertEquals(0, copies(() -> assertEquals(res.toString().length(), view.length())));
+  }
+
+  @Test
+  void smallBodyRawIsTheWholeMessage() {
+    HttpResponse res = response("hello world");
+    ResponseView view = new ResponseView(res, null, 64);
+
+    assertFalse(view.large());
+    assertArrayEquals(res.toString().getBytes(StandardCharsets.ISO_8859_1), view.raw());
+    assertEquals(res.bodyOffset(), view.bodyOffset());
+    assertEquals("hello world", view.body());
+  }
+
+  @Test
+  void largeBodyIsWindowedWithoutCopyingTheMessage() {
+    HttpResponse res = response("0123456789abcdef");
+    ResponseView view = new ResponseView(res, null, 10);
+
+    assertEquals(0, copies(() -> {
+      assertTrue(view.large());
+      assertEquals("HTTP/1.1 200 X\r\nContent-Type: text/plain\r\nServer: x\r\n\r\n0123456789",
+          new String(view.raw(), StandardCharsets.ISO_8859_1));
+      assertEquals("0123456789", view.body());
+      assertEquals(res.toString().length(), view.length());
+      view.signature();
+    }));
+    assertEquals(view.raw().length - 10, view.bodyOffset());
+  }
+
+  @Test
+  void streamedSignatureMatchesTheWholeBodySignature() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; sb.length() < 5000; i++) sb.append("line ").append(i).append('\n');
+    HttpResponse res = response(sb.toString());
+
+    ResponseSignature whole = new ResponseView(res).signature();
+    ResponseSignature streamed = new ResponseView(res, null, 100).signature();
+
+    assertEquals(whole.status(), streamed.status());
+    assertEquals(whole.bodyLength(), streamed.bodyLength());
+    assertEquals(whole.headerLength(), streamed.headerLength());
+    assertEquals(whole.digestHex(), streamed.digestHex());
+    assertTrue(whole.sameBody(streamed));
+  }
+
+  @Test
+  void forLogCutsTheBodyAndRecordsItsLength() {
+    HttpResponse res = response("0123456789abcdef");
+
+    HttpResponse logged = new ResponseView(res, null, 10).forLog();
+
+    assertEquals("0123456789", logged.bodyToString());
+    assertEquals("16", logged.headerValue(ResponseView.TRUNCATED_HEADER));
+    assertTrue(ResponseView.isTruncated(logged));
+    assertSame(res, new ResponseView(res, null, 16).forLog());
+  }
+}
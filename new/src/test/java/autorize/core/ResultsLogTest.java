@@ -0,0 +1,209 @@
+package autorize.core;
+
+import autorize.model.LogEntry;
+import autorize.model.ResponseSignature;
+import autorize.model.Verdict;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultsLogTest {
+  private static final UUID ALICE = UUID.randomUUID();
+  private static final UUID BOB = UUID.randomUUID();
+
+  private final ResultsLog log = new ResultsLog();
+
+  private static ResponseSignature sig(int status, String body) {
+    byte[] raw = ("HTTP/1.1 " + status + " X\r\n\r\n" + body).getBytes(StandardCharsets.ISO_8859_1);
+    return ResponseSignature.of((short) status, "text/plain", raw, raw.length - body.length());
+  }
+
+  private static LogEntry entry(int number, String method) {
+    LogEntry e = new LogEntry(number, method, "https://h/" + number, null, sig(200, "x".repeat(number % 50)),
+        null, sig(401, ""));
+    e.putProfileResult(ALICE, null, sig(403, "no"));
+    return e;
+  }
+
+  private void add(int number) {
+    log.add(entry(number, "GET"), Verdict.ENFORCED, Map.of(ALICE, Verdict.ENFORCED));
+  }
+
+  private static List<Integer> numbers(ResultsLog.View view) {
+    List<Integer> out = new ArrayList<>();
+    for (int i = 0; i < view.size(); i++) out.add(view.number(i));
+    return out;
+  }
+
+  @Test
+  void appendedRowsReadBackByColumn() {
+    log.add(entry(1, "POST"), Verdict.DISABLED, Map.of(ALICE, Verdict.BYPASSED));
+    log.add(entry(2, "PROPFIND"), Verdict.UNKNOWN, null);
+
+    ResultsLog.View v = log.snapshot();
+    int alice = v.ordinal(ALICE);
+
+    assertEquals(2, v.size());
+    assertEquals(List.of(1, 2), numbers(v));
+    assertEquals("POST", v.method(0));
+    assertEquals("PROPFIND", v.method(1));
+    assertEquals(200, v.status(0));
+    assertEquals(1, v.length(0));
+    assertEquals(401, v.unauthStatus(0));
+    assertEquals(Verdict.DISABLED, v.unauthVerdict(0));
+    assertEquals(Verdict.UNKNOWN, v.unauthVerdict(1));
+    assertEquals(403, v.status(0, alice));
+    assertEquals(2, v.length(0, alice));
+    assertEquals(Verdict.BYPASSED, v.verdict(0, alice));
+    assertEquals(Verdict.NONE, v.verdict(1, alice));
+    assertEquals(0, v.status(1, alice));
+    assertEquals(-1, v.ordinal(BOB));
+    assertEquals(Verdict.NONE, v.verdict(0, -1));
+  }
+
+  @Test
+  void snapshotIgnoresLaterAppends() {
+    add(1);
+    ResultsLog.View before = log.snapshot();
+    add(2);
+
+    assertEquals(List.of(1), numbers(before));
+    assertEquals(List.of(1, 2), numbers(log.snapshot()));
+  }
+
+  @Test
+  void concurrentAppendsReserveDistinctSlotsAndAllPublish() throws InterruptedException {
+    int threads = 4;
+    int perThread = 5000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int base = t * perThread;
+      Thread w = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perThread; i++) add(base + i);
+      });
+      w.start();
+      workers.add(w);
+    }
+    start.countDown();
+    for (Thread w : workers) w.join();
+
+    ResultsLog.View v = log.snapshot();
+    assertEquals(threads * perThread, v.size());
+    assertEquals(threads * perThread, log.size());
+    Set<Integer> seen = new HashSet<>(numbers(v));
+    assertEquals(threads * perThread, seen.size());
+    for (int i = 0; i < v.size(); i++) assertEquals(v.get(i).number(), v.number(i), "row " + i);
+  }
+
+  @Test
+  void removedRowsAreSkippedBeforeAndAfterCompaction() {
+    for (int i = 0; i < 10; i++) add(i);
+    ResultsLog.View before = log.snapshot();
+
+    // Holding the log's lock keeps the background compaction out, so the tombstone path is what reads.
+    synchronized (log) {
+      log.remove(List.of(1, 3, 3, -1, 42));
+      ResultsLog.View tombstoned = log.snapshot();
+      assertEquals(List.of(0, 2, 4, 5, 6, 7, 8, 9), numbers(tombstoned));
+      assertEquals(8, log.size());
+      log.remove(List.of(0));
+      assertEquals(List.of(2, 4, 5, 6, 7, 8, 9), numbers(log.snapshot()));
+    }
+    log.compact();
+
+    ResultsLog.View after = log.snapshot();
+    assertEquals(List.of(2, 4, 5, 6, 7, 8, 9), numbers(after));
+    assertEquals(Verdict.ENFORCED, after.verdict(0, after.ordinal(ALICE)));
+    assertEquals(403, after.status(6, after.ordinal(ALICE)));
+    assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), numbers(before));
+  }
+
+  @Test
+  void verdictUpdatesFollowRowsThroughCompactions() {
+    for (int i = 0; i < 6; i++) add(i);
+    ResultsLog.View old = log.snapshot();
+    int alice = old.ordinal(ALICE);
+
+    synchronized (log) {
+      log.remove(List.of(0, 2));
+      log.compact();
+      log.remove(List.of(1));
+      log.compact();
+    }
+    // Rows 4 and 5 of the old view moved twice: 4 -> 2 -> 1, 5 -> 3 -> 2.
+    old.setVerdict(4, alice, Verdict.BYPASSED);
+    old.setUnauthVerdict(5, Verdict.BYPASSED);
+    // Removed rows are skipped.
+    old.setVerdict(0, alice, Verdict.BYPASSED);
+    old.setVerdict(3, alice, Verdict.BYPASSED);
+
+    ResultsLog.View now = log.snapshot();
+    assertEquals(List.of(1, 4, 5), numbers(now));
+    assertEquals(Verdict.ENFORCED, now.verdict(0, alice));
+    assertEquals(Verdict.BYPASSED, now.verdict(1, alice));
+    assertEquals(Verdict.ENFORCED, now.verdict(2, alice));
+    assertEquals(Verdict.BYPASSED, now.unauthVerdict(2));
+    assertEquals(Verdict.ENFORCED, now.unauthVerdict(1));
+  }
+
+  @Test
+  void verdictUpdatesOnAClearedLogAreDropped() {
+    add(1);
+    ResultsLog.View old = log.snapshot();
+    int alice = old.ordinal(ALICE);
+
+    log.clear();
+    add(2);
+    old.setVerdict(0, alice, Verdict.BYPASSED);
+
+    ResultsLog.View now = log.snapshot();
+    assertEquals(List.of(2), numbers(now));
+    assertEquals(Verdict.ENFORCED, now.verdict(0, alice));
+    assertEquals(List.of(1), numbers(old));
+  }
+
+  @Test
+  void appendsDuringCompactionLandBehindTheCopiedRows() throws InterruptedException {
+    int total = 30_000;
+    for (int i = 0; i < 9000; i++) add(i);
+    AtomicInteger next = new AtomicInteger(9000);
+    Thread appender = new Thread(() -> {
+      for (int i = next.get(); i < total; i = next.incrementAndGet()) add(i);
+    });
+    appender.start();
+    Set<Integer> removed = new HashSet<>();
+    while (appender.isAlive()) {
+      synchronized (log) {
+        ResultsLog.View v = log.snapshot();
+        removed.add(v.number(0));
+        log.remove(List.of(0));
+        log.compact();
+      }
+    }
+    appender.join();
+    log.compact();
+
+    List<Integer> live = numbers(log.snapshot());
+    assertEquals(total - removed.size(), live.size());
+    for (int i = 1; i < live.size(); i++) assertTrue(live.get(i - 1) < live.get(i), "order at " + i);
+    for (int n : live) assertFalse(removed.contains(n), "removed row " + n + " came back");
+  }
+}
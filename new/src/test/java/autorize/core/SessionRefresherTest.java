@@ -0,0 +1,239 @@
+package autorize.core;
+
+import autorize.model.TokenExtractor;
+import autorize.model.TokenExtractorType;
+import autorize.model.UserProfile;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SessionRefresherTest {
+  private final AtomicLong now = new AtomicLong(1_000_000L);
+
+  /** Stub login server: answers every login with a fresh token and counts the logins. */
+  private static final class StubLogin implements SessionRefresher.Transport {
+    final AtomicInteger logins = new AtomicInteger();
+    volatile boolean fail;
+    volatile CountDownLatch gate;
+
+    @Override
+    public SessionRefresher.LoginResponse send(String serviceUrl, String rawRequest) throws Exception {
+      int n = logins.incrementAndGet();
+      CountDownLatch g = gate;
+      if (g != null) g.await(5, TimeUnit.SECONDS);
+      if (fail) throw new java.io.IOException("connection refused");
+      return new SessionRefresher.LoginResponse(200,
+          List.of(Map.entry("Set-Cookie", "sid=s" + n + "; Path=/; HttpOnly")),
+          "{\"token\":\"t" + n + "\"}");
+    }
+  }
+
+  private static UserProfile profile(int ttlSeconds) {
+    UserProfile p = UserProfile.create("alice");
+    p.setRefreshServiceUrl("https://login.example");
+    p.setRefreshRequestText("POST /login HTTP/1.1\r\nHost: login.example\r\n\r\n");
+    p.setRefreshTtlSeconds(ttlSeconds);
+    p.tokenExtractors().add(new TokenExtractor(TokenExtractorType.JSON_PATH, "token", "$.token"));
+    return p;
+  }
+
+  @Test
+  void sessionIsCachedUntilItsTtlExpires() {
+    StubLogin login = new StubLogin();
+    SessionRefresher r = new SessionRefresher(login, now::get);
+    UserProfile p = profile(60);
+
+    SessionRefresher.Session first = r.current(p);
+    assertEquals("t1", first.values().get("token"));
+    now.addAndGet(59_999);
+    assertSame(first, r.current(p));
+    assertEquals(1, login.logins.get());
+
+    now.addAndGet(1);
+    assertEquals("t2", r.current(p).values().get("token"));
+    assertEquals(2, login.logins.get());
+  }
+
+  @Test
+  void changedRecipeLogsInAgain() {
+    StubLogin login = new StubLogin();
+    SessionRefresher r = new SessionRefresher(login, now::get);
+    UserProfile p = profile(60);
+
+    r.current(p);
+    p.setRefreshRequestText("POST /login2 HTTP/1.1\r\n\r\n");
+    r.current(p);
+
+    assertEquals(2, login.logins.get());
+  }
+
+  @Test
+  void profileWithoutRecipeGetsInactiveSession() {
+    SessionRefresher r = new SessionRefresher(new StubLogin(), now::get);
+
+    SessionRefresher.Session s = r.current(UserProfile.create("bob"));
+
+    assertFalse(s.isActive());
+    assertEquals("{{token}}", s.resolve("{{token}}"));
+  }
+
+  @Test
+  void concurrentCallersShareOneLogin() throws Exception {
+    StubLogin login = new StubLogin();
+    login.gate = new CountDownLatch(1);
+    SessionRefresher r = new SessionRefresher(login, now::get);
+    UserProfile p = profile(60);
+
+    List<Thread> threads = new ArrayList<>();
+    List<SessionRefresher.Session> got = new java.util.concurrent.CopyOnWriteArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Thread t = new Thread(() -> got.add(r.current(p)));
+      threads.add(t);
+      t.start();
+    }
+    while (login.logins.get() == 0) Thread.sleep(1);
+    Thread.sleep(50);
+    login.gate.countDown();
+    for (Thread t : threads) t.join(5_000);
+
+    assertEquals(1, login.logins.get());
+    assertEquals(8, got.size());
+    for (SessionRefresher.Session s : got) assertSame(got.get(0), s);
+  }
+
+  @Test
+  void callerThatSawStaleEntryReusesLoginFinishedMeanwhile() throws Exception {
+    StubLogin login = new StubLogin();
+    CountDownLatch staleRead = new CountDownLatch(1);
+    CountDownLatch resume = new CountDownLatch(1);
+    AtomicInteger lateCalls = new AtomicInteger();
+    // The "late" thread parks inside its first freshness check, after it read the expired entry.
+    SessionRefresher r = new SessionRefresher(login, () -> {
+      if (Thread.currentThread().getName().equals("late") && lateCalls.getAndIncrement() == 0) {
+        staleRead.countDown();
+        try {
+          resume.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return now.get();
+    });
+    UserProfile p = profile(10);
+    r.current(p);
+    now.addAndGet(20_000);
+
+    SessionRefresher.Session[] late = new SessionRefresher.Session[1];
+    Thread t = new Thread(() -> late[0] = r.current(p), "late");
+    t.start();
+    assertTrue(staleRead.await(5, TimeUnit.SECONDS));
+    SessionRefresher.Session fresh = r.current(p);
+    resume.countDown();
+    t.join(5_000);
+
+    assertEquals(2, login.logins.get());
+    assertSame(fresh, late[0]);
+  }
+
+  @Test
+  void authFailureInvalidatesOnlyAfterMinimumInterval() {
+    StubLogin login = new StubLogin();
+    SessionRefresher r = new SessionRefresher(login, now::get);
+    UserProfile p = profile(300);
+    SessionRefresher.Session used = r.current(p);
+
+    now.addAndGet(9_999);
+    assertFalse(r.onAuthFailure(p, used));
+    assertSame(used, r.current(p));
+
+    now.addAndGet(1);
+    assertTrue(r.onAuthFailure(p, used));
+    // A burst of failures for the same session only triggers one login.
+    assertFalse(r.onAuthFailure(p, used));
+    SessionRefresher.Session next = r.current(p);
+    assertEquals("t2", next.values().get("token"));
+    assertEquals(2, login.logins.get());
+    assertFalse(r.onAuthFailure(p, SessionRefresher.Session.NONE));
+  }
+
+  @Test
+  void failedLoginIsRetriedAfterBackoff() {
+    StubLogin login = new StubLogin();
+    login.fail = true;
+    SessionRefresher r = new SessionRefresher(login, now::get);
+    UserProfile p = profile(300);
+
+    SessionRefresher.Session s = r.current(p);
+    assertTrue(s.values().isEmpty());
+    now.addAndGet(29_999);
+    r.current(p);
+    assertEquals(1, login.logins.get());
+
+    login.fail = false;
+    now.addAndGet(1);
+    assertEquals("t2", r.current(p).values().get("token"));
+  }
+
+  @Test
+  void loginWithoutTokensIsRetriedAfterBackoff() {
+    StubLogin login = new StubLogin();
+    SessionRefresher r = new SessionRefresher(login, now::get);
+    UserProfile p = profile(300);
+    p.tokenExtractors().clear();
+    p.tokenExtractors().add(new TokenExtractor(TokenExtractorType.JSON_PATH, "token", "$.missing"));
+
+    r.current(p);
+    now.addAndGet(30_000);
+    r.current(p);
+
+    assertEquals(2, login.logins.get());
+  }
+
+  @Test
+  void extractorsReadRegexJsonPathAndSetCookie() {
+    SessionRefresher.LoginResponse res = new SessionRefresher.LoginResponse(200,
+        List.of(Map.entry("X-Csrf", "abc123"),
+            Map.entry("set-cookie", "other=1; Path=/"),
+            Map.entry("Set-Cookie", "sid=xyz; Path=/; Secure")),
+        "{\"data\":{\"items\":[{\"token\":\"tok\"}],\"user\":{\"id\":7}}}");
+
+    assertEquals("abc123", SessionRefresher.extract(
+        new TokenExtractor(TokenExtractorType.REGEX, "csrf", "X-Csrf: (\\w+)"), res));
+    assertEquals("X-Csrf", SessionRefresher.extract(
+        new TokenExtractor(TokenExtractorType.REGEX, "h", "X-\\w+"), res));
+    assertEquals("tok", SessionRefresher.extract(
+        new TokenExtractor(TokenExtractorType.JSON_PATH, "t", "$.data.items[0].token"), res));
+    assertEquals("{\"id\":7}", SessionRefresher.extract(
+        new TokenExtractor(TokenExtractorType.JSON_PATH, "u", "$.data.user"), res));
+    assertEquals("7", SessionRefresher.extract(
+        new TokenExtractor(TokenExtractorType.JSON_PATH, "id", "/data/user/id"), res));
+    assertEquals("xyz", SessionRefresher.extract(
+        new TokenExtractor(TokenExtractorType.SET_COOKIE, "sid", "sid"), res));
+
+    assertNull(SessionRefresher.extract(new TokenExtractor(TokenExtractorType.SET_COOKIE, "x", "nope"), res));
+    assertNull(SessionRefresher.extract(new TokenExtractor(TokenExtractorType.JSON_PATH, "x", "$.nope"), res));
+    assertNull(SessionRefresher.extract(new TokenExtractor(TokenExtractorType.REGEX, "x", "("), res));
+    assertNull(SessionRefresher.extract(new TokenExtractor(TokenExtractorType.JSON_PATH, "x", "$.a"),
+        new SessionRefresher.LoginResponse(200, null, "not json")));
+  }
+
+  @Test
+  void resolveReplacesKnownPlaceholders() {
+    SessionRefresher r = new SessionRefresher(new StubLogin(), now::get);
+    SessionRefresher.Session s = r.current(profile(60));
+
+    assertEquals("Bearer t1 {{other}} $1", s.resolve("Bearer {{token}} {{other}} $1"));
+  }
+}
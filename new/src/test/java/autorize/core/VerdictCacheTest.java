@@ -0,0 +1,147 @@
+package autorize.core;
+
+import autorize.model.AndOr;
+import autorize.model.EnforcementRule;
+import autorize.model.EnforcementRuleType;
+import autorize.model.ResponseSignature;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VerdictCacheTest {
+  private final VerdictCache cache = new VerdictCache();
+  private final RegexGuard guard = new RegexGuard();
+  private final AtomicInteger evaluations = new AtomicInteger();
+  private final BooleanSupplier evaluate = () -> {
+    evaluations.incrementAndGet();
+    return true;
+  };
+
+  private static ResponseSignature sig(int status, String head, String body) {
+    byte[] h = ("HTTP/1.1 " + status + " X\r\n" + head + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    byte[] b = body.getBytes(StandardCharsets.ISO_8859_1);
+    byte[] raw = new byte[h.length + b.length];
+    System.arraycopy(h, 0, raw, 0, h.length);
+    System.arraycopy(b, 0, raw, h.length, b.length);
+    return ResponseSignature.of((short) status, "text/html", raw, h.length);
+  }
+
+  private EnforcementRuleSet rules(EnforcementRuleType type, String content) {
+    return EnforcementRuleSet.compile(List.of(new EnforcementRule(type, false, content)), null, guard);
+  }
+
+  @Test
+  void sameStatusAndBodyIsEvaluatedOnce() {
+    EnforcementRuleSet set = rules(EnforcementRuleType.BODY_CONTAINS, "denied");
+
+    assertTrue(cache.enforced(set, AndOr.OR, sig(200, "A: 1\r\n", "access denied"), evaluate));
+    assertTrue(cache.enforced(set, AndOr.OR, sig(200, "B: 2\r\n", "access denied"), evaluate));
+
+    assertEquals(1, evaluations.get());
+    assertEquals(1, cache.hits());
+    assertEquals(1, cache.misses());
+  }
+
+  @Test
+  void statusBodyAndModeArePartOfTheKey() {
+    EnforcementRuleSet set = rules(EnforcementRuleType.BODY_CONTAINS, "denied");
+
+    cache.enforced(set, AndOr.OR, sig(200, "", "access denied"), evaluate);
+    cache.enforced(set, AndOr.OR, sig(302, "", "access denied"), evaluate);
+    cache.enforced(set, AndOr.OR, sig(200, "", "access denied!"), evaluate);
+    cache.enforced(set, AndOr.OR, sig(200, "", "access denieD"), evaluate);
+    cache.enforced(set, AndOr.AND, sig(200, "", "access denied"), evaluate);
+
+    assertEquals(5, evaluations.get());
+    assertEquals(0, cache.hits());
+  }
+
+  @Test
+  void messageLengthIsPartOfTheKeyOnlyForLengthRules() {
+    EnforcementRuleSet body = rules(EnforcementRuleType.BODY_CONTAINS, "denied");
+    EnforcementRuleSet length = rules(EnforcementRuleType.FULL_LENGTH_EQUALS, "42");
+
+    cache.enforced(body, AndOr.OR, sig(200, "A: 1\r\n", "x"), evaluate);
+    cache.enforced(body, AndOr.OR, sig(200, "A: 12345\r\n", "x"), evaluate);
+    assertEquals(1, evaluations.get());
+
+    cache.enforced(length, AndOr.OR, sig(200, "A: 1\r\n", "x"), evaluate);
+    cache.enforced(length, AndOr.OR, sig(200, "A: 12345\r\n", "x"), evaluate);
+    cache.enforced(length, AndOr.OR, sig(200, "B: 1\r\n", "x"), evaluate);
+    assertEquals(3, evaluations.get());
+  }
+
+  @Test
+  void ruleSetsThatReadHeadersAreNotCached() {
+    for (EnforcementRuleType t : List.of(EnforcementRuleType.HEADERS_CONTAINS, EnforcementRuleType.HEADERS_REGEX,
+        EnforcementRuleType.FULL_CONTAINS, EnforcementRuleType.FULL_REGEX)) {
+      EnforcementRuleSet set = rules(t, "Location");
+      assertFalse(set.readsBodyOnly(), t::name);
+      cache.enforced(set, AndOr.OR, sig(302, "", ""), evaluate);
+      cache.enforced(set, AndOr.OR, sig(302, "", ""), evaluate);
+    }
+
+    assertEquals(8, evaluations.get());
+    assertEquals(8, cache.uncacheable());
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void recompiledRuleSetMisses() {
+    List<EnforcementRule> list = List.of(new EnforcementRule(EnforcementRuleType.BODY_CONTAINS, false, "denied"));
+    EnforcementRuleSet first = EnforcementRuleSet.compile(list, null, guard);
+
+    cache.enforced(first, AndOr.OR, sig(200, "", "x"), evaluate);
+    cache.enforced(EnforcementRuleSet.compile(list, first, guard), AndOr.OR, sig(200, "", "x"), evaluate);
+    assertEquals(1, evaluations.get());
+
+    List<EnforcementRule> edited = List.of(new EnforcementRule(EnforcementRuleType.BODY_CONTAINS, false, "denied"));
+    cache.enforced(EnforcementRuleSet.compile(edited, first, guard), AndOr.OR, sig(200, "", "x"), evaluate);
+    assertEquals(2, evaluations.get());
+  }
+
+  @Test
+  void regexEngineAndBudgetArePartOfTheKey() {
+    EnforcementRuleSet set = rules(EnforcementRuleType.BODY_REGEX, "den(ied)?");
+
+    cache.enforced(set, AndOr.OR, sig(200, "", "x"), evaluate);
+    guard.setLinear(true);
+    cache.enforced(set, AndOr.OR, sig(200, "", "x"), evaluate);
+    guard.setBudgetMillis(5000);
+    cache.enforced(set, AndOr.OR, sig(200, "", "x"), evaluate);
+    guard.setLinear(false);
+    guard.setBudgetMillis(RegexGuard.DEFAULT_BUDGET_MILLIS);
+    cache.enforced(set, AndOr.OR, sig(200, "", "x"), evaluate);
+
+    assertEquals(3, evaluations.get());
+    assertEquals(1, cache.hits());
+  }
+
+  @Test
+  void outcomeOfAnAbortedRegexIsNotCached() {
+    guard.setBudgetMillis(1);
+    EnforcementRuleSet set = rules(EnforcementRuleType.BODY_REGEX, "(.*a){20}");
+    Pattern evil = Pattern.compile("(.*a){20}");
+    String input = "a".repeat(60) + "b";
+    BooleanSupplier slow = () -> {
+      evaluations.incrementAndGet();
+      return guard.find(evil, input);
+    };
+
+    assertFalse(cache.enforced(set, AndOr.OR, sig(200, "", input), slow));
+    assertFalse(cache.enforced(set, AndOr.OR, sig(200, "", input), slow));
+
+    assertEquals(2, evaluations.get());
+    assertEquals(2, guard.aborts());
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.uncacheable());
+  }
+}